@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+/**
+ * A simple bean for reflection benchmarks.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public class Bean
+{
+    private int id;
+    private String name;
+    private double score;
+    private boolean active;
+
+    /**
+     * Make a Bean.
+     *
+     * @param id the id.
+     * @param name the name.
+     * @param score the score.
+     * @param active the active flag.
+     */
+    public Bean( int id, String name, double score, boolean active )
+    {
+        this.id = id;
+        this.name = name;
+        this.score = score;
+        this.active = active;
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public double getScore()
+    {
+        return score;
+    }
+
+    public boolean isActive()
+    {
+        return active;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.kopitubruk.util.json.JSONUtil;
+
+/**
+ * Test data shared by the benchmarks. Everything is generated from a fixed
+ * seed so that every run works on the same data.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+final class BenchmarkData
+{
+    private static final long SEED = 20160704L;
+
+    /**
+     * Number of elements in generated arrays.
+     */
+    static final int SIZE = 1000;
+
+    /**
+     * Nesting depth of the deeply nested document.
+     */
+    static final int DEPTH = 200;
+
+    /**
+     * Make a map with a mix of value types, like a typical API response.
+     *
+     * @return the map.
+     */
+    static Map<String,Object> makeMap()
+    {
+        Random random = new Random(SEED);
+        Map<String,Object> map = new LinkedHashMap<>();
+        for ( int i = 0; i < 50; i++ ){
+            switch ( i % 5 ){
+                case 0: map.put("str" + i, makeString(random, 20, false)); break;
+                case 1: map.put("int" + i, random.nextInt()); break;
+                case 2: map.put("dbl" + i, random.nextDouble()); break;
+                case 3: map.put("bool" + i, random.nextBoolean()); break;
+                default: map.put("list" + i, makeList(random, 10)); break;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Make a list of maps.
+     *
+     * @return the list.
+     */
+    static List<Object> makeListOfMaps()
+    {
+        Random random = new Random(SEED);
+        List<Object> list = new ArrayList<>(SIZE);
+        for ( int i = 0; i < SIZE; i++ ){
+            Map<String,Object> map = new LinkedHashMap<>();
+            map.put("id", i);
+            map.put("name", makeString(random, 12, false));
+            map.put("score", random.nextDouble() * 100);
+            map.put("active", random.nextBoolean());
+            list.add(map);
+        }
+        return list;
+    }
+
+    /**
+     * Make an array of ints.
+     *
+     * @return the array.
+     */
+    static int[] makeIntArray()
+    {
+        Random random = new Random(SEED);
+        int[] array = new int[SIZE];
+        for ( int i = 0; i < array.length; i++ ){
+            array[i] = random.nextInt();
+        }
+        return array;
+    }
+
+    /**
+     * Make an array of beans for reflection.
+     *
+     * @return the array.
+     */
+    static Bean[] makeBeans()
+    {
+        Random random = new Random(SEED);
+        Bean[] beans = new Bean[SIZE];
+        for ( int i = 0; i < beans.length; i++ ){
+            beans[i] = new Bean(i, makeString(random, 12, false), random.nextDouble(), random.nextBoolean());
+        }
+        return beans;
+    }
+
+    /**
+     * Make a JSON document that is mostly strings, with some escapes.
+     *
+     * @return the JSON.
+     */
+    static String makeStringHeavyJSON()
+    {
+        Random random = new Random(SEED);
+        List<Object> list = new ArrayList<>(SIZE);
+        for ( int i = 0; i < SIZE; i++ ){
+            list.add(makeString(random, 40, true));
+        }
+        return JSONUtil.toJSON(list);
+    }
+
+    /**
+     * Make a JSON document that is mostly numbers.
+     *
+     * @return the JSON.
+     */
+    static String makeNumberHeavyJSON()
+    {
+        Random random = new Random(SEED);
+        List<Object> list = new ArrayList<>(SIZE);
+        for ( int i = 0; i < SIZE; i++ ){
+            list.add(i % 2 == 0 ? (Object)random.nextLong() : (Object)random.nextDouble());
+        }
+        return JSONUtil.toJSON(list);
+    }
+
+    /**
+     * Make a JSON document with deeply nested objects and arrays.
+     *
+     * @return the JSON.
+     */
+    static String makeDeeplyNestedJSON()
+    {
+        StringBuilder json = new StringBuilder();
+        for ( int i = 0; i < DEPTH; i++ ){
+            json.append(i % 2 == 0 ? "{\"a\":" : "[" + i + ",");
+        }
+        json.append("null");
+        for ( int i = DEPTH-1; i >= 0; i-- ){
+            json.append(i % 2 == 0 ? '}' : ']');
+        }
+        return json.toString();
+    }
+
+    /**
+     * Make a string to be escaped.
+     *
+     * @return the string.
+     */
+    static String makeEscapableString()
+    {
+        return makeString(new Random(SEED), SIZE, true);
+    }
+
+    /**
+     * Make a list of random ints.
+     *
+     * @param random the random number generator.
+     * @param length the length of the list.
+     * @return the list.
+     */
+    private static List<Object> makeList( Random random, int length )
+    {
+        List<Object> list = new ArrayList<>(length);
+        for ( int i = 0; i < length; i++ ){
+            list.add(random.nextInt(1000));
+        }
+        return list;
+    }
+
+    /**
+     * Make a random string.
+     *
+     * @param random the random number generator.
+     * @param length the length of the string.
+     * @param escapes if true then include chars that need to be escaped.
+     * @return the string.
+     */
+    private static String makeString( Random random, int length, boolean escapes )
+    {
+        StringBuilder buf = new StringBuilder(length);
+        for ( int i = 0; i < length; i++ ){
+            int r = random.nextInt(100);
+            if ( escapes && r < 5 ){
+                buf.append("\"\\\n\té ".charAt(r));
+            }else{
+                buf.append((char)('a' + random.nextInt(26)));
+            }
+        }
+        return buf.toString();
+    }
+
+    private BenchmarkData()
+    {
+    }
+}
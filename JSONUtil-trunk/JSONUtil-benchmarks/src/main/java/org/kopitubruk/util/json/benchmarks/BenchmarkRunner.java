@@ -0,0 +1,180 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.StackProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once for each thread count and writes the results of
+ * each run to a JSON file, jmh-result-&lt;threads&gt;.json, so that results can
+ * be compared between versions. Arguments are the same as the standard JMH
+ * command line, so for example
+ * <pre>java -jar target/benchmarks.jar ParseBenchmark -f 2</pre>
+ * only runs the parser benchmarks, with two forks.
+ * <p>
+ * System properties:
+ * <dl>
+ *   <dt>threads</dt>
+ *   <dd>A comma separated list of thread counts or "scaling" for powers of
+ *   two up to and including the number of available processors. The default
+ *   is 1 and the number of available processors.</dd>
+ *   <dt>contention</dt>
+ *   <dd>If true then add the JMH stack profiler, which shows how much time
+ *   threads spend blocked or waiting on locks and where.</dd>
+ *   <dt>resultDir</dt>
+ *   <dd>The directory for the result files. The default is the current
+ *   directory.</dd>
+ * </dl>
+ * After all of the runs, a table of the scores for each thread count is
+ * printed along with how each score compares to perfect scaling from the
+ * lowest thread count.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public class BenchmarkRunner
+{
+    /**
+     * Run the benchmarks.
+     *
+     * @param args JMH command line arguments.
+     * @throws RunnerException if there's a problem running the benchmarks.
+     * @throws CommandLineOptionException if the arguments are bad.
+     */
+    public static void main( String[] args ) throws RunnerException, CommandLineOptionException
+    {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        File resultDir = new File(System.getProperty("resultDir", "."));
+        if ( ! resultDir.isDirectory() && ! resultDir.mkdirs() ){
+            throw new IllegalArgumentException("Can't create " + resultDir);
+        }
+
+        boolean contention = Boolean.getBoolean("contention");
+        Map<String,Map<Integer,Double>> scores = new LinkedHashMap<>();
+
+        for ( int threads : getThreadCounts() ){
+            File result = new File(resultDir, "jmh-result-" + threads + ".json");
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(cmdOptions)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.getPath());
+            if ( cmdOptions.getIncludes().isEmpty() ){
+                options.include(BenchmarkRunner.class.getPackage().getName() + '.');
+            }
+            if ( contention ){
+                options.addProfiler(StackProfiler.class, "lines=5;top=5;detailLine=false");
+            }
+            addScores(scores, threads, new Runner(options.build()).run());
+        }
+
+        printScaling(scores);
+    }
+
+    /**
+     * Add the scores from a run to the table of scores.
+     *
+     * @param scores the table of scores by benchmark and thread count.
+     * @param threads the thread count for the run.
+     * @param results the results of the run.
+     */
+    private static void addScores( Map<String,Map<Integer,Double>> scores, int threads, Collection<RunResult> results )
+    {
+        for ( RunResult result : results ){
+            BenchmarkParams params = result.getParams();
+            StringBuilder name = new StringBuilder(params.getBenchmark());
+            for ( String key : params.getParamsKeys() ){
+                name.append(' ').append(key).append('=').append(params.getParam(key));
+            }
+            Map<Integer,Double> byThreads = scores.get(name.toString());
+            if ( byThreads == null ){
+                byThreads = new TreeMap<>();
+                scores.put(name.toString(), byThreads);
+            }
+            byThreads.put(threads, result.getPrimaryResult().getScore());
+        }
+    }
+
+    /**
+     * Print the scaling of each benchmark. Efficiency is the score divided by
+     * what the score would be if it went up in proportion to the number of
+     * threads from the lowest thread count.
+     *
+     * @param scores the table of scores by benchmark and thread count.
+     */
+    private static void printScaling( Map<String,Map<Integer,Double>> scores )
+    {
+        System.out.println();
+        System.out.println("Scaling (ops/s, efficiency vs. the lowest thread count):");
+        for ( Map.Entry<String,Map<Integer,Double>> entry : scores.entrySet() ){
+            System.out.println(entry.getKey());
+            Integer baseThreads = null;
+            double baseScore = 0;
+            for ( Map.Entry<Integer,Double> score : entry.getValue().entrySet() ){
+                int threads = score.getKey();
+                if ( baseThreads == null ){
+                    baseThreads = threads;
+                    baseScore = score.getValue();
+                }
+                double efficiency = score.getValue() * baseThreads / (baseScore * threads);
+                System.out.println(String.format("  %4d threads %,16.1f %6.1f%%", threads, score.getValue(), efficiency * 100));
+            }
+        }
+    }
+
+    /**
+     * Get the thread counts to run with.
+     *
+     * @return the thread counts in ascending order.
+     */
+    static Set<Integer> getThreadCounts()
+    {
+        Set<Integer> threadCounts = new TreeSet<>();
+        String threads = System.getProperty("threads");
+        int processors = Runtime.getRuntime().availableProcessors();
+        if ( threads == null ){
+            threadCounts.add(1);
+            threadCounts.add(processors);
+        }else if ( threads.equals("scaling") ){
+            for ( int count = 1; count < processors; count *= 2 ){
+                threadCounts.add(count);
+            }
+            threadCounts.add(processors);
+        }else{
+            for ( String count : threads.split(",") ){
+                threadCounts.add(Integer.valueOf(count.trim()));
+            }
+        }
+        return threadCounts;
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.kopitubruk.util.json.JSONConfig;
+import org.kopitubruk.util.json.JSONConfigDefaults;
+import org.kopitubruk.util.json.JSONParser;
+import org.kopitubruk.util.json.JSONUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for code that uses the default config, which is what most
+ * applications do. Every call makes a new {@link JSONConfig} from
+ * {@link JSONConfigDefaults}, so these show how well that scales when many
+ * threads do it at once. Run them at several thread counts to get a scaling
+ * curve, for example
+ * <pre>java -Dthreads=scaling -Dcontention=true -jar target/benchmarks.jar ContentionBenchmark</pre>
+ * <p>
+ * With reflectDefaults set, {@link Bean} is added to the default reflected
+ * classes so that making a config has to copy them. Without it, encodeBean
+ * just encodes the result of the bean's toString().
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentionBenchmark
+{
+    @Param({"false", "true"})
+    private boolean reflectDefaults;
+
+    private Map<String,Object> map;
+    private Bean bean;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        map = BenchmarkData.makeMap();
+        bean = BenchmarkData.makeBeans()[0];
+        json = JSONUtil.toJSON(map);
+        if ( reflectDefaults ){
+            JSONConfigDefaults.addReflectClass(Bean.class);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        if ( reflectDefaults ){
+            JSONConfigDefaults.removeReflectClass(Bean.class);
+        }
+    }
+
+    @Benchmark
+    public JSONConfig newConfig()
+    {
+        return new JSONConfig();
+    }
+
+    @Benchmark
+    public String encodeMap()
+    {
+        return JSONUtil.toJSON(map);
+    }
+
+    @Benchmark
+    public String encodeBean()
+    {
+        return JSONUtil.toJSON(bean);
+    }
+
+    @Benchmark
+    public Object parseMap()
+    {
+        return JSONParser.parseJSON(json);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.kopitubruk.util.json.JSONConfig;
+import org.kopitubruk.util.json.JSONUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link JSONUtil#toJSON(Object, JSONConfig)}. Each thread has
+ * its own config object since they are not thread safe.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark
+{
+    private Map<String,Object> map;
+    private List<Object> list;
+    private int[] intArray;
+    private Bean[] beans;
+    private JSONConfig cfg;
+    private JSONConfig reflectCfg;
+
+    @Setup
+    public void setup()
+    {
+        map = BenchmarkData.makeMap();
+        list = BenchmarkData.makeListOfMaps();
+        intArray = BenchmarkData.makeIntArray();
+        beans = BenchmarkData.makeBeans();
+        cfg = new JSONConfig();
+        reflectCfg = new JSONConfig().addReflectClass(Bean.class);
+    }
+
+    @Benchmark
+    public String encodeMap()
+    {
+        return JSONUtil.toJSON(map, cfg);
+    }
+
+    @Benchmark
+    public String encodeList()
+    {
+        return JSONUtil.toJSON(list, cfg);
+    }
+
+    @Benchmark
+    public String encodePrimitiveArray()
+    {
+        return JSONUtil.toJSON(intArray, cfg);
+    }
+
+    @Benchmark
+    public String encodeReflectedBeans()
+    {
+        return JSONUtil.toJSON(beans, reflectCfg);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.kopitubruk.util.json.JSONConfig;
+import org.kopitubruk.util.json.JSONParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link JSONParser#parseJSON(String, JSONConfig)}.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark
+{
+    private String stringHeavy;
+    private String numberHeavy;
+    private String deeplyNested;
+    private JSONConfig cfg;
+
+    @Setup
+    public void setup()
+    {
+        stringHeavy = BenchmarkData.makeStringHeavyJSON();
+        numberHeavy = BenchmarkData.makeNumberHeavyJSON();
+        deeplyNested = BenchmarkData.makeDeeplyNestedJSON();
+        cfg = new JSONConfig();
+    }
+
+    @Benchmark
+    public Object parseStringHeavy()
+    {
+        return JSONParser.parseJSON(stringHeavy, cfg);
+    }
+
+    @Benchmark
+    public Object parseNumberHeavy()
+    {
+        return JSONParser.parseJSON(numberHeavy, cfg);
+    }
+
+    @Benchmark
+    public Object parseDeeplyNested()
+    {
+        return JSONParser.parseJSON(deeplyNested, cfg);
+    }
+}
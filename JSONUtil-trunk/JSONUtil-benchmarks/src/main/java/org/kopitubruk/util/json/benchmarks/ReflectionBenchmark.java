@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.kopitubruk.util.json.JSONConfig;
+import org.kopitubruk.util.json.JSONUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for encoding objects with reflection, with and without
+ * {@link JSONConfig#isCacheReflectionData()}.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionBenchmark
+{
+    @Param({"false", "true"})
+    private boolean cacheReflectionData;
+
+    private Bean bean;
+    private Bean[] beans;
+    private JSONConfig cfg;
+
+    @Setup
+    public void setup()
+    {
+        beans = BenchmarkData.makeBeans();
+        bean = beans[0];
+        cfg = new JSONConfig().addReflectClass(Bean.class)
+                              .setCacheReflectionData(cacheReflectionData);
+    }
+
+    @Benchmark
+    public String reflectOne()
+    {
+        return JSONUtil.toJSON(bean, cfg);
+    }
+
+    @Benchmark
+    public String reflectMany()
+    {
+        return JSONUtil.toJSON(beans, cfg);
+    }
+}
@@ -0,0 +1,548 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A plan for binding JSON objects to instances of a class, used by
+ * {@link JSONParser#parseJSON(java.io.Reader, Class, JSONConfig)}. The plan
+ * maps each JSON property name to a {@link MethodHandle} that sets the
+ * corresponding field, either through its setter or directly.
+ * <p>
+ * Properties are found the same way that {@link ReflectedObjectMapBuilder}
+ * finds them when an object is encoded, so an object that is encoded with
+ * reflection can be parsed back into its class. Field names and aliases from
+ * the {@link JSONReflectedClass} for the class in the config object are
+ * honored and the privacy level from the config object determines which
+ * setters and fields are visible. Setters are preferred over fields.
+ * <p>
+ * Plans are cached per class with a {@link ClassValue} and are reused for all
+ * objects of the class that are parsed with the same field names, aliases and
+ * privacy level. Like {@link ReflectionDataCache}, the value attached to each
+ * class is an {@link AtomicReference} and the classes that have plans are kept
+ * in a list of weak references so that clearing can empty each reference.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class BindingPlan
+{
+    /**
+     * Plans for each class.
+     */
+    private static final ClassValue<AtomicReference<ConcurrentMap<ReflectionData,BindingPlan>>> PLANS =
+            new ClassValue<AtomicReference<ConcurrentMap<ReflectionData,BindingPlan>>>(){
+                @Override
+                protected AtomicReference<ConcurrentMap<ReflectionData,BindingPlan>> computeValue( Class<?> type )
+                {
+                    return new AtomicReference<>();
+                }
+            };
+
+    /**
+     * The classes that have plans.
+     */
+    private static final List<WeakReference<Class<?>>> PLANNED_CLASSES = new ArrayList<>();
+
+    /**
+     * Gets the references for classes that have been unloaded.
+     */
+    private static final ReferenceQueue<Class<?>> UNLOADED = new ReferenceQueue<>();
+
+    /**
+     * The type of all constructor handles.
+     */
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    /**
+     * The type of all setter handles.
+     */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(Void.TYPE, Object.class, Object.class);
+
+    private final Class<?> clazz;
+    private final MethodHandle constructor;
+    private final Map<String,Property> properties;
+
+    /**
+     * Get the binding plan for the given class.
+     *
+     * @param clazz the class.
+     * @param cfg the config object.
+     * @return the plan.
+     * @throws IllegalAccessException if a handle can't be made for a setter,
+     *             field or constructor.
+     */
+    static BindingPlan getInstance( Class<?> clazz, JSONConfig cfg ) throws IllegalAccessException
+    {
+        JSONReflectedClass refClass = cfg.ensureReflectedClass(clazz);
+        Set<String> fieldNames = refClass.getFieldNamesRaw();
+        FastStringCollection fnames = fieldNames == null ? null : new FastStringCollection(fieldNames);
+        TreeMap<String,String> fieldAliases = refClass.getFieldAliasesTreeMap();
+        int privacyLevel = fieldNames == null ? cfg.getReflectionPrivacy() : ReflectUtil.PRIVATE;
+
+        ConcurrentMap<ReflectionData,BindingPlan> plans = getPlans(clazz);
+        ReflectionData key = new ReflectionData(clazz, privacyLevel, fnames, fieldAliases);
+        BindingPlan plan = plans.get(key);
+        if ( plan == null ){
+            plan = new BindingPlan(refClass, fnames, privacyLevel);
+            // make sure the key can't be changed.
+            TreeMap<String,String> aliases = fieldAliases == null ? null : new TreeMap<>(fieldAliases);
+            plans.putIfAbsent(new ReflectionData(clazz, privacyLevel, fnames, aliases), plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Get the plans for the given class, attaching a new map to the class if
+     * it doesn't have one.
+     *
+     * @param clazz the class.
+     * @return the plans.
+     */
+    private static ConcurrentMap<ReflectionData,BindingPlan> getPlans( Class<?> clazz )
+    {
+        AtomicReference<ConcurrentMap<ReflectionData,BindingPlan>> ref = PLANS.get(clazz);
+        ConcurrentMap<ReflectionData,BindingPlan> plans = ref.get();
+        if ( plans == null ){
+            synchronized ( PLANNED_CLASSES ){
+                plans = ref.get();
+                if ( plans == null ){
+                    expungeUnloaded();
+                    plans = new ConcurrentHashMap<>(4);
+                    ref.set(plans);
+                    PLANNED_CLASSES.add(new WeakReference<Class<?>>(clazz, UNLOADED));
+                }
+            }
+        }
+        return plans;
+    }
+
+    /**
+     * Drop the references for classes that have been unloaded. Must be
+     * called while holding the lock on {@link #PLANNED_CLASSES}.
+     */
+    private static void expungeUnloaded()
+    {
+        boolean unloaded = false;
+        while ( UNLOADED.poll() != null ){
+            unloaded = true;
+        }
+        if ( unloaded ){
+            Iterator<WeakReference<Class<?>>> it = PLANNED_CLASSES.iterator();
+            while ( it.hasNext() ){
+                if ( it.next().get() == null ){
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a new binding plan.
+     *
+     * @param refClass the reflected class.
+     * @param fieldNames the specified field names or null if none.
+     * @param privacyLevel the privacy level.
+     * @throws IllegalAccessException if a handle can't be made for a setter,
+     *             field or constructor.
+     */
+    private BindingPlan( JSONReflectedClass refClass, Collection<String> fieldNames, int privacyLevel ) throws IllegalAccessException
+    {
+        clazz = refClass.getObjClass();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        boolean isPrivate = privacyLevel == ReflectUtil.PRIVATE;
+
+        // find the fields, using the first one found for each name.
+        Map<String,Field> fields = new LinkedHashMap<>();
+        for ( Class<?> tmpClass = clazz; tmpClass != null; tmpClass = tmpClass.getSuperclass() ){
+            for ( Field field : tmpClass.getDeclaredFields() ){
+                String name = field.getName();
+                if ( ! fields.containsKey(name) ){
+                    fields.put(name, field);
+                }
+            }
+        }
+
+        // find the setters, using the first one found for each name.
+        Map<String,List<Method>> setters = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        for ( Class<?> tmpClass = clazz; tmpClass != null; tmpClass = tmpClass.getSuperclass() ){
+            for ( Method method : tmpClass.getDeclaredMethods() ){
+                if ( method.getParameterCount() != 1 || Modifier.isStatic(method.getModifiers()) || method.isBridge() ){
+                    continue;
+                }
+                String name = method.getName();
+                if ( name.length() > 3 && name.startsWith("set") && (isPrivate || isVisible(method, privacyLevel)) ){
+                    String signature = name + ':' + method.getParameterTypes()[0].getName();
+                    if ( seen.add(signature) ){
+                        List<Method> list = setters.get(name);
+                        if ( list == null ){
+                            list = new ArrayList<>(1);
+                            setters.put(name, list);
+                        }
+                        list.add(method);
+                    }
+                }
+            }
+        }
+
+        Collection<String> names;
+        if ( fieldNames == null ){
+            names = new ArrayList<>();
+            for ( Field field : fields.values() ){
+                if ( ReflectUtil.isSerializable(field) ){
+                    names.add(field.getName());
+                }
+            }
+        }else{
+            names = fieldNames;
+        }
+
+        properties = new HashMap<>();
+        for ( String fieldName : names ){
+            Field field = fields.get(fieldName);
+            Method setter = getSetter(setters.get(ReflectUtil.makeBeanMethodName(fieldName, "set")), field);
+            Type type;
+            MethodHandle handle;
+            if ( setter != null ){
+                ReflectUtil.ensureAccessible(setter);
+                type = setter.getGenericParameterTypes()[0];
+                handle = lookup.unreflect(setter);
+            }else if ( field != null && ReflectUtil.isSerializable(field) && ! Modifier.isFinal(field.getModifiers()) && (isPrivate || isVisible(field, privacyLevel)) ){
+                ReflectUtil.ensureAccessible(field);
+                type = field.getGenericType();
+                handle = lookup.unreflectSetter(field);
+            }else{
+                continue;       // can't be set, such as a pseudo-field with only a getter.
+            }
+            properties.put(refClass.getFieldAlias(fieldName), new Property(type, handle.asType(SETTER_TYPE)));
+        }
+
+        MethodHandle ctor = null;
+        if ( ! clazz.isInterface() && ! Modifier.isAbstract(clazz.getModifiers()) ){
+            try{
+                Constructor<?> constructor = clazz.getDeclaredConstructor();
+                ReflectUtil.ensureAccessible(constructor);
+                ctor = lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE);
+            }catch ( NoSuchMethodException e ){
+            }
+        }
+        constructor = ctor;
+    }
+
+    /**
+     * Pick the setter to use for a field. If there's a field then the setter
+     * has to take the same type as the field. Otherwise, there must be only
+     * one setter with the name.
+     *
+     * @param candidates the setters with the right name or null if there are none.
+     * @param field the field or null if there isn't one.
+     * @return the setter or null if there isn't a usable one.
+     */
+    private static Method getSetter( List<Method> candidates, Field field )
+    {
+        if ( candidates == null ){
+            return null;
+        }else if ( field == null ){
+            return candidates.size() == 1 ? candidates.get(0) : null;
+        }
+        for ( Method method : candidates ){
+            if ( method.getParameterTypes()[0] == field.getType() ){
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return true if the given field or method is visible at the given
+     * privacy level.
+     *
+     * @param member the field or method.
+     * @param privacyLevel the privacy level.
+     * @return true if it's visible.
+     */
+    private static boolean isVisible( Member member, int privacyLevel )
+    {
+        return ReflectUtil.getPrivacyLevel(member.getModifiers()) >= privacyLevel;
+    }
+
+    /**
+     * Check if there's a no argument constructor to make instances with.
+     *
+     * @return true if instances can be made.
+     */
+    boolean canInstantiate()
+    {
+        return constructor != null;
+    }
+
+    /**
+     * Make a new instance of the class.
+     *
+     * @return the new instance.
+     * @throws Exception if the class can't be instantiated.
+     */
+    Object newInstance() throws Exception
+    {
+        if ( constructor == null ){
+            throw new NoSuchMethodException(clazz.getName() + ".<init>()");
+        }
+        try{
+            return (Object)constructor.invokeExact();
+        }catch ( Exception|Error e ){
+            throw e;
+        }catch ( Throwable t ){
+            throw new Exception(t);
+        }
+    }
+
+    /**
+     * Get the property for the given JSON property name.
+     *
+     * @param name the JSON property name.
+     * @return the property or null if the name is not bound to anything.
+     */
+    Property getProperty( String name )
+    {
+        return properties.get(name);
+    }
+
+    /**
+     * A property that can be set.
+     */
+    static class Property
+    {
+        private final Type type;
+        private final Class<?> rawType;
+        private final MethodHandle setter;
+
+        /**
+         * Make a property.
+         *
+         * @param type the type of the property.
+         * @param setter the handle to set the property.
+         */
+        private Property( Type type, MethodHandle setter )
+        {
+            this.type = type;
+            this.rawType = getRawType(type);
+            this.setter = setter;
+        }
+
+        /**
+         * Get the type of the property.
+         *
+         * @return the type.
+         */
+        Type getType()
+        {
+            return type;
+        }
+
+        /**
+         * Set the property.
+         *
+         * @param obj the object that has the property.
+         * @param value the value, which must already be of the right type.
+         * @throws Exception if the setter throws one.
+         */
+        void setValue( Object obj, Object value ) throws Exception
+        {
+            try{
+                setter.invokeExact(obj, value);
+            }catch ( Exception|Error e ){
+                throw e;
+            }catch ( Throwable t ){
+                throw new Exception(t);
+            }
+        }
+    }
+
+    /**
+     * Clear the cached plans.
+     */
+    static void clear()
+    {
+        synchronized ( PLANNED_CLASSES ){
+            for ( WeakReference<Class<?>> ref : PLANNED_CLASSES ){
+                Class<?> clazz = ref.get();
+                if ( clazz != null ){
+                    PLANS.get(clazz).set(null);
+                }
+            }
+            PLANNED_CLASSES.clear();
+        }
+    }
+
+    /**
+     * Check if a JSON object could be bound to an instance of a class by a
+     * plan. Abstract types, arrays, collections and the types of simple
+     * values can't be.
+     *
+     * @param rawType the class.
+     * @return true if a plan could bind an object to it.
+     */
+    static boolean isBindable( Class<?> rawType )
+    {
+        return ! (rawType.isPrimitive() || rawType.isArray() || rawType.isInterface() || rawType.isEnum() ||
+                  Modifier.isAbstract(rawType.getModifiers()) || Collection.class.isAssignableFrom(rawType) ||
+                  CharSequence.class.isAssignableFrom(rawType) || Number.class.isAssignableFrom(rawType) ||
+                  rawType == Boolean.class || rawType == Character.class || Date.class.isAssignableFrom(rawType));
+    }
+
+    /**
+     * Get the class for a type.
+     *
+     * @param type the type.
+     * @return the class.
+     */
+    static Class<?> getRawType( Type type )
+    {
+        if ( type instanceof Class ){
+            return (Class<?>)type;
+        }else if ( type instanceof ParameterizedType ){
+            return getRawType(((ParameterizedType)type).getRawType());
+        }else if ( type instanceof GenericArrayType ){
+            Class<?> componentType = getRawType(((GenericArrayType)type).getGenericComponentType());
+            return Array.newInstance(componentType, 0).getClass();
+        }else if ( type instanceof WildcardType ){
+            return getRawType(((WildcardType)type).getUpperBounds()[0]);
+        }else if ( type instanceof TypeVariable ){
+            return getRawType(((TypeVariable<?>)type).getBounds()[0]);
+        }else{
+            return Object.class;
+        }
+    }
+
+    /**
+     * Get a type argument from a parameterized type.
+     *
+     * @param type the type.
+     * @param index the index of the type argument.
+     * @return the type argument or Object if there isn't one.
+     */
+    static Type getTypeArgument( Type type, int index )
+    {
+        if ( type instanceof ParameterizedType ){
+            Type[] args = ((ParameterizedType)type).getActualTypeArguments();
+            if ( index < args.length ){
+                return args[index];
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * Get the component type of an array type.
+     *
+     * @param type the array type.
+     * @return the component type.
+     */
+    static Type getComponentType( Type type )
+    {
+        if ( type instanceof GenericArrayType ){
+            return ((GenericArrayType)type).getGenericComponentType();
+        }else{
+            return getRawType(type).getComponentType();
+        }
+    }
+
+    /**
+     * Make a new collection of the given type. Interfaces and abstract
+     * classes get the most obvious implementation.
+     *
+     * @param rawType the collection type.
+     * @return the new collection or null if one can't be made.
+     * @throws ReflectiveOperationException if the collection can't be made.
+     */
+    @SuppressWarnings("unchecked")
+    static Collection<Object> newCollection( Class<?> rawType ) throws ReflectiveOperationException
+    {
+        if ( rawType.isInterface() || Modifier.isAbstract(rawType.getModifiers()) ){
+            if ( rawType.isAssignableFrom(ArrayList.class) ){
+                return new ArrayList<>();
+            }else if ( rawType.isAssignableFrom(LinkedHashSet.class) ){
+                return new LinkedHashSet<>();
+            }else if ( rawType.isAssignableFrom(TreeSet.class) ){
+                return new TreeSet<>();
+            }else if ( rawType.isAssignableFrom(ArrayDeque.class) ){
+                return new ArrayDeque<>();
+            }else{
+                return null;
+            }
+        }
+        return (Collection<Object>)rawType.newInstance();
+    }
+
+    /**
+     * Make a new map of the given type. Interfaces and abstract classes get
+     * the most obvious implementation.
+     *
+     * @param rawType the map type.
+     * @return the new map or null if one can't be made.
+     * @throws ReflectiveOperationException if the map can't be made.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<Object,Object> newMap( Class<?> rawType ) throws ReflectiveOperationException
+    {
+        if ( rawType.isInterface() || Modifier.isAbstract(rawType.getModifiers()) ){
+            if ( rawType.isAssignableFrom(LinkedHashMap.class) ){
+                return new LinkedHashMap<>();
+            }else if ( rawType.isAssignableFrom(TreeMap.class) ){
+                return new TreeMap<>();
+            }else if ( rawType.isAssignableFrom(ConcurrentHashMap.class) ){
+                return new ConcurrentHashMap<>();
+            }else{
+                return null;
+            }
+        }
+        return (Map<Object,Object>)rawType.newInstance();
+    }
+}
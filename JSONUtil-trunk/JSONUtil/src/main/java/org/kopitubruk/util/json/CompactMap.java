@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map for JSON objects created by {@link JSONParser} when
+ * {@link JSONConfig#isUseCompactMaps()} is true. The keys are held by a
+ * {@link Shape} which is shared by all objects that have the same keys in the
+ * same order, so each map only holds an array of its values. Iteration
+ * follows the order of the keys in the input, like a {@link LinkedHashMap}.
+ * <p>
+ * Calls that would modify the map throw {@link UnsupportedOperationException}.
+ * Serialization writes a {@link LinkedHashMap} so that shapes don't need to
+ * be serialized.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+final class CompactMap extends AbstractMap<String,Object> implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private final Shape shape;
+    private final Object[] values;
+
+    /**
+     * Create a new CompactMap.
+     *
+     * @param shape the shape which holds the keys.
+     * @param values the values, in the same order as the keys. This array may
+     *            be longer than the number of keys in which case it will be
+     *            trimmed. It may be null if there are no keys.
+     */
+    CompactMap( Shape shape, Object[] values )
+    {
+        int size = shape.size();
+        this.shape = shape;
+        if ( size == 0 ){
+            this.values = NO_VALUES;
+        }else{
+            this.values = values.length == size ? values : Arrays.copyOf(values, size);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return values.length;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return values.length == 0;
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return shape.indexOf(key) >= 0;
+    }
+
+    @Override
+    public Object get( Object key )
+    {
+        int i = shape.indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public void forEach( BiConsumer<? super String,? super Object> action )
+    {
+        String[] keys = shape.keys;
+        for ( int i = 0; i < values.length; i++ ){
+            action.accept(keys[i], values[i]);
+        }
+    }
+
+    @Override
+    public Set<Map.Entry<String,Object>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String,Object>>(){
+            @Override
+            public Iterator<Map.Entry<String,Object>> iterator()
+            {
+                return new Iterator<Map.Entry<String,Object>>(){
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return i < values.length;
+                    }
+
+                    @Override
+                    public Map.Entry<String,Object> next()
+                    {
+                        if ( i >= values.length ){
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String,Object> entry = new SimpleImmutableEntry<>(shape.keys[i], values[i]);
+                        ++i;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return values.length;
+            }
+        };
+    }
+
+    /**
+     * Serialize as a {@link LinkedHashMap}.
+     *
+     * @return a LinkedHashMap with the same data.
+     */
+    private Object writeReplace()
+    {
+        return new LinkedHashMap<>(this);
+    }
+
+    /**
+     * The keys of an object in the order that they appeared in the input.
+     * Shapes form a tree rooted at an empty shape. Adding a key to a shape
+     * gives a child shape which is remembered by the parent so that the next
+     * object with the same keys will get the same shape. The tree is only
+     * modified by the thread that owns its {@link KeyTable}. The keys of a
+     * shape never change so maps can be shared with other threads.
+     */
+    static final class Shape
+    {
+        private final String[] keys;
+        private final int[] hashes;
+        private Map<String,Shape> transitions;
+
+        /**
+         * Create an empty root shape.
+         */
+        Shape()
+        {
+            keys = new String[0];
+            hashes = new int[0];
+            transitions = null;
+        }
+
+        /**
+         * Create a shape that adds a key to a parent shape.
+         *
+         * @param parent the parent shape.
+         * @param key the new key.
+         */
+        Shape( Shape parent, String key )
+        {
+            int size = parent.keys.length;
+            keys = Arrays.copyOf(parent.keys, size+1);
+            keys[size] = key;
+            hashes = Arrays.copyOf(parent.hashes, size+1);
+            hashes[size] = key.hashCode();
+            transitions = null;
+        }
+
+        /**
+         * Get the number of keys in this shape.
+         *
+         * @return the number of keys.
+         */
+        int size()
+        {
+            return keys.length;
+        }
+
+        /**
+         * Find the index of the given key. Keys from the parser are interned
+         * by its {@link KeyTable} so they can usually be found by identity.
+         *
+         * @param key the key.
+         * @return the index of the key or -1 if it is not in this shape.
+         */
+        int indexOf( Object key )
+        {
+            String[] k = keys;
+            for ( int i = 0; i < k.length; i++ ){
+                if ( k[i] == key ){
+                    return i;
+                }
+            }
+            if ( key instanceof String ){
+                int hash = key.hashCode();
+                for ( int i = 0; i < k.length; i++ ){
+                    if ( hashes[i] == hash && k[i].equals(key) ){
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Get a remembered child shape.
+         *
+         * @param key the key that the child adds to this shape.
+         * @return the child shape or null if there isn't one for the key.
+         */
+        Shape getChild( String key )
+        {
+            return transitions == null ? null : transitions.get(key);
+        }
+
+        /**
+         * Remember a child shape.
+         *
+         * @param key the key that the child adds to this shape.
+         * @param child the child shape.
+         */
+        void putChild( String key, Shape child )
+        {
+            if ( transitions == null ){
+                transitions = new HashMap<>(4);
+            }
+            transitions.put(key, child);
+        }
+
+        /**
+         * Copy the keys of this shape and the given values into a map.
+         *
+         * @param values the values in the same order as the keys.
+         * @param map the map to copy into.
+         * @return the map.
+         */
+        Map<String,Object> toMap( Object[] values, Map<String,Object> map )
+        {
+            for ( int i = 0; i < keys.length; i++ ){
+                map.put(keys[i], values[i]);
+            }
+            return map;
+        }
+    }
+}
@@ -15,55 +15,129 @@
  */
 package org.kopitubruk.util.json;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * Encapsulates the data structure loop detection from appendRecursiblePropertyValue()
+ * <p>
+ * There is one detector per {@link JSONConfig}. It keeps the objects that are
+ * currently being encoded on a stack and also in an identity hash map so that
+ * checking for a loop doesn't require scanning the stack. Nothing is
+ * allocated per object unless the map or stack needs to grow.
  *
  * @author Bill Davidson
  * @since 1.7.1
  */
 class DataStructureLoopDetector
 {
-    private JSONConfig cfg;
-    private Object propertyValue;
-    private List<Object> objStack;
-    private int stackIndex;
+    private static final int INITIAL_DEPTH = 16;
+
+    private final Map<Object,Boolean> onStack;
+    private Object[] objStack;
+    private int depth;
 
     /**
      * Make a DataStructureLoopDetector
+     */
+    DataStructureLoopDetector()
+    {
+        onStack = new IdentityHashMap<>(INITIAL_DEPTH);
+        objStack = new Object[INITIAL_DEPTH];
+        depth = 0;
+    }
+
+    /**
+     * Push a property value onto the stack unless it is already on the stack,
+     * in which case throws an exception.
      *
-     * @param cfg The config object.
      * @param propertyValue The property value being checked.
+     * @param cfg The config object.
+     * @since 1.10.5
      */
-    DataStructureLoopDetector( JSONConfig cfg, Object propertyValue )
+    void push( Object propertyValue, JSONConfig cfg )
     {
-        this.cfg = cfg;
-        this.propertyValue = propertyValue;
-        objStack = cfg.getObjStack();
-        for ( Object o : objStack ){
-            // reference comparison.
-            if ( o == propertyValue ){
-                throw new DataStructureLoopException(propertyValue, cfg);
-            }
+        if ( onStack.put(propertyValue, Boolean.TRUE) != null ){
+            throw new DataStructureLoopException(propertyValue, cfg);
+        }
+        if ( depth == objStack.length ){
+            objStack = Arrays.copyOf(objStack, depth * 2);
         }
-        stackIndex = objStack.size();
-        objStack.add(propertyValue);
+        objStack[depth++] = propertyValue;
     }
 
     /**
      * Pop the data structure loop detection stack unless there's an error,
      * in which case throws an exception.
+     *
+     * @param propertyValue The property value that should be on top of the stack.
+     * @param cfg The config object.
+     * @since 1.10.5
      */
-    void popDataStructureStack()
+    void pop( Object propertyValue, JSONConfig cfg )
     {
         // remove this value from the stack.
-        if ( objStack.size() == (stackIndex+1) && objStack.get(stackIndex) == propertyValue ){
-            // current propertyValue is the last value in the list.
-            objStack.remove(stackIndex);
+        if ( depth > 0 && objStack[depth-1] == propertyValue ){
+            // current propertyValue is the last value on the stack.
+            objStack[--depth] = null;
+            onStack.remove(propertyValue);
         }else{
             // this should never happen.
-            throw new LoopDetectionFailureException(stackIndex, cfg);
+            throw new LoopDetectionFailureException(depth-1, cfg);
+        }
+    }
+
+    /**
+     * Get the number of objects on the stack.
+     *
+     * @return the number of objects on the stack.
+     * @since 1.10.5
+     */
+    int size()
+    {
+        return depth;
+    }
+
+    /**
+     * Get a copy of the stack.
+     *
+     * @return a copy of the stack, from the bottom up.
+     * @since 1.10.5
+     */
+    Object[] toArray()
+    {
+        return Arrays.copyOf(objStack, depth);
+    }
+
+    /**
+     * Replace the stack with a copy of another detector's stack. Used when
+     * part of a data structure is encoded in another thread, so that it can
+     * still find loops back to the objects that contain it.
+     *
+     * @param src the other detector.
+     * @param cfg The config object.
+     * @since 1.10.5
+     */
+    void copyFrom( DataStructureLoopDetector src, JSONConfig cfg )
+    {
+        clear();
+        for ( int i = 0; i < src.depth; i++ ){
+            push(src.objStack[i], cfg);
+        }
+    }
+
+    /**
+     * Clear the stack.
+     *
+     * @since 1.10.5
+     */
+    void clear()
+    {
+        if ( depth > 0 ){
+            Arrays.fill(objStack, 0, depth, null);
+            onStack.clear();
+            depth = 0;
         }
     }
 }
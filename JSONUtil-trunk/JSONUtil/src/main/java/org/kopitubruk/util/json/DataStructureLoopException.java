@@ -15,7 +15,6 @@
  */
 package org.kopitubruk.util.json;
 
-import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -47,8 +46,7 @@ public final class DataStructureLoopException extends JSONException
     {
         super(cfg);
         this.offender = offender;
-        List<Object> stk = cfg.getObjStack();
-        objStack = stk.toArray(new Object[stk.size()]);
+        objStack = cfg.getLoopDetector().toArray();
     }
 
     /**
@@ -134,6 +134,28 @@ public class IndentPadding implements Cloneable
         }
     }
 
+    /**
+     * Get the level of indent.
+     *
+     * @return the level of indent.
+     * @since 1.10.5
+     */
+    int getLevel()
+    {
+        return level;
+    }
+
+    /**
+     * Set the level of indent.
+     *
+     * @param level the level of indent.
+     * @since 1.10.5
+     */
+    void setLevel( int level )
+    {
+        this.level = level;
+    }
+
     /**
      * Get the string to use for a new line (default \n)
      *
@@ -16,7 +16,6 @@
 package org.kopitubruk.util.json;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 
 /**
@@ -82,7 +81,7 @@ public interface JSONAble
     default String toJSON( JSONConfig jsonConfig )
     {
         JSONConfig cfg = jsonConfig == null ? new JSONConfig() : jsonConfig;
-        Writer json = new StringWriter();
+        StringWriter json = StringWriter.acquire();
         try{
             toJSON(cfg, json);
         }catch ( IOException e ){
@@ -92,7 +91,9 @@ public interface JSONAble
             throw e;
         }
         cfg = null;
-        return json.toString();
+        String result = json.toString();
+        json.release();
+        return result;
     }
     /* */
     // Java 7 version.
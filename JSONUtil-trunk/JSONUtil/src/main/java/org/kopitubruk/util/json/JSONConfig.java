@@ -64,6 +64,10 @@ import java.util.TimeZone;
  *   <li>smallNumbers = false</li>
  *   <li>usePrimitiveArrays = false</li>
  *   <li>cacheReflectionData = false</li>
+ *   <li>useCompactMaps = false</li>
+ *   <li>useParallelEncoding = false</li>
+ *   <li>useParallelParsing = false</li>
+ *   <li>useLazyNumbers = false</li>
  * </ul>
  * <h3>
  *   Allow generation of certain types of non-standard JSON.
@@ -89,6 +93,10 @@ import java.util.TimeZone;
  * You can create number formats associated with specific numeric
  * types if you want your numbers encoded in a certain way.
  * <p>
+ * You can set limits on the depth, string lengths, number lengths and total
+ * number of elements that the parser will accept so that hostile input
+ * can't use up memory or CPU time.  There are no limits by default.
+ * <p>
  * If you've enabled special date handling options, you can change
  * the way date strings are generated and the way that they are
  * parsed.
@@ -176,7 +184,7 @@ public class JSONConfig implements Serializable, Cloneable
     /**
      * Used by JSONUtil to detect data structure loops.
      */
-    private List<Object> objStack;
+    private transient DataStructureLoopDetector loopDetector;
 
     /**
      * The property name validation pattern.
@@ -228,6 +236,31 @@ public class JSONConfig implements Serializable, Cloneable
      */
     private int undefinedCodePointPolicy;
 
+    /**
+     * The parser limit for maximum depth of nested objects and arrays.
+     */
+    private int maxParseDepth = 0;
+
+    /**
+     * The parser limit for maximum length of a string.
+     */
+    private int maxParseStringLength = 0;
+
+    /**
+     * The parser limit for maximum length of a number.
+     */
+    private int maxParseNumberLength = 0;
+
+    /**
+     * The parser limit for maximum total number of elements.
+     */
+    private int maxParseElements = 0;
+
+    /**
+     * The limit for maximum length of a line in {@link JSONLinesReader}.
+     */
+    private int maxParseLineLength = 0;
+
     // various flags.  see their setters.
     private boolean validatePropertyNames;
     private boolean detectDataStructureLoops;
@@ -246,6 +279,10 @@ public class JSONConfig implements Serializable, Cloneable
     private boolean smallNumbers;
     private boolean usePrimitiveArrays;
     private boolean cacheReflectionData;
+    private boolean useCompactMaps;
+    private boolean useParallelEncoding;
+    private boolean useParallelParsing;
+    private boolean useLazyNumbers;
 
     private boolean quoteIdentifier;
     private boolean useECMA6;
@@ -269,18 +306,18 @@ public class JSONConfig implements Serializable, Cloneable
     {
         JSONConfigDefaults.initJSONConfig(this, locale);
 
-        objStack = detectDataStructureLoops ? new ArrayList<>() : null;
+        loopDetector = null;
     }
 
     /**
-     * Only used by {@link #clone()}. Initializes nothing since clone() will
+     * Used by {@link #clone()} and by {@link JSONConfigDefaults} to build its
+     * snapshot of the defaults. Initializes nothing since the caller will
      * initialize everything itself. Avoids the overhead from the normal
-     * constructor including synchronizing on the entire
-     * {@link JSONConfigDefaults} class.
+     * constructor.
      *
      * @param placeHolder dummy argument to get a different signature.
      */
-    private JSONConfig( boolean placeHolder )
+    JSONConfig( boolean placeHolder )
     {
     }
 
@@ -295,88 +332,115 @@ public class JSONConfig implements Serializable, Cloneable
     public JSONConfig clone()
     {
         JSONConfig result = new JSONConfig(true);
+        result.copyFrom(this);
+        return result;
+    }
 
-        result.objStack = objStack == null ? null : new ArrayList<>();
-        result.locale = locale;
+    /**
+     * Make this object a deep copy of the given object. Formats, reflect
+     * classes and indent padding are cloned so that this object shares no
+     * mutable state with the source.
+     *
+     * @param src The config object to copy.
+     * @since 1.10.5
+     */
+    void copyFrom( JSONConfig src )
+    {
+        loopDetector = null;
+        locale = src.locale;
 
         // NumberFormat and DateFormat are not thread safe so clone them.
 
-        if ( numberFormatMap != null ){
-            result.numberFormatMap = new HashMap<>(numberFormatMap.size());
-            for ( Entry<Class<? extends Number>,NumberFormat> entry : numberFormatMap.entrySet() ){
-                result.numberFormatMap.put(entry.getKey(), (NumberFormat)entry.getValue().clone());
+        if ( src.numberFormatMap != null ){
+            numberFormatMap = new HashMap<>(src.numberFormatMap.size());
+            for ( Entry<Class<? extends Number>,NumberFormat> entry : src.numberFormatMap.entrySet() ){
+                numberFormatMap.put(entry.getKey(), (NumberFormat)entry.getValue().clone());
             }
         }else{
-            result.numberFormatMap = null;
+            numberFormatMap = null;
         }
 
-        result.dateGenFormat = dateGenFormat == null ? null : (DateFormat)dateGenFormat.clone();
+        dateGenFormat = src.dateGenFormat == null ? null : (DateFormat)src.dateGenFormat.clone();
 
-        if ( customDateParseFormats != null ){
-            result.customDateParseFormats = new ArrayList<>(customDateParseFormats.size());
-            for ( DateFormat fmt : customDateParseFormats ){
-                result.customDateParseFormats.add((DateFormat)fmt.clone());
+        if ( src.customDateParseFormats != null ){
+            customDateParseFormats = new ArrayList<>(src.customDateParseFormats.size());
+            for ( DateFormat fmt : src.customDateParseFormats ){
+                customDateParseFormats.add((DateFormat)fmt.clone());
             }
         }else{
-            result.customDateParseFormats = null;
+            customDateParseFormats = null;
         }
 
-        if ( reflectClasses == null ){
-            result.reflectClasses = null;
+        if ( src.reflectClasses == null ){
+            reflectClasses = null;
         }else{
-            result.reflectClasses = new HashMap<>(reflectClasses.size());
-            for ( Entry<Class<?>,JSONReflectedClass> entry : reflectClasses.entrySet() ){
-                result.reflectClasses.put(entry.getKey(), entry.getValue().clone());
+            reflectClasses = new HashMap<>(src.reflectClasses.size());
+            for ( Entry<Class<?>,JSONReflectedClass> entry : src.reflectClasses.entrySet() ){
+                reflectClasses.put(entry.getKey(), entry.getValue().clone());
             }
         }
 
-        result.indentPadding = indentPadding == null ? null : indentPadding.clone();
+        indentPadding = src.indentPadding == null ? null : src.indentPadding.clone();
 
         // this will just be regenerated on the next call if needed.
-        result.dateParseFormats = null;
+        dateParseFormats = null;
+        validationPat = null;
 
-        result.reflectionPrivacy = reflectionPrivacy;
-        result.unmatchedSurrogatePolicy = unmatchedSurrogatePolicy;
-        result.undefinedCodePointPolicy = undefinedCodePointPolicy;
+        reflectionPrivacy = src.reflectionPrivacy;
+        unmatchedSurrogatePolicy = src.unmatchedSurrogatePolicy;
+        undefinedCodePointPolicy = src.undefinedCodePointPolicy;
+
+        // parser limits.
+        maxParseDepth = src.maxParseDepth;
+        maxParseStringLength = src.maxParseStringLength;
+        maxParseNumberLength = src.maxParseNumberLength;
+        maxParseElements = src.maxParseElements;
+        maxParseLineLength = src.maxParseLineLength;
 
         // validation options.
-        result.validatePropertyNames = validatePropertyNames;
-        result.detectDataStructureLoops = detectDataStructureLoops;
-        result.escapeBadIdentifierCodePoints = escapeBadIdentifierCodePoints;
-        result.fullJSONIdentifierCodePoints = fullJSONIdentifierCodePoints;
-        result.fastStrings = fastStrings;
+        validatePropertyNames = src.validatePropertyNames;
+        detectDataStructureLoops = src.detectDataStructureLoops;
+        escapeBadIdentifierCodePoints = src.escapeBadIdentifierCodePoints;
+        fullJSONIdentifierCodePoints = src.fullJSONIdentifierCodePoints;
+        fastStrings = src.fastStrings;
 
         // "safe" alternate encoding options.
-        result.encodeNumericStringsAsNumbers = encodeNumericStringsAsNumbers;
-        result.escapeNonAscii = escapeNonAscii;
-        result.unEscapeWherePossible = unEscapeWherePossible;
-        result.escapeSurrogates = escapeSurrogates;
-        result.passThroughEscapes = passThroughEscapes;
-        result.encodeDatesAsStrings = encodeDatesAsStrings;
-        result.reflectUnknownObjects = reflectUnknownObjects;
-        result.preciseNumbers = preciseNumbers;
-        result.smallNumbers = smallNumbers;
-        result.usePrimitiveArrays = usePrimitiveArrays;
-        result.cacheReflectionData = cacheReflectionData;
+        encodeNumericStringsAsNumbers = src.encodeNumericStringsAsNumbers;
+        escapeNonAscii = src.escapeNonAscii;
+        unEscapeWherePossible = src.unEscapeWherePossible;
+        escapeSurrogates = src.escapeSurrogates;
+        passThroughEscapes = src.passThroughEscapes;
+        encodeDatesAsStrings = src.encodeDatesAsStrings;
+        reflectUnknownObjects = src.reflectUnknownObjects;
+        preciseNumbers = src.preciseNumbers;
+        smallNumbers = src.smallNumbers;
+        usePrimitiveArrays = src.usePrimitiveArrays;
+        cacheReflectionData = src.cacheReflectionData;
+        useCompactMaps = src.useCompactMaps;
+        useParallelEncoding = src.useParallelEncoding;
+        useParallelParsing = src.useParallelParsing;
+        useLazyNumbers = src.useLazyNumbers;
 
         // non-standard JSON.
-        result.quoteIdentifier = quoteIdentifier;
-        result.useECMA6 = useECMA6;
-        result.allowReservedWordsInIdentifiers = allowReservedWordsInIdentifiers;
-        result.encodeDatesAsObjects = encodeDatesAsObjects;
-
-        return result;
+        quoteIdentifier = src.quoteIdentifier;
+        useECMA6 = src.useECMA6;
+        allowReservedWordsInIdentifiers = src.allowReservedWordsInIdentifiers;
+        encodeDatesAsObjects = src.encodeDatesAsObjects;
     }
 
     /**
-     * Get the object stack. Used only by JSONUtil for data structure loop
-     * detection.
+     * Get the data structure loop detector, creating it if necessary. Used
+     * only by JSONUtil for data structure loop detection.
      *
-     * @return the objStack
+     * @return the loop detector.
+     * @since 1.10.5
      */
-    List<Object> getObjStack()
+    DataStructureLoopDetector getLoopDetector()
     {
-        return objStack;
+        if ( loopDetector == null ){
+            loopDetector = new DataStructureLoopDetector();
+        }
+        return loopDetector;
     }
 
     /**
@@ -384,8 +448,8 @@ public class JSONConfig implements Serializable, Cloneable
      */
     void clearObjStack()
     {
-        if ( objStack != null ){
-            objStack.clear();
+        if ( loopDetector != null ){
+            loopDetector.clear();
         }
     }
 
@@ -689,6 +753,18 @@ public class JSONConfig implements Serializable, Cloneable
         return dateParseFormats;
     }
 
+    /**
+     * Get the number of custom date parsing formats at the start of the list
+     * from {@link #getDateParseFormats()}. The rest are the ISO 8601 formats.
+     *
+     * @return The number of custom date parsing formats.
+     * @since 1.10.5
+     */
+    int getCustomDateParseFormatCount()
+    {
+        return customDateParseFormats == null ? 0 : customDateParseFormats.size();
+    }
+
     /**
      * Add a date parsing format to the list of parsing formats.  When
      * parsing date strings, they will be tried in the same order that
@@ -1096,6 +1172,160 @@ public class JSONConfig implements Serializable, Cloneable
         return this;
     }
 
+    /**
+     * Get the maximum depth of nested objects and arrays
+     * that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfigDefaults#getMaxParseDepth()
+     * @since 1.10.5
+     */
+    public int getMaxParseDepth()
+    {
+        return maxParseDepth;
+    }
+
+    /**
+     * Set the maximum depth of nested objects and arrays that the parser will
+     * accept. The top level object or array is at depth 1.
+     * If the input goes over the limit, then a {@link JSONParserException}
+     * is thrown as soon as it is found. Default is 0, which means no limit.
+     *
+     * @param maxParseDepth the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setMaxParseDepth(int)
+     * @since 1.10.5
+     */
+    public JSONConfig setMaxParseDepth( int maxParseDepth )
+    {
+        this.maxParseDepth = Math.max(0, maxParseDepth);
+        return this;
+    }
+
+    /**
+     * Get the maximum length of a string that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfigDefaults#getMaxParseStringLength()
+     * @since 1.10.5
+     */
+    public int getMaxParseStringLength()
+    {
+        return maxParseStringLength;
+    }
+
+    /**
+     * Set the maximum length in chars of a string, property name or other token
+     * that the parser will accept, before any escapes are decoded.
+     * If the input goes over the limit, then a {@link JSONParserException}
+     * is thrown as soon as it is found. Default is 0, which means no limit.
+     *
+     * @param maxParseStringLength the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setMaxParseStringLength(int)
+     * @since 1.10.5
+     */
+    public JSONConfig setMaxParseStringLength( int maxParseStringLength )
+    {
+        this.maxParseStringLength = Math.max(0, maxParseStringLength);
+        return this;
+    }
+
+    /**
+     * Get the maximum length of a number that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfigDefaults#getMaxParseNumberLength()
+     * @since 1.10.5
+     */
+    public int getMaxParseNumberLength()
+    {
+        return maxParseNumberLength;
+    }
+
+    /**
+     * Set the maximum length in chars of a number that the parser will accept.
+     * This keeps the parser from spending a lot of time converting very long
+     * numbers to a BigInteger or BigDecimal.
+     * If the input goes over the limit, then a {@link JSONParserException}
+     * is thrown as soon as it is found. Default is 0, which means no limit.
+     *
+     * @param maxParseNumberLength the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setMaxParseNumberLength(int)
+     * @since 1.10.5
+     */
+    public JSONConfig setMaxParseNumberLength( int maxParseNumberLength )
+    {
+        this.maxParseNumberLength = Math.max(0, maxParseNumberLength);
+        return this;
+    }
+
+    /**
+     * Get the maximum total number of elements that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfigDefaults#getMaxParseElements()
+     * @since 1.10.5
+     */
+    public int getMaxParseElements()
+    {
+        return maxParseElements;
+    }
+
+    /**
+     * Set the maximum total number of array elements and object members in one
+     * document that the parser will accept, counting all levels.
+     * If the input goes over the limit, then a {@link JSONParserException}
+     * is thrown as soon as it is found. Default is 0, which means no limit.
+     *
+     * @param maxParseElements the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setMaxParseElements(int)
+     * @since 1.10.5
+     */
+    public JSONConfig setMaxParseElements( int maxParseElements )
+    {
+        this.maxParseElements = Math.max(0, maxParseElements);
+        return this;
+    }
+
+    /**
+     * Get the maximum length of a line that {@link JSONLinesReader} will
+     * accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfigDefaults#getMaxParseLineLength()
+     * @since 1.10.5
+     */
+    public int getMaxParseLineLength()
+    {
+        return maxParseLineLength;
+    }
+
+    /**
+     * Set the maximum length in chars of a line that {@link JSONLinesReader}
+     * will accept. If a line goes over the limit, then the reader stops
+     * collecting it, skips the rest of it and a {@link JSONParserException}
+     * is thrown when that record is reached. Default is 0, which means no
+     * limit.
+     *
+     * @param maxParseLineLength the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setMaxParseLineLength(int)
+     * @since 1.10.5
+     */
+    public JSONConfig setMaxParseLineLength( int maxParseLineLength )
+    {
+        this.maxParseLineLength = Math.max(0, maxParseLineLength);
+        return this;
+    }
+
     /**
      * Convenience method to call both {@link #setUnmatchedSurrogatePolicy(int)}
      * and {@link #setUndefinedCodePointPolicy(int)} using the same value.
@@ -1616,6 +1846,145 @@ public class JSONConfig implements Serializable, Cloneable
         return this;
     }
 
+    /**
+     * The compact maps policy.
+     *
+     * @return the useCompactMaps policy.
+     * @see JSONConfigDefaults#isUseCompactMaps()
+     * @since 1.10.5
+     */
+    public boolean isUseCompactMaps()
+    {
+        return useCompactMaps;
+    }
+
+    /**
+     * If true, then {@link JSONParser} will create immutable compact maps
+     * for JSON objects instead of {@link java.util.LinkedHashMap}s. Objects
+     * that have the same keys in the same order share a single array of keys
+     * so each map only needs to store its values. This can save a lot of
+     * memory when parsing large arrays of similar objects.
+     * <p>
+     * The maps keep the order of the keys as they appeared in the input.
+     * Calls that would modify them throw
+     * {@link UnsupportedOperationException}.
+     *
+     * @param useCompactMaps if true, then the parser will create compact
+     *            immutable maps for objects.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setUseCompactMaps(boolean)
+     * @since 1.10.5
+     */
+    public JSONConfig setUseCompactMaps( boolean useCompactMaps )
+    {
+        this.useCompactMaps = useCompactMaps;
+        return this;
+    }
+
+    /**
+     * The parallel encoding policy.
+     *
+     * @return the useParallelEncoding policy.
+     * @see JSONConfigDefaults#isUseParallelEncoding()
+     * @since 1.10.5
+     */
+    public boolean isUseParallelEncoding()
+    {
+        return useParallelEncoding;
+    }
+
+    /**
+     * If true, then {@link JSONUtil} will encode large collections, arrays
+     * and maps in parallel. They are split into chunks which are encoded into
+     * separate buffers on the common {@link java.util.concurrent.ForkJoinPool}
+     * and then written out in order, so the output is the same as it would be
+     * without this option. Each chunk uses its own clone of the config object.
+     * <p>
+     * This only helps with very large data structures. Don't use it if the
+     * values have to be encoded in order or in the calling thread, such as
+     * {@link JSONAble}s with side effects. Small data structures are always
+     * encoded in the calling thread.
+     *
+     * @param useParallelEncoding if true, then large data structures will be encoded in parallel.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setUseParallelEncoding(boolean)
+     * @since 1.10.5
+     */
+    public JSONConfig setUseParallelEncoding( boolean useParallelEncoding )
+    {
+        this.useParallelEncoding = useParallelEncoding;
+        return this;
+    }
+
+    /**
+     * The parallel parsing policy.
+     *
+     * @return the useParallelParsing policy.
+     * @see JSONConfigDefaults#isUseParallelParsing()
+     * @since 1.10.5
+     */
+    public boolean isUseParallelParsing()
+    {
+        return useParallelParsing;
+    }
+
+    /**
+     * If true, then {@link JSONParser#parseJSON(String, JSONConfig)} will
+     * parse large JSON strings that contain an array at the top level in
+     * parallel. The input is scanned once to find where each element of the
+     * array is and then groups of elements are parsed on the common
+     * {@link java.util.concurrent.ForkJoinPool}, each with its own clone of the
+     * config object. The results are the same as they would be without this
+     * option.
+     * <p>
+     * This only helps with very large arrays. Input from a
+     * {@link java.io.Reader} is always parsed in the calling thread.
+     *
+     * @param useParallelParsing if true, then large top level arrays will be parsed in parallel.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setUseParallelParsing(boolean)
+     * @since 1.10.5
+     */
+    public JSONConfig setUseParallelParsing( boolean useParallelParsing )
+    {
+        this.useParallelParsing = useParallelParsing;
+        return this;
+    }
+
+    /**
+     * The lazy numbers policy.
+     *
+     * @return the useLazyNumbers policy.
+     * @see JSONConfigDefaults#isUseLazyNumbers()
+     * @since 1.10.5
+     */
+    public boolean isUseLazyNumbers()
+    {
+        return useLazyNumbers;
+    }
+
+    /**
+     * If true, then {@link JSONParser} will return numbers as
+     * {@link LazyNumber}s that keep the text of the number and only convert
+     * it to a {@link Number} of the type that would have been used otherwise
+     * the first time that it is needed. This saves time and garbage when
+     * parsing large documents that are full of numbers where most of them are
+     * never used.
+     * <p>
+     * Numbers in arrays that become arrays of primitives because of
+     * {@link #isUsePrimitiveArrays()} are always converted.
+     *
+     * @param useLazyNumbers if true, then parsed numbers will be converted when they are used.
+     * @return this JSONConfig object.
+     * @see JSONConfigDefaults#setUseLazyNumbers(boolean)
+     * @since 1.10.5
+     */
+    public JSONConfig setUseLazyNumbers( boolean useLazyNumbers )
+    {
+        this.useLazyNumbers = useLazyNumbers;
+        return this;
+    }
+
     /**
      * Find out what the identifier quote policy is.
      *
@@ -121,6 +121,10 @@ import org.apache.commons.logging.LogFactory;
  *   <li>smallNumbers = false</li>
  *   <li>usePrimitiveArrays = false</li>
  *   <li>cacheReflectionData = false</li>
+ *   <li>useCompactMaps = false</li>
+ *   <li>useParallelEncoding = false</li>
+ *   <li>useParallelParsing = false</li>
+ *   <li>useLazyNumbers = false</li>
  * </ul>
  * <h3>
  *   Allow generation of certain types of non-standard JSON.
@@ -168,6 +172,11 @@ import org.apache.commons.logging.LogFactory;
  * These reflect classes will be added to all JSONConfig objects that are created
  * in the same class loader.
  * <p>
+ * The parser limits can be set via JNDI using int values named
+ * "maxParseDepth", "maxParseStringLength", "maxParseNumberLength",
+ * "maxParseElements" and "maxParseLineLength".  They are 0, which means no
+ * limit, by default.
+ * <p>
  * Number formats and date formats are cloned when they are added because they
  * are not thread safe.  They are cloned again when applied to a new
  * {@link JSONConfig} for the same reason.  Once you add a format, you can't
@@ -226,6 +235,10 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     private static volatile boolean smallNumbers;
     private static volatile boolean usePrimitiveArrays;
     private static volatile boolean cacheReflectionData;
+    private static volatile boolean useCompactMaps;
+    private static volatile boolean useParallelEncoding;
+    private static volatile boolean useParallelParsing;
+    private static volatile boolean useLazyNumbers;
 
     private static volatile boolean quoteIdentifier;
     private static volatile boolean useECMA6;
@@ -242,6 +255,14 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     private static volatile int reflectionPrivacy;
     private static volatile int unmatchedSurrogatePolicy;
     private static volatile int undefinedCodePointPolicy;
+    private static volatile int maxParseDepth;
+    private static volatile int maxParseStringLength;
+    private static volatile int maxParseNumberLength;
+    private static volatile int maxParseElements;
+    private static volatile int maxParseLineLength;
+
+    // immutable snapshot of the defaults copied by new JSONConfig objects.
+    private static volatile JSONConfig defaultsSnapshot = null;
 
     // stored for deregistration on unload.
     private static ObjectName mBeanName = null;
@@ -390,6 +411,11 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             }
             jsonConfigDefaults.setUndefinedCodePointPolicy(JNDIUtil.getInt(jndiData, "undefinedCodePointPolicy", undefinedCodePointPolicy));
             jsonConfigDefaults.setUnmatchedSurrogatePolicy(JNDIUtil.getInt(jndiData, "unmatchedSurrogatePolicy", unmatchedSurrogatePolicy));
+            jsonConfigDefaults.setMaxParseDepth(JNDIUtil.getInt(jndiData, "maxParseDepth", maxParseDepth));
+            jsonConfigDefaults.setMaxParseStringLength(JNDIUtil.getInt(jndiData, "maxParseStringLength", maxParseStringLength));
+            jsonConfigDefaults.setMaxParseNumberLength(JNDIUtil.getInt(jndiData, "maxParseNumberLength", maxParseNumberLength));
+            jsonConfigDefaults.setMaxParseElements(JNDIUtil.getInt(jndiData, "maxParseElements", maxParseElements));
+            jsonConfigDefaults.setMaxParseLineLength(JNDIUtil.getInt(jndiData, "maxParseLineLength", maxParseLineLength));
         }catch ( Exception e ){
             // Nothing set in JNDI.  Use code defaults.  Not a problem.
             if ( logging ){
@@ -670,6 +696,10 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             smallNumbers = false;
             usePrimitiveArrays = false;
             cacheReflectionData = false;
+            useCompactMaps = false;
+            useParallelEncoding = false;
+            useParallelParsing = false;
+            useLazyNumbers = false;
 
             quoteIdentifier = true;
             useECMA6 = false;
@@ -685,29 +715,71 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             reflectionPrivacy = ReflectUtil.PUBLIC;
             unmatchedSurrogatePolicy = JSONConfig.REPLACE;
             undefinedCodePointPolicy = JSONConfig.PASS;
+            maxParseDepth = 0;
+            maxParseStringLength = 0;
+            maxParseNumberLength = 0;
+            maxParseElements = 0;
+            maxParseLineLength = 0;
+
+            publishDefaults();
         }
     }
 
     /**
-     * Apply defaults to the given {@link JSONConfig} object.
+     * Apply defaults to the given {@link JSONConfig} object. This copies the
+     * current snapshot of the defaults so that it doesn't need to lock the
+     * class.
      *
      * @param cfg The config object to initialize with defaults.
      * @param loc The locale.
      * @since 1.5
      */
-    static synchronized void initJSONConfig( JSONConfig cfg, Locale loc )
+    static void initJSONConfig( JSONConfig cfg, Locale loc )
     {
+        JSONConfig snapshot = defaultsSnapshot;
+        if ( snapshot == null ){
+            // only possible during class initialization.
+            snapshot = publishDefaults();
+        }
+        cfg.copyFrom(snapshot);
         cfg.setLocale(loc);
 
+        // can be modified after it's set so it's not in the snapshot.
+        DateFormat fmt = dateGenFormat;
+        if ( fmt != null ){
+            cfg.setDateGenFormat(fmt);
+        }
+    }
+
+    /**
+     * Build a new snapshot of the current defaults and publish it so that new
+     * {@link JSONConfig} objects will use it. The snapshot is never modified
+     * after it has been published and is never handed out so it can be
+     * copied safely without synchronization. This must be called after any
+     * change to the defaults.
+     *
+     * @return The new snapshot.
+     * @since 1.10.5
+     */
+    private static synchronized JSONConfig publishDefaults()
+    {
+        JSONConfig cfg = new JSONConfig(true);
+
+        cfg.setLocale(locale);
+
         // formats
-        cfg.addNumberFormats(getNumberFormatMap());
-        cfg.setDateGenFormat(getDateGenFormat());
-        cfg.addDateParseFormats(getDateParseFormats());
+        cfg.addNumberFormats(numberFormatMap);
+        cfg.addDateParseFormats(dateParseFormats);
 
         // other non-booleans
         cfg.setReflectionPrivacy(reflectionPrivacy);
         cfg.setUndefinedCodePointPolicy(undefinedCodePointPolicy);
         cfg.setUnmatchedSurrogatePolicy(unmatchedSurrogatePolicy);
+        cfg.setMaxParseDepth(maxParseDepth);
+        cfg.setMaxParseStringLength(maxParseStringLength);
+        cfg.setMaxParseNumberLength(maxParseNumberLength);
+        cfg.setMaxParseElements(maxParseElements);
+        cfg.setMaxParseLineLength(maxParseLineLength);
 
         // reflection.
         Map<Class<?>,JSONReflectedClass> refClasses = reflectClasses == null ? null : new HashMap<>(reflectClasses.size());
@@ -737,6 +809,10 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
         cfg.setSmallNumbers(smallNumbers);
         cfg.setUsePrimitiveArrays(usePrimitiveArrays);
         cfg.setCacheReflectionData(cacheReflectionData);
+        cfg.setUseCompactMaps(useCompactMaps);
+        cfg.setUseParallelEncoding(useParallelEncoding);
+        cfg.setUseParallelParsing(useParallelParsing);
+        cfg.setUseLazyNumbers(useLazyNumbers);
 
         // non-standard JSON options.
         cfg.setQuoteIdentifier(quoteIdentifier);
@@ -745,11 +821,10 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
         cfg.setEncodeDatesAsObjects(encodeDatesAsObjects);
 
         // indent padding, if any.
-        if ( indentPadding == null ){
-            cfg.setIndentPadding(indentPadding);
-        }else{
-            cfg.setIndentPadding(indentPadding.clone());
-        }
+        cfg.setIndentPadding(indentPadding);
+
+        defaultsSnapshot = cfg;
+        return cfg;
     }
 
     /**
@@ -805,7 +880,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
      * @return the default locale.
      * @see JSONConfig#getLocale()
      */
-    public static synchronized Locale getLocale()
+    public static Locale getLocale()
     {
         return locale != null ? locale : Locale.getDefault();
     }
@@ -819,6 +894,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void setLocale( Locale loc )
     {
         locale = loc;
+        publishDefaults();
     }
 
     /**
@@ -905,6 +981,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void addNumberFormats( Map<Class<? extends Number>,NumberFormat> numFmtMap )
     {
         numberFormatMap = JSONConfigUtil.mergeFormatMaps(numberFormatMap, numFmtMap);
+        publishDefaults();
     }
 
     /**
@@ -923,6 +1000,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             }else if ( tableSizeFor(size) > tableSizeFor(numberFormatMap.size()) ){
                 numberFormatMap = new HashMap<>(numberFormatMap);
             }
+            publishDefaults();
         }
     }
 
@@ -952,6 +1030,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             numberFormatMap = null;
+            publishDefaults();
         }
     }
 
@@ -1003,6 +1082,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void setDateGenFormat( DateFormat fmt )
     {
         dateGenFormat = fmt;
+        publishDefaults();
     }
 
     /**
@@ -1020,6 +1100,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             dateGenFormat = null;
+            publishDefaults();
         }
     }
 
@@ -1086,6 +1167,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void addDateParseFormats( Collection<? extends DateFormat> fmts )
     {
         dateParseFormats = JSONConfigUtil.addDateParseFormats(dateParseFormats, fmts);
+        publishDefaults();
     }
 
     /**
@@ -1100,6 +1182,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             dateParseFormats = null;
+            publishDefaults();
         }
     }
 
@@ -1125,6 +1208,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void setIndentPadding( IndentPadding indentPadding )
     {
         JSONConfigDefaults.indentPadding = indentPadding;
+        publishDefaults();
     }
 
     /**
@@ -1169,6 +1253,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             privacyLevel = ReflectUtil.confirmPrivacyLevel(dflt, new JSONConfig());
             synchronized ( getClass() ){
                 reflectionPrivacy = privacyLevel;
+                publishDefaults();
             }
         }catch ( JSONReflectionException e ){
             synchronized ( getClass() ){
@@ -1264,6 +1349,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void addReflectClass( Object obj )
     {
         reflectClasses = JSONConfigUtil.addReflectClass(reflectClasses, obj);
+        publishDefaults();
     }
 
     /**
@@ -1279,6 +1365,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void addReflectClasses( Collection<?> classes )
     {
         reflectClasses = JSONConfigUtil.addReflectClasses(reflectClasses, classes);
+        publishDefaults();
     }
 
     /**
@@ -1337,6 +1424,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void removeReflectClass( Object obj )
     {
         reflectClasses = JSONConfigUtil.removeReflectClass(reflectClasses, obj);
+        publishDefaults();
     }
 
     /**
@@ -1350,6 +1438,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     public static synchronized void removeReflectClasses( Collection<?> classes )
     {
         reflectClasses = JSONConfigUtil.removeReflectClasses(reflectClasses, classes);
+        publishDefaults();
     }
 
     /**
@@ -1366,6 +1455,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             reflectClasses = null;
+            publishDefaults();
         }
     }
 
@@ -1382,6 +1472,107 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
         ReflectedObjectMapBuilder.clearReflectionCache();
     }
 
+    /**
+     * Get the number of reflection cache hits.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the number of reflection cache hits.
+     * @since 1.10.5
+     */
+    @Override
+    public long getReflectionCacheHits()
+    {
+        return ReflectionDataCache.getHits();
+    }
+
+    /**
+     * Get the number of reflection cache misses.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the number of reflection cache misses.
+     * @since 1.10.5
+     */
+    @Override
+    public long getReflectionCacheMisses()
+    {
+        return ReflectionDataCache.getMisses();
+    }
+
+    /**
+     * Get the number of reflection cache entries that have been discarded
+     * because the cache reached its maximum size.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the number of evicted entries.
+     * @since 1.10.5
+     */
+    @Override
+    public long getReflectionCacheEvictions()
+    {
+        return ReflectionDataCache.getEvictions();
+    }
+
+    /**
+     * Reset the reflection cache hit, miss and eviction counts.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @since 1.10.5
+     */
+    @Override
+    public void resetReflectionCacheStatistics()
+    {
+        ReflectionDataCache.resetStatistics();
+    }
+
+    /**
+     * Get the number of entries in the reflection cache.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the number of entries in the reflection cache.
+     * @since 1.10.5
+     */
+    @Override
+    public int getReflectionCacheSize()
+    {
+        return ReflectionDataCache.getSize();
+    }
+
+    /**
+     * Get the maximum number of entries in the reflection cache.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the maximum size of the reflection cache. 0 means no limit.
+     * @since 1.10.5
+     */
+    @Override
+    public int getReflectionCacheMaxSize()
+    {
+        return ReflectionDataCache.getMaxSize();
+    }
+
+    /**
+     * Set the maximum number of entries in the reflection cache. If the
+     * cache fills up, then the classes that were cached first are evicted
+     * before adding the next entry. The cache does not keep classes from
+     * being unloaded whether or not it has a maximum size.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @param maxSize the maximum size of the reflection cache. 0 or less means no limit.
+     * @since 1.10.5
+     */
+    @Override
+    public void setReflectionCacheMaxSize( int maxSize )
+    {
+        ReflectionDataCache.setMaxSize(maxSize < 0 ? 0 : maxSize);
+    }
+
     /**
      * Get a string with newline separated list of classes that get reflected.
      * <p>
@@ -1475,6 +1666,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             case JSONConfig.PASS:
                 synchronized ( getClass() ){
                     unmatchedSurrogatePolicy = dflt;
+                    publishDefaults();
                 }
                 break;
         }
@@ -1528,11 +1720,198 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             case JSONConfig.PASS:
                 synchronized ( getClass() ){
                     undefinedCodePointPolicy = dflt;
+                    publishDefaults();
                 }
                 break;
         }
     }
 
+    /**
+     * Get the default for the maximum depth of nested objects and arrays
+     * that the parser will accept.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfig#getMaxParseDepth()
+     * @since 1.10.5
+     */
+    @Override
+    public int getMaxParseDepth()
+    {
+        return maxParseDepth;
+    }
+
+    /**
+     * Set the default for the maximum depth of nested objects and arrays that
+     * the parser will accept. The top level object or array is at depth 1.
+     * Default is 0, which means no limit.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @param dflt the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @see JSONConfig#setMaxParseDepth(int)
+     * @since 1.10.5
+     */
+    @Override
+    public void setMaxParseDepth( int dflt )
+    {
+        synchronized ( getClass() ){
+            maxParseDepth = Math.max(0, dflt);
+            publishDefaults();
+        }
+    }
+
+    /**
+     * Get the default for the maximum length of a string
+     * that the parser will accept.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfig#getMaxParseStringLength()
+     * @since 1.10.5
+     */
+    @Override
+    public int getMaxParseStringLength()
+    {
+        return maxParseStringLength;
+    }
+
+    /**
+     * Set the default for the maximum length in chars of a string, property
+     * name or other token that the parser will accept, before any escapes are
+     * decoded.
+     * Default is 0, which means no limit.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @param dflt the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @see JSONConfig#setMaxParseStringLength(int)
+     * @since 1.10.5
+     */
+    @Override
+    public void setMaxParseStringLength( int dflt )
+    {
+        synchronized ( getClass() ){
+            maxParseStringLength = Math.max(0, dflt);
+            publishDefaults();
+        }
+    }
+
+    /**
+     * Get the default for the maximum length of a number
+     * that the parser will accept.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfig#getMaxParseNumberLength()
+     * @since 1.10.5
+     */
+    @Override
+    public int getMaxParseNumberLength()
+    {
+        return maxParseNumberLength;
+    }
+
+    /**
+     * Set the default for the maximum length in chars of a number that the
+     * parser will accept. This keeps the parser from spending a lot of time
+     * converting very long numbers to a BigInteger or BigDecimal.
+     * Default is 0, which means no limit.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @param dflt the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @see JSONConfig#setMaxParseNumberLength(int)
+     * @since 1.10.5
+     */
+    @Override
+    public void setMaxParseNumberLength( int dflt )
+    {
+        synchronized ( getClass() ){
+            maxParseNumberLength = Math.max(0, dflt);
+            publishDefaults();
+        }
+    }
+
+    /**
+     * Get the default for the maximum total number of elements
+     * that the parser will accept.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfig#getMaxParseElements()
+     * @since 1.10.5
+     */
+    @Override
+    public int getMaxParseElements()
+    {
+        return maxParseElements;
+    }
+
+    /**
+     * Set the default for the maximum total number of array elements and object
+     * members in one document that the parser will accept, counting all levels.
+     * Default is 0, which means no limit.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @param dflt the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @see JSONConfig#setMaxParseElements(int)
+     * @since 1.10.5
+     */
+    @Override
+    public void setMaxParseElements( int dflt )
+    {
+        synchronized ( getClass() ){
+            maxParseElements = Math.max(0, dflt);
+            publishDefaults();
+        }
+    }
+
+    /**
+     * Get the default for the maximum length of a line that
+     * {@link JSONLinesReader} will accept.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @see JSONConfig#getMaxParseLineLength()
+     * @since 1.10.5
+     */
+    @Override
+    public int getMaxParseLineLength()
+    {
+        return maxParseLineLength;
+    }
+
+    /**
+     * Set the default for the maximum length in chars of a line that
+     * {@link JSONLinesReader} will accept. Default is 0, which means no limit.
+     * <p>
+     * Accessible via MBean server.
+     *
+     * @param dflt the limit or 0 for no limit.
+     *            Negative values are treated as 0.
+     * @see JSONConfig#setMaxParseLineLength(int)
+     * @since 1.10.5
+     */
+    @Override
+    public void setMaxParseLineLength( int dflt )
+    {
+        synchronized ( getClass() ){
+            maxParseLineLength = Math.max(0, dflt);
+            publishDefaults();
+        }
+    }
+
     /**
      * Convenience method to call both {@link #setUnmatchedSurrogatePolicy(int)}
      * and {@link #setUndefinedCodePointPolicy(int)} using the same value.
@@ -1580,6 +1959,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             validatePropertyNames = dflt;
+            publishDefaults();
         }
     }
 
@@ -1613,6 +1993,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             detectDataStructureLoops = dflt;
+            publishDefaults();
         }
     }
 
@@ -1644,6 +2025,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             escapeBadIdentifierCodePoints = dflt;
+            publishDefaults();
         }
     }
 
@@ -1681,6 +2063,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             if ( fullJSONIdentifierCodePoints ){
                 quoteIdentifier = true;
             }
+            publishDefaults();
         }
     }
 
@@ -1719,6 +2102,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             fastStrings = dflt;
+            publishDefaults();
         }
     }
 
@@ -1750,6 +2134,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             encodeNumericStringsAsNumbers = dflt;
+            publishDefaults();
         }
     }
 
@@ -1786,6 +2171,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             if ( escapeNonAscii ){
                 escapeSurrogates = false;
             }
+            publishDefaults();
         }
     }
 
@@ -1820,6 +2206,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             if ( escapeSurrogates ){
                 escapeNonAscii = false;
             }
+            publishDefaults();
         }
     }
 
@@ -1850,6 +2237,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             unEscapeWherePossible = dflt;
+            publishDefaults();
         }
     }
 
@@ -1881,6 +2269,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             passThroughEscapes = dflt;
+            publishDefaults();
         }
     }
 
@@ -1917,6 +2306,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             if ( encodeDatesAsStrings ){
                 encodeDatesAsObjects = false;
             }
+            publishDefaults();
         }
     }
 
@@ -1956,6 +2346,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             reflectUnknownObjects = dflt;
+            publishDefaults();
         }
     }
 
@@ -1987,6 +2378,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             preciseNumbers = dflt;
+            publishDefaults();
         }
     }
 
@@ -2019,6 +2411,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             smallNumbers = dflt;
+            publishDefaults();
         }
     }
 
@@ -2058,6 +2451,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             usePrimitiveArrays = dflt;
+            publishDefaults();
         }
     }
 
@@ -2088,12 +2482,160 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             cacheReflectionData = dflt;
+            publishDefaults();
             if ( cacheReflectionData == false ){
                 ReflectedObjectMapBuilder.clearReflectionCache();
             }
         }
     }
 
+    /**
+     * The default compact maps policy.
+     *
+     * @return the useCompactMaps policy.
+     * @see JSONConfig#isUseCompactMaps()
+     * @since 1.10.5
+     */
+    @Override
+    public boolean isUseCompactMaps()
+    {
+        return useCompactMaps;
+    }
+
+    /**
+     * If true, then {@link JSONParser} will create immutable compact maps
+     * for JSON objects instead of {@link java.util.LinkedHashMap}s. Objects
+     * that have the same keys in the same order share a single array of keys
+     * so each map only needs to store its values. This can save a lot of
+     * memory when parsing large arrays of similar objects.
+     *
+     * @param dflt if true, then the parser will create compact immutable maps
+     *            for objects.
+     * @see JSONConfig#setUseCompactMaps(boolean)
+     * @since 1.10.5
+     */
+    @Override
+    public void setUseCompactMaps( boolean dflt )
+    {
+        synchronized ( getClass() ){
+            useCompactMaps = dflt;
+            publishDefaults();
+        }
+    }
+
+    /**
+     * The default parallel encoding policy.
+     *
+     * @return the useParallelEncoding policy.
+     * @see JSONConfig#isUseParallelEncoding()
+     * @since 1.10.5
+     */
+    @Override
+    public boolean isUseParallelEncoding()
+    {
+        return useParallelEncoding;
+    }
+
+    /**
+     * If true, then {@link JSONUtil} will encode large collections, arrays
+     * and maps in parallel. They are split into chunks which are encoded into
+     * separate buffers on the common {@link java.util.concurrent.ForkJoinPool}
+     * and then written out in order, so the output is the same as it would be
+     * without this option. Each chunk uses its own clone of the config object.
+     * <p>
+     * This only helps with very large data structures. Don't use it if the
+     * values have to be encoded in order or in the calling thread, such as
+     * {@link JSONAble}s with side effects. Small data structures are always
+     * encoded in the calling thread.
+     *
+     * @param dflt if true, then large data structures will be encoded in parallel.
+     * @see JSONConfig#setUseParallelEncoding(boolean)
+     * @since 1.10.5
+     */
+    @Override
+    public void setUseParallelEncoding( boolean dflt )
+    {
+        synchronized ( getClass() ){
+            useParallelEncoding = dflt;
+            publishDefaults();
+        }
+    }
+
+    /**
+     * The default parallel parsing policy.
+     *
+     * @return the useParallelParsing policy.
+     * @see JSONConfig#isUseParallelParsing()
+     * @since 1.10.5
+     */
+    @Override
+    public boolean isUseParallelParsing()
+    {
+        return useParallelParsing;
+    }
+
+    /**
+     * If true, then {@link JSONParser#parseJSON(String, JSONConfig)} will
+     * parse large JSON strings that contain an array at the top level in
+     * parallel. The input is scanned once to find where each element of the
+     * array is and then groups of elements are parsed on the common
+     * {@link java.util.concurrent.ForkJoinPool}, each with its own clone of the
+     * config object. The results are the same as they would be without this
+     * option.
+     * <p>
+     * This only helps with very large arrays. Input from a
+     * {@link java.io.Reader} is always parsed in the calling thread.
+     *
+     * @param dflt if true, then large top level arrays will be parsed in parallel.
+     * @see JSONConfig#setUseParallelParsing(boolean)
+     * @since 1.10.5
+     */
+    @Override
+    public void setUseParallelParsing( boolean dflt )
+    {
+        synchronized ( getClass() ){
+            useParallelParsing = dflt;
+            publishDefaults();
+        }
+    }
+
+    /**
+     * The default lazy numbers policy.
+     *
+     * @return the useLazyNumbers policy.
+     * @see JSONConfig#isUseLazyNumbers()
+     * @since 1.10.5
+     */
+    @Override
+    public boolean isUseLazyNumbers()
+    {
+        return useLazyNumbers;
+    }
+
+    /**
+     * If true, then {@link JSONParser} will return numbers as
+     * {@link LazyNumber}s that keep the text of the number and only convert
+     * it to a {@link Number} of the type that would have been used otherwise
+     * the first time that it is needed. This saves time and garbage when
+     * parsing large documents that are full of numbers where most of them are
+     * never used.
+     * <p>
+     * Numbers in arrays that become arrays of primitives because of
+     * {@link JSONConfig#isUsePrimitiveArrays()} are always converted.
+     *
+     * @param dflt if true, then parsed numbers will be converted when they are used.
+     * @see JSONConfig#setUseLazyNumbers(boolean)
+     * @since 1.10.5
+     */
+    @Override
+    public void setUseLazyNumbers( boolean dflt )
+    {
+        synchronized ( getClass() ){
+            useLazyNumbers = dflt;
+            publishDefaults();
+        }
+    }
+
     /**
      * Get the default quote identifier policy.
      * <p>
@@ -2123,6 +2665,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             quoteIdentifier = fullJSONIdentifierCodePoints || dflt;
+            publishDefaults();
         }
     }
 
@@ -2158,6 +2701,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             useECMA6 = dflt;
+            publishDefaults();
         }
     }
 
@@ -2188,6 +2732,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
     {
         synchronized ( getClass() ){
             allowReservedWordsInIdentifiers = dflt;
+            publishDefaults();
         }
     }
 
@@ -2225,6 +2770,7 @@ public class JSONConfigDefaults implements JSONConfigDefaultsMBean, Serializable
             if ( encodeDatesAsObjects ){
                 encodeDatesAsStrings = false;
             }
+            publishDefaults();
         }
     }
 
@@ -140,6 +140,64 @@ public interface JSONConfigDefaultsMBean
      */
     public void clearReflectionCache();
 
+    /**
+     * Get the number of reflection cache hits.
+     *
+     * @return the number of reflection cache hits.
+     * @since 1.10.5
+     */
+    public long getReflectionCacheHits();
+
+    /**
+     * Get the number of reflection cache misses.
+     *
+     * @return the number of reflection cache misses.
+     * @since 1.10.5
+     */
+    public long getReflectionCacheMisses();
+
+    /**
+     * Get the number of reflection cache entries that have been discarded
+     * because the cache reached its maximum size.
+     *
+     * @return the number of evicted entries.
+     * @since 1.10.5
+     */
+    public long getReflectionCacheEvictions();
+
+    /**
+     * Reset the reflection cache hit, miss and eviction counts.
+     *
+     * @since 1.10.5
+     */
+    public void resetReflectionCacheStatistics();
+
+    /**
+     * Get the number of entries in the reflection cache.
+     *
+     * @return the number of entries in the reflection cache.
+     * @since 1.10.5
+     */
+    public int getReflectionCacheSize();
+
+    /**
+     * Get the maximum number of entries in the reflection cache.
+     *
+     * @return the maximum size of the reflection cache. 0 means no limit.
+     * @since 1.10.5
+     */
+    public int getReflectionCacheMaxSize();
+
+    /**
+     * Set the maximum number of entries in the reflection cache. If the
+     * cache fills up, then the classes that were cached first are evicted
+     * before adding the next entry.
+     *
+     * @param maxSize the maximum size of the reflection cache. 0 or less means no limit.
+     * @since 1.10.5
+     */
+    public void setReflectionCacheMaxSize( int maxSize );
+
     /**
      * Add the given class to the set of classes to be reflected.
      *
@@ -214,6 +272,98 @@ public interface JSONConfigDefaultsMBean
      */
     public void setUndefinedCodePointPolicy( int dflt );
 
+    /**
+     * Get the default for the maximum depth of nested objects and arrays
+     * that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @since 1.10.5
+     */
+    public int getMaxParseDepth();
+
+    /**
+     * Set the default for the maximum depth of nested objects and arrays that
+     * the parser will accept. The top level object or array is at depth 1.
+     *
+     * @param dflt the limit or 0 for no limit.
+     * @since 1.10.5
+     */
+    public void setMaxParseDepth( int dflt );
+
+    /**
+     * Get the default for the maximum length of a string
+     * that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @since 1.10.5
+     */
+    public int getMaxParseStringLength();
+
+    /**
+     * Set the default for the maximum length in chars of a string, property
+     * name or other token that the parser will accept, before any escapes are
+     * decoded.
+     *
+     * @param dflt the limit or 0 for no limit.
+     * @since 1.10.5
+     */
+    public void setMaxParseStringLength( int dflt );
+
+    /**
+     * Get the default for the maximum length of a number
+     * that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @since 1.10.5
+     */
+    public int getMaxParseNumberLength();
+
+    /**
+     * Set the default for the maximum length in chars of a number that the
+     * parser will accept. This keeps the parser from spending a lot of time
+     * converting very long numbers to a BigInteger or BigDecimal.
+     *
+     * @param dflt the limit or 0 for no limit.
+     * @since 1.10.5
+     */
+    public void setMaxParseNumberLength( int dflt );
+
+    /**
+     * Get the default for the maximum total number of elements
+     * that the parser will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @since 1.10.5
+     */
+    public int getMaxParseElements();
+
+    /**
+     * Set the default for the maximum total number of array elements and object
+     * members in one document that the parser will accept, counting all levels.
+     *
+     * @param dflt the limit or 0 for no limit.
+     * @since 1.10.5
+     */
+    public void setMaxParseElements( int dflt );
+
+    /**
+     * Get the default for the maximum length of a line that
+     * {@link JSONLinesReader} will accept.
+     *
+     * @return the limit or 0 if there is no limit.
+     * @since 1.10.5
+     */
+    public int getMaxParseLineLength();
+
+    /**
+     * Set the default for the maximum length in chars of a line that
+     * {@link JSONLinesReader} will accept.
+     *
+     * @param dflt the limit or 0 for no limit.
+     * @since 1.10.5
+     */
+    public void setMaxParseLineLength( int dflt );
+
     /**
      * Set the default flag for validation of property names.
      * This will affect all new {@link JSONConfig} objects created after this call
@@ -506,6 +656,79 @@ public interface JSONConfigDefaultsMBean
      */
     public void setCacheReflectionData( boolean dflt );
 
+    /**
+     * The compact maps policy.
+     *
+     * @return the useCompactMaps policy.
+     * @since 1.10.5
+     */
+    public boolean isUseCompactMaps();
+
+    /**
+     * If true, then {@link JSONParser} will create immutable compact maps
+     * for JSON objects instead of {@link java.util.LinkedHashMap}s. Objects
+     * that have the same keys in the same order share a single array of keys
+     * so each map only needs to store its values.
+     *
+     * @param dflt if true, then the parser will create compact immutable maps
+     *            for objects.
+     * @since 1.10.5
+     */
+    public void setUseCompactMaps( boolean dflt );
+
+    /**
+     * The parallel encoding policy.
+     *
+     * @return the useParallelEncoding policy.
+     * @since 1.10.5
+     */
+    public boolean isUseParallelEncoding();
+
+    /**
+     * If true, then {@link JSONUtil} will encode large collections, arrays
+     * and maps in parallel using the common
+     * {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param dflt if true, then large data structures will be encoded in parallel.
+     * @since 1.10.5
+     */
+    public void setUseParallelEncoding( boolean dflt );
+
+    /**
+     * The parallel parsing policy.
+     *
+     * @return the useParallelParsing policy.
+     * @since 1.10.5
+     */
+    public boolean isUseParallelParsing();
+
+    /**
+     * If true, then {@link JSONParser} will parse large JSON strings that
+     * contain an array at the top level in parallel using the common
+     * {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param dflt if true, then large top level arrays will be parsed in parallel.
+     * @since 1.10.5
+     */
+    public void setUseParallelParsing( boolean dflt );
+
+    /**
+     * The lazy numbers policy.
+     *
+     * @return the useLazyNumbers policy.
+     * @since 1.10.5
+     */
+    public boolean isUseLazyNumbers();
+
+    /**
+     * If true, then {@link JSONParser} will return numbers as
+     * {@link LazyNumber}s that are only converted when they are used.
+     *
+     * @param dflt if true, then parsed numbers will be converted when they are used.
+     * @since 1.10.5
+     */
+    public void setUseLazyNumbers( boolean dflt );
+
     /**
      * Get the default quote identifier policy.
      *
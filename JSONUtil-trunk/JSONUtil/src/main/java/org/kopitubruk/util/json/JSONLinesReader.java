@@ -0,0 +1,471 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads records in the JSON Lines format, also known as newline delimited
+ * JSON or NDJSON, where each line of the input is a separate JSON value.
+ * Lines are split on LF, a CR before the LF is dropped and blank lines are
+ * skipped. Each record is parsed the same way as
+ * {@link JSONParser#parseJSON(String, JSONConfig)} would parse it.
+ * <p>
+ * The input is read through one char buffer and each line is collected in
+ * one {@link StringBuilder}, both of which are reused for every record. If
+ * {@link JSONConfig#getMaxParseLineLength()} is set, then a line that goes
+ * over it is not collected past the limit. The rest of it is skipped and a
+ * {@link JSONParserException} is thrown when that record is reached.
+ * <p>
+ * If {@link JSONConfig#isUseParallelParsing()} is true then records are read
+ * in batches and each batch is parsed by tasks in the common
+ * {@link java.util.concurrent.ForkJoinPool} while the next batch is being
+ * read. Records are still returned in the order that they appear in the
+ * input. Each task gets its own clone of the config object. An error in a
+ * record is thrown when that record is reached by {@link #next()}, so records
+ * before it are returned normally.
+ * <p>
+ * {@link IOException}s from the input are thrown as
+ * {@link UncheckedIOException}s because {@link Iterator} methods can't throw
+ * checked exceptions.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public class JSONLinesReader implements Iterator<Object>, Closeable
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The number of records read ahead in parallel mode.
+     */
+    static final int BATCH_SIZE = 512;
+
+    /**
+     * The minimum number of records parsed by one task in parallel mode.
+     */
+    private static final int MIN_CHUNK_SIZE = 32;
+
+    private final Reader in;
+    private final JSONConfig cfg;
+    private final char[] buf;
+    private int pos;
+    private int count;
+    private long charCount;
+    private final StringBuilder line;
+    private final int maxLineLength;
+    private boolean eof;
+
+    // parallel mode.
+    private ParseBatch current;
+    private ParseBatch pending;
+    private int index;
+
+    // serial mode.
+    private String nextLine;
+    private RuntimeException nextFailure;
+
+    /**
+     * Create a new JSONLinesReader using a default config object.
+     *
+     * @param in The input.
+     */
+    public JSONLinesReader( Reader in )
+    {
+        this(in, null);
+    }
+
+    /**
+     * Create a new JSONLinesReader.
+     *
+     * @param in The input.
+     * @param cfg The config object. If null then defaults will be used.
+     */
+    public JSONLinesReader( Reader in, JSONConfig cfg )
+    {
+        this.in = in;
+        this.cfg = cfg == null ? new JSONConfig() : cfg;
+        buf = new char[BUFFER_SIZE];
+        pos = 0;
+        count = 0;
+        charCount = 0;
+        line = new StringBuilder();
+        maxLineLength = JSONTokenReader.getLimit(this.cfg.getMaxParseLineLength());
+        eof = false;
+        current = null;
+        pending = null;
+        index = 0;
+        nextLine = null;
+        nextFailure = null;
+    }
+
+    /**
+     * Create a new JSONLinesReader for UTF-8 input using a default config
+     * object.
+     *
+     * @param in The UTF-8 encoded input.
+     */
+    public JSONLinesReader( InputStream in )
+    {
+        this(in, null);
+    }
+
+    /**
+     * Create a new JSONLinesReader for UTF-8 input.
+     *
+     * @param in The UTF-8 encoded input.
+     * @param cfg The config object. If null then defaults will be used.
+     */
+    public JSONLinesReader( InputStream in, JSONConfig cfg )
+    {
+        this(new InputStreamReader(in, StandardCharsets.UTF_8), cfg);
+    }
+
+    /**
+     * Find out if there are more records.
+     *
+     * @return true if there is another record.
+     * @throws UncheckedIOException If there's a problem with I/O.
+     */
+    @Override
+    public boolean hasNext()
+    {
+        try{
+            if ( cfg.isUseParallelParsing() ){
+                while ( current == null || index >= current.size ){
+                    if ( ! nextBatch() ){
+                        return false;
+                    }
+                }
+                return true;
+            }else{
+                if ( nextLine == null && nextFailure == null ){
+                    try{
+                        nextLine = readLine();
+                    }catch ( JSONParserException e ){
+                        // thrown by next() so that the records after it can still be read.
+                        nextFailure = e;
+                    }
+                }
+                return nextLine != null || nextFailure != null;
+            }
+        }catch ( IOException e ){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the next record.
+     *
+     * @return The parsed record.
+     * @throws NoSuchElementException If there are no more records.
+     * @throws UncheckedIOException If there's a problem with I/O.
+     */
+    @Override
+    public Object next()
+    {
+        if ( ! hasNext() ){
+            throw new NoSuchElementException();
+        }
+        if ( current != null ){
+            return current.getValue(index++);
+        }else if ( nextFailure != null ){
+            RuntimeException e = nextFailure;
+            nextFailure = null;
+            throw e;
+        }else{
+            String record = nextLine;
+            nextLine = null;
+            return JSONParser.parseJSON(record, cfg);
+        }
+    }
+
+    /**
+     * Close the input. Records that have already been read ahead are
+     * discarded.
+     *
+     * @throws IOException If there's a problem with I/O.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if ( pending != null ){
+            pending.cancel(false);
+            pending = null;
+        }
+        current = null;
+        nextLine = null;
+        nextFailure = null;
+        eof = true;
+        in.close();
+    }
+
+    /**
+     * Move to the next batch of records in parallel mode. The batch after
+     * that is started before this returns so that it is parsed while the
+     * records in this batch are being used.
+     *
+     * @return false if there are no more records.
+     * @throws IOException If there's a problem with I/O.
+     */
+    private boolean nextBatch() throws IOException
+    {
+        if ( pending == null ){
+            pending = readBatch();
+        }
+        if ( pending == null ){
+            current = null;
+            return false;
+        }
+        current = pending;
+        index = 0;
+        pending = readBatch();
+        current.join();
+        return true;
+    }
+
+    /**
+     * Read a batch of records and start parsing them.
+     *
+     * @return The batch or null if there are no more records.
+     * @throws IOException If there's a problem with I/O.
+     */
+    private ParseBatch readBatch() throws IOException
+    {
+        String[] records = new String[BATCH_SIZE];
+        RuntimeException[] failures = new RuntimeException[BATCH_SIZE];
+        int size = 0;
+        while ( size < BATCH_SIZE ){
+            try{
+                String record = readLine();
+                if ( record == null ){
+                    break;
+                }
+                records[size] = record;
+            }catch ( JSONParserException e ){
+                failures[size] = e;
+            }
+            ++size;
+        }
+        if ( size == 0 ){
+            return null;
+        }
+        ParseBatch batch = new ParseBatch(records, failures, size, cfg);
+        batch.fork();
+        return batch;
+    }
+
+    /**
+     * Read the next line that isn't blank.
+     *
+     * @return The line or null if there are no more lines.
+     * @throws IOException If there's a problem with I/O.
+     * @throws JSONParserException If the line is longer than
+     *             {@link JSONConfig#getMaxParseLineLength()}. The rest of
+     *             the line is skipped first so the next call gets the next
+     *             line.
+     */
+    private String readLine() throws IOException
+    {
+        while ( ! eof ){
+            line.setLength(0);
+            long lineStart = charCount + pos;
+            boolean haveLine = false;
+            boolean tooLong = false;
+            while ( ! haveLine ){
+                if ( pos >= count ){
+                    charCount += count;
+                    count = in.read(buf, 0, buf.length);
+                    pos = 0;
+                    if ( count < 0 ){
+                        count = 0;
+                        eof = true;
+                        break;
+                    }
+                }
+                int start = pos;
+                while ( pos < count && buf[pos] != '\n' ){
+                    ++pos;
+                }
+                if ( ! tooLong ){
+                    // allow for a CR before the LF.
+                    if ( line.length() + (pos - start) > maxLineLength + 1L ){
+                        tooLong = true;
+                        line.setLength(0);
+                    }else{
+                        line.append(buf, start, pos - start);
+                    }
+                }
+                if ( pos < count ){
+                    // skip the LF.
+                    ++pos;
+                    haveLine = true;
+                }
+            }
+            if ( tooLong ){
+                throw new JSONParserException("maxParseLineLength", maxLineLength, lineStart, cfg);
+            }
+            int len = line.length();
+            if ( len > 0 && line.charAt(len-1) == '\r' ){
+                line.setLength(--len);
+            }
+            if ( len > maxLineLength ){
+                throw new JSONParserException("maxParseLineLength", maxLineLength, lineStart, cfg);
+            }
+            if ( ! isBlank(line) ){
+                return line.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check if a line is empty or only has whitespace.
+     *
+     * @param str The line.
+     * @return true if the line is blank.
+     */
+    private static boolean isBlank( CharSequence str )
+    {
+        for ( int i = 0, len = str.length(); i < len; i++ ){
+            if ( ! Character.isWhitespace(str.charAt(i)) ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A batch of records parsed in parallel. The results and errors are kept
+     * in the same order as the records.
+     *
+     * @since 1.10.5
+     */
+    private static final class ParseBatch extends RecursiveAction
+    {
+        private final String[] records;
+        private final Object[] values;
+        private final RuntimeException[] failures;
+        private final int size;
+        private final ParseRecords[] tasks;
+
+        /**
+         * Create a batch. This must be called in the thread that owns the
+         * config object since the config object is not thread safe.
+         *
+         * @param records The records.
+         * @param failures The errors from reading the records, if any.
+         * @param size The number of records.
+         * @param cfg The config object of the calling thread.
+         */
+        ParseBatch( String[] records, RuntimeException[] failures, int size, JSONConfig cfg )
+        {
+            this.records = records;
+            this.failures = failures;
+            this.size = size;
+            values = new Object[size];
+            int chunks = Math.max(1, Math.min(size / MIN_CHUNK_SIZE, Runtime.getRuntime().availableProcessors()));
+            tasks = new ParseRecords[chunks];
+            for ( int i = 0; i < chunks; i++ ){
+                tasks[i] = new ParseRecords(this, size * i / chunks, size * (i+1) / chunks, cfg.clone());
+            }
+        }
+
+        @Override
+        protected void compute()
+        {
+            invokeAll(tasks);
+        }
+
+        /**
+         * Get a parsed record or throw the exception from parsing it.
+         *
+         * @param i The index of the record in this batch.
+         * @return The parsed record.
+         */
+        Object getValue( int i )
+        {
+            if ( failures[i] != null ){
+                throw failures[i];
+            }
+            Object value = values[i];
+            // let them be garbage collected.
+            values[i] = null;
+            records[i] = null;
+            return value;
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Parses a range of the records in a batch with its own config object.
+     *
+     * @since 1.10.5
+     */
+    private static final class ParseRecords extends RecursiveAction
+    {
+        private final ParseBatch batch;
+        private final int from;
+        private final int to;
+        private final JSONConfig cfg;
+
+        /**
+         * Create a task.
+         *
+         * @param batch The batch.
+         * @param from The index of the first record.
+         * @param to The index after the last record.
+         * @param cfg A config object for only this task.
+         */
+        ParseRecords( ParseBatch batch, int from, int to, JSONConfig cfg )
+        {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.cfg = cfg;
+        }
+
+        @Override
+        protected void compute()
+        {
+            for ( int i = from; i < to; i++ ){
+                if ( batch.failures[i] != null ){
+                    continue;           // couldn't be read.
+                }
+                try{
+                    batch.values[i] = JSONParser.parseJSON(batch.records[i], cfg);
+                }catch ( RuntimeException e ){
+                    // thrown by next() when this record is reached.
+                    batch.failures[i] = e;
+                }
+            }
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes records in the JSON Lines format, also known as newline delimited
+ * JSON or NDJSON, where each record is a JSON value on a line by itself.
+ * Records are encoded the same way as
+ * {@link JSONUtil#toJSON(Object, JSONConfig, Writer)} would encode them
+ * except that indent padding is never used so that each record stays on one
+ * line.
+ * <p>
+ * Records are encoded into a buffer that is reused for the life of the
+ * writer and sent to the output in batches of {@link #getBatchSize()}
+ * records, or sooner if the buffer gets large. The output is flushed after
+ * every {@link #getFlushInterval()} records so that readers on the other end
+ * see the data in a timely way without paying for a flush on every record.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public class JSONLinesWriter implements Closeable, Flushable
+{
+    /**
+     * Default number of records per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * Default number of records between flushes.
+     */
+    public static final int DEFAULT_FLUSH_INTERVAL = 1024;
+
+    /**
+     * The buffer is sent to the output when it gets this big even if the
+     * batch is not full.
+     */
+    private static final int MAX_BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+    private final Closeable stream;
+    private final JSONConfig cfg;
+    private final StringWriter buf;
+    private int batchSize;
+    private int flushInterval;
+    private int batchCount;
+    private int unflushedCount;
+
+    /**
+     * Create a new JSONLinesWriter using a default config object.
+     *
+     * @param out The output.
+     */
+    public JSONLinesWriter( Writer out )
+    {
+        this(out, null);
+    }
+
+    /**
+     * Create a new JSONLinesWriter.
+     *
+     * @param out The output.
+     * @param cfg The config object. If null then defaults will be used. It is
+     *            cloned so changes made to it after this will not be seen.
+     */
+    public JSONLinesWriter( Writer out, JSONConfig cfg )
+    {
+        this(out, out, cfg);
+    }
+
+    /**
+     * Create a new JSONLinesWriter that writes UTF-8 using a default config
+     * object.
+     *
+     * @param out The output stream.
+     */
+    public JSONLinesWriter( OutputStream out )
+    {
+        this(out, null);
+    }
+
+    /**
+     * Create a new JSONLinesWriter that writes UTF-8.
+     *
+     * @param out The output stream.
+     * @param cfg The config object. If null then defaults will be used. It is
+     *            cloned so changes made to it after this will not be seen.
+     */
+    public JSONLinesWriter( OutputStream out, JSONConfig cfg )
+    {
+        this(new UTF8ByteWriter(out), out, cfg);
+    }
+
+    /**
+     * Create a new JSONLinesWriter.
+     *
+     * @param out The output.
+     * @param stream The thing to close when this is closed.
+     * @param cfg The config object.
+     */
+    private JSONLinesWriter( Writer out, Closeable stream, JSONConfig cfg )
+    {
+        this.out = out;
+        this.stream = stream;
+        this.cfg = cfg == null ? new JSONConfig() : cfg.clone();
+        this.cfg.setIndentPadding(null);
+        buf = new StringWriter();
+        batchSize = DEFAULT_BATCH_SIZE;
+        flushInterval = DEFAULT_FLUSH_INTERVAL;
+        batchCount = 0;
+        unflushedCount = 0;
+    }
+
+    /**
+     * Get the number of records that are buffered before they are sent to
+     * the output.
+     *
+     * @return the batch size.
+     */
+    public int getBatchSize()
+    {
+        return batchSize;
+    }
+
+    /**
+     * Set the number of records that are buffered before they are sent to
+     * the output. Default is {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param batchSize the batch size. Values less than 1 are treated as 1.
+     * @return this writer.
+     */
+    public JSONLinesWriter setBatchSize( int batchSize )
+    {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * Get the number of records between flushes of the output.
+     *
+     * @return the flush interval.
+     */
+    public int getFlushInterval()
+    {
+        return flushInterval;
+    }
+
+    /**
+     * Set the number of records between flushes of the output. Default is
+     * {@link #DEFAULT_FLUSH_INTERVAL}.
+     *
+     * @param flushInterval the flush interval. If 0 or less, then the output
+     *            is only flushed when {@link #flush()} or {@link #close()} is
+     *            called.
+     * @return this writer.
+     */
+    public JSONLinesWriter setFlushInterval( int flushInterval )
+    {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Write one record.
+     *
+     * @param obj The object to encode.
+     * @throws IOException If there's an error on output.
+     */
+    public void write( Object obj ) throws IOException
+    {
+        int mark = buf.length();
+        try{
+            JSONUtil.toJSON(obj, cfg, buf);
+        }catch ( RuntimeException|Error e ){
+            // don't leave part of a record in the buffer.
+            buf.setLength(mark);
+            throw e;
+        }
+        buf.write('\n');
+        ++batchCount;
+        ++unflushedCount;
+        if ( batchCount >= batchSize || buf.length() >= MAX_BUFFER_SIZE ){
+            writeBatch();
+        }
+        if ( flushInterval > 0 && unflushedCount >= flushInterval ){
+            flush();
+        }
+    }
+
+    /**
+     * Write each object from an iterator as a record.
+     *
+     * @param objs The objects to encode.
+     * @throws IOException If there's an error on output.
+     */
+    public void writeAll( Iterator<?> objs ) throws IOException
+    {
+        while ( objs.hasNext() ){
+            write(objs.next());
+        }
+    }
+
+    /**
+     * Write each object from a stream as a record. The records are written in
+     * the stream's encounter order. If the stream is parallel, then the
+     * stages before this still run in parallel but the records are written
+     * one at a time.
+     *
+     * @param objs The objects to encode.
+     * @throws IOException If there's an error on output.
+     */
+    public void writeAll( Stream<?> objs ) throws IOException
+    {
+        try{
+            objs.forEachOrdered(obj -> {
+                try{
+                    write(obj);
+                }catch ( IOException e ){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }catch ( UncheckedIOException e ){
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Send any buffered records to the output and flush it.
+     *
+     * @throws IOException If there's an error on output.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        writeBatch();
+        out.flush();
+        unflushedCount = 0;
+    }
+
+    /**
+     * Send any buffered records to the output, flush it and close it.
+     *
+     * @throws IOException If there's an error on output.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try{
+            writeBatch();
+            out.close();
+        }finally{
+            if ( stream != out ){
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Send the buffered records to the output.
+     *
+     * @throws IOException If there's an error on output.
+     */
+    private void writeBatch() throws IOException
+    {
+        if ( buf.length() > 0 ){
+            buf.writeTo(out);
+            buf.setLength(0);
+        }
+        batchCount = 0;
+    }
+}
@@ -15,27 +15,37 @@
  */
 package org.kopitubruk.util.json;
 
-import static org.kopitubruk.util.json.JSONConfigUtil.tableSizeFor;
-import static org.kopitubruk.util.json.JSONConfigUtil.DEFAULT_INITIAL_CAPACITY;
-
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.text.ParsePosition;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 
+import org.kopitubruk.util.json.CompactMap.Shape;
+
 /**
  * This is a JSON parser. It accepts a fairly loose version of JSON. Essentially
  * it tries to allow anything Javascript eval() allows (within reason) so it
@@ -47,7 +57,11 @@ import java.util.regex.Pattern;
  * must be quoted.
  * <p>
  * Javascript objects are converted to {@link LinkedHashMap}s with the
- * identifiers being the keys.
+ * identifiers being the keys.  If {@link JSONConfig#isUseCompactMaps()}
+ * returns true, then they are converted to immutable maps which keep the
+ * same key order and share their keys with other objects that have the same
+ * keys in the same order.  Keys that repeat are unescaped once and the same
+ * String is used for all of them.
  * <p>
  * Javascript arrays are converted to {@link ArrayList}s.  If
  * {@link JSONConfig#isUsePrimitiveArrays()} returns true, then the list
@@ -107,29 +121,12 @@ public class JSONParser
      */
     static final Pattern LITERAL_PAT = Pattern.compile("^(null|true|false)$");
 
-    /**
-     * Recognize octal
-     */
-    private static final Pattern OCTAL_PAT = Pattern.compile("^0[0-7]*$");
-
     /**
      * Recognize unquoted id's.  They must conform to the ECMAScript 6 standard.
      * Id's which do not conform must be quoted.
      */
     static final Pattern UNQUOTED_ID_PAT = JSONUtil.VALID_ECMA6_PROPERTY_NAME_PAT;
 
-    /**
-     * Recognize Javascript floating point.
-     */
-    static final Pattern JAVASCRIPT_FLOATING_POINT_PAT =
-            Pattern.compile("^((?:[-+]?(?:(?:\\d+\\.\\d+|\\.\\d+)(?:[eE][-+]?\\d+)?|Infinity))|NaN)$");
-
-    /**
-     * Recognize Javascript integers.
-     */
-    static final Pattern JAVASCRIPT_INTEGER_PAT =
-            Pattern.compile("^([-+]?(?:\\d+|0[xX][\\da-fA-F]+))$");
-
     /**
      * Recognize an embedded new Date().
      */
@@ -150,6 +147,38 @@ public class JSONParser
      */
     private static final int MAX_PRECISION_FOR_LONG = 19;
 
+    /**
+     * The shape of the date and time part of an ISO 8601 date for
+     * {@link #matchesShape(String, String, int)}.
+     */
+    private static final String ISO_DATE_TIME_SHAPE = "9999-99-99T99:99:99";
+
+    /**
+     * The length of {@link #ISO_DATE_TIME_SHAPE}.
+     */
+    private static final int ISO_DATE_TIME_LENGTH = ISO_DATE_TIME_SHAPE.length();
+
+    /**
+     * Initial size of the array of values for an object.
+     */
+    private static final int INITIAL_VALUES_SIZE = 8;
+
+    /**
+     * Initial size of the stack of objects and arrays being parsed.
+     */
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * Strings at least this long are parsed in parallel if they contain an
+     * array and {@link JSONConfig#isUseParallelParsing()} is true.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Minimum number of chars in each chunk for parallel parsing.
+     */
+    private static final int MIN_CHUNK_SIZE = 1 << 14;
+
     /**
      * Types of tokens in a JSON input string.
      */
@@ -210,14 +239,191 @@ public class JSONParser
      */
     public static Object parseJSON( String json, JSONConfig cfg )
     {
+        JSONConfig jcfg = cfg == null ? new JSONConfig() : cfg;
         try{
-            return parseJSON(new StringReader(json), cfg);
+            // a total element limit can only be counted by one thread.
+            if ( jcfg.isUseParallelParsing() && json.length() >= PARALLEL_THRESHOLD && jcfg.getMaxParseElements() == 0 ){
+                int start = getArrayStart(json);
+                if ( start >= 0 ){
+                    return parseArrayInParallel(json, start, jcfg);
+                }
+            }
+            return parseJSON(new StringReader(json), jcfg);
         }catch ( IOException e ){
             // will not happen.
             return null;
         }
     }
 
+    /**
+     * Find the start of the top level array.
+     *
+     * @param json the string of JSON data.
+     * @return the index of the first char after the open bracket or -1 if the
+     *         top level value is not an array.
+     */
+    private static int getArrayStart( String json )
+    {
+        int len = json.length();
+        for ( int i = 0; i < len; i++ ){
+            char ch = json.charAt(i);
+            if ( ! Character.isWhitespace(ch) ){
+                return ch == '[' ? i+1 : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a top level array in parallel. The string is scanned to find the
+     * elements of the array, which are then parsed in chunks on the common
+     * {@link ForkJoinPool}. Only quotes and brackets are looked at by the scan.
+     * Everything else is checked when the chunks are parsed.
+     *
+     * @param json the string of JSON data.
+     * @param start the index of the first char after the open bracket.
+     * @param cfg The config object.
+     * @return The array.
+     */
+    private static Object parseArrayInParallel( String json, int start, JSONConfig cfg )
+    {
+        int[] bounds = getElementBounds(json, start, cfg);
+        int elementCount = bounds[0];
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, json.length() / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+
+        // group the elements into chunks.
+        List<ParseChunk> chunks = new ArrayList<>();
+        int first = 0;
+        for ( int i = 0; i < elementCount; i++ ){
+            int from = bounds[2*first+1];
+            int to = bounds[2*i+2];
+            if ( to - from >= chunkSize || i == elementCount-1 ){
+                ParseChunk chunk = new ParseChunk(json, from, to, i - first + 1, cfg);
+                chunk.fork();
+                chunks.add(chunk);
+                first = i+1;
+            }
+        }
+
+        ArrayList<Object> list = new ArrayList<>(elementCount);
+        for ( int i = 0; i < chunks.size(); i++ ){
+            ParseChunk chunk = chunks.get(i);
+            try{
+                chunk.join();
+                chunk.addTo(list);
+            }catch ( RuntimeException|Error e ){
+                for ( int j = i+1; j < chunks.size(); j++ ){
+                    chunks.get(j).cancel(false);
+                }
+                throw e;
+            }
+        }
+
+        if ( cfg.isUsePrimitiveArrays() ){
+            // try to make it an array of primitives if possible.
+            Object array = getArrayOfPrimitives(list, cfg.isSmallNumbers());
+            if ( array != null ){
+                return array;
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Find the start and end of each element of a top level array. A comma
+     * after the last element is allowed, like the parser does.
+     *
+     * @param json the string of JSON data.
+     * @param start the index of the first char after the open bracket.
+     * @param cfg The config object.
+     * @return The number of elements followed by the start and end index of
+     *         each element.
+     */
+    private static int[] getElementBounds( String json, int start, JSONConfig cfg )
+    {
+        int len = json.length();
+        int[] bounds = new int[1 + 2 * Math.max(16, len / 64)];
+        int count = 0;
+        int depth = 0;
+        int elementStart = start;
+        boolean haveValue = false;
+
+        for ( int i = start; i < len; i++ ){
+            char ch = json.charAt(i);
+            switch ( ch ){
+                case '"':
+                case '\'':
+                    // skip over the string.
+                    int j = i+1;
+                    while ( j < len && json.charAt(j) != ch ){
+                        j += json.charAt(j) == '\\' ? 2 : 1;
+                    }
+                    if ( j >= len ){
+                        throw new JSONParserException(ch, cfg);
+                    }
+                    i = j;
+                    haveValue = true;
+                    break;
+                case '{':
+                case '[':
+                    ++depth;
+                    haveValue = true;
+                    break;
+                case '}':
+                case ']':
+                    if ( depth > 0 ){
+                        --depth;
+                    }else if ( ch == ']' ){
+                        // end of the array.
+                        if ( haveValue ){
+                            bounds = addBounds(bounds, count++, elementStart, i);
+                        }
+                        bounds[0] = count;
+                        return bounds;
+                    }
+                    haveValue = true;
+                    break;
+                case ',':
+                    if ( depth == 0 ){
+                        if ( ! haveValue ){
+                            throw new JSONParserException(json.substring(i, Math.min(i+20, len)), i, cfg);
+                        }
+                        bounds = addBounds(bounds, count++, elementStart, i);
+                        elementStart = i+1;
+                        haveValue = false;
+                    }
+                    break;
+                default:
+                    if ( ! Character.isWhitespace(ch) ){
+                        haveValue = true;
+                    }
+                    break;
+            }
+        }
+        throw new JSONParserException(len, cfg);
+    }
+
+    /**
+     * Add the bounds of an element to the array of bounds.
+     *
+     * @param bounds the array of bounds.
+     * @param index the index of the element.
+     * @param start the start of the element.
+     * @param end the end of the element.
+     * @return the array of bounds, which may be a new array.
+     */
+    private static int[] addBounds( int[] bounds, int index, int start, int end )
+    {
+        int i = 2 * index + 1;
+        if ( i+1 >= bounds.length ){
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        bounds[i] = start;
+        bounds[i+1] = end;
+        return bounds;
+    }
+
     /**
      * Parse JSON from an input stream.
      *
@@ -255,8 +461,525 @@ public class JSONParser
     }
 
     /**
-     * Parse the tokens from the input stream.  This method is recursive
-     * via the {@link #getValue(Token, JSONTokenReader)} method.
+     * Scan a string of JSON data without decoding it. Values are only decoded
+     * when they are requested from the returned {@link JsonNode}, which saves
+     * time and memory when only part of the data is needed.
+     *
+     * @param json the string of JSON data. This is not copied so it must not
+     *            be modified while the result is in use.
+     * @return The node for the top level value.
+     * @since 1.10.5
+     */
+    public static JsonNode parseLazy( CharSequence json )
+    {
+        return parseLazy(json, null);
+    }
+
+    /**
+     * Scan a string of JSON data without decoding it. Values are only decoded
+     * when they are requested from the returned {@link JsonNode}, which saves
+     * time and memory when only part of the data is needed.
+     *
+     * @param json the string of JSON data. This is not copied so it must not
+     *            be modified while the result is in use.
+     * @param cfg The config object.
+     * @return The node for the top level value.
+     * @since 1.10.5
+     */
+    public static JsonNode parseLazy( CharSequence json, JSONConfig cfg )
+    {
+        JSONConfig jcfg = cfg == null ? new JSONConfig() : cfg;
+        return new JsonNode(new JSONTape(json, jcfg), 0);
+    }
+
+    /**
+     * Parse a string of JSON data into an object of the given class.
+     *
+     * @param <T> The type of the result.
+     * @param json the string of JSON data.
+     * @param clazz The class of the result.
+     * @param cfg The config object.
+     * @return The object containing the parsed data.
+     * @see #parseJSON(Reader, Class, JSONConfig)
+     * @since 1.10.5
+     */
+    public static <T> T parseJSON( String json, Class<T> clazz, JSONConfig cfg )
+    {
+        try{
+            return parseJSON(new StringReader(json), clazz, cfg);
+        }catch ( IOException e ){
+            // will not happen.
+            return null;
+        }
+    }
+
+    /**
+     * Parse JSON from an input stream into an object of the given class. JSON
+     * objects are bound directly to new instances of the class, or of the
+     * types of its fields, without building maps first.
+     * <p>
+     * Classes must have a no argument constructor. Each JSON property is set
+     * using the setter for the field with the same name, if there is one,
+     * otherwise the field is set directly. Fields that are static, transient
+     * or final are not set. Field names and aliases from the
+     * {@link JSONReflectedClass} for the class in the config object are
+     * honored, so that an object encoded with reflection can be parsed back
+     * into its class. The privacy level from
+     * {@link JSONConfig#getReflectionPrivacy()} determines which setters and
+     * fields can be used. JSON properties that don't match any field are
+     * ignored.
+     * <p>
+     * Numbers are converted to the type of the field. Conversions to integer
+     * types fail if the number is not an integer or is out of range. Strings
+     * can be bound to numbers, booleans, chars, enums and dates. JSON arrays can be bound to arrays, including
+     * arrays of primitives, and to collections. JSON objects can be bound to
+     * maps. The type arguments of collections and maps are used to bind their
+     * contents. Fields of type {@link Object} get the same values as they
+     * would from {@link #parseJSON(Reader, JSONConfig)}.
+     * <p>
+     * Binding is recursive, so objects and arrays that are bound to classes
+     * may not be nested more than 1000 deep, even if
+     * {@link JSONConfig#getMaxParseDepth()} allows more.
+     *
+     * @param <T> The type of the result.
+     * @param json The input stream.
+     * @param clazz The class of the result.
+     * @param cfg The config object.
+     * @return The object containing the parsed data.
+     * @throws IOException If there's a problem with I/O.
+     * @since 1.10.5
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T parseJSON( Reader json, Class<T> clazz, JSONConfig cfg ) throws IOException
+    {
+        JSONConfig jcfg = cfg == null ? new JSONConfig() : cfg;
+
+        JSONTokenReader tokens = new JSONTokenReader(json, jcfg);
+        try {
+            Token token = tokens.nextToken();
+            return token == null ? null : (T)bindValue(token, tokens, clazz);
+        }catch ( JSONException|IOException e ){
+            throw e;
+        }catch ( Exception e ){
+            throw new JSONParserException(e, jcfg);
+        }
+    }
+
+    /**
+     * Bind the value starting with the given token to the given type.
+     *
+     * @param token The current token.
+     * @param tokens The token reader.
+     * @param type The type to bind to.
+     * @return The value.
+     * @throws Exception If there's a problem parsing or binding.
+     */
+    private static Object bindValue( Token token, JSONTokenReader tokens, Type type ) throws Exception
+    {
+        Class<?> rawType = BindingPlan.getRawType(type);
+        if ( rawType == Object.class ){
+            return getValue(token, tokens);
+        }
+        JSONConfig cfg = tokens.getJSONConfig();
+        Object result;
+        switch ( token.tokenType ){
+            case START_OBJECT:
+                tokens.enterBoundContainer();
+                if ( Map.class.isAssignableFrom(rawType) ){
+                    Map<Object,Object> map = BindingPlan.newMap(rawType);
+                    if ( map == null ){
+                        throw new JSONParserException("object", type, cfg);
+                    }
+                    result = bindMap(tokens, type, map);
+                }else{
+                    BindingPlan plan = BindingPlan.isBindable(rawType) ? BindingPlan.getInstance(rawType, cfg) : null;
+                    if ( plan == null || ! plan.canInstantiate() ){
+                        throw new JSONParserException("object", type, cfg);
+                    }
+                    result = bindObject(tokens, plan);
+                }
+                tokens.exitContainer();
+                return result;
+            case START_ARRAY:
+                tokens.enterBoundContainer();
+                if ( rawType.isArray() ){
+                    result = bindArray(tokens, BindingPlan.getComponentType(type));
+                }else if ( Collection.class.isAssignableFrom(rawType) || rawType == Iterable.class ){
+                    Collection<Object> collection = BindingPlan.newCollection(rawType);
+                    if ( collection == null ){
+                        throw new JSONParserException("array", type, cfg);
+                    }
+                    Type elementType = BindingPlan.getTypeArgument(type, 0);
+                    token = nextToken(tokens);
+                    while ( token.tokenType != TokenType.END_ARRAY ){
+                        collection.add(bindValue(token, tokens, elementType));
+                        tokens.countElement();
+                        token = nextArrayToken(tokens);
+                    }
+                    result = collection;
+                }else{
+                    throw new JSONParserException("array", type, cfg);
+                }
+                tokens.exitContainer();
+                return result;
+            default:
+                result = convertValue(getValue(token, tokens), rawType, cfg);
+                if ( result == null && rawType.isPrimitive() ){
+                    throw new JSONParserException("null", type, cfg);
+                }
+                return result;
+        }
+    }
+
+    /**
+     * Bind a JSON object to a new instance of the class of the given plan.
+     *
+     * @param tokens The token reader, positioned after the start of the object.
+     * @param plan The binding plan.
+     * @return The new instance.
+     * @throws Exception If there's a problem parsing or binding.
+     */
+    private static Object bindObject( JSONTokenReader tokens, BindingPlan plan ) throws Exception
+    {
+        KeyTable keyTable = tokens.getKeyTable();
+        Object obj = plan.newInstance();
+        Token token = nextToken(tokens);
+        while ( token.tokenType != TokenType.END_OBJECT ){
+            String key = getKey(token, tokens, keyTable);
+            token = nextToken(tokens);
+            BindingPlan.Property property = plan.getProperty(key);
+            if ( property == null ){
+                getValue(token, tokens);                // not bound to anything.
+            }else{
+                property.setValue(obj, bindValue(token, tokens, property.getType()));
+            }
+            tokens.countElement();
+            token = nextObjectToken(tokens);
+        }
+        return obj;
+    }
+
+    /**
+     * Bind a JSON object to a map using the type arguments of the map type.
+     *
+     * @param tokens The token reader, positioned after the start of the object.
+     * @param type The map type.
+     * @param map The map to fill.
+     * @return The map.
+     * @throws Exception If there's a problem parsing or binding.
+     */
+    private static Object bindMap( JSONTokenReader tokens, Type type, Map<Object,Object> map ) throws Exception
+    {
+        JSONConfig cfg = tokens.getJSONConfig();
+        KeyTable keyTable = tokens.getKeyTable();
+        Class<?> keyType = BindingPlan.getRawType(BindingPlan.getTypeArgument(type, 0));
+        Type valueType = BindingPlan.getTypeArgument(type, 1);
+        Token token = nextToken(tokens);
+        while ( token.tokenType != TokenType.END_OBJECT ){
+            String key = getKey(token, tokens, keyTable);
+            token = nextToken(tokens);
+            map.put(convertValue(key, keyType, cfg), bindValue(token, tokens, valueType));
+            tokens.countElement();
+            token = nextObjectToken(tokens);
+        }
+        return map;
+    }
+
+    /**
+     * Bind a JSON array to an array of the given component type. The array is
+     * filled as the elements are parsed and trimmed at the end. Integers that
+     * fit in a long are stored directly into arrays of long, int, short, byte
+     * or double without boxing them.
+     *
+     * @param tokens The token reader, positioned after the start of the array.
+     * @param componentType The component type of the array.
+     * @return The array.
+     * @throws Exception If there's a problem parsing or binding.
+     */
+    private static Object bindArray( JSONTokenReader tokens, Type componentType ) throws Exception
+    {
+        Class<?> rawType = BindingPlan.getRawType(componentType);
+        Object array = Array.newInstance(rawType, INITIAL_VALUES_SIZE);
+        Object[] objs = rawType.isPrimitive() ? null : (Object[])array;
+        int size = 0;
+        Token token = nextToken(tokens);
+        while ( token.tokenType != TokenType.END_ARRAY ){
+            if ( size == Array.getLength(array) ){
+                Object bigger = Array.newInstance(rawType, size * 2);
+                System.arraycopy(array, 0, bigger, 0, size);
+                array = bigger;
+                objs = rawType.isPrimitive() ? null : (Object[])array;
+            }
+            if ( objs != null ){
+                objs[size] = bindValue(token, tokens, componentType);
+            }else if ( ! setPrimitive(array, size, token) ){
+                Array.set(array, size, bindValue(token, tokens, componentType));
+            }
+            ++size;
+            tokens.countElement();
+            token = nextArrayToken(tokens);
+        }
+        if ( size == Array.getLength(array) ){
+            return array;
+        }
+        Object result = Array.newInstance(rawType, size);
+        System.arraycopy(array, 0, result, 0, size);
+        return result;
+    }
+
+    /**
+     * Store an integer token directly into an array of primitives if it is a
+     * decimal integer that fits in a long and in the component type.
+     *
+     * @param array The array of primitives.
+     * @param i The index to store it at.
+     * @param token The token.
+     * @return true if it was stored. If false, then it still needs to be bound.
+     */
+    private static boolean setPrimitive( Object array, int i, Token token )
+    {
+        if ( token.tokenType != TokenType.INTEGER_NUMBER || ! isShortInteger(token.value) ){
+            return false;
+        }
+        long x = Long.parseLong(token.value);
+        if ( array instanceof long[] ){
+            ((long[])array)[i] = x;
+        }else if ( array instanceof int[] && x == (int)x ){
+            ((int[])array)[i] = (int)x;
+        }else if ( array instanceof short[] && x == (short)x ){
+            ((short[])array)[i] = (short)x;
+        }else if ( array instanceof byte[] && x == (byte)x ){
+            ((byte[])array)[i] = (byte)x;
+        }else if ( array instanceof double[] ){
+            ((double[])array)[i] = x;
+        }else{
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get an object key and the colon that follows it.
+     *
+     * @param token The token that should be the key.
+     * @param tokens The token reader.
+     * @param keyTable The key table.
+     * @return The unescaped key.
+     * @throws IOException If there's a problem with I/O.
+     */
+    private static String getKey( Token token, JSONTokenReader tokens, KeyTable keyTable ) throws IOException
+    {
+        JSONConfig cfg = tokens.getJSONConfig();
+        if ( token.tokenType != TokenType.STRING && token.tokenType != TokenType.UNQUOTED_ID ){
+            throw new JSONParserException(TokenType.END_OBJECT, token.tokenType, cfg);
+        }
+        String key = keyTable.getKey(token.value, cfg);
+        Token colon = nextToken(tokens);
+        if ( colon.tokenType != TokenType.COLON ){
+            throw new JSONParserException(TokenType.COLON, colon.tokenType, cfg);
+        }
+        return key;
+    }
+
+    /**
+     * Get the token after an object member, which must be a comma or the end
+     * of the object.
+     *
+     * @param tokens The token reader.
+     * @return The token for the next key or the end of the object.
+     * @throws IOException If there's a problem with I/O.
+     */
+    private static Token nextObjectToken( JSONTokenReader tokens ) throws IOException
+    {
+        Token token = nextToken(tokens);
+        if ( token.tokenType == TokenType.COMMA ){
+            return nextToken(tokens);
+        }else if ( token.tokenType == TokenType.END_OBJECT ){
+            return token;
+        }else{
+            throw new JSONParserException(TokenType.END_OBJECT, token.tokenType, tokens.getJSONConfig());
+        }
+    }
+
+    /**
+     * Get the token after an array element, which must be a comma or the end
+     * of the array.
+     *
+     * @param tokens The token reader.
+     * @return The token for the next element or the end of the array.
+     * @throws IOException If there's a problem with I/O.
+     */
+    private static Token nextArrayToken( JSONTokenReader tokens ) throws IOException
+    {
+        Token token = nextToken(tokens);
+        if ( token.tokenType == TokenType.COMMA ){
+            return nextToken(tokens);
+        }else if ( token.tokenType == TokenType.END_ARRAY ){
+            return token;
+        }else{
+            throw new JSONParserException(TokenType.END_ARRAY, token.tokenType, tokens.getJSONConfig());
+        }
+    }
+
+    /**
+     * Convert a simple value from the parser to the given type.
+     *
+     * @param value The value.
+     * @param type The type to convert to.
+     * @param cfg The config object.
+     * @return The converted value.
+     * @throws ParseException If a date string can't be parsed.
+     */
+    private static Object convertValue( Object value, Class<?> type, JSONConfig cfg ) throws ParseException
+    {
+        if ( value == null || type.isInstance(value) ){
+            return value;
+        }
+        if ( value instanceof LazyNumber ){
+            value = ((LazyNumber)value).getNumber();
+            if ( type.isInstance(value) ){
+                return value;
+            }
+        }
+        Class<?> wrapper = type.isPrimitive() ? getWrapper(type) : type;
+        if ( wrapper.isInstance(value) ){
+            return value;
+        }
+        Object result = null;
+        try{
+            if ( value instanceof String ){
+                String str = (String)value;
+                if ( wrapper == Character.class ){
+                    result = str.length() == 1 ? str.charAt(0) : null;
+                }else if ( wrapper.isEnum() ){
+                    result = getEnumValue(wrapper, str);
+                }else if ( wrapper == Boolean.class ){
+                    result = "true".equals(str) ? Boolean.TRUE : "false".equals(str) ? Boolean.FALSE : null;
+                }else if ( wrapper.isAssignableFrom(Date.class) ){
+                    result = parseDate(str, cfg);
+                }else if ( Number.class.isAssignableFrom(wrapper) ){
+                    switch ( NumericClassifier.classifyJavascript(str) ){
+                        case NumericClassifier.DECIMAL:
+                            result = convertNumber(getDecimal(str, false), wrapper);
+                            break;
+                        case NumericClassifier.INTEGER:
+                            result = convertNumber(getInteger(str, false), wrapper);
+                            break;
+                    }
+                }
+            }else if ( value instanceof Number ){
+                if ( wrapper == String.class ){
+                    result = value.toString();
+                }else{
+                    result = convertNumber((Number)value, wrapper);
+                }
+            }else if ( wrapper == String.class && value instanceof Boolean ){
+                result = value.toString();
+            }
+        }catch ( ArithmeticException e ){
+            result = null;
+        }
+        if ( result == null ){
+            throw new JSONParserException(value.getClass().getSimpleName(), type, cfg);
+        }
+        return result;
+    }
+
+    /**
+     * Convert a number to the given number type. Integer types must be able
+     * to hold the number exactly.
+     *
+     * @param num The number.
+     * @param type The wrapper type.
+     * @return The converted number or null if the type is not a supported number type.
+     * @throws ArithmeticException If the number can't be converted without losing information.
+     */
+    private static Number convertNumber( Number num, Class<?> type )
+    {
+        if ( type == Double.class ){
+            return num.doubleValue();
+        }else if ( type == Float.class ){
+            return num.floatValue();
+        }else if ( type == BigDecimal.class ){
+            return num instanceof BigInteger ? new BigDecimal((BigInteger)num) : new BigDecimal(num.toString());
+        }
+
+        // integer types.
+        BigInteger bigInt;
+        if ( num instanceof BigInteger ){
+            bigInt = (BigInteger)num;
+        }else if ( num instanceof BigDecimal ){
+            bigInt = ((BigDecimal)num).toBigIntegerExact();
+        }else if ( num instanceof Double || num instanceof Float ){
+            bigInt = new BigDecimal(num.doubleValue()).toBigIntegerExact();
+        }else{
+            bigInt = BigInteger.valueOf(num.longValue());
+        }
+        if ( type == Long.class ){
+            return bigInt.longValueExact();
+        }else if ( type == Integer.class ){
+            return bigInt.intValueExact();
+        }else if ( type == Short.class ){
+            return bigInt.shortValueExact();
+        }else if ( type == Byte.class ){
+            return bigInt.byteValueExact();
+        }else if ( type == BigInteger.class ){
+            return bigInt;
+        }else if ( type == Number.class ){
+            return num;
+        }else{
+            return null;
+        }
+    }
+
+    /**
+     * Get an enum value by name.
+     *
+     * @param type The enum type.
+     * @param name The name.
+     * @return The value or null if there isn't one by that name.
+     */
+    private static Object getEnumValue( Class<?> type, String name )
+    {
+        for ( Object value : type.getEnumConstants() ){
+            if ( ((Enum<?>)value).name().equals(name) ){
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the wrapper for a primitive type.
+     *
+     * @param type The primitive type.
+     * @return The wrapper type.
+     */
+    private static Class<?> getWrapper( Class<?> type )
+    {
+        if ( type == Integer.TYPE ){
+            return Integer.class;
+        }else if ( type == Long.TYPE ){
+            return Long.class;
+        }else if ( type == Double.TYPE ){
+            return Double.class;
+        }else if ( type == Boolean.TYPE ){
+            return Boolean.class;
+        }else if ( type == Float.TYPE ){
+            return Float.class;
+        }else if ( type == Short.TYPE ){
+            return Short.class;
+        }else if ( type == Byte.TYPE ){
+            return Byte.class;
+        }else if ( type == Character.TYPE ){
+            return Character.class;
+        }else{
+            return Void.class;
+        }
+    }
+
+    /**
+     * Parse the tokens from the input stream.
      *
      * @param token The current token to work on.
      * @param tokens The token reader.
@@ -269,87 +992,127 @@ public class JSONParser
         if ( token == null ){
             return null;
         }
-        switch ( token.tokenType ){
-            case START_OBJECT:
-                return parseObject(tokens);
-            case START_ARRAY:
-                return parseArray(tokens);
-            default:
-                return getValue(token, tokens);
-        }
+        return getValue(token, tokens);
     }
 
     /**
-     * Parse the tokens from the input stream for an object.  This method is recursive
-     * via the {@link #getValue(Token, JSONTokenReader)} method.
+     * Parse an object or array and everything in it. This uses a stack of
+     * {@link ParseFrame}s instead of recursion so that deeply nested input
+     * can't overflow the call stack.
      *
+     * @param token The token that starts the object or array.
      * @param tokens The token reader.
      * @return the object that results from parsing.
      * @throws IOException If there's a problem with I/O.
      * @throws ParseException If there's a problem parsing dates.
+     * @since 1.10.5
      */
-    private static Map<?,?> parseObject( JSONTokenReader tokens ) throws IOException, ParseException
+    private static Object parseContainer( Token token, JSONTokenReader tokens ) throws IOException, ParseException
     {
-        Map<String,Object> map = new LinkedHashMap<>();
         JSONConfig cfg = tokens.getJSONConfig();
-        Token token = tokens.nextToken();
-        while ( token != null ){
-            // need an identifier
-            if ( token.tokenType == TokenType.STRING || token.tokenType == TokenType.UNQUOTED_ID ){
-                // got an identifier.
-                String key = StringProcessor.unEscape(token.value, cfg);
-                // need a colon
-                token = tokens.nextToken();
-                if ( token.tokenType == TokenType.COLON ){
+        KeyTable keyTable = tokens.getKeyTable();
+        ParseFrame[] stack = new ParseFrame[INITIAL_DEPTH];
+        int depth = 0;
+        ParseFrame frame = stack[depth++] = new ParseFrame(token, tokens, keyTable);
+        token = tokens.nextToken();
+
+        while ( true ){
+            // at the start of a member or element or the end of the container.
+            Object value = null;
+            boolean done = false;
+            boolean added = false;
+            if ( frame.obj != null ){
+                if ( token == null || token.tokenType == TokenType.END_OBJECT ){
+                    done = true;                        // end of object.
+                }else if ( token.tokenType == TokenType.STRING || token.tokenType == TokenType.UNQUOTED_ID ){
+                    // got an identifier.
+                    frame.key = keyTable.getKey(token.value, cfg);
+                    // need a colon
+                    token = nextToken(tokens);
+                    if ( token.tokenType != TokenType.COLON ){
+                        throw new JSONParserException(TokenType.COLON, token.tokenType, cfg);
+                    }
                     // got a colon.  get the value.
+                    token = nextToken(tokens);
+                }else{
+                    throw new JSONParserException(TokenType.END_OBJECT, token.tokenType, cfg);
+                }
+            }else if ( token == null || token.tokenType == TokenType.END_ARRAY ){
+                done = true;                            // end of array.
+            }
+
+            if ( ! done ){
+                if ( token.tokenType == TokenType.START_OBJECT || token.tokenType == TokenType.START_ARRAY ){
+                    if ( depth == stack.length ){
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    frame = stack[depth++] = new ParseFrame(token, tokens, keyTable);
                     token = tokens.nextToken();
-                    map.put(key, getValue(token, tokens));
+                    continue;
+                }
+                if ( frame.addInteger(token, tokens) ){
+                    added = true;                       // no boxing needed.
                 }else{
-                    throw new JSONParserException(TokenType.COLON, token.tokenType, cfg);
+                    value = getSimpleValue(token, cfg);
                 }
-            }else if ( token.tokenType == TokenType.END_OBJECT ){
-                break;                                  // empty object; break out of loop.
-            }else{
-                throw new JSONParserException(TokenType.END_OBJECT, token.tokenType, cfg);
             }
-            token = tokens.nextToken();
-            if ( token.tokenType == TokenType.END_OBJECT ){
-                break;                                  // end of object; break out of loop.
-            }else if ( token.tokenType == TokenType.COMMA ){
-                token = tokens.nextToken();             // next field.
-            }else{
-                throw new JSONParserException(TokenType.END_OBJECT, token.tokenType, cfg);
+
+            // a value is complete. add it to its container and look for the next one.
+            while ( true ){
+                if ( done ){
+                    value = frame.finish(tokens);
+                    stack[--depth] = null;
+                    if ( depth == 0 ){
+                        return value;
+                    }
+                    frame = stack[depth-1];
+                }
+                if ( ! added ){
+                    frame.add(value, tokens);
+                }
+                added = false;
+                token = nextToken(tokens);
+                if ( token.tokenType == (frame.obj != null ? TokenType.END_OBJECT : TokenType.END_ARRAY) ){
+                    done = true;
+                }else if ( token.tokenType == TokenType.COMMA ){
+                    token = tokens.nextToken();         // next member or element.
+                    break;
+                }else{
+                    throw new JSONParserException(frame.obj != null ? TokenType.END_OBJECT : TokenType.END_ARRAY, token.tokenType, cfg);
+                }
             }
         }
-        // minimize memory usage.
-        return tableSizeFor(map.size()) < DEFAULT_INITIAL_CAPACITY ? new LinkedHashMap<>(map) : map;
     }
 
     /**
-     * Parse the tokens from the input stream for an array.  This method is recursive
-     * via the {@link #getValue(Token, JSONTokenReader)} method.
+     * Get the next token when the input must not end yet.
      *
      * @param tokens The token reader.
-     * @return the object that results from parsing.
+     * @return The next token.
      * @throws IOException If there's a problem with I/O.
-     * @throws ParseException If there's a problem parsing dates.
+     * @since 1.10.5
      */
-    private static Object parseArray( JSONTokenReader tokens ) throws IOException, ParseException
+    private static Token nextToken( JSONTokenReader tokens ) throws IOException
     {
-        ArrayList<Object> list = new ArrayList<>();
-        JSONConfig cfg = tokens.getJSONConfig();
         Token token = tokens.nextToken();
-        while ( token != null && token.tokenType != TokenType.END_ARRAY ){
-            list.add(getValue(token, tokens));
-            token = tokens.nextToken();
-            if ( token.tokenType == TokenType.END_ARRAY ){
-                break;                                  // end of array.
-            }else if ( token.tokenType == TokenType.COMMA ){
-                token = tokens.nextToken();             // next item.
-            }else{
-                throw new JSONParserException(TokenType.END_ARRAY, token.tokenType, cfg);
-            }
+        if ( token == null ){
+            throw new JSONParserException(tokens.getCharCount(), tokens.getJSONConfig());
         }
+        return token;
+    }
+
+    /**
+     * Make the final form of a parsed array.
+     *
+     * @param list the values in the array.
+     * @param cfg the config object.
+     * @return the list or an array of primitives if
+     *         {@link JSONConfig#isUsePrimitiveArrays()} is true and one could
+     *         be made.
+     * @since 1.10.5
+     */
+    static Object finishArray( ArrayList<Object> list, JSONConfig cfg )
+    {
         // minimize memory usage.
         list.trimToSize();
 
@@ -375,31 +1138,48 @@ public class JSONParser
      */
     private static Object getValue( Token token, JSONTokenReader tokens ) throws ParseException, IOException
     {
-        JSONConfig cfg = tokens.getJSONConfig();
+        switch ( token.tokenType ){
+            case START_OBJECT:
+            case START_ARRAY:
+                return parseContainer(token, tokens);
+            default:
+                return getSimpleValue(token, tokens.getJSONConfig());
+        }
+    }
+
+    /**
+     * Get the value of a token that is not the start of an object or array.
+     *
+     * @param token the token to get the value of.
+     * @param cfg the config object.
+     * @return A JSON value in Java form.
+     * @throws ParseException if there's a problem with date parsing.
+     * @since 1.10.5
+     */
+    static Object getSimpleValue( Token token, JSONConfig cfg ) throws ParseException
+    {
         switch ( token.tokenType ){
             case STRING:
                 String unesc = StringProcessor.unEscape(token.value, cfg);
                 if ( cfg.isFormatDates() ){
-                    try{
-                        return parseDate(unesc, cfg);
-                    }catch ( ParseException e ){
+                    Date date = recognizeDate(unesc, cfg);
+                    if ( date != null ){
+                        return date;
                     }
                 }
                 if ( cfg.isEncodeNumericStringsAsNumbers() ){
-                    Matcher matcher = JAVASCRIPT_FLOATING_POINT_PAT.matcher(unesc);
-                    if ( matcher.matches() ){
-                        return getDecimal(matcher.group(1), cfg.isSmallNumbers());
-                    }
-                    matcher = JAVASCRIPT_INTEGER_PAT.matcher(unesc);
-                    if ( matcher.matches() ){
-                        return getInteger(matcher.group(1), cfg.isSmallNumbers());
+                    switch ( NumericClassifier.classifyJavascript(unesc) ){
+                        case NumericClassifier.DECIMAL:
+                            return getNumber(unesc, true, cfg);
+                        case NumericClassifier.INTEGER:
+                            return getNumber(unesc, false, cfg);
                     }
                 }
                 return unesc;
             case FLOATING_POINT_NUMBER:
-                return getDecimal(token.value, cfg.isSmallNumbers());
+                return getNumber(token.value, true, cfg);
             case INTEGER_NUMBER:
-                return getInteger(token.value, cfg.isSmallNumbers());
+                return getNumber(token.value, false, cfg);
             case LITERAL:
                 if ( token.value.equals("null") ){
                     return null;
@@ -408,14 +1188,30 @@ public class JSONParser
                 }
             case DATE:
                 return parseDate(StringProcessor.unEscape(token.value, cfg), cfg);
-            case START_OBJECT:
-            case START_ARRAY:
-                return parseTokens(token, tokens);
             default:
                 throw new JSONParserException(TokenType.STRING, token.tokenType, cfg);
         }
     }
 
+    /**
+     * Get a number or a {@link LazyNumber} if
+     * {@link JSONConfig#isUseLazyNumbers()} is true.
+     *
+     * @param str The text of the number.
+     * @param decimal if true, then it's a decimal number, otherwise an integer.
+     * @param cfg The config object.
+     * @return The number.
+     * @since 1.10.5
+     */
+    private static Number getNumber( String str, boolean decimal, JSONConfig cfg )
+    {
+        if ( cfg.isUseLazyNumbers() ){
+            return new LazyNumber(str, decimal, cfg.isSmallNumbers());
+        }else{
+            return decimal ? getDecimal(str, cfg.isSmallNumbers()) : getInteger(str, cfg.isSmallNumbers());
+        }
+    }
+
     /**
      * Gets an array of primitives from a list if possible. This means that all
      * values in the list are non-null and either they are all boolean or all
@@ -432,6 +1228,8 @@ public class JSONParser
      * which maintains additional size and modCount ints as well as a reference
      * to its own internal array for up to 16 bytes of additional space required
      * by an ArrayList than an array.
+     * <p>
+     * Any {@link LazyNumber}s in the list are replaced by their numbers.
      *
      * @param list The list.
      * @param smallNumbers if true, then try to use the smallest number size
@@ -449,7 +1247,13 @@ public class JSONParser
         boolean haveBoolean = false;
         boolean haveChar = false;
 
-        for ( Object obj : list ){
+        for ( int i = 0, len = list.size(); i < len; i++ ){
+            Object obj = list.get(i);
+            if ( obj instanceof LazyNumber ){
+                // need the real type.
+                obj = ((LazyNumber)obj).getNumber();
+                list.set(i, obj);
+            }
             if ( obj instanceof Number ){
                 if ( obj instanceof BigInteger || obj instanceof BigDecimal ){
                     return null;
@@ -643,7 +1447,7 @@ public class JSONParser
      * @return A {@link Number} needed to accurately represent the number.
      * @since 1.9
      */
-    private static Number getDecimal( String decimalString, boolean smallNumbers )
+    static Number getDecimal( String decimalString, boolean smallNumbers )
     {
         try{
             // this will work except for NaN and Infinity
@@ -698,13 +1502,18 @@ public class JSONParser
      *         represent the number.
      * @since 1.9
      */
-    private static Number getInteger( String integerString, boolean smallNumbers )
+    static Number getInteger( String integerString, boolean smallNumbers )
     {
+        if ( isShortInteger(integerString) ){
+            // fits in a long. skip the BigInteger.
+            return boxInteger(Long.parseLong(integerString), smallNumbers);
+        }
+
         // parse with BigInteger because that will always work at this point.
         BigInteger bigInt;
         if ( integerString.startsWith("0x") || integerString.startsWith("0X") ){
             bigInt = new BigInteger(integerString.substring(2), 16);
-        }else if ( OCTAL_PAT.matcher(integerString).matches() ){
+        }else if ( NumericClassifier.isOctal(integerString) ){
             bigInt = new BigInteger(integerString, 8);
         }else{
             bigInt = new BigInteger(integerString);
@@ -734,6 +1543,57 @@ public class JSONParser
         }
     }
 
+    /**
+     * Check if a string is a decimal integer that is short enough that it
+     * must fit in a long. Octal and hex are not included.
+     *
+     * @param str The string.
+     * @return true if the string can be parsed with {@link Long#parseLong(String)}.
+     * @since 1.10.5
+     */
+    static boolean isShortInteger( String str )
+    {
+        int len = str.length();
+        int i = len > 0 && str.charAt(0) == '-' ? 1 : 0;
+        int digits = len - i;
+        if ( digits < 1 || digits >= MAX_PRECISION_FOR_LONG || (digits > 1 && str.charAt(i) == '0') ){
+            // empty, might not fit or octal.
+            return false;
+        }
+        for ( ; i < len; i++ ){
+            char ch = str.charAt(i);
+            if ( ch < '0' || ch > '9' ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Box an integer the same way that {@link #getInteger(String, boolean)}
+     * would.
+     *
+     * @param x The integer.
+     * @param smallNumbers if true, then use the smallest type that holds it,
+     *            otherwise use {@link Long}.
+     * @return The boxed integer.
+     * @since 1.10.5
+     */
+    static Number boxInteger( long x, boolean smallNumbers )
+    {
+        if ( ! smallNumbers ){
+            return x;
+        }else if ( x == (byte)x ){
+            return (byte)x;
+        }else if ( x == (short)x ){
+            return (short)x;
+        }else if ( x == (int)x ){
+            return (int)x;
+        }else{
+            return x;
+        }
+    }
+
     /**
      * Parse a date string. This does a manual parse of any custom parsing
      * formats from the config object followed by ISO 8601 date strings. Oddly,
@@ -748,6 +1608,12 @@ public class JSONParser
      */
     private static Date parseDate( String inputStr, JSONConfig cfg ) throws ParseException
     {
+        Date date = recognizeDate(inputStr, cfg);
+        if ( date != null ){
+            return date;
+        }
+
+        // it's not a date. let the formats say why.
         ParseException ex = null;
 
         // try custom formatters, if any, followed by ISO 8601 formatters.
@@ -763,10 +1629,563 @@ public class JSONParser
         throw ex;
     }
 
+    /**
+     * Parse a date string the same way as
+     * {@link #parseDate(String, JSONConfig)} except that it returns null
+     * instead of throwing an exception if the string is not a date. This is
+     * called for every string when {@link JSONConfig#isFormatDates()} is true
+     * so it avoids exceptions and screens out strings that can't match the
+     * ISO 8601 formats before trying them.
+     *
+     * @param inputStr The string.
+     * @param cfg the config object.
+     * @return The date or null if the string could not be parsed.
+     * @since 1.10.5
+     */
+    private static Date recognizeDate( String inputStr, JSONConfig cfg )
+    {
+        List<DateFormat> fmts = cfg.getDateParseFormats();
+        int customCount = cfg.getCustomDateParseFormatCount();
+        ParsePosition pos = new ParsePosition(0);
+
+        // custom formats are tried first in the order that they were added.
+        for ( int i = 0; i < customCount; i++ ){
+            Date date = parseDate(fmts.get(i), inputStr, pos);
+            if ( date != null ){
+                return date;
+            }
+        }
+
+        if ( ! couldBeIsoDate(inputStr) ){
+            return null;
+        }
+        Date date = parseIsoDate(inputStr);
+        if ( date != null ){
+            return date;
+        }
+
+        // unusual form. let the ISO 8601 formats have it.
+        for ( int i = customCount, len = fmts.size(); i < len; i++ ){
+            date = parseDate(fmts.get(i), inputStr, pos);
+            if ( date != null ){
+                return date;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Try one date format without an exception on failure. This accepts the
+     * same strings that {@link DateFormat#parse(String)} would.
+     *
+     * @param fmt The date format.
+     * @param inputStr The string.
+     * @param pos A parse position to reuse.
+     * @return The date or null if the format could not parse the string.
+     * @since 1.10.5
+     */
+    private static Date parseDate( DateFormat fmt, String inputStr, ParsePosition pos )
+    {
+        pos.setIndex(0);
+        pos.setErrorIndex(-1);
+        Date date = fmt.parse(inputStr, pos);
+        return pos.getIndex() == 0 ? null : date;
+    }
+
+    /**
+     * Check if a string could possibly be parsed by any of the ISO 8601
+     * formats. They all need a number at the start, a 'T' and a ':'.
+     *
+     * @param str The string.
+     * @return false if none of the ISO 8601 formats could parse it.
+     * @since 1.10.5
+     */
+    private static boolean couldBeIsoDate( String str )
+    {
+        int len = str.length();
+        int i = 0;
+        while ( i < len && (str.charAt(i) == ' ' || str.charAt(i) == '\t') ){
+            ++i;                    // DateFormat skips these.
+        }
+        if ( i == len ){
+            return false;
+        }
+        char ch = str.charAt(i);
+        return (Character.isDigit(ch) || ch == '-') && str.indexOf('T', i) > 0 && str.indexOf(':', i) > 0;
+    }
+
+    /**
+     * Parse the common forms of ISO 8601 dates directly. These are
+     * yyyy-MM-ddTHH:mm:ss followed by optional .SSS milliseconds and an
+     * optional Z or +HH:mm offset, with every field in range. The result is
+     * the same as the first of the ISO 8601 date formats that would parse it.
+     *
+     * @param str The string.
+     * @return The date or null if it's not one of those forms, in which case
+     *         it still might be parsed by one of the date formats.
+     * @since 1.10.5
+     */
+    private static Date parseIsoDate( String str )
+    {
+        int len = str.length();
+        if ( len < ISO_DATE_TIME_LENGTH || ! matchesShape(str, ISO_DATE_TIME_SHAPE, 0) ){
+            return null;
+        }
+        int year = getDigits(str, 0, 4);
+        int month = getDigits(str, 5, 2);
+        int day = getDigits(str, 8, 2);
+        int hour = getDigits(str, 11, 2);
+        int minute = getDigits(str, 14, 2);
+        int second = getDigits(str, 17, 2);
+        int millis = 0;
+        int offset = 0;
+
+        int i = ISO_DATE_TIME_LENGTH;
+        if ( i < len && str.charAt(i) == '.' ){
+            if ( ! matchesShape(str, ".999", i) ){
+                return null;
+            }
+            millis = getDigits(str, i+1, 3);
+            i += 4;
+        }
+        if ( i + 1 == len && str.charAt(i) == 'Z' ){
+            ++i;
+        }else if ( i + 6 == len && (str.charAt(i) == '+' || str.charAt(i) == '-') && matchesShape(str, "99:99", i+1) ){
+            int offsetHours = getDigits(str, i+1, 2);
+            int offsetMinutes = getDigits(str, i+4, 2);
+            if ( offsetHours > 18 || offsetMinutes > 59 || (offsetHours == 18 && offsetMinutes > 0) ){
+                // ZoneOffset can't do it. the formats can.
+                return null;
+            }
+            offset = (offsetHours * 3600 + offsetMinutes * 60) * (str.charAt(i) == '-' ? -1 : 1);
+            i = len;
+        }
+        if ( i != len ){
+            return null;
+        }
+
+        // the formats are lenient and use the Julian calendar before the
+        // Gregorian cutover so leave anything else to them.
+        if ( year < 1583 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year)) ||
+             hour > 23 || minute > 59 || second > 59 ){
+            return null;
+        }
+        long epochSecond = LocalDateTime.of(year, month, day, hour, minute, second).toEpochSecond(ZoneOffset.ofTotalSeconds(offset));
+        return new Date(epochSecond * 1000 + millis);
+    }
+
+    /**
+     * Check a part of a string against a shape where '9' is any ASCII digit
+     * and anything else must match exactly.
+     *
+     * @param str The string.
+     * @param shape The shape.
+     * @param start The index in the string to start at.
+     * @return true if that part of the string matches the shape.
+     * @since 1.10.5
+     */
+    private static boolean matchesShape( String str, String shape, int start )
+    {
+        if ( start + shape.length() > str.length() ){
+            return false;
+        }
+        for ( int i = 0, len = shape.length(); i < len; i++ ){
+            char s = shape.charAt(i);
+            char ch = str.charAt(start + i);
+            if ( s == '9' ? ch < '0' || ch > '9' : ch != s ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the value of some ASCII digits.
+     *
+     * @param str The string.
+     * @param start The index of the first digit.
+     * @param count The number of digits.
+     * @return The value.
+     * @since 1.10.5
+     */
+    private static int getDigits( String str, int start, int count )
+    {
+        int value = 0;
+        for ( int i = start, end = start + count; i < end; i++ ){
+            value = value * 10 + (str.charAt(i) - '0');
+        }
+        return value;
+    }
+
     /**
      * This class should never be instantiated.
      */
     private JSONParser()
     {
     }
+
+    /**
+     * Collects the members of an object as they are parsed and makes the map
+     * for it. Objects with the same keys in the same order share a
+     * {@link Shape} from the {@link KeyTable} which gives the size of the map
+     * or, for {@link CompactMap}s, the key array.
+     *
+     * @since 1.10.5
+     */
+    static final class ObjectBuilder
+    {
+        private final KeyTable keyTable;
+        private final JSONConfig cfg;
+        private Shape shape;
+        private Object[] values;
+        private Map<String,Object> map;         // only for objects with too many keys for a shape.
+
+        /**
+         * Create a builder for an empty object.
+         *
+         * @param keyTable the key table for the parse.
+         * @param cfg the config object.
+         */
+        ObjectBuilder( KeyTable keyTable, JSONConfig cfg )
+        {
+            this.keyTable = keyTable;
+            this.cfg = cfg;
+            shape = keyTable.getRootShape();
+            values = null;
+            map = null;
+        }
+
+        /**
+         * Add a member. If the key is already there, then the new value
+         * replaces the old one.
+         *
+         * @param key the unescaped key.
+         * @param value the value.
+         */
+        void put( String key, Object value )
+        {
+            int i = map == null ? shape.indexOf(key) : -1;
+            if ( i < 0 && map == null ){
+                Shape next = keyTable.addKey(shape, key);
+                if ( next == null ){
+                    // too many keys to share a shape.
+                    map = shape.toMap(values, new LinkedHashMap<String,Object>());
+                }else{
+                    shape = next;
+                    i = shape.size() - 1;
+                    if ( values == null ){
+                        values = new Object[INITIAL_VALUES_SIZE];
+                    }else if ( i == values.length ){
+                        values = Arrays.copyOf(values, values.length * 2);
+                    }
+                }
+            }
+            if ( i < 0 ){
+                map.put(key, value);
+            }else{
+                values[i] = value;
+            }
+        }
+
+        /**
+         * Make the map.
+         *
+         * @return the map.
+         */
+        Map<?,?> build()
+        {
+            if ( map != null ){
+                return cfg.isUseCompactMaps() ? Collections.unmodifiableMap(map) : map;
+            }else if ( cfg.isUseCompactMaps() ){
+                return new CompactMap(shape, values);
+            }else{
+                // the shape gives the size so the map doesn't need to be copied to minimize memory usage.
+                int size = shape.size();
+                return shape.toMap(values, new LinkedHashMap<String,Object>((int)(size / 0.75f) + 1));
+            }
+        }
+    }
+
+    /**
+     * An object or array that is being parsed by
+     * {@link JSONParser#parseContainer(Token, JSONTokenReader)}.
+     * <p>
+     * When {@link JSONConfig#isUsePrimitiveArrays()} is true, arrays start out
+     * collecting integers into a long array without boxing them, on the bet
+     * that they will be all integers. The smallest primitive type that holds
+     * the range of values is picked at the end, which is what
+     * {@link JSONParser#getArrayOfPrimitives(ArrayList, boolean)} would pick
+     * for a list of integers. The first element that isn't a decimal integer
+     * that fits in a long ends the bet, and the integers so far are boxed into
+     * a list the same way that {@link JSONParser#getInteger(String, boolean)}
+     * would box them.
+     *
+     * @since 1.10.5
+     */
+    private static final class ParseFrame
+    {
+        private final ObjectBuilder obj;
+        private ArrayList<Object> list;
+        private String key;
+
+        // integers collected without boxing.
+        private long[] longs;
+        private int count;
+        private long min;
+        private long max;
+
+        /**
+         * Start an object or array.
+         *
+         * @param token The token that starts it.
+         * @param tokens The token reader.
+         * @param keyTable The key table for the parse.
+         */
+        ParseFrame( Token token, JSONTokenReader tokens, KeyTable keyTable )
+        {
+            tokens.enterContainer();
+            if ( token.tokenType == TokenType.START_OBJECT ){
+                obj = new ObjectBuilder(keyTable, tokens.getJSONConfig());
+                list = null;
+            }else{
+                obj = null;
+                if ( tokens.getJSONConfig().isUsePrimitiveArrays() ){
+                    list = null;
+                    longs = new long[INITIAL_VALUES_SIZE];
+                    count = 0;
+                    min = Long.MAX_VALUE;
+                    max = Long.MIN_VALUE;
+                }else{
+                    list = new ArrayList<>();
+                }
+            }
+        }
+
+        /**
+         * Add a member or element.
+         *
+         * @param value The value.
+         * @param tokens The token reader.
+         */
+        void add( Object value, JSONTokenReader tokens )
+        {
+            tokens.countElement();
+            if ( obj != null ){
+                obj.put(key, value);
+            }else{
+                if ( longs != null ){
+                    boxIntegers(tokens.getJSONConfig().isSmallNumbers());
+                }
+                list.add(value);
+            }
+        }
+
+        /**
+         * Add an element to an array that is still collecting integers, if the
+         * token is a decimal integer that fits in a long.
+         *
+         * @param token The token.
+         * @param tokens The token reader.
+         * @return true if the element was added. If false, it still needs to
+         *         be added with {@link #add(Object, JSONTokenReader)}.
+         */
+        boolean addInteger( Token token, JSONTokenReader tokens )
+        {
+            if ( longs == null || token.tokenType != TokenType.INTEGER_NUMBER ){
+                return false;
+            }
+            if ( ! isShortInteger(token.value) ){
+                return false;
+            }
+            long x = Long.parseLong(token.value);
+            tokens.countElement();
+            if ( count == longs.length ){
+                longs = Arrays.copyOf(longs, count * 2);
+            }
+            longs[count++] = x;
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+            return true;
+        }
+
+        /**
+         * Give up on collecting integers and move them into a list.
+         *
+         * @param smallNumbers if true, then box each integer in the smallest
+         *            type that holds it, otherwise use {@link Long}.
+         */
+        private void boxIntegers( boolean smallNumbers )
+        {
+            list = new ArrayList<>(Math.max(count * 2, INITIAL_VALUES_SIZE));
+            for ( int i = 0; i < count; i++ ){
+                list.add(boxInteger(longs[i], smallNumbers));
+            }
+            longs = null;
+        }
+
+        /**
+         * Make the map, list or array.
+         *
+         * @param tokens The token reader.
+         * @return The value.
+         */
+        Object finish( JSONTokenReader tokens )
+        {
+            tokens.exitContainer();
+            if ( obj != null ){
+                return obj.build();
+            }else if ( longs == null ){
+                return finishArray(list, tokens.getJSONConfig());
+            }else if ( count == 0 ){
+                return new ArrayList<>(0);
+            }else if ( min >= Byte.MIN_VALUE && max <= Byte.MAX_VALUE ){
+                byte[] bytes = new byte[count];
+                for ( int i = 0; i < count; i++ ){
+                    bytes[i] = (byte)longs[i];
+                }
+                return bytes;
+            }else if ( min >= Short.MIN_VALUE && max <= Short.MAX_VALUE ){
+                short[] shorts = new short[count];
+                for ( int i = 0; i < count; i++ ){
+                    shorts[i] = (short)longs[i];
+                }
+                return shorts;
+            }else if ( min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE ){
+                int[] ints = new int[count];
+                for ( int i = 0; i < count; i++ ){
+                    ints[i] = (int)longs[i];
+                }
+                return ints;
+            }else{
+                return count == longs.length ? longs : Arrays.copyOf(longs, count);
+            }
+        }
+    }
+
+    /**
+     * A group of elements of a top level array that is parsed in parallel.
+     * It gets its own clone of the config object.
+     *
+     * @since 1.10.5
+     */
+    private static final class ParseChunk extends RecursiveAction
+    {
+        private final String json;
+        private final int from;
+        private final int to;
+        private final JSONConfig cfg;
+        private final List<Object> values;
+        private Throwable failure;
+
+        /**
+         * Create a chunk. This must be called in the thread that owns the
+         * config object since the config object is not thread safe.
+         *
+         * @param json the string of JSON data.
+         * @param from the start of the first element.
+         * @param to the end of the last element.
+         * @param count the number of elements.
+         * @param parentCfg The config object of the calling thread.
+         */
+        ParseChunk( String json, int from, int to, int count, JSONConfig parentCfg )
+        {
+            this.json = json;
+            this.from = from;
+            this.to = to;
+            cfg = parentCfg.clone();
+            values = new ArrayList<>(count);
+            failure = null;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try{
+                JSONTokenReader tokens = new JSONTokenReader(new StringRegionReader(json, from, to), cfg, from);
+                tokens.enterContainer();            // the top level array.
+                Token token = tokens.nextToken();
+                while ( token != null ){
+                    values.add(getValue(token, tokens));
+                    token = tokens.nextToken();
+                    if ( token != null ){
+                        if ( token.tokenType != TokenType.COMMA ){
+                            throw new JSONParserException(TokenType.END_ARRAY, token.tokenType, cfg);
+                        }
+                        token = tokens.nextToken();
+                    }
+                }
+            }catch ( JSONException|Error e ){
+                // rethrown in the calling thread by addTo().
+                failure = e;
+            }catch ( Exception e ){
+                failure = new JSONParserException(e, cfg);
+            }
+        }
+
+        /**
+         * Add the parsed values to a list or throw whatever parsing threw.
+         *
+         * @param list the list.
+         */
+        void addTo( List<Object> list )
+        {
+            if ( failure instanceof RuntimeException ){
+                throw (RuntimeException)failure;
+            }else if ( failure != null ){
+                throw (Error)failure;
+            }
+            list.addAll(values);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A reader for part of a string that doesn't copy the string.
+     *
+     * @since 1.10.5
+     */
+    private static final class StringRegionReader extends Reader
+    {
+        private final String str;
+        private final int end;
+        private int pos;
+
+        /**
+         * Create a reader.
+         *
+         * @param str the string.
+         * @param start the index of the first char to read.
+         * @param end the index after the last char to read.
+         */
+        StringRegionReader( String str, int start, int end )
+        {
+            this.str = str;
+            this.end = end;
+            pos = start;
+        }
+
+        @Override
+        public int read()
+        {
+            return pos < end ? str.charAt(pos++) : -1;
+        }
+
+        @Override
+        public int read( char[] cbuf, int off, int len )
+        {
+            if ( pos >= end ){
+                return -1;
+            }
+            int n = Math.min(len, end - pos);
+            str.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
 }
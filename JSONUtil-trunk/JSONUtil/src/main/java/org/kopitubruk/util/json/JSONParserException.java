@@ -15,6 +15,7 @@
  */
 package org.kopitubruk.util.json;
 
+import java.lang.reflect.Type;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -37,6 +38,11 @@ public class JSONParserException extends JSONException
     private int high = 0;
     private int low = 0;
     private boolean malformedCodePoint = false;
+    private boolean endOfInput = false;
+    private String bindValueType = null;
+    private Type bindType = null;
+    private String limitName = null;
+    private int limit = 0;
 
     /**
      * Constructor for bad data in JSON string.
@@ -105,6 +111,52 @@ public class JSONParserException extends JSONException
         malformedCodePoint = true;
     }
 
+    /**
+     * Constructor for input that ends before the JSON is complete.
+     *
+     * @param idx The length of the input.
+     * @param cfg the config object.
+     * @since 1.10.5
+     */
+    JSONParserException( long idx, JSONConfig cfg )
+    {
+        super(cfg);
+        index = idx;
+        endOfInput = true;
+    }
+
+    /**
+     * Constructor for a value that can't be bound to a type.
+     *
+     * @param valueType A description of the type of the value.
+     * @param type The type that it couldn't be bound to.
+     * @param cfg the config object.
+     * @since 1.10.5
+     */
+    JSONParserException( String valueType, Type type, JSONConfig cfg )
+    {
+        super(cfg);
+        bindValueType = valueType;
+        bindType = type;
+    }
+
+    /**
+     * Constructor for input that goes over one of the parser limits.
+     *
+     * @param limitName The name of the limit in {@link JSONConfig}.
+     * @param limit The value of the limit.
+     * @param idx The position in the input.
+     * @param cfg the config object.
+     * @since 1.10.5
+     */
+    JSONParserException( String limitName, int limit, long idx, JSONConfig cfg )
+    {
+        super(cfg);
+        this.limitName = limitName;
+        this.limit = limit;
+        index = idx;
+    }
+
     /* (non-Javadoc)
      * @see org.kopitubruk.util.json.JSONException#internalGetMessage(java.util.Locale)
      */
@@ -124,6 +176,12 @@ public class JSONParserException extends JSONException
                 default:
                     return String.format(bundle.getString("expectedValue"), String.valueOf(tokenType));
             }
+        }else if ( bindType != null ){
+            return String.format(bundle.getString("cantBind"), bindValueType, bindType.getTypeName());
+        }else if ( limitName != null ){
+            return String.format(bundle.getString("limitExceeded"), limitName, limit, index);
+        }else if ( endOfInput ){
+            return String.format(bundle.getString("endOfInput"), index);
         }else if ( malformedCodePoint ){
             return String.format(bundle.getString("malformedCodePoint"), high, low, index);
         }else if ( e != null ){
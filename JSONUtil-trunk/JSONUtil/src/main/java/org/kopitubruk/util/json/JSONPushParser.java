@@ -0,0 +1,524 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import org.kopitubruk.util.json.JSONParser.ObjectBuilder;
+import org.kopitubruk.util.json.JSONParser.Token;
+import org.kopitubruk.util.json.JSONParser.TokenType;
+
+/**
+ * A parser that is given its input in pieces as it arrives instead of
+ * reading it from a {@link java.io.Reader}, so that nothing has to block
+ * waiting for input. This is meant for non-blocking I/O where data comes in
+ * as byte buffers of whatever size the network gives. Each piece is parsed
+ * as far as possible and the state is kept until the next piece, including
+ * tokens and UTF-8 sequences that are split between pieces.
+ * <p>
+ * Tokens are split up the same way that {@link JSONParser} does it, so
+ * single quoted strings, unquoted identifiers, <code>new Date(...)</code>
+ * and everything else that it accepts are accepted here. Values are made the
+ * same way too, using the same config options. The parser limits, such as
+ * {@link JSONConfig#getMaxParseDepth()}, apply to each top level value.
+ * <p>
+ * Each top level value is sent to the consumer as soon as it is complete.
+ * The input may hold any number of top level values one after the other,
+ * such as a stream of objects. A top level number, literal or other unquoted
+ * value is not known to be complete until the next object or array starts or
+ * {@link #endOfInput()} is called, because more of it could still be coming.
+ * <p>
+ * After an exception is thrown, the state of the parser is undefined and it
+ * should not be used again. This class is not thread safe, but it may be fed
+ * from different threads as long as only one at a time uses it.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public class JSONPushParser
+{
+    // token states.
+    private static final int BETWEEN_TOKENS = 0;
+    private static final int IN_STRING = 1;
+    private static final int IN_OTHER = 2;
+
+    // frame states.
+    private static final int VALUE_OR_END = 0;
+    private static final int KEY_OR_END = 1;
+    private static final int COLON = 2;
+    private static final int VALUE = 3;
+    private static final int COMMA_OR_END = 4;
+
+    private static final int CHAR_BUFFER_SIZE = 4096;
+    private static final int INITIAL_DEPTH = 16;
+
+    private final JSONConfig cfg;
+    private final Consumer<Object> consumer;
+    private final KeyTable keyTable;
+
+    // UTF-8 decoding. flip() and clear() are called through Buffer so that
+    // classes compiled by newer JDKs still run on Java 8.
+    private final CharsetDecoder decoder;
+    private final CharBuffer chars;
+    private final ByteBuffer partialChar;
+
+    // token state.
+    private int tokenState;
+    private final StringBuilder text;
+    private char quote;
+    private char otherQuote;
+    private int escapeCount;
+    private char highSurrogate;
+    private long charCount;
+
+    // value state.
+    private Frame[] stack;
+    private int depth;
+    private int elementCount;
+
+    // limits. Integer.MAX_VALUE if there is no limit.
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final int maxElements;
+
+    /**
+     * Create a new push parser using a default config object.
+     *
+     * @param consumer Gets each top level value when it is complete.
+     */
+    public JSONPushParser( Consumer<Object> consumer )
+    {
+        this(consumer, null);
+    }
+
+    /**
+     * Create a new push parser.
+     *
+     * @param consumer Gets each top level value when it is complete.
+     * @param cfg The config object. If null then defaults will be used.
+     */
+    public JSONPushParser( Consumer<Object> consumer, JSONConfig cfg )
+    {
+        this.consumer = consumer;
+        this.cfg = cfg == null ? new JSONConfig() : cfg;
+        keyTable = new KeyTable(this.cfg);
+        decoder = StandardCharsets.UTF_8.newDecoder()
+                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+        partialChar = ByteBuffer.allocate(4);
+        tokenState = BETWEEN_TOKENS;
+        text = new StringBuilder();
+        quote = 0;
+        otherQuote = 0;
+        escapeCount = 0;
+        highSurrogate = 0;
+        charCount = 0;
+        stack = new Frame[INITIAL_DEPTH];
+        depth = 0;
+        elementCount = 0;
+        maxDepth = JSONTokenReader.getLimit(this.cfg.getMaxParseDepth());
+        maxStringLength = JSONTokenReader.getLimit(this.cfg.getMaxParseStringLength());
+        maxElements = JSONTokenReader.getLimit(this.cfg.getMaxParseElements());
+    }
+
+    /**
+     * Parse a piece of UTF-8 encoded input. All of the remaining bytes in the
+     * buffer are used. A UTF-8 sequence that is split at the end of the buffer
+     * is kept until the next call.
+     *
+     * @param bytes The input.
+     */
+    public void feed( ByteBuffer bytes )
+    {
+        // finish a char that was split between buffers.
+        while ( partialChar.position() > 0 && bytes.hasRemaining() ){
+            partialChar.put(bytes.get());
+            ((Buffer)partialChar).flip();
+            decode(partialChar, false);
+            partialChar.compact();
+        }
+        if ( partialChar.position() == 0 ){
+            decode(bytes, false);
+            partialChar.put(bytes);
+        }
+    }
+
+    /**
+     * Parse a piece of input that is already chars.
+     *
+     * @param str The input.
+     */
+    public void feed( CharSequence str )
+    {
+        for ( int i = 0, len = str.length(); i < len; i++ ){
+            nextChar(str.charAt(i));
+        }
+    }
+
+    /**
+     * Tell the parser that there is no more input. Any value that is still
+     * pending is finished and sent to the consumer.
+     *
+     * @throws JSONParserException If the input ended in the middle of a value.
+     */
+    public void endOfInput()
+    {
+        ((Buffer)partialChar).flip();
+        decode(partialChar, true);
+        ((Buffer)partialChar).clear();
+        ((Buffer)chars).clear();
+        decoder.flush(chars);
+        ((Buffer)chars).flip();
+        while ( chars.hasRemaining() ){
+            nextChar(chars.get());
+        }
+        ((Buffer)chars).clear();
+        decoder.reset();
+
+        if ( highSurrogate != 0 ){
+            throw new JSONParserException(highSurrogate, -1, charCount, cfg);
+        }
+        switch ( tokenState ){
+            case IN_STRING:
+                throw new JSONParserException(quote, cfg);
+            case IN_OTHER:
+                if ( otherQuote != 0 ){
+                    throw new JSONParserException(otherQuote, cfg);
+                }
+                endOtherToken();
+                break;
+        }
+        if ( depth > 0 ){
+            throw new JSONParserException(charCount, cfg);
+        }
+    }
+
+    /**
+     * Decode bytes and parse the chars.
+     *
+     * @param bytes The bytes.
+     * @param endOfInput true if there are no more bytes.
+     */
+    private void decode( ByteBuffer bytes, boolean endOfInput )
+    {
+        CoderResult result;
+        do{
+            result = decoder.decode(bytes, chars, endOfInput);
+            ((Buffer)chars).flip();
+            while ( chars.hasRemaining() ){
+                nextChar(chars.get());
+            }
+            ((Buffer)chars).clear();
+        }while ( result.isOverflow() );
+    }
+
+    /**
+     * Handle the next char. This splits the input into tokens the same way
+     * that {@link JSONTokenReader} does.
+     *
+     * @param ch The char.
+     */
+    private void nextChar( char ch )
+    {
+        ++charCount;
+        if ( tokenState == IN_STRING || otherQuote != 0 ){
+            // in a quoted string.
+            char q = tokenState == IN_STRING ? quote : otherQuote;
+            if ( ch == '\\' ){
+                ++escapeCount;
+                appendChar(ch);
+            }else if ( ch == q && escapeCount % 2 == 0 ){
+                // even number of slashes -- string is done.
+                escapeCount = 0;
+                if ( tokenState == IN_STRING ){
+                    tokenState = BETWEEN_TOKENS;
+                    token(new Token(TokenType.STRING, text.toString()));
+                }else{
+                    appendChar(ch);
+                    otherQuote = 0;
+                }
+            }else{
+                appendChar(ch);
+                escapeCount = 0;
+            }
+            return;
+        }
+
+        if ( highSurrogate != 0 ){
+            if ( ! Character.isLowSurrogate(ch) ){
+                throw new JSONParserException(highSurrogate, ch, charCount, cfg);
+            }
+            highSurrogate = 0;
+            appendChar(ch);
+            return;
+        }
+
+        if ( tokenState == BETWEEN_TOKENS ){
+            if ( Character.isWhitespace(ch) ){
+                return;
+            }
+            Token simple = getSimpleToken(ch);
+            if ( simple != null ){
+                token(simple);
+            }else{
+                text.setLength(0);
+                escapeCount = 0;
+                if ( ch == '"' || ch == '\'' ){
+                    tokenState = IN_STRING;
+                    quote = ch;
+                }else{
+                    tokenState = IN_OTHER;
+                    otherChar(ch);
+                }
+            }
+        }else{
+            // in a number, literal, unquoted id or new Date().
+            Token simple = getSimpleToken(ch);
+            if ( simple != null ){
+                // ran into next token.
+                endOtherToken();
+                token(simple);
+            }else{
+                otherChar(ch);
+            }
+        }
+    }
+
+    /**
+     * Add a char to the text of the current token and check the length
+     * against {@link JSONConfig#getMaxParseStringLength()}.
+     *
+     * @param ch The char.
+     */
+    private void appendChar( char ch )
+    {
+        if ( text.length() >= maxStringLength ){
+            throw new JSONParserException("maxParseStringLength", maxStringLength, charCount, cfg);
+        }
+        text.append(ch);
+    }
+
+    /**
+     * Add a char to a number, literal, unquoted id or new Date().
+     *
+     * @param ch The char.
+     */
+    private void otherChar( char ch )
+    {
+        appendChar(ch);
+        if ( ch == '\\' ){
+            ++escapeCount;
+        }else{
+            if ( (ch == '\'' || ch == '"') && escapeCount % 2 == 0 ){
+                otherQuote = ch;
+            }else if ( Character.isHighSurrogate(ch) ){
+                highSurrogate = ch;
+            }
+            escapeCount = 0;
+        }
+    }
+
+    /**
+     * Finish a number, literal, unquoted id or new Date() token.
+     */
+    private void endOtherToken()
+    {
+        tokenState = BETWEEN_TOKENS;
+        token(JSONTokenReader.matchOthers(text.toString().trim(), charCount, cfg));
+    }
+
+    /**
+     * Get the token for a structural char.
+     *
+     * @param ch The char.
+     * @return The token or null if the char is not structural.
+     */
+    private static Token getSimpleToken( char ch )
+    {
+        switch ( ch ){
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case ',':
+            case ':':
+                return JSONTokenReader.getSimpleToken(ch);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Handle the next token. This follows the same grammar as
+     * {@link JSONParser}, including allowing a trailing comma in an object
+     * or array.
+     *
+     * @param token The token.
+     */
+    private void token( Token token )
+    {
+        if ( depth == 0 ){
+            startValue(token);
+            return;
+        }
+        Frame frame = stack[depth-1];
+        TokenType tokenType = token.tokenType;
+        switch ( frame.state ){
+            case VALUE_OR_END:
+                if ( tokenType == TokenType.END_ARRAY ){
+                    endFrame();
+                }else{
+                    startValue(token);
+                }
+                break;
+            case KEY_OR_END:
+                if ( tokenType == TokenType.STRING || tokenType == TokenType.UNQUOTED_ID ){
+                    frame.key = keyTable.getKey(token.value, cfg);
+                    frame.state = COLON;
+                }else if ( tokenType == TokenType.END_OBJECT ){
+                    endFrame();
+                }else{
+                    throw new JSONParserException(TokenType.END_OBJECT, tokenType, cfg);
+                }
+                break;
+            case COLON:
+                if ( tokenType == TokenType.COLON ){
+                    frame.state = VALUE;
+                }else{
+                    throw new JSONParserException(TokenType.COLON, tokenType, cfg);
+                }
+                break;
+            case VALUE:
+                startValue(token);
+                break;
+            case COMMA_OR_END:
+                TokenType end = frame.obj != null ? TokenType.END_OBJECT : TokenType.END_ARRAY;
+                if ( tokenType == end ){
+                    endFrame();
+                }else if ( tokenType == TokenType.COMMA ){
+                    frame.state = frame.obj != null ? KEY_OR_END : VALUE_OR_END;
+                }else{
+                    throw new JSONParserException(end, tokenType, cfg);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Start a value. Objects and arrays get a new frame. Anything else is
+     * complete.
+     *
+     * @param token The first token of the value.
+     */
+    private void startValue( Token token )
+    {
+        switch ( token.tokenType ){
+            case START_OBJECT:
+            case START_ARRAY:
+                if ( depth >= maxDepth ){
+                    throw new JSONParserException("maxParseDepth", maxDepth, charCount, cfg);
+                }else if ( depth == stack.length ){
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                Frame frame = stack[depth];
+                if ( frame == null ){
+                    frame = stack[depth] = new Frame();
+                }
+                ++depth;
+                if ( token.tokenType == TokenType.START_OBJECT ){
+                    frame.obj = new ObjectBuilder(keyTable, cfg);
+                    frame.list = null;
+                    frame.state = KEY_OR_END;
+                }else{
+                    frame.obj = null;
+                    frame.list = new ArrayList<>();
+                    frame.state = VALUE_OR_END;
+                }
+                break;
+            default:
+                try{
+                    addValue(JSONParser.getSimpleValue(token, cfg));
+                }catch ( ParseException e ){
+                    throw new JSONParserException(e, cfg);
+                }
+        }
+    }
+
+    /**
+     * Finish the current object or array.
+     */
+    private void endFrame()
+    {
+        Frame frame = stack[--depth];
+        Object value = frame.obj != null ? frame.obj.build() : JSONParser.finishArray(frame.list, cfg);
+        frame.obj = null;
+        frame.list = null;
+        frame.key = null;
+        addValue(value);
+    }
+
+    /**
+     * Add a complete value to the current object or array or send it to the
+     * consumer if it's a top level value.
+     *
+     * @param value The value.
+     */
+    private void addValue( Object value )
+    {
+        if ( depth == 0 ){
+            // the limit on elements is for each top level value.
+            elementCount = 0;
+            consumer.accept(value);
+            return;
+        }
+        if ( ++elementCount > maxElements ){
+            throw new JSONParserException("maxParseElements", maxElements, charCount, cfg);
+        }
+        Frame frame = stack[depth-1];
+        if ( frame.obj != null ){
+            frame.obj.put(frame.key, value);
+            frame.key = null;
+        }else{
+            frame.list.add(value);
+        }
+        frame.state = COMMA_OR_END;
+    }
+
+    /**
+     * The state of an object or array that is being parsed. Frames are
+     * reused as the depth goes up and down.
+     *
+     * @since 1.10.5
+     */
+    private static final class Frame
+    {
+        private ObjectBuilder obj;
+        private ArrayList<Object> list;
+        private String key;
+        private int state;
+    }
+}
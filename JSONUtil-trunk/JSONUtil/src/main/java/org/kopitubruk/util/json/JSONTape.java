@@ -0,0 +1,500 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.util.Arrays;
+
+/**
+ * Index of the structure of a JSON document used by {@link JsonNode}. The
+ * document is scanned once to find where each object, array, key and value
+ * starts and ends. Nothing is decoded during the scan. The results are kept
+ * in an int array, the tape, with {@link #NODE_SIZE} ints per node, in the
+ * same order that the nodes appear in the input. The members of an object
+ * are a key node followed by a value node.
+ * <p>
+ * The ints for each node are:
+ * <ol>
+ *   <li>The kind of the node in the low bits, flags and, for objects and
+ *   arrays, the number of members or elements shifted by {@link #COUNT_SHIFT}.</li>
+ *   <li>The offset in the input of the first char of the node. For quoted
+ *   strings, this is the first char after the quote.</li>
+ *   <li>The offset in the input just past the end of the node. For quoted
+ *   strings, this is the offset of the closing quote.</li>
+ *   <li>The tape index of the next node after this node and all of its
+ *   contents.</li>
+ * </ol>
+ * The input is kept by reference and is not copied.
+ * <p>
+ * The limits from {@link JSONConfig#getMaxParseDepth()},
+ * {@link JSONConfig#getMaxParseStringLength()},
+ * {@link JSONConfig#getMaxParseNumberLength()} and
+ * {@link JSONConfig#getMaxParseElements()} are enforced during the scan the
+ * same way that the other parsers enforce them.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class JSONTape
+{
+    static final int NODE_SIZE = 4;
+
+    static final int OBJECT = 1;
+    static final int ARRAY = 2;
+    static final int STRING = 3;
+    static final int OTHER = 4;
+
+    static final int KIND_MASK = 0x7;
+
+    /**
+     * Flag for strings and other tokens that contain backslashes.
+     */
+    static final int ESCAPED = 0x8;
+
+    static final int COUNT_SHIFT = 4;
+
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * The tape starts with room for this many nodes and doubles as needed
+     * so that small documents don't get a tape sized for their length.
+     */
+    private static final int INITIAL_NODES = 64;
+
+    /**
+     * The largest tape, in ints.
+     */
+    private static final int MAX_TAPE_SIZE = (Integer.MAX_VALUE - 8) & ~(NODE_SIZE-1);
+
+    private final CharSequence json;
+    private final JSONConfig cfg;
+    private int[] tape;
+    private int size;
+
+    // parser limits.
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final int maxNumberLength;
+    private final int maxElements;
+    private int elementCount;
+
+    /**
+     * Scan the given JSON and build the tape.
+     *
+     * @param json the JSON text.
+     * @param cfg the config object.
+     */
+    JSONTape( CharSequence json, JSONConfig cfg )
+    {
+        this.json = json;
+        this.cfg = cfg;
+        maxDepth = JSONTokenReader.getLimit(cfg.getMaxParseDepth());
+        maxStringLength = JSONTokenReader.getLimit(cfg.getMaxParseStringLength());
+        maxNumberLength = JSONTokenReader.getLimit(cfg.getMaxParseNumberLength());
+        maxElements = JSONTokenReader.getLimit(cfg.getMaxParseElements());
+        elementCount = 0;
+        tape = new int[NODE_SIZE * INITIAL_NODES];
+        size = 0;
+        scan();
+    }
+
+    /**
+     * Get the JSON text.
+     *
+     * @return the JSON text.
+     */
+    CharSequence getJSON()
+    {
+        return json;
+    }
+
+    /**
+     * Get the config object.
+     *
+     * @return the config object.
+     */
+    JSONConfig getJSONConfig()
+    {
+        return cfg;
+    }
+
+    /**
+     * Get the kind of the node at the given tape index.
+     *
+     * @param node the tape index of the node.
+     * @return the kind.
+     */
+    int getKind( int node )
+    {
+        return tape[node] & KIND_MASK;
+    }
+
+    /**
+     * Check if the node at the given tape index contains backslashes.
+     *
+     * @param node the tape index of the node.
+     * @return true if the node contains backslashes.
+     */
+    boolean isEscaped( int node )
+    {
+        return (tape[node] & ESCAPED) != 0;
+    }
+
+    /**
+     * Get the number of members or elements of the object or array at the
+     * given tape index.
+     *
+     * @param node the tape index of the node.
+     * @return the count.
+     */
+    int getCount( int node )
+    {
+        return tape[node] >>> COUNT_SHIFT;
+    }
+
+    /**
+     * Get the offset of the start of the node at the given tape index.
+     *
+     * @param node the tape index of the node.
+     * @return the offset.
+     */
+    int getStart( int node )
+    {
+        return tape[node+1];
+    }
+
+    /**
+     * Get the offset of the end of the node at the given tape index.
+     *
+     * @param node the tape index of the node.
+     * @return the offset.
+     */
+    int getEnd( int node )
+    {
+        return tape[node+2];
+    }
+
+    /**
+     * Get the tape index of the node after the given node and all of its
+     * contents.
+     *
+     * @param node the tape index of the node.
+     * @return the tape index of the next node.
+     */
+    int getNext( int node )
+    {
+        return tape[node+3];
+    }
+
+    /**
+     * Get the text of the node at the given tape index, without quotes.
+     *
+     * @param node the tape index of the node.
+     * @return the text.
+     */
+    String getText( int node )
+    {
+        return json.subSequence(getStart(node), getEnd(node)).toString();
+    }
+
+    /**
+     * Scan the input. This is done with a stack instead of recursion so that
+     * deeply nested input can't overflow the call stack.
+     */
+    private void scan()
+    {
+        int len = json.length();
+        int[] stack = new int[INITIAL_DEPTH];
+        int depth = 0;
+        boolean wantValue = true;
+        int i = skipWhiteSpace(0);
+
+        if ( i >= len ){
+            throw new JSONParserException(len, cfg);
+        }
+
+        while ( true ){
+            if ( wantValue ){
+                char ch = json.charAt(i);
+                if ( ch == '{' || ch == '[' ){
+                    if ( depth == stack.length ){
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    boolean isObject = ch == '{';
+                    stack[depth++] = addNode(isObject ? OBJECT : ARRAY, i, 0);
+                    if ( depth > maxDepth ){
+                        throw new JSONParserException("maxParseDepth", maxDepth, i, cfg);
+                    }
+                    i = skipWhiteSpace(i+1);
+                    if ( i >= len ){
+                        throw new JSONParserException(len, cfg);
+                    }
+                    if ( json.charAt(i) == (isObject ? '}' : ']') ){
+                        // empty object or array.
+                        int node = stack[--depth];
+                        tape[node+2] = i+1;
+                        tape[node+3] = size;
+                        i = skipWhiteSpace(i+1);
+                        wantValue = false;
+                    }else{
+                        if ( isObject ){
+                            i = scanKey(i);
+                        }
+                        continue;
+                    }
+                }else{
+                    i = scanValue(i);
+                    wantValue = false;
+                }
+            }
+
+            // after a value.
+            if ( depth == 0 ){
+                // anything after the first value is ignored, like the parser.
+                break;
+            }
+            if ( i >= len ){
+                throw new JSONParserException(len, cfg);
+            }
+            int container = stack[depth-1];
+            boolean isObject = getKind(container) == OBJECT;
+            tape[container] += 1 << COUNT_SHIFT;
+            if ( ++elementCount > maxElements ){
+                throw new JSONParserException("maxParseElements", maxElements, i, cfg);
+            }
+            char ch = json.charAt(i);
+            if ( ch == ',' ){
+                i = skipWhiteSpace(i+1);
+                if ( i >= len ){
+                    throw new JSONParserException(len, cfg);
+                }
+                if ( isObject ){
+                    i = scanKey(i);
+                }
+                wantValue = true;
+            }else if ( ch == (isObject ? '}' : ']') ){
+                tape[container+2] = i+1;
+                tape[container+3] = size;
+                --depth;
+                i = skipWhiteSpace(i+1);
+            }else{
+                throw new JSONParserException(getBadData(i), i, cfg);
+            }
+        }
+    }
+
+    /**
+     * Scan a key and the colon after it.
+     *
+     * @param i the offset of the start of the key.
+     * @return the offset of the value after the colon.
+     */
+    private int scanKey( int i )
+    {
+        int len = json.length();
+        char ch = json.charAt(i);
+        if ( ch == '"' || ch == '\'' ){
+            i = scanString(i, ch);
+        }else{
+            int start = i;
+            int flags = 0;
+            while ( i < len && (ch = json.charAt(i)) != ':' && ! Character.isWhitespace(ch) ){
+                if ( ch == '\\' ){
+                    flags = ESCAPED;
+                }else if ( ch == ',' || ch == '{' || ch == '}' || ch == '[' || ch == ']' || ch == '"' || ch == '\'' ){
+                    throw new JSONParserException(getBadData(start), start, cfg);
+                }
+                ++i;
+            }
+            if ( i == start ){
+                throw new JSONParserException(getBadData(start), start, cfg);
+            }
+            checkStringLength(start, i);
+            addNode(OTHER | flags, start, i);
+            i = skipWhiteSpace(i);
+        }
+        if ( i >= len ){
+            throw new JSONParserException(len, cfg);
+        }
+        if ( json.charAt(i) != ':' ){
+            throw new JSONParserException(getBadData(i), i, cfg);
+        }
+        i = skipWhiteSpace(i+1);
+        if ( i >= len ){
+            throw new JSONParserException(len, cfg);
+        }
+        return i;
+    }
+
+    /**
+     * Scan a value that is not an object or array.
+     *
+     * @param i the offset of the start of the value.
+     * @return the offset of the next non-whitespace char after the value.
+     */
+    private int scanValue( int i )
+    {
+        char ch = json.charAt(i);
+        if ( ch == '"' || ch == '\'' ){
+            return scanString(i, ch);
+        }
+
+        // numbers, literals, new Date() and the like end at the next
+        // structural char outside of quotes, same as JSONTokenReader.
+        int len = json.length();
+        int start = i;
+        int end = i;
+        int flags = 0;
+        while ( i < len ){
+            ch = json.charAt(i);
+            if ( ch == ',' || ch == '}' || ch == ']' || ch == ':' || ch == '{' || ch == '[' ){
+                break;
+            }else if ( ch == '"' || ch == '\'' ){
+                i = findCloseQuote(i+1, ch);
+                end = i+1;
+            }else if ( ch == '\\' ){
+                flags = ESCAPED;
+                end = Math.min(i+2, len);
+                ++i;
+            }else if ( ! Character.isWhitespace(ch) ){
+                end = i+1;
+            }
+            ++i;
+        }
+        if ( end == start ){
+            throw new JSONParserException(getBadData(start), start, cfg);
+        }
+        checkStringLength(start, end);
+        if ( end - start > maxNumberLength ){
+            // only classify the ones that are too long to be allowed numbers.
+            int numberType = NumericClassifier.classifyJavascript(json.subSequence(start, end).toString());
+            if ( numberType != NumericClassifier.NOT_A_NUMBER ){
+                throw new JSONParserException("maxParseNumberLength", maxNumberLength, start, cfg);
+            }
+        }
+        addNode(OTHER | flags, start, end);
+        return skipWhiteSpace(i);
+    }
+
+    /**
+     * Scan a quoted string and add a node for it.
+     *
+     * @param i the offset of the open quote.
+     * @param q the quote char.
+     * @return the offset of the next non-whitespace char after the string.
+     */
+    private int scanString( int i, char q )
+    {
+        int node = addNode(STRING, i+1, 0);
+        int end = findCloseQuote(i+1, q);
+        checkStringLength(i+1, end);
+        tape[node+2] = end;
+        for ( int j = i+1; j < end; j++ ){
+            if ( json.charAt(j) == '\\' ){
+                tape[node] |= ESCAPED;
+                break;
+            }
+        }
+        return skipWhiteSpace(end+1);
+    }
+
+    /**
+     * Find the quote that closes a string.
+     *
+     * @param i the offset of the first char after the open quote.
+     * @param q the quote char.
+     * @return the offset of the close quote.
+     */
+    private int findCloseQuote( int i, char q )
+    {
+        int len = json.length();
+        while ( i < len ){
+            char ch = json.charAt(i);
+            if ( ch == q ){
+                return i;
+            }else if ( ch == '\\' ){
+                ++i;
+            }
+            ++i;
+        }
+        throw new JSONParserException(q, cfg);
+    }
+
+    /**
+     * Check the length of a string or other token against
+     * {@link JSONConfig#getMaxParseStringLength()}.
+     *
+     * @param start the offset of the start of the string.
+     * @param end the offset of the end of the string.
+     */
+    private void checkStringLength( int start, int end )
+    {
+        if ( end - start > maxStringLength ){
+            throw new JSONParserException("maxParseStringLength", maxStringLength, start, cfg);
+        }
+    }
+
+    /**
+     * Skip whitespace.
+     *
+     * @param i the current offset.
+     * @return the offset of the next non-whitespace char or the length of the
+     *         input if there isn't one.
+     */
+    private int skipWhiteSpace( int i )
+    {
+        int len = json.length();
+        while ( i < len && Character.isWhitespace(json.charAt(i)) ){
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * Add a node to the tape.
+     *
+     * @param kind the kind and flags.
+     * @param start the start offset.
+     * @param end the end offset.
+     * @return the tape index of the new node.
+     */
+    private int addNode( int kind, int start, int end )
+    {
+        if ( size == tape.length ){
+            if ( size == MAX_TAPE_SIZE ){
+                throw new OutOfMemoryError();
+            }
+            tape = Arrays.copyOf(tape, size <= MAX_TAPE_SIZE / 2 ? size * 2 : MAX_TAPE_SIZE);
+        }
+        int node = size;
+        tape[node] = kind;
+        tape[node+1] = start;
+        tape[node+2] = end;
+        tape[node+3] = node + NODE_SIZE;
+        size += NODE_SIZE;
+        return node;
+    }
+
+    /**
+     * Get the start of some bad data for an error message.
+     *
+     * @param i the offset of the bad data.
+     * @return up to 20 chars of the input starting at the offset.
+     */
+    private String getBadData( int i )
+    {
+        return json.subSequence(i, Math.min(i+20, json.length())).toString();
+    }
+}
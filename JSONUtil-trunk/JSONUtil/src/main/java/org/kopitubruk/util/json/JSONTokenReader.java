@@ -39,9 +39,29 @@ class JSONTokenReader
     // the config object.
     private JSONConfig cfg;
 
+    // object keys and shapes.
+    private KeyTable keyTable;
+
     // the count of characters that have been read.
     private long charCount = 0;
 
+    /**
+     * Binding to classes is recursive so its depth is always limited to keep
+     * deeply nested input from overflowing the stack.
+     */
+    static final int MAX_BINDING_DEPTH = 1000;
+
+    // parser limits. Integer.MAX_VALUE if there is no limit.
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final int maxElements;
+
+    // the depth of the object or array being parsed.
+    private int depth = 0;
+
+    // the count of array elements and object members that have been parsed.
+    private int elementCount = 0;
+
     /**
      * Create a TokenReader.
      *
@@ -49,9 +69,28 @@ class JSONTokenReader
      * @param cfg the config object.
      */
     JSONTokenReader( Reader json, JSONConfig cfg )
+    {
+        this(json, cfg, 0);
+    }
+
+    /**
+     * Create a TokenReader for input that starts part way through the JSON
+     * text, so that positions in error messages are for the whole text.
+     *
+     * @param json The reader to get the JSON data from.
+     * @param cfg the config object.
+     * @param charCount the position of the start of the input in the JSON text.
+     * @since 1.10.5
+     */
+    JSONTokenReader( Reader json, JSONConfig cfg, long charCount )
     {
         this.json = json;
         this.cfg = cfg;
+        this.charCount = charCount;
+        keyTable = KeyTable.getInstance(cfg);
+        maxDepth = getLimit(cfg.getMaxParseDepth());
+        maxStringLength = getLimit(cfg.getMaxParseStringLength());
+        maxElements = getLimit(cfg.getMaxParseElements());
     }
 
     /**
@@ -64,6 +103,92 @@ class JSONTokenReader
         return cfg;
     }
 
+    /**
+     * Get the table of object keys and shapes for this parse.
+     *
+     * @return the key table.
+     * @since 1.10.5
+     */
+    KeyTable getKeyTable()
+    {
+        return keyTable;
+    }
+
+    /**
+     * Get the number of chars that have been read, for error messages.
+     *
+     * @return the number of chars.
+     * @since 1.10.5
+     */
+    long getCharCount()
+    {
+        return charCount;
+    }
+
+    /**
+     * Note the start of an object or array and check the depth against
+     * {@link JSONConfig#getMaxParseDepth()}.
+     *
+     * @since 1.10.5
+     */
+    void enterContainer()
+    {
+        if ( ++depth > maxDepth ){
+            throw new JSONParserException("maxParseDepth", maxDepth, charCount, cfg);
+        }
+    }
+
+    /**
+     * Note the start of an object or array that is being bound to a class and
+     * check the depth against the lower of {@link JSONConfig#getMaxParseDepth()}
+     * and {@link #MAX_BINDING_DEPTH}.
+     *
+     * @since 1.10.5
+     */
+    void enterBoundContainer()
+    {
+        int limit = Math.min(maxDepth, MAX_BINDING_DEPTH);
+        if ( ++depth > limit ){
+            throw new JSONParserException("maxParseDepth", limit, charCount, cfg);
+        }
+    }
+
+    /**
+     * Note the end of an object or array.
+     *
+     * @since 1.10.5
+     */
+    void exitContainer()
+    {
+        --depth;
+    }
+
+    /**
+     * Count an array element or object member and check it against
+     * {@link JSONConfig#getMaxParseElements()}.
+     *
+     * @since 1.10.5
+     */
+    void countElement()
+    {
+        if ( ++elementCount > maxElements ){
+            throw new JSONParserException("maxParseElements", maxElements, charCount, cfg);
+        }
+    }
+
+    /**
+     * Convert a limit from a config object to a value that can be compared
+     * without checking for no limit.
+     *
+     * @param limit the limit from the config object.
+     * @return the limit or {@link Integer#MAX_VALUE} if there is no limit.
+     * @since 1.10.5
+     */
+    static int getLimit( int limit )
+    {
+        return limit > 0 ? limit : Integer.MAX_VALUE;
+    }
+
     /**
      * Get the next token.
      *
@@ -105,10 +230,22 @@ class JSONTokenReader
             default:
                 // something else.  need to go to the next token or end of input
                 // to get this token.
-                return matchOthers(getOtherTokenString(codePoint));
+                return matchOthers(getOtherTokenString(codePoint), charCount, cfg);
         }
     }
 
+    /**
+     * Get the shared token for a structural char.
+     *
+     * @param ch the char.
+     * @return the token or null if the char is not structural.
+     * @since 1.10.5
+     */
+    static Token getSimpleToken( char ch )
+    {
+        return SIMPLE_TOKENS.get(ch);
+    }
+
     /**
      * Get a string for any type of token other than string or simple tokens.
      *
@@ -139,6 +276,9 @@ class JSONTokenReader
                     escapeCount = 0;
                 }
             }
+            if ( buf.length() > maxStringLength ){
+                throw new JSONParserException("maxParseStringLength", maxStringLength, charCount, cfg);
+            }
             codePoint = nextCodePoint();
         }while ( codePoint >= 0 );
 
@@ -150,26 +290,27 @@ class JSONTokenReader
      * Match other possible tokens that could occur in the stream.
      *
      * @param str the string to match.
+     * @param charCount the position in the input for error messages.
+     * @param cfg the config object.
      * @return the token.
+     * @since 1.10.5
      */
-    private Token matchOthers( String str )
+    static Token matchOthers( String str, long charCount, JSONConfig cfg )
     {
-        // check for new Date(), numbers, literals and unquoted ids.
+        // check for numbers, new Date(), literals and unquoted ids.
+        switch ( NumericClassifier.classifyJavascript(str) ){
+            case NumericClassifier.DECIMAL:
+                checkNumberLength(str, charCount, cfg);
+                return new Token(TokenType.FLOATING_POINT_NUMBER, str);
+            case NumericClassifier.INTEGER:
+                checkNumberLength(str, charCount, cfg);
+                return new Token(TokenType.INTEGER_NUMBER, str);
+        }
         Matcher matcher = JSONParser.NEW_DATE_PAT.matcher(str);
         if ( matcher.matches() ){
             String qs = matcher.group(2);
             return new Token(TokenType.DATE, qs.substring(1, qs.length()-1));
         }
-        matcher = JSONParser.JAVASCRIPT_FLOATING_POINT_PAT.matcher(str);
-        if ( matcher.matches() ){
-            String number = matcher.group(1);
-            return new Token(TokenType.FLOATING_POINT_NUMBER, number);
-        }
-        matcher = JSONParser.JAVASCRIPT_INTEGER_PAT.matcher(str);
-        if ( matcher.matches() ){
-            String number = matcher.group(1);
-            return new Token(TokenType.INTEGER_NUMBER, number);
-        }
         matcher = JSONParser.LITERAL_PAT.matcher(str);
         if ( matcher.matches() ){
             String literal = matcher.group(1);
@@ -183,6 +324,23 @@ class JSONTokenReader
         throw new JSONParserException(str, charCount, cfg);
     }
 
+    /**
+     * Check a number against {@link JSONConfig#getMaxParseNumberLength()}
+     * before anything tries to convert it.
+     *
+     * @param str the number.
+     * @param charCount the position in the input for error messages.
+     * @param cfg the config object.
+     * @since 1.10.5
+     */
+    private static void checkNumberLength( String str, long charCount, JSONConfig cfg )
+    {
+        int maxNumberLength = getLimit(cfg.getMaxParseNumberLength());
+        if ( str.length() > maxNumberLength ){
+            throw new JSONParserException("maxParseNumberLength", maxNumberLength, charCount, cfg);
+        }
+    }
+
     /**
      * Get the string from the stream that is enclosed by the given quote
      * which has just been read from the stream.
@@ -219,6 +377,9 @@ class JSONTokenReader
                     str.append(ch);
                     escapeCount = 0;
                 }
+                if ( str.length() > maxStringLength ){
+                    throw new JSONParserException("maxParseStringLength", maxStringLength, charCount, cfg);
+                }
             }
         }
 
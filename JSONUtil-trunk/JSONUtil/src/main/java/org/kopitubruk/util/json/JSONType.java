@@ -22,42 +22,95 @@ import java.util.ResourceBundle;
 /**
  * Create and provide flags about various recursible JSON types for a given
  * property value.
+ * <p>
+ * The flags only depend on the class of the value except for reflection,
+ * which depends on the config object. Classification by class is cached with
+ * a {@link ClassValue} and the results are shared immutable instances so that
+ * getting the type of a value doesn't allocate anything. The cached value is
+ * an {@link Integer} index into {@link #KINDS} rather than the JSONType
+ * itself because values attached to JDK classes such as {@link String} or
+ * {@link java.util.HashMap} would otherwise keep this library's class loader
+ * from being unloaded.
  *
  * @author Bill Davidson
  * @since 1.9
  */
 class JSONType
 {
-    private boolean isJSONAble;
-    private boolean isMapType;
-    private boolean isResourceBundle;
-    private boolean isArrayType;
-    private boolean isReflectType;
+    private static final JSONType JSONABLE = new JSONType(true, false, false, false, false);
+    private static final JSONType RESOURCE_BUNDLE = new JSONType(false, true, true, false, false);
+    private static final JSONType MAP = new JSONType(false, true, false, false, false);
+    private static final JSONType ARRAY = new JSONType(false, false, false, true, false);
+    private static final JSONType REFLECT = new JSONType(false, false, false, false, true);
+    private static final JSONType SIMPLE = new JSONType(false, false, false, false, false);
+
+    // indexes into KINDS.
+    private static final Integer SIMPLE_KIND = 0;
+    private static final Integer JSONABLE_KIND = 1;
+    private static final Integer RESOURCE_BUNDLE_KIND = 2;
+    private static final Integer MAP_KIND = 3;
+    private static final Integer ARRAY_KIND = 4;
+
+    private static final JSONType[] KINDS = { SIMPLE, JSONABLE, RESOURCE_BUNDLE, MAP, ARRAY };
 
     /**
-     * Create the JSONType.
-     *
-     * @param propertyValue The value to check.
-     * @param cfg The config object (used to find reflected object types).
+     * Cache of the kind of each class, not counting reflection.
      */
-    JSONType( Object propertyValue, JSONConfig cfg )
-    {
-        isJSONAble = propertyValue instanceof JSONAble;
-        if ( isJSONAble ){
-            isMapType = isResourceBundle = isArrayType = isReflectType = false;
-        }else{
-            isResourceBundle = propertyValue instanceof ResourceBundle;
-            isMapType = isResourceBundle || propertyValue instanceof Map;
-            if ( isMapType ){
-                isArrayType = isReflectType = false;
+    private static final ClassValue<Integer> TYPES = new ClassValue<Integer>(){
+        @Override
+        protected Integer computeValue( Class<?> clazz )
+        {
+            if ( JSONAble.class.isAssignableFrom(clazz) ){
+                return JSONABLE_KIND;
+            }else if ( ResourceBundle.class.isAssignableFrom(clazz) ){
+                return RESOURCE_BUNDLE_KIND;
+            }else if ( Map.class.isAssignableFrom(clazz) ){
+                return MAP_KIND;
+            }else if ( Iterable.class.isAssignableFrom(clazz) || Enumeration.class.isAssignableFrom(clazz) || clazz.isArray() ){
+                return ARRAY_KIND;
             }else{
-                Class<?> clazz = null;
-                isArrayType = propertyValue instanceof Iterable ||
-                              propertyValue instanceof Enumeration ||
-                              (clazz = propertyValue.getClass()).isArray();
-                isReflectType = isArrayType ? false : cfg.isReflectClass(clazz);
+                return SIMPLE_KIND;
             }
         }
+    };
+
+    private final boolean isJSONAble;
+    private final boolean isMapType;
+    private final boolean isResourceBundle;
+    private final boolean isArrayType;
+    private final boolean isReflectType;
+
+    /**
+     * Get the JSONType for a value.
+     *
+     * @param propertyValue The value to check. Must not be null.
+     * @param cfg The config object (used to find reflected object types).
+     * @return the type.
+     * @since 1.10.5
+     */
+    static JSONType getInstance( Object propertyValue, JSONConfig cfg )
+    {
+        Class<?> clazz = propertyValue.getClass();
+        JSONType type = KINDS[TYPES.get(clazz)];
+        return type == SIMPLE && cfg.isReflectClass(clazz) ? REFLECT : type;
+    }
+
+    /**
+     * Create a JSONType.
+     *
+     * @param isJSONAble true if the type is {@link JSONAble}
+     * @param isMapType true if the type is a {@link Map} or {@link ResourceBundle}
+     * @param isResourceBundle true if the type is {@link ResourceBundle}
+     * @param isArrayType true if the type is {@link Iterable}, {@link Enumeration} or an array.
+     * @param isReflectType true if the type is reflected.
+     */
+    private JSONType( boolean isJSONAble, boolean isMapType, boolean isResourceBundle, boolean isArrayType, boolean isReflectType )
+    {
+        this.isJSONAble = isJSONAble;
+        this.isMapType = isMapType;
+        this.isResourceBundle = isResourceBundle;
+        this.isArrayType = isArrayType;
+        this.isReflectType = isReflectType;
     }
 
     /**
@@ -113,11 +166,15 @@ class JSONType
     }
 
     /**
-     * Force isReflectType to true unless it's another recurisble type.
+     * Get the type with isReflectType forced to true unless it's another
+     * recursible type.
+     *
+     * @return the type.
+     * @since 1.10.5
      */
-    void forceReflectType()
+    JSONType forceReflectType()
     {
-        isReflectType = ! (isJSONAble || isMapType || isArrayType);
+        return isJSONAble || isMapType || isArrayType ? this : REFLECT;
     }
 
     /**
@@ -16,10 +16,10 @@
 package org.kopitubruk.util.json;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.FieldPosition;
 import java.text.NumberFormat;
 import java.util.Arrays;
 import java.util.Collection;
@@ -32,13 +32,16 @@ import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
 
 /**
  * <p>
  *   This class converts certain common types of objects into JSON using the
  *   static methods {@link #toJSON(Object)}, {@link #toJSON(Object,JSONConfig)},
- *   {@link #toJSON(Object,Writer)} and {@link #toJSON(Object,JSONConfig,Writer)}.
+ *   {@link #toJSON(Object,Writer)}, {@link #toJSON(Object,JSONConfig,Writer)}
+ *   and {@link #toJSON(Object,JSONConfig,java.io.OutputStream)}.
  *   Collections are traversed and encoded, allowing complex data graphs to
  *   be encoded in one call. It's more flexible than the org.json library and in
  *   many cases may allow the use of existing data structures directly without
@@ -182,18 +185,6 @@ import java.util.regex.Pattern;
  */
 public class JSONUtil
 {
-    /**
-     * For strings that are really numbers.  ECMA JSON spec doesn't allow octal,
-     * hexadecimal, NaN or Infinity in JSON.  It also doesn't allow for a "+"
-     * sign to start a number.
-     */
-    private static final Pattern JSON_NUMBER_PAT = Pattern.compile("^-?(?:(?:\\d+(?:\\.\\d+)?)|(?:\\.\\d+))(?:[eE][-+]?\\d+)?$");
-
-    /**
-     * Check for octal numbers, which aren't allowed in JSON.
-     */
-    private static final Pattern OCTAL_NUMBER_PAT = Pattern.compile("^-?0[0-7]+$");
-
     /**
      * <p>
      *   Regular expression which should cover all valid Javascript property
@@ -295,6 +286,18 @@ public class JSONUtil
                                     /* literals */
                           "true", "false", "null", "undefined", "Infinity", "NaN"));
 
+    /**
+     * Collections, arrays and maps with at least this many elements are
+     * encoded in parallel if {@link JSONConfig#isUseParallelEncoding()} is
+     * true.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * Minimum number of elements in each chunk for parallel encoding.
+     */
+    private static final int MIN_CHUNK_SIZE = 1024;
+
     /**
      * Convert an object to JSON and return it as a {@link String}. All options
      * will use defaults.
@@ -316,13 +319,15 @@ public class JSONUtil
      */
     public static String toJSON( Object obj, JSONConfig cfg )
     {
-        Writer json = new StringWriter();
+        StringWriter json = StringWriter.acquire();
         try{
             toJSON(obj, cfg, json);
         }catch ( IOException e ){
             // Won't happen because StringWriter doesn't throw IOException
         }
-        return json.toString();
+        String result = json.toString();
+        json.release();
+        return result;
     }
 
     /**
@@ -372,6 +377,44 @@ public class JSONUtil
         }
     }
 
+    /**
+     * Convert an object to JSON and write it to the given {@link OutputStream}
+     * encoded as UTF-8. All options will be default.
+     *
+     * @param obj An object to be converted to JSON.
+     * @param out The stream to write the UTF-8 encoded JSON data to.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    public static void toJSON( Object obj, OutputStream out ) throws IOException
+    {
+        toJSON(obj, null, out);
+    }
+
+    /**
+     * Convert an object to JSON and write it to the given {@link OutputStream}
+     * encoded as UTF-8. This encodes characters directly into bytes in a
+     * pooled buffer, which avoids the overhead of wrapping the stream in an
+     * {@link java.io.OutputStreamWriter}. ASCII, which includes all of the
+     * structural characters of JSON and all escapes, is copied straight into
+     * the buffer. The stream is flushed but not closed when the JSON is done.
+     *
+     * @param obj An object to be converted to JSON.
+     * @param cfg A configuration object to use to set various options. If null then defaults will be used.
+     * @param out The stream to write the UTF-8 encoded JSON data to.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    public static void toJSON( Object obj, JSONConfig cfg, OutputStream out ) throws IOException
+    {
+        UTF8ByteWriter json = new UTF8ByteWriter(out);
+        try{
+            toJSON(obj, cfg, json);
+        }finally{
+            json.close();
+        }
+    }
+
     /**
      * <p>
      *   Append the given value to the given writer. There is special handling for
@@ -398,12 +441,27 @@ public class JSONUtil
         if ( propertyValue == null ){
             json.write("null");
         }else{
-            JSONType jsonType = new JSONType(propertyValue, cfg);
-            if ( jsonType.isRecursible() ){
-                appendRecursiblePropertyValue(propertyValue, json, cfg, jsonType);
-            }else{
-                appendSimplePropertyValue(propertyValue, json, cfg, jsonType);
-            }
+            appendPropertyValue(propertyValue, json, cfg, JSONType.getInstance(propertyValue, cfg));
+        }
+    }
+
+    /**
+     * Append a non-null property value to the given JSON writer when its
+     * type is already known.
+     *
+     * @param propertyValue The value to append. Must not be null.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @param jsonType The type of propertyValue.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendPropertyValue( Object propertyValue, Writer json, JSONConfig cfg, JSONType jsonType ) throws IOException
+    {
+        if ( jsonType.isRecursible() ){
+            appendRecursiblePropertyValue(propertyValue, json, cfg, jsonType);
+        }else{
+            appendSimplePropertyValue(propertyValue, json, cfg, jsonType);
         }
     }
 
@@ -421,9 +479,9 @@ public class JSONUtil
     {
         // check for loops.
         DataStructureLoopDetector loopDetector = null;
-        boolean detectDataStructureLoops = cfg.isDetectDataStructureLoops();
-        if ( detectDataStructureLoops ){
-            loopDetector = new DataStructureLoopDetector(cfg, propertyValue);
+        if ( cfg.isDetectDataStructureLoops() ){
+            loopDetector = cfg.getLoopDetector();
+            loopDetector.push(propertyValue, cfg);
         }
 
         if ( jsonType.isJSONAble() ){
@@ -441,13 +499,21 @@ public class JSONUtil
             }else if ( jsonType.isReflectType() ){
                 ReflectedObjectMapBuilder builder = new ReflectedObjectMapBuilder(propertyValue, cfg);
                 builder.init();
-                map = builder.buildReflectedObjectMap();
+                ReflectionData reflectionData = builder.getReflectionData();
+                if ( reflectionData != null ){
+                    // cached -- no need for a map.
+                    appendReflectedObjectValue(propertyValue, reflectionData, json, cfg);
+                }else{
+                    map = builder.buildReflectedObjectMap();
+                }
+            }
+            if ( map != null ){
+                appendObjectPropertyValue(map, json, cfg);
             }
-            appendObjectPropertyValue(map, json, cfg);
         }
 
-        if ( detectDataStructureLoops ){
-            loopDetector.popDataStructureStack();
+        if ( loopDetector != null ){
+            loopDetector.pop(propertyValue, cfg);
         }
     }
 
@@ -481,8 +547,7 @@ public class JSONUtil
             writeString(propertyValue.toString(), json, cfg, checkNum);
         }else{
             // unknown object and reflection requested.
-            jsonType.forceReflectType();
-            appendRecursiblePropertyValue(propertyValue, json, cfg, jsonType);
+            appendRecursiblePropertyValue(propertyValue, json, cfg, jsonType.forceReflectType());
         }
     }
 
@@ -496,16 +561,39 @@ public class JSONUtil
      */
     private static void appendNumber( Number num, Writer json, JSONConfig cfg ) throws IOException
     {
+        if ( num instanceof LazyNumber ){
+            num = ((LazyNumber)num).getNumber();
+        }
         NumberFormat fmt = cfg.getNumberFormat(num);
         if ( fmt == null  ){
-            String numericString = num.toString();
-            if ( isSafeJsonNumber(num, null, cfg) ){
-                json.write(numericString);
+            if ( num instanceof Integer || num instanceof Short || num instanceof Byte ){
+                NumberWriter.writeInt(num.intValue(), json, NumberWriter.getBuffer());
+            }else if ( num instanceof Double ){
+                double value = num.doubleValue();
+                if ( Double.isFinite(value) ){
+                    NumberWriter.writeDouble(value, json, NumberWriter.getBuffer());
+                }else{
+                    fastWriteString(num.toString(), json);
+                }
+            }else if ( num instanceof Long ){
+                appendLong(num.longValue(), json, cfg, NumberWriter.getBuffer());
+            }else if ( num instanceof Float ){
+                float value = num.floatValue();
+                if ( Float.isFinite(value) ){
+                    NumberWriter.writeFloat(value, json, NumberWriter.getBuffer());
+                }else{
+                    fastWriteString(num.toString(), json);
+                }
             }else{
-                fastWriteString(numericString, json);
+                String numericString = num.toString();
+                if ( isSafeJsonNumber(num, cfg) ){
+                    json.write(numericString);
+                }else{
+                    fastWriteString(numericString, json);
+                }
             }
         }else{
-            String numericString = fmt.format(num, new StringBuffer(), new FieldPosition(0)).toString();
+            String numericString = NumberWriter.format(fmt, num);
             if ( isValidJSONNumber(numericString, cfg, num) ){
                 json.write(numericString);
             }else{
@@ -516,6 +604,29 @@ public class JSONUtil
         }
     }
 
+    /**
+     * Append a long to the output. If preciseNumbers is set and the value
+     * can't be represented exactly by a double, then it is quoted.
+     *
+     * @param value The value.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @param buf The number scratch buffer for this thread.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendLong( long value, Writer json, JSONConfig cfg, char[] buf ) throws IOException
+    {
+        if ( cfg.isPreciseNumbers() && (long)(double)value != value ){
+            // loses precision in double.
+            json.write('"');
+            NumberWriter.writeLong(value, json, buf);
+            json.write('"');
+        }else{
+            NumberWriter.writeLong(value, json, buf);
+        }
+    }
+
     /**
      * Append a date value to the given JSON buffer.
      *
@@ -549,23 +660,369 @@ public class JSONUtil
      */
     private static void appendArrayPropertyValue( Object propertyValue, Writer json, JSONConfig cfg ) throws IOException
     {
+        if ( propertyValue.getClass().isArray() && appendPrimitiveArray(propertyValue, json, cfg) ){
+            return;
+        }
+
         boolean didStart = false;
+        Object[] values = getParallelValues(propertyValue, cfg);
 
         json.write('[');
         IndentPadding.incPadding(cfg);
-        for ( Object value : new JSONArrayData(propertyValue) ){
-            if ( didStart ){
-                json.write(',');
-            }else{
-                didStart = true;
+        if ( values != null ){
+            appendInParallel(values, null, json, cfg);
+        }else{
+            for ( Object value : new JSONArrayData(propertyValue) ){
+                if ( didStart ){
+                    json.write(',');
+                }else{
+                    didStart = true;
+                }
+                IndentPadding.appendPadding(cfg, json);
+                appendPropertyValue(value, json, cfg);      // recurse on the value.
             }
-            IndentPadding.appendPadding(cfg, json);
-            appendPropertyValue(value, json, cfg);      // recurse on the value.
         }
         IndentPadding.decAppendPadding(cfg, json);
         json.write(']');
     }
 
+    /**
+     * Get the values of a large collection or array of objects as an array
+     * if they should be encoded in parallel.
+     *
+     * @param propertyValue The collection or array.
+     * @param cfg A configuration object to use to set various options.
+     * @return The values or null if they should not be encoded in parallel.
+     * @since 1.10.5
+     */
+    private static Object[] getParallelValues( Object propertyValue, JSONConfig cfg )
+    {
+        if ( cfg.isUseParallelEncoding() ){
+            if ( propertyValue instanceof Object[] ){
+                Object[] values = (Object[])propertyValue;
+                return values.length >= PARALLEL_THRESHOLD ? values : null;
+            }else if ( propertyValue instanceof Collection ){
+                Collection<?> values = (Collection<?>)propertyValue;
+                return values.size() >= PARALLEL_THRESHOLD ? values.toArray() : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Encode the elements of an array or the properties of an object in
+     * chunks on the common {@link ForkJoinPool} and write the chunks out in
+     * order. Each chunk is written as soon as it and all of the chunks before
+     * it are done.
+     *
+     * @param values The values.
+     * @param names The property names or null if this is an array.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendInParallel( Object[] values, String[] names, Writer json, JSONConfig cfg ) throws IOException
+    {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, values.length / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        int chunkCount = (values.length + chunkSize - 1) / chunkSize;
+        EncodeChunk[] chunks = new EncodeChunk[chunkCount];
+
+        IndentPadding pad = cfg.getIndentPadding();
+        if ( pad != null ){
+            // the chunks pad with their own copies. this padding still needs
+            // to know that something was padded before the closing bracket.
+            pad.getPadding();
+        }
+
+        for ( int i = 0; i < chunkCount; i++ ){
+            int from = i * chunkSize;
+            chunks[i] = new EncodeChunk(values, names, from, Math.min(from + chunkSize, values.length), cfg);
+            chunks[i].fork();
+        }
+        for ( int i = 0; i < chunkCount; i++ ){
+            try{
+                chunks[i].join();
+                chunks[i].writeTo(json);
+            }catch ( IOException|RuntimeException|Error e ){
+                for ( int j = i+1; j < chunkCount; j++ ){
+                    chunks[j].cancel(false);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Append a range of the elements of an array or the properties of an
+     * object.
+     *
+     * @param values The values.
+     * @param names The property names or null if this is an array.
+     * @param from The index of the first value.
+     * @param to The index after the last value.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendValues( Object[] values, String[] names, int from, int to, Writer json, JSONConfig cfg ) throws IOException
+    {
+        if ( names == null ){
+            for ( int i = from; i < to; i++ ){
+                if ( i > 0 ){
+                    json.write(',');
+                }
+                IndentPadding.appendPadding(cfg, json);
+                appendPropertyValue(values[i], json, cfg);      // recurse on the value.
+            }
+        }else{
+            boolean quoteIdentifier = cfg.isQuoteIdentifier();
+            boolean havePadding = cfg.getIndentPadding() != null;
+            for ( int i = from; i < to; i++ ){
+                appendProperty(names[i], values[i], json, cfg, i > 0, quoteIdentifier, havePadding);
+            }
+        }
+    }
+
+    /**
+     * A chunk of an array or object that is encoded in parallel. It gets its
+     * own clone of the config object with the same indent level and the same
+     * objects on the data structure loop detection stack.
+     *
+     * @since 1.10.5
+     */
+    private static final class EncodeChunk extends RecursiveAction
+    {
+        private final Object[] values;
+        private final String[] names;
+        private final int from;
+        private final int to;
+        private final JSONConfig cfg;
+        private final StringWriter buf;
+        private Throwable failure;
+
+        /**
+         * Create a chunk. This must be called in the thread that owns the
+         * config object since the config object is not thread safe.
+         *
+         * @param values The values.
+         * @param names The property names or null if this is an array.
+         * @param from The index of the first value.
+         * @param to The index after the last value.
+         * @param parentCfg The config object of the calling thread.
+         */
+        EncodeChunk( Object[] values, String[] names, int from, int to, JSONConfig parentCfg )
+        {
+            this.values = values;
+            this.names = names;
+            this.from = from;
+            this.to = to;
+            cfg = parentCfg.clone();
+            IndentPadding pad = parentCfg.getIndentPadding();
+            if ( pad != null ){
+                cfg.getIndentPadding().setLevel(pad.getLevel());
+            }
+            if ( parentCfg.isDetectDataStructureLoops() ){
+                cfg.getLoopDetector().copyFrom(parentCfg.getLoopDetector(), cfg);
+            }
+            buf = new StringWriter();
+            failure = null;
+        }
+
+        @Override
+        protected void compute()
+        {
+            try{
+                appendValues(values, names, from, to, buf, cfg);
+            }catch ( IOException|RuntimeException|Error e ){
+                // rethrown in the calling thread by writeTo().
+                failure = e;
+            }
+        }
+
+        /**
+         * Write the encoded chunk or throw whatever it threw.
+         *
+         * @param json Something to write the JSON data to.
+         * @throws IOException If there is an error on output.
+         */
+        void writeTo( Writer json ) throws IOException
+        {
+            if ( failure instanceof IOException ){
+                throw (IOException)failure;
+            }else if ( failure instanceof RuntimeException ){
+                throw (RuntimeException)failure;
+            }else if ( failure != null ){
+                throw (Error)failure;
+            }
+            buf.writeTo(json);
+        }
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Append an array of primitives without boxing the elements. Numeric
+     * arrays for which the config has a {@link NumberFormat} for the wrapper
+     * class are not handled here because the format needs a boxed value.
+     *
+     * @param array The array.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @return true if the array was appended. false if it is not an array of
+     *         primitives or it needs to be handled by the general code.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static boolean appendPrimitiveArray( Object array, Writer json, JSONConfig cfg ) throws IOException
+    {
+        if ( array instanceof int[] ){
+            if ( cfg.getNumberFormat(Integer.class) != null ){
+                return false;
+            }
+            int[] values = (int[])array;
+            char[] buf = NumberWriter.getBuffer();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                NumberWriter.writeInt(values[i], json, buf);
+            }
+        }else if ( array instanceof long[] ){
+            if ( cfg.getNumberFormat(Long.class) != null ){
+                return false;
+            }
+            long[] values = (long[])array;
+            char[] buf = NumberWriter.getBuffer();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                appendLong(values[i], json, cfg, buf);
+            }
+        }else if ( array instanceof double[] ){
+            if ( cfg.getNumberFormat(Double.class) != null ){
+                return false;
+            }
+            double[] values = (double[])array;
+            char[] buf = NumberWriter.getBuffer();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                double value = values[i];
+                if ( Double.isFinite(value) ){
+                    NumberWriter.writeDouble(value, json, buf);
+                }else{
+                    fastWriteString(Double.toString(value), json);
+                }
+            }
+        }else if ( array instanceof float[] ){
+            if ( cfg.getNumberFormat(Float.class) != null ){
+                return false;
+            }
+            float[] values = (float[])array;
+            char[] buf = NumberWriter.getBuffer();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                float value = values[i];
+                if ( Float.isFinite(value) ){
+                    NumberWriter.writeFloat(value, json, buf);
+                }else{
+                    fastWriteString(Float.toString(value), json);
+                }
+            }
+        }else if ( array instanceof short[] ){
+            if ( cfg.getNumberFormat(Short.class) != null ){
+                return false;
+            }
+            short[] values = (short[])array;
+            char[] buf = NumberWriter.getBuffer();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                NumberWriter.writeInt(values[i], json, buf);
+            }
+        }else if ( array instanceof byte[] ){
+            if ( cfg.getNumberFormat(Byte.class) != null ){
+                return false;
+            }
+            byte[] values = (byte[])array;
+            char[] buf = NumberWriter.getBuffer();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                NumberWriter.writeInt(values[i], json, buf);
+            }
+        }else if ( array instanceof boolean[] ){
+            boolean[] values = (boolean[])array;
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                json.write(values[i] ? "true" : "false");
+            }
+        }else if ( array instanceof char[] ){
+            char[] values = (char[])array;
+            // same results as writeString() for a one char string.
+            boolean digitsAsNumbers = cfg.isEncodeNumericStringsAsNumbers();
+            boolean fastStrings = cfg.isFastStrings();
+            boolean processInlineEscapes = cfg.isPassThroughEscapes();
+            startPrimitiveArray(json, cfg);
+            for ( int i = 0; i < values.length; i++ ){
+                appendPrimitiveArraySeparator(i, json, cfg);
+                char ch = values[i];
+                if ( digitsAsNumbers && ch >= '0' && ch <= '9' ){
+                    json.write(ch);
+                }else{
+                    json.write('"');
+                    if ( fastStrings ){
+                        json.write(ch);
+                    }else{
+                        StringProcessor.writeChar(ch, json, cfg, processInlineEscapes);
+                    }
+                    json.write('"');
+                }
+            }
+        }else{
+            return false;
+        }
+
+        IndentPadding.decAppendPadding(cfg, json);
+        json.write(']');
+        return true;
+    }
+
+    /**
+     * Start an array of primitives.
+     *
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void startPrimitiveArray( Writer json, JSONConfig cfg ) throws IOException
+    {
+        json.write('[');
+        IndentPadding.incPadding(cfg);
+    }
+
+    /**
+     * Write the comma, if needed, and padding, if any, before an element of
+     * an array of primitives.
+     *
+     * @param i The index of the element.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendPrimitiveArraySeparator( int i, Writer json, JSONConfig cfg ) throws IOException
+    {
+        if ( i > 0 ){
+            json.write(',');
+        }
+        IndentPadding.appendPadding(cfg, json);
+    }
+
     /**
      * Append a value that will be a JSON object. That is, a {@link Map} or
      * {@link ResourceBundle}.
@@ -585,25 +1042,219 @@ public class JSONUtil
         // make a Javascript object with the keys used to generate the property names.
         json.write('{');
         IndentPadding.incPadding(cfg);
-        for ( Entry<?,?> property : map.entrySet() ){
-            String propertyName = getPropertyName(property.getKey(), cfg, propertyNames);
-            Object value = property.getValue();
-            boolean extraIndent = havePadding && value != null && new JSONType(value, cfg).isRecursible();
-            if ( didStart ){
-                json.write(',');
-            }else{
+        if ( cfg.isUseParallelEncoding() && map.size() >= PARALLEL_THRESHOLD ){
+            // names are made here so that duplicates are found across chunks.
+            String[] names = new String[map.size()];
+            Object[] values = new Object[names.length];
+            int i = 0;
+            for ( Entry<?,?> property : map.entrySet() ){
+                names[i] = getPropertyName(property.getKey(), cfg, propertyNames);
+                values[i++] = property.getValue();
+            }
+            appendInParallel(values, names, json, cfg);
+        }else{
+            for ( Entry<?,?> property : map.entrySet() ){
+                String propertyName = getPropertyName(property.getKey(), cfg, propertyNames);
+                appendProperty(propertyName, property.getValue(), json, cfg, didStart, quoteIdentifier, havePadding);
                 didStart = true;
             }
+        }
+        IndentPadding.decAppendPadding(cfg, json);
+        json.write('}');
+    }
+
+    /**
+     * Append a reflected object as a JSON object directly from its cached
+     * reflection data. This avoids building a map of the object's properties.
+     * Primitive attributes other than char and float are read and written
+     * without boxing unless the config has a number format for their type.
+     * The property names are validated, escaped and quoted once for each
+     * combination of config options that affect them and then saved with the
+     * reflection data so that they can just be copied to the output.
+     *
+     * @param propertyValue The object being reflected.
+     * @param reflectionData The cached reflection data for its class.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendReflectedObjectValue( Object propertyValue, ReflectionData reflectionData, Writer json, JSONConfig cfg ) throws IOException
+    {
+        int nameKey = getPropertyNameKey(cfg);
+        char[][] propertyNames = reflectionData.getPropertyNames(nameKey);
+        if ( propertyNames == null ){
+            propertyNames = makePropertyNames(reflectionData.getNames(), cfg);
+            reflectionData.setPropertyNames(nameKey, propertyNames);
+        }
+        boolean havePadding = cfg.getIndentPadding() != null;
+
+        json.write('{');
+        IndentPadding.incPadding(cfg);
+        for ( int i = 0; i < propertyNames.length; i++ ){
+            int kind = reflectionData.getKind(i);
+            if ( kind != ReflectionData.OBJECT ){
+                Class<? extends Number> numberClass = reflectionData.getNumberClass(i);
+                if ( numberClass != null && cfg.getNumberFormat(numberClass) != null ){
+                    kind = ReflectionData.OBJECT;       // formats need a Number.
+                }
+            }
+            Object value = null;
+            long integer = 0;
+            double decimal = 0;
+            try{
+                switch ( kind ){
+                    case ReflectionData.INTEGER:
+                    case ReflectionData.LONG:
+                        integer = reflectionData.getLong(i, propertyValue);
+                        break;
+                    case ReflectionData.DOUBLE:
+                        decimal = reflectionData.getDouble(i, propertyValue);
+                        break;
+                    case ReflectionData.BOOLEAN:
+                        integer = reflectionData.getBoolean(i, propertyValue) ? 1 : 0;
+                        break;
+                    default:
+                        value = reflectionData.getValue(i, propertyValue);
+                        break;
+                }
+            }catch ( Exception e ){
+                throw new JSONReflectionException(propertyValue, reflectionData.getNames()[i], e, cfg);
+            }
+            if ( i > 0 ){
+                json.write(',');
+            }
             IndentPadding.appendPadding(cfg, json);
-            appendPropertyName(propertyName, json, quoteIdentifier);
-            IndentPadding.incAppendPadding(cfg, json, extraIndent);
-            appendPropertyValue(value, json, cfg);      // recurse on the value.
-            IndentPadding.decAppendPadding(cfg, json, extraIndent);
+            json.write(propertyNames[i]);
+            // primitives are written the same way as appendNumber() writes their boxed forms.
+            switch ( kind ){
+                case ReflectionData.INTEGER:
+                    NumberWriter.writeInt((int)integer, json, NumberWriter.getBuffer());
+                    break;
+                case ReflectionData.LONG:
+                    appendLong(integer, json, cfg, NumberWriter.getBuffer());
+                    break;
+                case ReflectionData.DOUBLE:
+                    if ( Double.isFinite(decimal) ){
+                        NumberWriter.writeDouble(decimal, json, NumberWriter.getBuffer());
+                    }else{
+                        fastWriteString(Double.toString(decimal), json);
+                    }
+                    break;
+                case ReflectionData.BOOLEAN:
+                    json.write(integer != 0 ? "true" : "false");
+                    break;
+                default:
+                    appendPaddedPropertyValue(value, json, cfg, havePadding);
+                    break;
+            }
         }
         IndentPadding.decAppendPadding(cfg, json);
         json.write('}');
     }
 
+    /**
+     * Make the property names for a reflected class as they will appear in
+     * the output, including quotes if needed and the colon.
+     *
+     * @param names The names of the properties.
+     * @param cfg A configuration object to use to set various options.
+     * @return The property names ready to be written.
+     * @since 1.10.5
+     */
+    private static char[][] makePropertyNames( String[] names, JSONConfig cfg )
+    {
+        Set<String> propertyNames = cfg.isValidatePropertyNames() ? new HashSet<>(names.length) : null;
+        boolean quoteIdentifier = cfg.isQuoteIdentifier();
+        char[][] result = new char[names.length][];
+
+        for ( int i = 0; i < names.length; i++ ){
+            String propertyName = getPropertyName(names[i], cfg, propertyNames);
+            StringBuilder buf = new StringBuilder(propertyName.length()+3);
+            if ( quoteIdentifier || isReservedWord(propertyName) || hasSurrogates(propertyName) ){
+                buf.append('"').append(propertyName).append('"');
+            }else{
+                buf.append(propertyName);
+            }
+            buf.append(':');
+            result[i] = buf.toString().toCharArray();
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a key representing all of the config options that affect how
+     * property names are validated, escaped or quoted. Configs with the same
+     * key produce the same property names.
+     *
+     * @param cfg A configuration object.
+     * @return The key.
+     * @since 1.10.5
+     */
+    private static int getPropertyNameKey( JSONConfig cfg )
+    {
+        int key = cfg.getUnmatchedSurrogatePolicy();
+        key = (key << 3) | cfg.getUndefinedCodePointPolicy();
+        key = (key << 1) | (cfg.isValidatePropertyNames() ? 1 : 0);
+        key = (key << 1) | (cfg.isEscapeBadIdentifierCodePoints() ? 1 : 0);
+        key = (key << 1) | (cfg.isEscapeNonAscii() ? 1 : 0);
+        key = (key << 1) | (cfg.isEscapeSurrogates() ? 1 : 0);
+        key = (key << 1) | (cfg.isFullJSONIdentifierCodePoints() ? 1 : 0);
+        key = (key << 1) | (cfg.isUseECMA6() ? 1 : 0);
+        key = (key << 1) | (cfg.isAllowReservedWordsInIdentifiers() ? 1 : 0);
+        key = (key << 1) | (cfg.isQuoteIdentifier() ? 1 : 0);
+        return key;
+    }
+
+    /**
+     * Append one property of a JSON object including any separating comma
+     * and padding.
+     *
+     * @param propertyName The validated property name.
+     * @param value The value of the property.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @param didStart true if a property has already been written for this object.
+     * @param quoteIdentifier if true, then force quotes on the property name.
+     * @param havePadding true if the config has indent padding.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendProperty( String propertyName, Object value, Writer json, JSONConfig cfg, boolean didStart, boolean quoteIdentifier, boolean havePadding ) throws IOException
+    {
+        if ( didStart ){
+            json.write(',');
+        }
+        IndentPadding.appendPadding(cfg, json);
+        appendPropertyName(propertyName, json, quoteIdentifier);
+        appendPaddedPropertyValue(value, json, cfg, havePadding);
+    }
+
+    /**
+     * Append the value of a property of a JSON object with extra padding
+     * around it if it's a recursible type and the config has padding.
+     *
+     * @param value The value of the property.
+     * @param json Something to write the JSON data to.
+     * @param cfg A configuration object to use to set various options.
+     * @param havePadding true if the config has indent padding.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    private static void appendPaddedPropertyValue( Object value, Writer json, JSONConfig cfg, boolean havePadding ) throws IOException
+    {
+        if ( value == null ){
+            json.write("null");
+        }else{
+            JSONType jsonType = JSONType.getInstance(value, cfg);
+            boolean extraIndent = havePadding && jsonType.isRecursible();
+            IndentPadding.incAppendPadding(cfg, json, extraIndent);
+            appendPropertyValue(value, json, cfg, jsonType);      // recurse on the value.
+            IndentPadding.decAppendPadding(cfg, json, extraIndent);
+        }
+    }
+
     /**
      * Get the ResourceBundle for a JSON object as a Map.
      *
@@ -815,7 +1466,7 @@ public class JSONUtil
             }
 
             json.write('"');
-            new StringProcessor(strValue, cfg, cfg.isPassThroughEscapes()).writeString(json);
+            StringProcessor.writeString(strValue, json, cfg, cfg.isPassThroughEscapes());
             json.write('"');
         }
     }
@@ -845,27 +1496,29 @@ public class JSONUtil
      */
     private static boolean isValidJSONNumber( String numericString, JSONConfig cfg, Number num )
     {
-        return JSON_NUMBER_PAT.matcher(numericString).matches() &&
-               ! OCTAL_NUMBER_PAT.matcher(numericString).matches() &&
-               isSafeJsonNumber(num, numericString, cfg);
+        int numType = NumericClassifier.classifyJSON(numericString);
+        if ( numType == NumericClassifier.NOT_A_NUMBER ){
+            return false;
+        }else if ( num != null ){
+            return isSafeJsonNumber(num, cfg);
+        }else if ( cfg.isPreciseNumbers() ){
+            return (numType & NumericClassifier.EXACT_DOUBLE) != 0;
+        }else{
+            return (numType & NumericClassifier.FINITE_DOUBLE) != 0;
+        }
     }
 
     /**
      * Return true if the given number can be represented as 64-bit floating point.
      *
      * @param num the number.
-     * @param numericString the number in string form.
      * @param cfg the config object.
      * @return true if the number is OK for 64-bit floating point.
      */
-    private static boolean isSafeJsonNumber( Number num, String numericString, JSONConfig cfg )
+    private static boolean isSafeJsonNumber( Number num, JSONConfig cfg )
     {
         boolean isSafeJsonNumber = true;
 
-        if ( num == null ){
-            num = new BigDecimal(numericString);
-        }
-
         if ( num instanceof Integer ){
             // Don't need any checking.
         }else if ( num instanceof Double ){
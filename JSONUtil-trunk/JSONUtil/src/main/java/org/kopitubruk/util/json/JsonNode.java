@@ -0,0 +1,296 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kopitubruk.util.json.JSONParser.Token;
+import org.kopitubruk.util.json.JSONParser.TokenType;
+
+/**
+ * A read only view of a value in a JSON document created by
+ * {@link JSONParser#parseLazy(CharSequence, JSONConfig)}. The document is
+ * scanned once to find where everything is but nothing is decoded until it
+ * is asked for, so strings and numbers that are never looked at are never
+ * unescaped or converted. This is useful when only a few values are needed
+ * from a large document.
+ * <p>
+ * Nodes are cheap to create and hold no data of their own. They share the
+ * original JSON text, which must not be modified while the nodes are in use.
+ * Values are decoded each time that they are asked for, the same way that
+ * {@link JSONParser#parseJSON(String, JSONConfig)} would decode them.
+ * Syntax errors in the structure of the document are found by the scan but
+ * errors inside of values, such as a malformed number, are not found until
+ * the value is decoded.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public final class JsonNode
+{
+    private final JSONTape tape;
+    private final int node;
+
+    /**
+     * Create a new JsonNode.
+     *
+     * @param tape the tape for the document.
+     * @param node the tape index of this node.
+     */
+    JsonNode( JSONTape tape, int node )
+    {
+        this.tape = tape;
+        this.node = node;
+    }
+
+    /**
+     * Return true if this node is a JSON object.
+     *
+     * @return true if this node is a JSON object.
+     */
+    public boolean isObject()
+    {
+        return tape.getKind(node) == JSONTape.OBJECT;
+    }
+
+    /**
+     * Return true if this node is a JSON array.
+     *
+     * @return true if this node is a JSON array.
+     */
+    public boolean isArray()
+    {
+        return tape.getKind(node) == JSONTape.ARRAY;
+    }
+
+    /**
+     * Return true if this node is a quoted string.
+     *
+     * @return true if this node is a quoted string.
+     */
+    public boolean isString()
+    {
+        return tape.getKind(node) == JSONTape.STRING;
+    }
+
+    /**
+     * Get the number of members of an object or elements of an array.
+     *
+     * @return the number of members or elements or 0 if this node is not an
+     *         object or an array. Members of an object with the same name are
+     *         each counted.
+     */
+    public int size()
+    {
+        return isObject() || isArray() ? tape.getCount(node) : 0;
+    }
+
+    /**
+     * Get the value of the given property of an object.
+     *
+     * @param key the name of the property.
+     * @return the value or null if this node is not an object or does not have
+     *         the property. If the object has the property more than once, the
+     *         last one is returned, like the parser.
+     */
+    public JsonNode get( String key )
+    {
+        if ( ! isObject() ){
+            return null;
+        }
+        JsonNode result = null;
+        int end = tape.getNext(node);
+        int k = node + JSONTape.NODE_SIZE;
+        while ( k < end ){
+            int value = k + JSONTape.NODE_SIZE;
+            if ( keyEquals(k, key) ){
+                result = new JsonNode(tape, value);
+            }
+            k = tape.getNext(value);
+        }
+        return result;
+    }
+
+    /**
+     * Get an element of an array.
+     *
+     * @param index the index of the element.
+     * @return the element or null if this node is not an array or the index
+     *         is out of range.
+     */
+    public JsonNode get( int index )
+    {
+        if ( ! isArray() || index < 0 || index >= tape.getCount(node) ){
+            return null;
+        }
+        int e = node + JSONTape.NODE_SIZE;
+        for ( int i = 0; i < index; i++ ){
+            e = tape.getNext(e);
+        }
+        return new JsonNode(tape, e);
+    }
+
+    /**
+     * Get the elements of an array. Use this instead of {@link #get(int)} to
+     * go through all of the elements of an array because it only walks the
+     * array once.
+     *
+     * @return the elements or an empty list if this node is not an array.
+     */
+    public List<JsonNode> getElements()
+    {
+        List<JsonNode> result = new ArrayList<>(size());
+        if ( isArray() ){
+            int end = tape.getNext(node);
+            for ( int e = node + JSONTape.NODE_SIZE; e < end; e = tape.getNext(e) ){
+                result.add(new JsonNode(tape, e));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the property names of an object in the order that they appear.
+     *
+     * @return the property names or an empty list if this node is not an
+     *         object.
+     */
+    public List<String> getKeys()
+    {
+        List<String> result = new ArrayList<>(size());
+        if ( isObject() ){
+            int end = tape.getNext(node);
+            for ( int k = node + JSONTape.NODE_SIZE; k < end; k = tape.getNext(k + JSONTape.NODE_SIZE) ){
+                result.add(getKey(k));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decode the value of this node. Objects and arrays are fully parsed.
+     *
+     * @return the value in the same form that
+     *         {@link JSONParser#parseJSON(String, JSONConfig)} would return it.
+     */
+    public Object getValue()
+    {
+        JSONConfig cfg = tape.getJSONConfig();
+        switch ( tape.getKind(node) ){
+            case JSONTape.OBJECT:
+            case JSONTape.ARRAY:
+                return JSONParser.parseJSON(toString(), cfg);
+            default:
+                try{
+                    return JSONParser.getSimpleValue(getToken(), cfg);
+                }catch ( ParseException e ){
+                    throw new JSONParserException(e, cfg);
+                }
+        }
+    }
+
+    /**
+     * Decode the value of this node into an object of the given class.
+     *
+     * @param <T> The type of the result.
+     * @param clazz The class of the result.
+     * @return the value.
+     * @see JSONParser#parseJSON(java.io.Reader, Class, JSONConfig)
+     */
+    public <T> T getValue( Class<T> clazz )
+    {
+        return JSONParser.parseJSON(toString(), clazz, tape.getJSONConfig());
+    }
+
+    /**
+     * Get the JSON text of this node, as it appears in the document.
+     *
+     * @return the JSON text.
+     */
+    @Override
+    public String toString()
+    {
+        int start = tape.getStart(node);
+        int end = tape.getEnd(node);
+        if ( isString() ){
+            // include the quotes.
+            --start;
+            ++end;
+        }
+        return tape.getJSON().subSequence(start, end).toString();
+    }
+
+    /**
+     * Get the token for a value that is not an object or array.
+     *
+     * @return the token.
+     */
+    private Token getToken()
+    {
+        if ( isString() ){
+            return new Token(TokenType.STRING, tape.getText(node));
+        }else{
+            return JSONTokenReader.matchOthers(tape.getText(node), tape.getStart(node), tape.getJSONConfig());
+        }
+    }
+
+    /**
+     * Get the unescaped form of a key.
+     *
+     * @param k the tape index of the key.
+     * @return the key.
+     */
+    private String getKey( int k )
+    {
+        JSONConfig cfg = tape.getJSONConfig();
+        String text = tape.getText(k);
+        if ( tape.getKind(k) != JSONTape.STRING ){
+            Token token = JSONTokenReader.matchOthers(text, tape.getStart(k), cfg);
+            if ( token.tokenType != TokenType.UNQUOTED_ID ){
+                throw new JSONParserException(TokenType.END_OBJECT, token.tokenType, cfg);
+            }
+        }
+        return tape.isEscaped(k) ? StringProcessor.unEscape(text, cfg) : text;
+    }
+
+    /**
+     * Compare a key to a string. Keys without escapes are compared in place.
+     *
+     * @param k the tape index of the key.
+     * @param key the string.
+     * @return true if they are equal.
+     */
+    private boolean keyEquals( int k, String key )
+    {
+        if ( tape.isEscaped(k) ){
+            return getKey(k).equals(key);
+        }
+        int start = tape.getStart(k);
+        int len = tape.getEnd(k) - start;
+        if ( len != key.length() ){
+            return false;
+        }
+        CharSequence json = tape.getJSON();
+        for ( int i = 0; i < len; i++ ){
+            if ( json.charAt(start+i) != key.charAt(i) ){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.kopitubruk.util.json.CompactMap.Shape;
+
+/**
+ * Table of object keys and object shapes used by {@link JSONParser}. Large
+ * arrays of objects usually repeat the same keys over and over so the parser
+ * looks up each key as it appears in the input and reuses the unescaped
+ * string from the first time that it was seen. That saves the unescape and
+ * lets all of the parsed maps share the same key strings. The shapes let
+ * {@link CompactMap}s with the same keys share a key array and tell the
+ * parser how big to make each map.
+ * <p>
+ * The unescaped keys are kept per thread and reused across parses that have
+ * the same policies that affect unescaping. Like the buffers in
+ * {@link StringWriter}, only JDK types are kept in the thread local. The
+ * shapes are made fresh for each parse. The tables are bounded so that input
+ * with many unique keys does not fill memory. Once a limit is reached, new
+ * keys and shapes are still created but not remembered.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class KeyTable
+{
+    /**
+     * Maximum number of keys remembered per thread.
+     */
+    private static final int MAX_KEYS = 4096;
+
+    /**
+     * Keys longer than this are not remembered.
+     */
+    private static final int MAX_KEY_LENGTH = 128;
+
+    /**
+     * Maximum number of shapes remembered per parse.
+     */
+    private static final int MAX_SHAPES = 4096;
+
+    /**
+     * Objects with more keys than this don't get a shape.
+     */
+    static final int MAX_SHAPE_SIZE = 32;
+
+    /**
+     * Unescaped keys for each thread, mapped by the unescape policies.
+     */
+    private static final ThreadLocal<Map<Integer,Map<String,String>>> KEYS = new ThreadLocal<>();
+
+    private final Map<String,String> keys;
+    private final Shape rootShape;
+    private int shapeCount;
+
+    /**
+     * Get a table for a parse in the current thread. It shares the current
+     * thread's keys for the unescape policies in the given config.
+     *
+     * @param cfg the config object.
+     * @return the table.
+     */
+    static KeyTable getInstance( JSONConfig cfg )
+    {
+        Map<Integer,Map<String,String>> keysByPolicy = KEYS.get();
+        if ( keysByPolicy == null ){
+            keysByPolicy = new HashMap<>();
+            KEYS.set(keysByPolicy);
+        }
+        Integer policies = cfg.getUndefinedCodePointPolicy() << 8 | cfg.getUnmatchedSurrogatePolicy();
+        Map<String,String> keys = keysByPolicy.get(policies);
+        if ( keys == null ){
+            keys = new HashMap<>();
+            keysByPolicy.put(policies, keys);
+        }
+        return new KeyTable(keys);
+    }
+
+    /**
+     * Create a new KeyTable with its own keys. This is only used directly by
+     * {@link JSONPushParser}, which can be fed from different threads over its
+     * life so it can't use the per thread keys.
+     *
+     * @param cfg the config object.
+     */
+    KeyTable( JSONConfig cfg )
+    {
+        this(new HashMap<String,String>());
+    }
+
+    /**
+     * Create a new KeyTable that uses the given keys.
+     *
+     * @param keys the map of raw keys to unescaped keys.
+     */
+    private KeyTable( Map<String,String> keys )
+    {
+        this.keys = keys;
+        rootShape = new Shape();
+        shapeCount = 0;
+    }
+
+    /**
+     * Get the unescaped form of a key from the input.
+     *
+     * @param rawKey the key as it appeared in the input.
+     * @param cfg the config object.
+     * @return the unescaped key.
+     */
+    String getKey( String rawKey, JSONConfig cfg )
+    {
+        String key = keys.get(rawKey);
+        if ( key == null ){
+            key = StringProcessor.unEscape(rawKey, cfg);
+            if ( keys.size() < MAX_KEYS && rawKey.length() <= MAX_KEY_LENGTH ){
+                keys.put(rawKey, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Get the shape for an object with no keys.
+     *
+     * @return the root shape.
+     */
+    Shape getRootShape()
+    {
+        return rootShape;
+    }
+
+    /**
+     * Get the shape that adds a key to the given shape.
+     *
+     * @param shape the current shape.
+     * @param key the new key, which must not be in the current shape.
+     * @return the new shape or null if the current shape is already at
+     *         {@link #MAX_SHAPE_SIZE}.
+     */
+    Shape addKey( Shape shape, String key )
+    {
+        if ( shape.size() >= MAX_SHAPE_SIZE ){
+            return null;
+        }
+        Shape child = shape.getChild(key);
+        if ( child == null ){
+            child = new Shape(shape, key);
+            if ( shapeCount < MAX_SHAPES ){
+                shape.putChild(key, child);
+                ++shapeCount;
+            }
+        }
+        return child;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+/**
+ * A number from {@link JSONParser} that keeps the text of the number and
+ * doesn't convert it until it's used. These are only made when
+ * {@link JSONConfig#isUseLazyNumbers()} is true.
+ * <p>
+ * The first call to any of the methods that need the value converts the text
+ * to the same {@link Number} that the parser would have made without lazy
+ * numbers, using the smallNumbers policy that was in effect during the
+ * parse. That number is kept so the conversion is only done once. The
+ * converted number is available from {@link #getNumber()} for code that
+ * needs its actual type, such as code that checks for {@link Long} or
+ * {@link java.math.BigDecimal}.
+ * <p>
+ * {@link JSONUtil} encodes these the same way that it encodes the converted
+ * number.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+public final class LazyNumber extends Number
+{
+    private final String text;
+    private final boolean decimal;
+    private final boolean smallNumbers;
+    private transient volatile Number value;
+
+    /**
+     * Create a new LazyNumber.
+     *
+     * @param text The text of the number as it was in the input.
+     * @param decimal If true, then the text is a decimal or floating point
+     *            number, otherwise it is an integer.
+     * @param smallNumbers The smallNumbers policy to use for conversion.
+     */
+    LazyNumber( String text, boolean decimal, boolean smallNumbers )
+    {
+        this.text = text;
+        this.decimal = decimal;
+        this.smallNumbers = smallNumbers;
+        value = null;
+    }
+
+    /**
+     * Get the text of the number as it was in the input. This does not
+     * convert the number.
+     *
+     * @return the text.
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Get the converted number, converting it if that hasn't been done yet.
+     *
+     * @return the number.
+     */
+    public Number getNumber()
+    {
+        Number num = value;
+        if ( num == null ){
+            // more than one thread could do this but they'll all get equal results.
+            num = decimal ? JSONParser.getDecimal(text, smallNumbers) : JSONParser.getInteger(text, smallNumbers);
+            value = num;
+        }
+        return num;
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Number#intValue()
+     */
+    @Override
+    public int intValue()
+    {
+        return getNumber().intValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Number#longValue()
+     */
+    @Override
+    public long longValue()
+    {
+        return getNumber().longValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Number#floatValue()
+     */
+    @Override
+    public float floatValue()
+    {
+        return getNumber().floatValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Number#doubleValue()
+     */
+    @Override
+    public double doubleValue()
+    {
+        return getNumber().doubleValue();
+    }
+
+    /**
+     * Get the string form of the converted number.
+     *
+     * @return the string.
+     */
+    @Override
+    public String toString()
+    {
+        return getNumber().toString();
+    }
+
+    /**
+     * Two lazy numbers are equal if their converted numbers are equal.
+     *
+     * @param obj The other object.
+     * @return true if they are equal.
+     */
+    @Override
+    public boolean equals( Object obj )
+    {
+        return obj instanceof LazyNumber && getNumber().equals(((LazyNumber)obj).getNumber());
+    }
+
+    /*
+     * (non-Javadoc)
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode()
+    {
+        return getNumber().hashCode();
+    }
+
+    private static final long serialVersionUID = 1L;
+}
@@ -43,8 +43,7 @@ public class LoopDetectionFailureException extends JSONException
     {
         super(cfg);
         this.stackIndex = stackIndex;
-        // stack must be non-null or this exception would not be thrown.
-        objStackLength = cfg.getObjStack().size();
+        objStackLength = cfg.getLoopDetector().size();
     }
 
     /**
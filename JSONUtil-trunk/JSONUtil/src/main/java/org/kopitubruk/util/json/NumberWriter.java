@@ -0,0 +1,618 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+
+/**
+ * Writes numbers to a {@link Writer} without creating a String for each one.
+ * The digits are generated into a char buffer that is reused by the thread.
+ * <p>
+ * Doubles are written with the shortest decimal that rounds back to the same
+ * double, using the Schubfach algorithm by Raffaello Giulietti. The layout is
+ * the same as {@link Double#toString(double)} so for nearly all values the
+ * output is the same. The exceptions are the values for which older JDKs
+ * generate more digits than are needed, such as 2.0E-3, which older JDKs show
+ * as 0.0020. Floats use the float variant of the same algorithm and are
+ * written in the layout used by {@link Float#toString(float)}.
+ * <p>
+ * Each thread also keeps a {@link StringBuffer} and a {@link FieldPosition}
+ * for use with {@link NumberFormat}s so that those don't have to be created
+ * for every number. Like the buffers in {@link StringWriter}, only JDK types
+ * are kept in the thread locals.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class NumberWriter
+{
+    // output is written at the start of the buffer. big enough for the longest double or long.
+    private static final int OUTPUT_SIZE = 32;
+
+    // the decimal digits of a double go at the end of the buffer.
+    private static final int BUFFER_SIZE = OUTPUT_SIZE + 20;
+
+    /**
+     * Scratch buffer for each thread.
+     */
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<>();
+
+    /**
+     * Buffer for NumberFormats for each thread.
+     */
+    private static final ThreadLocal<StringBuffer> FORMAT_BUFFERS = new ThreadLocal<>();
+
+    /**
+     * Field position for NumberFormats for each thread.
+     */
+    private static final ThreadLocal<FieldPosition> FIELD_POSITIONS = new ThreadLocal<>();
+
+    // digit pairs for faster integer conversion.
+    private static final char[] DIGIT_TENS = new char[100];
+    private static final char[] DIGIT_ONES = new char[100];
+
+    // constants for the binary layout of a double.
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << (P - 1);
+    private static final int BQ_MASK = 0x7FF;
+    private static final long T_MASK = C_MIN - 1;
+    private static final long C_TINY = 3;
+
+    // constants for the binary layout of a float.
+    private static final int FLOAT_P = 24;
+    private static final int FLOAT_Q_MIN = -149;
+    private static final int FLOAT_C_MIN = 1 << (FLOAT_P - 1);
+    private static final int FLOAT_BQ_MASK = 0xFF;
+    private static final int FLOAT_T_MASK = FLOAT_C_MIN - 1;
+    private static final int FLOAT_C_TINY = 8;
+
+    // range of the decimal exponents needed for doubles.
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+
+    private static final long MASK_63 = 0x7FFFFFFFFFFFFFFFL;
+    private static final long MASK_32 = 0xFFFFFFFFL;
+
+    /**
+     * 126 bit approximations of powers of 10, stored as pairs of 63 bit
+     * halves. For each k from {@link #K_MIN} to {@link #K_MAX}, 10<sup>-k</sup>
+     * = &beta; 2<sup>r</sup> where 2<sup>125</sup> &le; &beta; &lt;
+     * 2<sup>126</sup> and the stored value is floor(&beta;) + 1.
+     */
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+
+    static {
+        for ( int i = 0; i < 100; i++ ){
+            DIGIT_TENS[i] = (char)('0' + i / 10);
+            DIGIT_ONES[i] = (char)('0' + i % 10);
+        }
+
+        for ( int k = K_MIN; k <= K_MAX; k++ ){
+            int r = flog2pow10(-k) - 125;
+            BigInteger beta;
+            if ( k <= 0 ){
+                BigInteger pow10 = BigInteger.TEN.pow(-k);
+                beta = r < 0 ? pow10.shiftLeft(-r) : pow10.shiftRight(r);
+            }else{
+                beta = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+            }
+            BigInteger g = beta.add(BigInteger.ONE);
+            int i = 2 * (k - K_MIN);
+            G[i] = g.shiftRight(63).longValue();
+            G[i+1] = g.longValue() & MASK_63;
+        }
+    }
+
+    /**
+     * Get the scratch buffer for the current thread. Callers that write many
+     * numbers can get it once and pass it to each write.
+     *
+     * @return the scratch buffer for the current thread.
+     */
+    static char[] getBuffer()
+    {
+        char[] buf = BUFFERS.get();
+        if ( buf == null ){
+            buf = new char[BUFFER_SIZE];
+            BUFFERS.set(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Write an int.
+     *
+     * @param value the value.
+     * @param out the writer.
+     * @param buf the scratch buffer from {@link #getBuffer()}.
+     * @throws IOException If there is an error on output.
+     */
+    static void writeInt( int value, Writer out, char[] buf ) throws IOException
+    {
+        int pos = OUTPUT_SIZE;
+        // work with negative numbers so that MIN_VALUE works.
+        int n = value < 0 ? value : -value;
+        while ( n <= -100 ){
+            int q = n / 100;
+            int r = q * 100 - n;
+            buf[--pos] = DIGIT_ONES[r];
+            buf[--pos] = DIGIT_TENS[r];
+            n = q;
+        }
+        pos = finishInteger(-n, value < 0, buf, pos);
+        out.write(buf, pos, OUTPUT_SIZE - pos);
+    }
+
+    /**
+     * Write a long.
+     *
+     * @param value the value.
+     * @param out the writer.
+     * @param buf the scratch buffer from {@link #getBuffer()}.
+     * @throws IOException If there is an error on output.
+     */
+    static void writeLong( long value, Writer out, char[] buf ) throws IOException
+    {
+        if ( value == (int)value ){
+            writeInt((int)value, out, buf);
+            return;
+        }
+        int pos = OUTPUT_SIZE;
+        // work with negative numbers so that MIN_VALUE works.
+        long n = value < 0 ? value : -value;
+        while ( n <= -100 ){
+            long q = n / 100;
+            int r = (int)(q * 100 - n);
+            buf[--pos] = DIGIT_ONES[r];
+            buf[--pos] = DIGIT_TENS[r];
+            n = q;
+        }
+        pos = finishInteger((int)-n, value < 0, buf, pos);
+        out.write(buf, pos, OUTPUT_SIZE - pos);
+    }
+
+    /**
+     * Write the last one or two digits and the sign of an integer into the
+     * buffer.
+     *
+     * @param r the remaining value, 0-99.
+     * @param isNegative true if the integer is negative.
+     * @param buf the scratch buffer.
+     * @param pos the current position in the buffer.
+     * @return the new position in the buffer.
+     */
+    private static int finishInteger( int r, boolean isNegative, char[] buf, int pos )
+    {
+        buf[--pos] = DIGIT_ONES[r];
+        if ( r >= 10 ){
+            buf[--pos] = DIGIT_TENS[r];
+        }
+        if ( isNegative ){
+            buf[--pos] = '-';
+        }
+        return pos;
+    }
+
+    /**
+     * Write a finite double using the shortest decimal that will be read back
+     * as the same double.
+     *
+     * @param value the value. Must be finite.
+     * @param out the writer.
+     * @param buf the scratch buffer from {@link #getBuffer()}.
+     * @throws IOException If there is an error on output.
+     */
+    static void writeDouble( double value, Writer out, char[] buf ) throws IOException
+    {
+        long bits = Double.doubleToRawLongBits(value);
+        long t = bits & T_MASK;
+        int bq = (int)(bits >>> (P - 1)) & BQ_MASK;
+        boolean isNegative = bits < 0;
+
+        if ( bq != 0 ){
+            // normal value.
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if ( 0 < mq && mq < P ){
+                long f = c >> mq;
+                if ( f << mq == c ){
+                    // integer value.
+                    formatDecimal(f, 0, isNegative, out, buf);
+                    return;
+                }
+            }
+            toDecimal(-mq, c, 0, isNegative, out, buf);
+        }else if ( t != 0 ){
+            // subnormal value.
+            if ( t < C_TINY ){
+                toDecimal(Q_MIN, 10 * t, -1, isNegative, out, buf);
+            }else{
+                toDecimal(Q_MIN, t, 0, isNegative, out, buf);
+            }
+        }else{
+            out.write(isNegative ? "-0.0" : "0.0");
+        }
+    }
+
+    /**
+     * Find the shortest decimal in the rounding interval of the double
+     * c&middot;2<sup>q</sup>, choosing the one closest to the double when
+     * there is more than one, and write it.
+     *
+     * @param q the binary exponent.
+     * @param c the binary significand.
+     * @param dk adjustment for the decimal exponent.
+     * @param isNegative true if the value is negative.
+     * @param out the writer.
+     * @param buf the scratch buffer.
+     * @throws IOException If there is an error on output.
+     */
+    private static void toDecimal( int q, long c, int dk, boolean isNegative, Writer out, char[] buf ) throws IOException
+    {
+        int odd = (int)c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if ( c != C_MIN | q == Q_MIN ){
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }else{
+            // the interval is asymmetric at powers of 2.
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        int i = 2 * (k - K_MIN);
+        long g1 = G[i];
+        long g0 = G[i+1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if ( s >= 100 ){
+            // try one less digit.
+            long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if ( upin != wpin ){
+                formatDecimal(upin ? sp10 : tp10, k, isNegative, out, buf);
+                return;
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        long f;
+        if ( uin != win ){
+            f = uin ? s : t;
+        }else{
+            // both are in the interval. pick the closest.
+            long cmp = vb - ((s + t) << 1);
+            f = cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t;
+        }
+        formatDecimal(f, k + dk, isNegative, out, buf);
+    }
+
+    /**
+     * Write a finite float using the shortest decimal that will be read back
+     * as the same float.
+     *
+     * @param value the value. Must be finite.
+     * @param out the writer.
+     * @param buf the scratch buffer from {@link #getBuffer()}.
+     * @throws IOException If there is an error on output.
+     */
+    static void writeFloat( float value, Writer out, char[] buf ) throws IOException
+    {
+        int bits = Float.floatToRawIntBits(value);
+        int t = bits & FLOAT_T_MASK;
+        int bq = (bits >>> (FLOAT_P - 1)) & FLOAT_BQ_MASK;
+        boolean isNegative = bits < 0;
+
+        if ( bq != 0 ){
+            // normal value.
+            int mq = -FLOAT_Q_MIN + 1 - bq;
+            int c = FLOAT_C_MIN | t;
+            if ( 0 < mq && mq < FLOAT_P ){
+                int f = c >> mq;
+                if ( f << mq == c ){
+                    // integer value.
+                    formatDecimal(f, 0, isNegative, out, buf);
+                    return;
+                }
+            }
+            floatToDecimal(-mq, c, 0, isNegative, out, buf);
+        }else if ( t != 0 ){
+            // subnormal value.
+            if ( t < FLOAT_C_TINY ){
+                floatToDecimal(FLOAT_Q_MIN, 10 * t, -1, isNegative, out, buf);
+            }else{
+                floatToDecimal(FLOAT_Q_MIN, t, 0, isNegative, out, buf);
+            }
+        }else{
+            out.write(isNegative ? "-0.0" : "0.0");
+        }
+    }
+
+    /**
+     * The float version of
+     * {@link #toDecimal(int, long, int, boolean, Writer, char[])}. It only
+     * needs the high half of each power of 10 from {@link #G}.
+     *
+     * @param q the binary exponent.
+     * @param c the binary significand.
+     * @param dk adjustment for the decimal exponent.
+     * @param isNegative true if the value is negative.
+     * @param out the writer.
+     * @param buf the scratch buffer.
+     * @throws IOException If there is an error on output.
+     */
+    private static void floatToDecimal( int q, int c, int dk, boolean isNegative, Writer out, char[] buf ) throws IOException
+    {
+        int odd = c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if ( c != FLOAT_C_MIN | q == FLOAT_Q_MIN ){
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        }else{
+            // the interval is asymmetric at powers of 2.
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 33;
+
+        long g = G[2 * (k - K_MIN)] + 1;
+
+        int vb = ropFloat(g, cb << h);
+        int vbl = ropFloat(g, cbl << h);
+        int vbr = ropFloat(g, cbr << h);
+
+        int s = vb >> 2;
+        if ( s >= 100 ){
+            // try one less digit.
+            int sp10 = 10 * (int)((s * 1717986919L) >>> 34);
+            int tp10 = sp10 + 10;
+            boolean upin = vbl + odd <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + odd <= vbr;
+            if ( upin != wpin ){
+                formatDecimal(upin ? sp10 : tp10, k, isNegative, out, buf);
+                return;
+            }
+        }
+
+        int t = s + 1;
+        boolean uin = vbl + odd <= s << 2;
+        boolean win = (t << 2) + odd <= vbr;
+        int f;
+        if ( uin != win ){
+            f = uin ? s : t;
+        }else{
+            // both are in the interval. pick the closest.
+            int cmp = vb - ((s + t) << 1);
+            f = cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t;
+        }
+        formatDecimal(f, k + dk, isNegative, out, buf);
+    }
+
+    /**
+     * Write f&middot;10<sup>e</sup> in the same layout that is used by
+     * {@link Double#toString(double)}.
+     *
+     * @param f the decimal significand. Must be positive.
+     * @param e the decimal exponent.
+     * @param isNegative true if the value is negative.
+     * @param out the writer.
+     * @param buf the scratch buffer.
+     * @throws IOException If there is an error on output.
+     */
+    private static void formatDecimal( long f, int e, boolean isNegative, Writer out, char[] buf ) throws IOException
+    {
+        while ( f % 10 == 0 ){
+            f /= 10;
+            ++e;
+        }
+
+        // digits go at the end of the buffer, after the output.
+        char[] b = buf;
+        int ds = BUFFER_SIZE;
+        do{
+            long q = f / 10;
+            b[--ds] = (char)('0' + (int)(f - q * 10));
+            f = q;
+        }while ( f != 0 );
+        int n = BUFFER_SIZE - ds;
+
+        // exponent for scientific notation.
+        int exp = e + n - 1;
+
+        int p = 0;
+        if ( isNegative ){
+            b[p++] = '-';
+        }
+        if ( exp >= 0 && exp < 7 ){
+            for ( int i = 0; i <= exp; i++ ){
+                b[p++] = i < n ? b[ds+i] : '0';
+            }
+            b[p++] = '.';
+            if ( n > exp + 1 ){
+                for ( int i = exp + 1; i < n; i++ ){
+                    b[p++] = b[ds+i];
+                }
+            }else{
+                b[p++] = '0';
+            }
+        }else if ( exp < 0 && exp >= -3 ){
+            b[p++] = '0';
+            b[p++] = '.';
+            for ( int i = -1; i > exp; i-- ){
+                b[p++] = '0';
+            }
+            for ( int i = 0; i < n; i++ ){
+                b[p++] = b[ds+i];
+            }
+        }else{
+            b[p++] = b[ds];
+            b[p++] = '.';
+            if ( n > 1 ){
+                for ( int i = 1; i < n; i++ ){
+                    b[p++] = b[ds+i];
+                }
+            }else{
+                b[p++] = '0';
+            }
+            b[p++] = 'E';
+            if ( exp < 0 ){
+                b[p++] = '-';
+                exp = -exp;
+            }
+            if ( exp >= 100 ){
+                b[p++] = (char)('0' + exp / 100);
+                exp %= 100;
+                b[p++] = DIGIT_TENS[exp];
+            }else if ( exp >= 10 ){
+                b[p++] = DIGIT_TENS[exp];
+            }
+            b[p++] = DIGIT_ONES[exp];
+        }
+        out.write(b, 0, p);
+    }
+
+    /**
+     * Format a number with the given format, reusing this thread's buffers.
+     *
+     * @param fmt the format.
+     * @param num the number.
+     * @return the formatted number.
+     */
+    static String format( NumberFormat fmt, Number num )
+    {
+        StringBuffer sb = FORMAT_BUFFERS.get();
+        FieldPosition fieldPosition = FIELD_POSITIONS.get();
+        if ( sb == null ){
+            sb = new StringBuffer();
+            fieldPosition = new FieldPosition(0);
+            FORMAT_BUFFERS.set(sb);
+            FIELD_POSITIONS.set(fieldPosition);
+        }else{
+            sb.setLength(0);
+            fieldPosition.setBeginIndex(0);
+            fieldPosition.setEndIndex(0);
+        }
+        return fmt.format(num, sb, fieldPosition).toString();
+    }
+
+    /**
+     * Round to odd the product of g = g1&middot;2<sup>63</sup> + g0 and cp,
+     * divided by 2<sup>127</sup>.
+     *
+     * @param g1 the high 63 bits of g.
+     * @param g0 the low 63 bits of g.
+     * @param cp the other factor.
+     * @return the product rounded to odd.
+     */
+    private static long rop( long g1, long g0, long cp )
+    {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (((z & MASK_63) + MASK_63) >>> 63);
+    }
+
+    /**
+     * Round to odd the product of g and cp, divided by 2<sup>95</sup>.
+     *
+     * @param g the high 63 bits of a power of 10 from {@link #G}, plus 1.
+     * @param cp the other factor.
+     * @return the product rounded to odd.
+     */
+    private static int ropFloat( long g, long cp )
+    {
+        long x1 = multiplyHigh(g, cp);
+        long vbp = x1 >>> 31;
+        return (int)(vbp | (((x1 & MASK_32) + MASK_32) >>> 32));
+    }
+
+    /**
+     * Get the high 64 bits of the 128 bit product of two longs. Same as
+     * Math.multiplyHigh(long,long) which isn't available in Java 8.
+     *
+     * @param x the first value.
+     * @param y the second value.
+     * @return the high 64 bits of the product.
+     */
+    private static long multiplyHigh( long x, long y )
+    {
+        long x1 = x >> 32;
+        long x2 = x & 0xFFFFFFFFL;
+        long y1 = y >> 32;
+        long y2 = y & 0xFFFFFFFFL;
+        long z2 = x2 * y2;
+        long t = x1 * y2 + (z2 >>> 32);
+        long z1 = t & 0xFFFFFFFFL;
+        long z0 = t >> 32;
+        z1 += x2 * y1;
+        return x1 * y1 + z0 + (z1 >> 32);
+    }
+
+    /**
+     * Get floor(log<sub>10</sub>(2<sup>q</sup>)).
+     *
+     * @param q the exponent.
+     * @return the floor of the log.
+     */
+    private static int flog10pow2( int q )
+    {
+        return (int)((q * 661971961083L) >> 41);
+    }
+
+    /**
+     * Get floor(log<sub>10</sub>(3/4 &middot; 2<sup>q</sup>)).
+     *
+     * @param q the exponent.
+     * @return the floor of the log.
+     */
+    private static int flog10threeQuartersPow2( int q )
+    {
+        return (int)((q * 661971961083L - 274743187321L) >> 41);
+    }
+
+    /**
+     * Get floor(log<sub>2</sub>(10<sup>e</sup>)).
+     *
+     * @param e the exponent.
+     * @return the floor of the log.
+     */
+    private static int flog2pow10( int e )
+    {
+        return (int)((e * 913124641741L) >> 38);
+    }
+}
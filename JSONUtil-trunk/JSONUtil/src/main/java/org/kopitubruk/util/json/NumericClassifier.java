@@ -0,0 +1,354 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.math.BigDecimal;
+
+/**
+ * Classifies strings as numbers in a single pass without regular
+ * expressions. This is used for every string when encodeNumericStringsAsNumbers
+ * is enabled and for every number token in the parser, so it needs to be fast
+ * and should reject strings that are not numbers as soon as possible.
+ * <p>
+ * The result of a classification is one of {@link #NOT_A_NUMBER},
+ * {@link #INTEGER} or {@link #DECIMAL}. {@link #classifyJSON(String)} also
+ * adds the flags {@link #FINITE_DOUBLE} and {@link #EXACT_DOUBLE} to tell
+ * whether the number can be represented as a double. Those are worked out
+ * from the digit count and the exponent for most numbers. Only numbers near
+ * the limits of a double need a {@link BigDecimal}.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class NumericClassifier
+{
+    /**
+     * The string is not a number.
+     */
+    static final int NOT_A_NUMBER = 0;
+
+    /**
+     * The string is an integer.
+     */
+    static final int INTEGER = 1;
+
+    /**
+     * The string is a decimal/floating point number.
+     */
+    static final int DECIMAL = 2;
+
+    /**
+     * Mask for the kind of number.
+     */
+    static final int KIND_MASK = 3;
+
+    /**
+     * Flag for numbers that don't overflow a double.
+     */
+    static final int FINITE_DOUBLE = 4;
+
+    /**
+     * Flag for numbers that a double represents without losing precision.
+     */
+    static final int EXACT_DOUBLE = 8;
+
+    /**
+     * Significant digits that always survive a trip through a double.
+     */
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * Largest power of 10 that is safely below the maximum double.
+     */
+    private static final int MAX_SAFE_EXPONENT = 307;
+
+    /**
+     * Smallest power of 10 that is safely above the subnormal doubles.
+     */
+    private static final int MIN_SAFE_EXPONENT = -307;
+
+    /**
+     * Powers of 10 below this underflow to zero in a double.
+     */
+    private static final int MIN_EXPONENT = -324;
+
+    /**
+     * Cap on the exponent to avoid overflow. Anything this big is out of range
+     * anyway.
+     */
+    private static final int MAX_EXPONENT = 100000;
+
+    /**
+     * Classify a string according to the JSON number grammar, with octal
+     * numbers rejected because they look like something else in Javascript.
+     * Leading decimal points are allowed to match what this package has
+     * always accepted.
+     *
+     * @param str the string.
+     * @return {@link #NOT_A_NUMBER}, or {@link #INTEGER} or {@link #DECIMAL}
+     *         combined with {@link #FINITE_DOUBLE} and {@link #EXACT_DOUBLE} as
+     *         appropriate.
+     */
+    static int classifyJSON( String str )
+    {
+        int len = str.length();
+        int i = 0;
+        if ( i < len && str.charAt(i) == '-' ){
+            ++i;
+        }
+
+        // position of the first and last non-zero digits in the mantissa.
+        int first = -1;
+        int last = -1;
+        int digitCount = 0;
+        boolean isOctal = i < len && str.charAt(i) == '0';
+
+        // integer part.
+        int start = i;
+        while ( i < len ){
+            char ch = str.charAt(i);
+            if ( ch < '0' || ch > '9' ){
+                break;
+            }
+            if ( ch != '0' ){
+                if ( first < 0 ){
+                    first = digitCount;
+                }
+                last = digitCount;
+                isOctal = isOctal && ch < '8';
+            }
+            ++digitCount;
+            ++i;
+        }
+        int intLen = i - start;
+        int kind = INTEGER;
+
+        // fraction.
+        if ( i < len && str.charAt(i) == '.' ){
+            ++i;
+            start = i;
+            while ( i < len ){
+                char ch = str.charAt(i);
+                if ( ch < '0' || ch > '9' ){
+                    break;
+                }
+                if ( ch != '0' ){
+                    if ( first < 0 ){
+                        first = digitCount;
+                    }
+                    last = digitCount;
+                }
+                ++digitCount;
+                ++i;
+            }
+            if ( i == start ){
+                return NOT_A_NUMBER;
+            }
+            kind = DECIMAL;
+        }else if ( intLen == 0 ){
+            return NOT_A_NUMBER;
+        }
+
+        // exponent.
+        int exp = 0;
+        if ( i < len && (str.charAt(i) == 'e' || str.charAt(i) == 'E') ){
+            ++i;
+            boolean negExp = false;
+            if ( i < len && (str.charAt(i) == '-' || str.charAt(i) == '+') ){
+                negExp = str.charAt(i) == '-';
+                ++i;
+            }
+            start = i;
+            while ( i < len ){
+                char ch = str.charAt(i);
+                if ( ch < '0' || ch > '9' ){
+                    break;
+                }
+                if ( exp < MAX_EXPONENT ){
+                    exp = exp * 10 + (ch - '0');
+                }
+                ++i;
+            }
+            if ( i == start ){
+                return NOT_A_NUMBER;
+            }
+            if ( negExp ){
+                exp = -exp;
+            }
+            kind = DECIMAL;
+        }
+
+        if ( i < len ){
+            return NOT_A_NUMBER;
+        }
+        if ( kind == INTEGER && isOctal && intLen > 1 ){
+            return NOT_A_NUMBER;
+        }
+
+        if ( first < 0 ){
+            // zero
+            return kind | FINITE_DOUBLE | EXACT_DOUBLE;
+        }
+
+        // power of 10 of the first significant digit.
+        int exp10 = intLen - 1 - first + exp;
+        int significantDigits = last - first + 1;
+
+        if ( exp10 > MAX_SAFE_EXPONENT + 1 ){
+            return kind;
+        }else if ( exp10 > MAX_SAFE_EXPONENT ){
+            // near the limit.
+            return kind | getDoubleFlags(str);
+        }
+        kind |= FINITE_DOUBLE;
+        if ( exp10 < MIN_EXPONENT ){
+            // underflows to 0.
+            return kind;
+        }else if ( significantDigits <= MAX_EXACT_DIGITS && exp10 >= MIN_SAFE_EXPONENT ){
+            return kind | EXACT_DOUBLE;
+        }else{
+            return kind | (getDoubleFlags(str) & EXACT_DOUBLE);
+        }
+    }
+
+    /**
+     * Get the double flags the slow way for numbers that can't be
+     * classified from their digit count and exponent.
+     *
+     * @param str a valid JSON number.
+     * @return the flags.
+     */
+    private static int getDoubleFlags( String str )
+    {
+        BigDecimal bigDec = new BigDecimal(str);
+        double d = bigDec.doubleValue();
+        if ( ! Double.isFinite(d) ){
+            return 0;
+        }else if ( bigDec.compareTo(new BigDecimal(Double.toString(d))) == 0 ){
+            return FINITE_DOUBLE | EXACT_DOUBLE;
+        }else{
+            return FINITE_DOUBLE;
+        }
+    }
+
+    /**
+     * Classify a string as a Javascript number of the kind that the parser
+     * accepts. Integers may be decimal or hexadecimal. Decimals must have a
+     * decimal point with at least one digit after it. NaN and Infinity are
+     * decimals.
+     *
+     * @param str the string.
+     * @return {@link #NOT_A_NUMBER}, {@link #INTEGER} or {@link #DECIMAL}.
+     */
+    static int classifyJavascript( String str )
+    {
+        int len = str.length();
+        if ( len == 3 && "NaN".equals(str) ){
+            return DECIMAL;
+        }
+        int i = 0;
+        if ( i < len && (str.charAt(i) == '-' || str.charAt(i) == '+') ){
+            ++i;
+        }
+        if ( len - i == 8 && str.startsWith("Infinity", i) ){
+            return DECIMAL;
+        }
+
+        if ( len - i > 2 && str.charAt(i) == '0' && (str.charAt(i+1) == 'x' || str.charAt(i+1) == 'X') ){
+            // hexadecimal
+            for ( i += 2; i < len; i++ ){
+                char ch = str.charAt(i);
+                if ( ! ((ch >= '0' && ch <= '9') || (ch >= 'a' && ch <= 'f') || (ch >= 'A' && ch <= 'F')) ){
+                    return NOT_A_NUMBER;
+                }
+            }
+            return INTEGER;
+        }
+
+        int start = i;
+        i = skipDigits(str, i, len);
+        boolean haveInt = i > start;
+        if ( i == len ){
+            return haveInt ? INTEGER : NOT_A_NUMBER;
+        }
+        if ( str.charAt(i) != '.' ){
+            return NOT_A_NUMBER;
+        }
+        start = ++i;
+        i = skipDigits(str, i, len);
+        if ( i == start ){
+            return NOT_A_NUMBER;
+        }
+        if ( i < len && (str.charAt(i) == 'e' || str.charAt(i) == 'E') ){
+            ++i;
+            if ( i < len && (str.charAt(i) == '-' || str.charAt(i) == '+') ){
+                ++i;
+            }
+            start = i;
+            i = skipDigits(str, i, len);
+            if ( i == start ){
+                return NOT_A_NUMBER;
+            }
+        }
+        return i == len ? DECIMAL : NOT_A_NUMBER;
+    }
+
+    /**
+     * Check if a string of decimal digits is an octal number, meaning it starts
+     * with 0 and has no 8 or 9.
+     *
+     * @param str the string.
+     * @return true if it's octal.
+     */
+    static boolean isOctal( String str )
+    {
+        int len = str.length();
+        if ( len < 1 || str.charAt(0) != '0' ){
+            return false;
+        }
+        for ( int i = 1; i < len; i++ ){
+            char ch = str.charAt(i);
+            if ( ch < '0' || ch > '7' ){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skip over ASCII decimal digits.
+     *
+     * @param str the string.
+     * @param i the starting index.
+     * @param len the length of the string.
+     * @return the index of the first non-digit or len.
+     */
+    private static int skipDigits( String str, int i, int len )
+    {
+        while ( i < len ){
+            char ch = str.charAt(i);
+            if ( ch < '0' || ch > '9' ){
+                break;
+            }
+            ++i;
+        }
+        return i;
+    }
+
+    private NumericClassifier()
+    {
+    }
+}
@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -48,7 +47,6 @@ class ReflectedObjectMapBuilder
     private Map<String,Field> fields;
     private Map<String,Method> getterMethods;
     private ReflectionData reflectionData;
-    private Map<ReflectionData,ReflectionData> reflectionDataCache;
     private int privacyLevel;
     private boolean cacheReflectionData;
     private boolean isFieldsSpecified;
@@ -120,18 +118,12 @@ class ReflectedObjectMapBuilder
             }else{
                 // Use cached reflection data for better performance.
                 String[] names = reflectionData.getNames();
-                Member[] attributes = reflectionData.getAttributes();
-                obj = new FixedPseudoMap(attributes.length);
+                obj = new FixedPseudoMap(names.length);
 
                 // populate the object map.
-                for ( int i = 0; i < attributes.length; i++ ){
-                    Member attribute = attributes[i];
+                for ( int i = 0; i < names.length; i++ ){
                     name = names[i];
-                    if ( attribute instanceof Method ){
-                        obj.put(name, ((Method)attribute).invoke(propertyValue));
-                    }else{
-                        obj.put(name, ((Field)attribute).get(propertyValue));
-                    }
+                    obj.put(name, reflectionData.getValue(i, propertyValue));
                 }
             }
             return obj;
@@ -142,6 +134,18 @@ class ReflectedObjectMapBuilder
         }
     }
 
+    /**
+     * Get the cached reflection data for the object if it was found in the
+     * cache by {@link #init()}.
+     *
+     * @return The cached reflection data or null if it wasn't cached.
+     * @since 1.10.5
+     */
+    ReflectionData getReflectionData()
+    {
+        return reflectionData;
+    }
+
     /**
      * Initialize data for the reflection.
      */
@@ -157,8 +161,7 @@ class ReflectedObjectMapBuilder
             if ( cacheReflectionData ){
                 fnames = isFieldsSpecified ? new FastStringCollection(fieldNames) : null;
                 TreeMap<String,String> fieldAliases = refClass.getFieldAliasesTreeMap();
-                reflectionDataCache = getReflectionDataCache();
-                reflectionData = reflectionDataCache.get(new ReflectionData(clazz, privacyLevel, fnames, fieldAliases));
+                reflectionData = ReflectionDataCache.get(clazz, privacyLevel, fnames, fieldAliases);
             }else{
                 reflectionData = null;
             }
@@ -293,8 +296,9 @@ class ReflectedObjectMapBuilder
      *
      * @param attributeList The list of reflected attributes.
      * @param nameList The list of names.
+     * @throws IllegalAccessException If an accessor can't be made for an attribute.
      */
-    private void addReflectionData( List<Member> attributeList, List<String> nameList )
+    private void addReflectionData( List<Member> attributeList, List<String> nameList ) throws IllegalAccessException
     {
         FastStringCollection cachedFieldNames = isFieldsSpecified ? fnames : null;
         TreeMap<String,String> fieldAliases = refClass.getFieldAliasesTreeMap();
@@ -305,36 +309,15 @@ class ReflectedObjectMapBuilder
         Member[] attributes = attributeList.toArray(new Member[attributeList.size()]);
 
         reflectionData = new ReflectionData(clazz, privacyLevel, cachedFieldNames, fieldAliases, names, attributes);
-        reflectionDataCache.put(reflectionData, reflectionData);
+        ReflectionDataCache.put(reflectionData);
     }
 
-    /*
-     * static cache for reflection information.
-     */
-    private static volatile Map<ReflectionData,ReflectionData> REFLECTION_DATA_CACHE;
-
     /**
      * Clear the reflection cache.
      */
-    static synchronized void clearReflectionCache()
+    static void clearReflectionCache()
     {
-        REFLECTION_DATA_CACHE = null;
-    }
-
-    /**
-     * Get the reflection data cache.
-     *
-     * @return reflection data cache.
-     */
-    private static synchronized Map<ReflectionData,ReflectionData> getReflectionDataCache()
-    {
-        if ( REFLECTION_DATA_CACHE == null ){
-            REFLECTION_DATA_CACHE = new Hashtable<>(0);
-        }
-        return REFLECTION_DATA_CACHE;
-    }
-
-    static {
-        clearReflectionCache();
+        ReflectionDataCache.clear();
+        BindingPlan.clear();
     }
 }
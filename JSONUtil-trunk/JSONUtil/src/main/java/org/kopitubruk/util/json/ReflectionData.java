@@ -15,7 +15,13 @@
  */
 package org.kopitubruk.util.json;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
 import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.TreeMap;
@@ -25,27 +31,69 @@ import java.util.TreeMap;
  * reflected at a given privacy level and a given set of fieldNames if any and a
  * given set of aliases, if any.
  * <p>
- * The names and attributes arrays are generated and not used to look up things
- * in the cache. They are only used to reflect objects.  The other data is used
- * to look up this object in the cache.
+ * The names, attributes and accessors arrays are generated and not used to
+ * look up things in the cache. They are only used to reflect objects. The
+ * other data is used to look up this object in the cache.
+ * <p>
+ * The accessors are {@link MethodHandle}s made once from the attributes when
+ * this object is created. Unlike {@link Method#invoke(Object, Object...)},
+ * calling one doesn't allocate a varargs array. Fields get handles too, in
+ * place of {@link Field#get(Object)}, so that fields and getters are read
+ * the same way.
+ * <p>
+ * Attributes with a primitive type other than char and float also get a
+ * second accessor that returns a primitive long, double or boolean, so that
+ * {@link JSONUtil} can write their values without boxing them. Those are
+ * only used when the config has no number format for the boxed type, since
+ * number formats need a {@link Number}.
  *
  * @author Bill Davidson
  */
 class ReflectionData
 {
     /*
-     * These are used by hashCode and equals for Hashtable lookups.
+     * These are used by hashCode and equals for cache lookups.
      */
-    private Class<?> clazz;
-    private int privacyLevel;
-    private FastStringCollection fieldNames;
-    private TreeMap<String,String> fieldAliases;
+    private final Class<?> clazz;
+    private final int privacyLevel;
+    private final FastStringCollection fieldNames;
+    private final TreeMap<String,String> fieldAliases;
 
     /*
      * These are used to reflect the class.
      */
-    private String[] names;
-    private Member[] attributes;
+    private final String[] names;
+    private final Member[] attributes;
+    private final MethodHandle[] accessors;
+    private final MethodHandle[] primitiveAccessors;
+    private final int[] kinds;
+
+    /*
+     * Property names ready for output for each of the most recently used
+     * config keys, newest last.
+     */
+    private volatile PropertyNames[] propertyNames = NO_PROPERTY_NAMES;
+
+    /**
+     * The most sets of property names kept for different config keys.
+     */
+    private static final int MAX_PROPERTY_NAMES = 8;
+
+    private static final PropertyNames[] NO_PROPERTY_NAMES = new PropertyNames[0];
+
+    /**
+     * The type for all accessors.
+     */
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /*
+     * Kinds of attributes. Kinds other than OBJECT have a primitive accessor.
+     */
+    static final int OBJECT = 0;
+    static final int INTEGER = 1;       // int, short or byte. long accessor.
+    static final int LONG = 2;
+    static final int DOUBLE = 3;
+    static final int BOOLEAN = 4;
 
     /**
      * Create a new ReflectionData for storing reflection data.
@@ -56,12 +104,19 @@ class ReflectionData
      * @param fieldAliases the aliases map, if any.
      * @param names the names for JSON output
      * @param attributes The list of methods and fields to use for reflection.
+     * @throws IllegalAccessException If an accessor can't be made for one of the attributes.
      */
-    ReflectionData( Class<?> clazz, int privacyLevel, FastStringCollection fieldNames, TreeMap<String,String> fieldAliases, String[] names, Member[] attributes )
+    ReflectionData( Class<?> clazz, int privacyLevel, FastStringCollection fieldNames, TreeMap<String,String> fieldAliases, String[] names, Member[] attributes ) throws IllegalAccessException
     {
-        this(clazz, privacyLevel, fieldNames, fieldAliases);
+        this.clazz = clazz;
+        this.privacyLevel = privacyLevel;
+        this.fieldNames = fieldNames;
+        this.fieldAliases = fieldAliases;
         this.names = names;
         this.attributes = attributes;
+        this.accessors = makeAccessors(attributes);
+        this.kinds = new int[attributes.length];
+        this.primitiveAccessors = makePrimitiveAccessors(attributes, kinds);
     }
 
     /**
@@ -78,6 +133,139 @@ class ReflectionData
         this.privacyLevel = privacyLevel;
         this.fieldNames = fieldNames;
         this.fieldAliases = fieldAliases;
+        this.names = null;
+        this.attributes = null;
+        this.accessors = null;
+        this.primitiveAccessors = null;
+        this.kinds = null;
+    }
+
+    /**
+     * Make a {@link MethodHandle} for each attribute that takes the object
+     * being reflected and returns the value of the attribute as an Object.
+     * The attributes have already been made accessible so the lookup does
+     * not do access checks.
+     *
+     * @param attributes The methods and fields.
+     * @return The accessors.
+     * @throws IllegalAccessException If an accessor can't be made.
+     */
+    private static MethodHandle[] makeAccessors( Member[] attributes ) throws IllegalAccessException
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle[] result = new MethodHandle[attributes.length];
+
+        for ( int i = 0; i < attributes.length; i++ ){
+            Member attribute = attributes[i];
+            MethodHandle handle;
+            if ( attribute instanceof Method ){
+                handle = lookup.unreflect((Method)attribute);
+            }else{
+                handle = lookup.unreflectGetter((Field)attribute);
+            }
+            if ( Modifier.isStatic(attribute.getModifiers()) ){
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            result[i] = handle.asType(ACCESSOR_TYPE);
+        }
+
+        return result;
+    }
+
+    /**
+     * Make the primitive accessors for the attributes that have a primitive
+     * type that can be written without boxing, and fill in the kinds of all
+     * of the attributes.
+     *
+     * @param attributes The methods and fields.
+     * @param kinds Gets the kind of each attribute.
+     * @return The primitive accessors, with nulls for attributes of kind {@link #OBJECT}.
+     * @throws IllegalAccessException If an accessor can't be made.
+     */
+    private static MethodHandle[] makePrimitiveAccessors( Member[] attributes, int[] kinds ) throws IllegalAccessException
+    {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle[] result = new MethodHandle[attributes.length];
+
+        for ( int i = 0; i < attributes.length; i++ ){
+            Member attribute = attributes[i];
+            Class<?> type = getType(attribute);
+            Class<?> accessorType;
+            if ( type == Integer.TYPE || type == Short.TYPE || type == Byte.TYPE ){
+                kinds[i] = INTEGER;
+                accessorType = Long.TYPE;
+            }else if ( type == Long.TYPE ){
+                kinds[i] = LONG;
+                accessorType = Long.TYPE;
+            }else if ( type == Double.TYPE ){
+                kinds[i] = DOUBLE;
+                accessorType = Double.TYPE;
+            }else if ( type == Boolean.TYPE ){
+                kinds[i] = BOOLEAN;
+                accessorType = Boolean.TYPE;
+            }else{
+                kinds[i] = OBJECT;
+                continue;
+            }
+            MethodHandle handle;
+            if ( attribute instanceof Method ){
+                handle = lookup.unreflect((Method)attribute);
+            }else{
+                handle = lookup.unreflectGetter((Field)attribute);
+            }
+            if ( Modifier.isStatic(attribute.getModifiers()) ){
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            result[i] = handle.asType(MethodType.methodType(accessorType, Object.class));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the type of the value of an attribute.
+     *
+     * @param attribute The method or field.
+     * @return The return type of the method or the type of the field.
+     */
+    private static Class<?> getType( Member attribute )
+    {
+        return attribute instanceof Method ? ((Method)attribute).getReturnType() : ((Field)attribute).getType();
+    }
+
+    /**
+     * The class that was reflected.
+     *
+     * @return the class.
+     * @since 1.10.5
+     */
+    Class<?> getReflectedClass()
+    {
+        return clazz;
+    }
+
+    /**
+     * The privacy level used to reflect the class.
+     *
+     * @return the privacy level.
+     * @since 1.10.5
+     */
+    int getPrivacyLevel()
+    {
+        return privacyLevel;
+    }
+
+    /**
+     * Return true if this data was made without specified field names or
+     * aliases, which means that it can be found by class and privacy level
+     * alone.
+     *
+     * @return true if there are no field names or aliases.
+     * @since 1.10.5
+     */
+    boolean isSimpleKey()
+    {
+        return fieldNames == null && fieldAliases == null;
     }
 
     /**
@@ -100,6 +288,161 @@ class ReflectionData
         return attributes;
     }
 
+    /**
+     * Get the property names as they should be written to the output if they
+     * have been made for config options with the given key.
+     *
+     * @param configKey A key representing the config options that affect property names.
+     * @return The property names or null if they haven't been made for the key.
+     * @since 1.10.5
+     */
+    char[][] getPropertyNames( int configKey )
+    {
+        for ( PropertyNames pn : propertyNames ){
+            if ( pn.configKey == configKey ){
+                return pn.names;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Save the property names as they should be written to the output for
+     * config options with the given key. Names are kept for up to
+     * {@link #MAX_PROPERTY_NAMES} keys. After that, the names for the oldest
+     * key are dropped.
+     *
+     * @param configKey A key representing the config options that affect property names.
+     * @param names The property names.
+     * @since 1.10.5
+     */
+    void setPropertyNames( int configKey, char[][] names )
+    {
+        // copy on write. a set lost to a race is just made again.
+        PropertyNames[] old = propertyNames;
+        int keep = Math.min(old.length, MAX_PROPERTY_NAMES - 1);
+        PropertyNames[] pns = new PropertyNames[keep + 1];
+        System.arraycopy(old, old.length - keep, pns, 0, keep);
+        pns[keep] = new PropertyNames(configKey, names);
+        propertyNames = pns;
+    }
+
+    /**
+     * Get the value of the attribute at the given index from the given object.
+     *
+     * @param index The index of the attribute.
+     * @param obj The object being reflected.
+     * @return The value of the attribute.
+     * @throws Exception If the accessor throws anything other than an Error.
+     * @since 1.10.5
+     */
+    Object getValue( int index, Object obj ) throws Exception
+    {
+        try{
+            return (Object)accessors[index].invokeExact(obj);
+        }catch ( Exception|Error e ){
+            throw e;
+        }catch ( Throwable t ){
+            throw new Exception(t);
+        }
+    }
+
+    /**
+     * Get the kind of the attribute at the given index.
+     *
+     * @param index The index of the attribute.
+     * @return The kind. One of {@link #OBJECT}, {@link #INTEGER},
+     *         {@link #LONG}, {@link #DOUBLE} or {@link #BOOLEAN}.
+     * @since 1.10.5
+     */
+    int getKind( int index )
+    {
+        return kinds[index];
+    }
+
+    /**
+     * Get the boxed class of a numeric attribute, for number format lookups.
+     *
+     * @param index The index of the attribute.
+     * @return The boxed class or null if the attribute isn't a primitive number.
+     * @since 1.10.5
+     */
+    Class<? extends Number> getNumberClass( int index )
+    {
+        switch ( kinds[index] ){
+            case INTEGER:
+                Class<?> type = getType(attributes[index]);
+                return type == Integer.TYPE ? Integer.class : type == Short.TYPE ? Short.class : Byte.class;
+            case LONG:
+                return Long.class;
+            case DOUBLE:
+                return Double.class;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the value of an attribute of kind {@link #INTEGER} or {@link #LONG}
+     * without boxing it.
+     *
+     * @param index The index of the attribute.
+     * @param obj The object being reflected.
+     * @return The value of the attribute.
+     * @throws Exception If the accessor throws anything other than an Error.
+     * @since 1.10.5
+     */
+    long getLong( int index, Object obj ) throws Exception
+    {
+        try{
+            return (long)primitiveAccessors[index].invokeExact(obj);
+        }catch ( Exception|Error e ){
+            throw e;
+        }catch ( Throwable t ){
+            throw new Exception(t);
+        }
+    }
+
+    /**
+     * Get the value of an attribute of kind {@link #DOUBLE} without boxing it.
+     *
+     * @param index The index of the attribute.
+     * @param obj The object being reflected.
+     * @return The value of the attribute.
+     * @throws Exception If the accessor throws anything other than an Error.
+     * @since 1.10.5
+     */
+    double getDouble( int index, Object obj ) throws Exception
+    {
+        try{
+            return (double)primitiveAccessors[index].invokeExact(obj);
+        }catch ( Exception|Error e ){
+            throw e;
+        }catch ( Throwable t ){
+            throw new Exception(t);
+        }
+    }
+
+    /**
+     * Get the value of an attribute of kind {@link #BOOLEAN} without boxing it.
+     *
+     * @param index The index of the attribute.
+     * @param obj The object being reflected.
+     * @return The value of the attribute.
+     * @throws Exception If the accessor throws anything other than an Error.
+     * @since 1.10.5
+     */
+    boolean getBoolean( int index, Object obj ) throws Exception
+    {
+        try{
+            return (boolean)primitiveAccessors[index].invokeExact(obj);
+        }catch ( Exception|Error e ){
+            throw e;
+        }catch ( Throwable t ){
+            throw new Exception(t);
+        }
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#hashCode()
      */
@@ -138,7 +481,7 @@ class ReflectionData
     }
 
     /**
-     * This is only ever used in Hashtable lookups so certain assumptions can be
+     * This is only ever used in cache lookups so certain assumptions can be
      * made allowing some normal checks to be skipped.
      */
     @Override
@@ -213,4 +556,26 @@ class ReflectionData
         }
         return true;
     }
+
+    /**
+     * Property names for output paired with the key for the config options
+     * that they were made for.
+     */
+    private static class PropertyNames
+    {
+        private final int configKey;
+        private final char[][] names;
+
+        /**
+         * Make a PropertyNames.
+         *
+         * @param configKey the config key.
+         * @param names the names.
+         */
+        private PropertyNames( int configKey, char[][] names )
+        {
+            this.configKey = configKey;
+            this.names = names;
+        }
+    }
 }
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache for {@link ReflectionData}. The data for each class is attached to
+ * the class with a {@link ClassValue} so that the cache does not keep classes
+ * or their class loaders from being unloaded, which matters for web apps that
+ * get redeployed. The value attached to each class is an
+ * {@link AtomicReference}, which is a JDK class, so that a JDK class that
+ * has been reflected doesn't keep this library's class loader alive once its
+ * data has been cleared or evicted.
+ * <p>
+ * Reads never lock. The common case, where the class is reflected without
+ * specified field names or aliases, is looked up by privacy level in a small
+ * array and does not allocate anything. Other cases use a
+ * {@link ConcurrentHashMap} per class.
+ * <p>
+ * Since a {@link ClassValue} can't be enumerated, the classes that have data
+ * in the cache are kept in a queue of weak references in the order that
+ * they were first cached. Clearing empties the reference attached to each of
+ * them. If a maximum size has been set, then the classes that were cached
+ * first are evicted until there is room for the new entry. Adds, clears and
+ * evictions are synchronized.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class ReflectionDataCache
+{
+    /**
+     * Per class cache data.
+     */
+    private static final ClassValue<AtomicReference<ClassData>> CLASS_DATA = new ClassValue<AtomicReference<ClassData>>(){
+        @Override
+        protected AtomicReference<ClassData> computeValue( Class<?> type )
+        {
+            return new AtomicReference<>();
+        }
+    };
+
+    /**
+     * The classes with data in the cache, oldest first.
+     */
+    private static final ArrayDeque<CachedClass> CACHED_CLASSES = new ArrayDeque<>();
+
+    /**
+     * Gets the references for classes that have been unloaded.
+     */
+    private static final ReferenceQueue<Class<?>> UNLOADED = new ReferenceQueue<>();
+
+    /**
+     * The maximum number of entries. 0 means no limit.
+     */
+    private static volatile int maxSize = 0;
+
+    /**
+     * The number of entries.
+     */
+    private static volatile int size = 0;
+
+    // statistics.
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder evictions = new LongAdder();
+
+    /**
+     * Get the cached reflection data for the given key data.
+     *
+     * @param clazz the class being reflected.
+     * @param privacyLevel the privacy level for reflection.
+     * @param fieldNames the fieldNames being reflected, if specified.
+     * @param fieldAliases the aliases map, if any.
+     * @return the cached data or null if it is not in the cache.
+     */
+    static ReflectionData get( Class<?> clazz, int privacyLevel, FastStringCollection fieldNames, TreeMap<String,String> fieldAliases )
+    {
+        ClassData classData = CLASS_DATA.get(clazz).get();
+        ReflectionData result = null;
+        if ( classData != null ){
+            if ( fieldNames == null && fieldAliases == null ){
+                result = classData.simple.get(privacyLevel);
+            }else{
+                ConcurrentMap<ReflectionData,ReflectionData> others = classData.others;
+                if ( others != null ){
+                    result = others.get(new ReflectionData(clazz, privacyLevel, fieldNames, fieldAliases));
+                }
+            }
+        }
+        if ( result == null ){
+            misses.increment();
+        }else{
+            hits.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Add reflection data to the cache.
+     *
+     * @param reflectionData the data to add.
+     */
+    static synchronized void put( ReflectionData reflectionData )
+    {
+        expungeUnloaded();
+        int max = maxSize;
+        if ( max > 0 ){
+            evict(max - 1);
+        }
+
+        Class<?> clazz = reflectionData.getReflectedClass();
+        AtomicReference<ClassData> ref = CLASS_DATA.get(clazz);
+        ClassData classData = ref.get();
+        if ( classData == null ){
+            classData = new ClassData(new CachedClass(clazz));
+            CACHED_CLASSES.addLast(classData.cachedClass);
+            ref.set(classData);
+        }
+        boolean added;
+        if ( reflectionData.isSimpleKey() ){
+            added = classData.simple.getAndSet(reflectionData.getPrivacyLevel(), reflectionData) == null;
+        }else{
+            if ( classData.others == null ){
+                classData.others = new ConcurrentHashMap<>();
+            }
+            added = classData.others.put(reflectionData, reflectionData) == null;
+        }
+        if ( added ){
+            ++classData.cachedClass.count;
+            ++size;
+        }
+    }
+
+    /**
+     * Clear the cache.
+     */
+    static synchronized void clear()
+    {
+        for ( CachedClass cachedClass : CACHED_CLASSES ){
+            remove(cachedClass);
+        }
+        CACHED_CLASSES.clear();
+        expungeUnloaded();
+        size = 0;
+    }
+
+    /**
+     * Evict the classes that were cached first until there are no more than
+     * the given number of entries in the cache. Only called while
+     * synchronized.
+     *
+     * @param limit the number of entries to allow.
+     */
+    private static void evict( int limit )
+    {
+        while ( size > limit && ! CACHED_CLASSES.isEmpty() ){
+            CachedClass cachedClass = CACHED_CLASSES.removeFirst();
+            remove(cachedClass);
+            evictions.add(cachedClass.count);
+            size -= cachedClass.count;
+        }
+    }
+
+    /**
+     * Remove the data for a class from the class, if the class still exists.
+     * Only called while synchronized.
+     *
+     * @param cachedClass the class.
+     */
+    private static void remove( CachedClass cachedClass )
+    {
+        Class<?> clazz = cachedClass.get();
+        if ( clazz != null ){
+            CLASS_DATA.get(clazz).set(null);
+        }
+    }
+
+    /**
+     * Drop the classes that have been unloaded from the queue. Their data
+     * went with them. Only called while synchronized.
+     */
+    private static void expungeUnloaded()
+    {
+        if ( UNLOADED.poll() == null ){
+            return;
+        }
+        while ( UNLOADED.poll() != null ){
+        }
+        for ( Iterator<CachedClass> it = CACHED_CLASSES.iterator(); it.hasNext(); ){
+            CachedClass cachedClass = it.next();
+            if ( cachedClass.get() == null ){
+                it.remove();
+                size -= cachedClass.count;
+            }
+        }
+    }
+
+    /**
+     * Get the number of cache hits since the statistics were last reset.
+     *
+     * @return the number of cache hits.
+     */
+    static long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of cache misses since the statistics were last reset.
+     *
+     * @return the number of cache misses.
+     */
+    static long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of entries that have been evicted because the cache
+     * reached its maximum size since the statistics were last reset.
+     *
+     * @return the number of evictions.
+     */
+    static long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Reset the hit, miss and eviction counts.
+     */
+    static void resetStatistics()
+    {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    /**
+     * Get the number of entries in the cache.
+     *
+     * @return the number of entries.
+     */
+    static int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of entries in the cache.
+     *
+     * @return the maximum size. 0 means no limit.
+     */
+    static int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum number of entries in the cache. When the cache is full,
+     * the classes that were cached first are evicted before the next entry
+     * is added. If the cache is already bigger than the new maximum, then it
+     * is reduced now.
+     *
+     * @param max the maximum size. 0 means no limit.
+     */
+    static synchronized void setMaxSize( int max )
+    {
+        maxSize = max;
+        if ( max > 0 ){
+            evict(max);
+        }
+    }
+
+    /**
+     * Cache data for one class.
+     */
+    private static class ClassData
+    {
+        private final CachedClass cachedClass;
+        private final AtomicReferenceArray<ReflectionData> simple;
+        private volatile ConcurrentMap<ReflectionData,ReflectionData> others;
+
+        /**
+         * Create a new empty ClassData.
+         *
+         * @param cachedClass the queue entry for the class.
+         */
+        private ClassData( CachedClass cachedClass )
+        {
+            this.cachedClass = cachedClass;
+            simple = new AtomicReferenceArray<>(ReflectUtil.PUBLIC+1);
+            others = null;
+        }
+    }
+
+    /**
+     * Queue entry for a class with data in the cache. The reference to the
+     * class is weak so that the queue doesn't keep it from being unloaded.
+     */
+    private static class CachedClass extends WeakReference<Class<?>>
+    {
+        /**
+         * The number of entries for the class. Only used while synchronized.
+         */
+        private int count;
+
+        /**
+         * Create a new CachedClass.
+         *
+         * @param clazz the class.
+         */
+        private CachedClass( Class<?> clazz )
+        {
+            super(clazz, UNLOADED);
+            count = 0;
+        }
+    }
+
+    private ReflectionDataCache()
+    {
+    }
+}
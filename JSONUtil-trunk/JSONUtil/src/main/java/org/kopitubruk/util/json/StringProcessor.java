@@ -17,9 +17,11 @@ package org.kopitubruk.util.json;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -141,6 +143,11 @@ class StringProcessor
      */
     private static final char[] HEX_DIGITS = {'0','1','2','3','4','5','6','7','8','9','A','B','C','D','E','F'};
 
+    /**
+     * Values of ASCII hex digits. -1 for other chars.
+     */
+    private static final byte[] HEX_VALUES = new byte[MAX_ASCII+1];
+
     /*
      * Initial buffer patterns for generating escapes.
      */
@@ -155,6 +162,31 @@ class StringProcessor
      */
     static final char UNICODE_REPLACEMENT_CHARACTER = 0xFFFD;
 
+    /*
+     * Escape classes for chars in the tables used by
+     * writeString(String,Writer,JSONConfig,boolean).
+     */
+    private static final byte SAFE = 0;         // write as is.
+    private static final byte ESCAPE = 1;       // write a code unit escape.
+    private static final byte SLOW = 2;         // needs the code point processing.
+
+    /**
+     * Number of distinct escape class tables. See
+     * {@link #getEscapeClassTable(JSONConfig,boolean)}.
+     */
+    private static final int NUM_ESCAPE_CLASS_TABLES = 16;
+
+    /**
+     * Escape class tables for all chars, created as needed.
+     */
+    private static final AtomicReferenceArray<byte[]> ESCAPE_CLASS_TABLES = new AtomicReferenceArray<>(NUM_ESCAPE_CLASS_TABLES);
+
+    /**
+     * Escapes for ASCII chars in strings. null for chars that don't need one.
+     */
+    private static final String[] ASCII_ESC = new String[MAX_ASCII+1];
+    private static final String[] ECMA6_ASCII_ESC = new String[MAX_ASCII+1];
+
     /*
      * Initialize static data
      */
@@ -200,6 +232,22 @@ class StringProcessor
             ECMA6_ESC[i] = esc6;
             ECMA6_SINGLE_ESC[i] = single != null ? single : esc6;
         }
+
+        Arrays.fill(HEX_VALUES, (byte)-1);
+        for ( int i = 0; i < 16; i++ ){
+            HEX_VALUES[HEX_DIGITS[i]] = (byte)i;
+            HEX_VALUES[Character.toLowerCase(HEX_DIGITS[i])] = (byte)i;
+        }
+
+        // same escapes that getEscapeString() makes for strings.
+        for ( char ch = 0; ch < ' '; ch++ ){
+            int i = ch;
+            ASCII_ESC[i] = i < NUM_CONTROLS ? SINGLE_ESC[i] : String.format("\\u%04X", i);
+            ECMA6_ASCII_ESC[i] = i < NUM_CONTROLS ? ECMA6_SINGLE_ESC[i] : ASCII_ESC[i];
+        }
+        ASCII_ESC['"'] = ECMA6_ASCII_ESC['"'] = DQ;
+        ASCII_ESC['/'] = ECMA6_ASCII_ESC['/'] = SL;
+        ASCII_ESC[BACKSLASH] = ECMA6_ASCII_ESC[BACKSLASH] = BK;
     }
 
     // private data and flags.
@@ -459,15 +507,29 @@ class StringProcessor
      * @throws IOException if there's an I/O error.
      */
     void writeString( Writer json ) throws IOException
+    {
+        writeString(json, 0);
+    }
+
+    /**
+     * Write the current string starting at the given index.
+     *
+     * @param json The writer.
+     * @param start The index of the first char to write.
+     * @throws IOException if there's an I/O error.
+     * @since 1.10.5
+     */
+    private void writeString( Writer json, int start ) throws IOException
     {
         lastProcessIndex = findLastProcessIndex();
 
-        if ( lastProcessIndex < 0 ){
-            json.write(strValue);   // nothing to process.
+        if ( lastProcessIndex < start ){
+            json.write(strValue, start, len - start);   // nothing to process.
             return;
         }
 
         // processing necessary.
+        nextIndex = start;
         while ( nextIndex < len ){
             nextCodePoint();
 
@@ -503,6 +565,171 @@ class StringProcessor
         flushCurrentSubstring(json);
     }
 
+    /**
+     * Write a string to the given Writer using escaping as needed or requested
+     * by the configuration options. This gives the same results as
+     * {@link #writeString(Writer)} but chars are looked up in a table of
+     * escape classes so that runs of chars that don't need escaping can be
+     * skipped with a tight loop and written with a single write. The first
+     * time that a char which needs code point processing is found, such as a
+     * surrogate or an inline escape, the rest of the string is handed to the
+     * code point processing.
+     *
+     * @param strValue The string.
+     * @param json The writer.
+     * @param cfg The config object.
+     * @param processInlineEscapes If true, then process inline escapes.
+     * @throws IOException if there's an I/O error.
+     * @since 1.10.5
+     */
+    static void writeString( String strValue, Writer json, JSONConfig cfg, boolean processInlineEscapes ) throws IOException
+    {
+        byte[] escapeClass = getEscapeClassTable(cfg, processInlineEscapes);
+        int len = strValue.length();
+        int start = 0;
+        int i = 0;
+
+        while ( i < len ){
+            // skip the chars that don't need escaping.
+            while ( i < len && escapeClass[strValue.charAt(i)] == SAFE ){
+                ++i;
+            }
+            if ( i == len ){
+                break;
+            }
+            if ( i > start ){
+                json.write(strValue, start, i - start);
+            }
+            char ch = strValue.charAt(i);
+            if ( escapeClass[ch] == SLOW ){
+                new StringProcessor(strValue, cfg, processInlineEscapes).writeString(json, i);
+                return;
+            }
+            writeEscape(ch, json, cfg);
+            start = ++i;
+        }
+
+        if ( start == 0 ){
+            json.write(strValue);
+        }else if ( start < len ){
+            json.write(strValue, start, len - start);
+        }
+    }
+
+    /**
+     * Write a single char to the given Writer, giving the same result as
+     * {@link #writeString(String, Writer, JSONConfig, boolean)} would for a
+     * string of that char without making the string, unless the char needs
+     * the code point processing.
+     *
+     * @param ch The char.
+     * @param json The writer.
+     * @param cfg The config object.
+     * @param processInlineEscapes If true, then process inline escapes.
+     * @throws IOException if there's an I/O error.
+     * @since 1.10.5
+     */
+    static void writeChar( char ch, Writer json, JSONConfig cfg, boolean processInlineEscapes ) throws IOException
+    {
+        switch ( getEscapeClassTable(cfg, processInlineEscapes)[ch] ){
+            case SAFE:
+                json.write(ch);
+                break;
+            case ESCAPE:
+                writeEscape(ch, json, cfg);
+                break;
+            default:
+                new StringProcessor(String.valueOf(ch), cfg, processInlineEscapes).writeString(json, 0);
+                break;
+        }
+    }
+
+    /**
+     * Write the escape for a char with the {@link #ESCAPE} escape class.
+     *
+     * @param ch The char.
+     * @param json The writer.
+     * @param cfg The config object.
+     * @throws IOException if there's an I/O error.
+     */
+    private static void writeEscape( char ch, Writer json, JSONConfig cfg ) throws IOException
+    {
+        if ( ch <= MAX_ASCII ){
+            json.write(cfg.isUseECMA6() ? ECMA6_ASCII_ESC[ch] : ASCII_ESC[ch]);
+        }else{
+            json.write(BACKSLASH);
+            json.write('u');
+            json.write(HEX_DIGITS[ch >> 12]);
+            json.write(HEX_DIGITS[(ch >> 8) & 0xF]);
+            json.write(HEX_DIGITS[(ch >> 4) & 0xF]);
+            json.write(HEX_DIGITS[ch & 0xF]);
+        }
+    }
+
+    /**
+     * Get the escape class table for the given configuration. Only the
+     * options that change the class of a char are used to pick the table, so
+     * there are only a few possible tables.
+     *
+     * @param cfg The config object.
+     * @param processInlineEscapes If true, then process inline escapes.
+     * @return The table.
+     */
+    private static byte[] getEscapeClassTable( JSONConfig cfg, boolean processInlineEscapes )
+    {
+        int key = (cfg.isEscapeNonAscii() ? 1 : 0) |
+                  (cfg.isFullJSONIdentifierCodePoints() ? 0 : 2) |
+                  (cfg.getUndefinedCodePointPolicy() == JSONConfig.PASS ? 4 : 0) |
+                  (processInlineEscapes ? 8 : 0);
+
+        byte[] table = ESCAPE_CLASS_TABLES.get(key);
+        if ( table == null ){
+            table = makeEscapeClassTable(key);
+            ESCAPE_CLASS_TABLES.set(key, table);
+        }
+        return table;
+    }
+
+    /**
+     * Make an escape class table. These follow the same rules as the
+     * {@link EscapeChecker}s and nextCodePoint().
+     *
+     * @param key The bits for the options from
+     *            {@link #getEscapeClassTable(JSONConfig,boolean)}
+     * @return The table.
+     */
+    private static byte[] makeEscapeClassTable( int key )
+    {
+        boolean escapeNonAscii = (key & 1) != 0;
+        boolean supportEval = (key & 2) != 0;
+        boolean passUndefined = (key & 4) != 0;
+        boolean processInlineEscapes = (key & 8) != 0;
+
+        byte[] table = new byte[Character.MAX_VALUE+1];
+        for ( int i = 0; i <= Character.MAX_VALUE; i++ ){
+            char ch = (char)i;
+            byte escapeClass;
+            if ( ch <= MAX_ASCII ){
+                if ( ch == BACKSLASH ){
+                    escapeClass = processInlineEscapes ? SLOW : ESCAPE;
+                }else{
+                    escapeClass = isControl(ch) || isEsc(ch) ? ESCAPE : SAFE;
+                }
+            }else if ( Character.isSurrogate(ch) ){
+                escapeClass = SLOW;
+            }else if ( ! Character.isDefined(ch) ){
+                // undefined code points are not escaped when passed.
+                escapeClass = passUndefined ? SAFE : SLOW;
+            }else if ( escapeNonAscii || (supportEval && isEvalEsc(ch)) ){
+                escapeClass = ESCAPE;
+            }else{
+                escapeClass = SAFE;
+            }
+            table[i] = escapeClass;
+        }
+        return table;
+    }
+
     /**
      * Return true if an escape is needed for the current code point.
      *
@@ -653,6 +880,7 @@ class StringProcessor
             case JSONConfig.DISCARD:
                 didDiscard = 1;
                 haveCodePoint = 0;
+                isDefined = 1;          // don't check a discarded char.
                 break;
             case JSONConfig.EXCEPTION:
                 throw new UnmatchedSurrogateException(cfg, strValue, index, chars[0]);
@@ -1140,6 +1368,11 @@ class StringProcessor
      * rid of octal escapes and hex escapes and any unnecessary escapes. If the
      * characters still need to be escaped, then they will be re-escaped by the
      * caller.
+     * <p>
+     * This is done in a single pass without regular expressions. Segments of
+     * the string without escapes are copied in bulk. If the string has any
+     * escapes, then the undefined code point and unmatched surrogate policies
+     * are also applied to the rest of the string.
      *
      * @param strValue Input string.
      * @param cfg The config object for flags.
@@ -1147,115 +1380,217 @@ class StringProcessor
      */
     static String unEscape( String strValue, JSONConfig cfg )
     {
-        int lastBackSlash = strValue.lastIndexOf(BACKSLASH);
-        if ( lastBackSlash < 0 ){
+        int nextBackSlash = strValue.indexOf(BACKSLASH);
+        if ( nextBackSlash < 0 ){
             return strValue;            // nothing to do.
         }
 
-        Matcher jsEscMatcher = JAVASCRIPT_ESC_PAT.matcher(strValue);
-        Matcher codeUnitMatcher = CODE_UNIT_PAT.matcher(strValue);
-        Matcher codePointMatcher = CODE_POINT_PAT.matcher(strValue);
-        final int jsLen = MAX_JS_ESC_LENGTH;
-        final int unLen = CODE_UNIT_ESC_LENGTH;
-        final int cpLen = MAX_CODE_POINT_ESC_LENGTH;
-
-        StringBuilder buf = new StringBuilder();
-        StringProcessor cp = new StringProcessor(strValue, cfg);
-        while ( cp.nextReady() ){
-            if ( cp.codePoint == BACKSLASH ){
-                if ( gotMatch(jsEscMatcher, cp.index, cp.end(jsLen)) ){
-                    String esc = jsEscMatcher.group(1);
-                    buf.append(getEscapeChar(esc));
-                    cp.nextIndex += esc.length() - 1;
-                }else if ( gotMatch(codeUnitMatcher, cp.index, cp.end(unLen)) ){
-                    handleCodeUnitEscape(cp, codeUnitMatcher, buf);
-                }else if ( gotMatch(codePointMatcher, cp.index, cp.end(cpLen)) ){
-                    handleCodePointEscape(cp, codePointMatcher, buf);
+        int len = strValue.length();
+        int undefinedCodePointPolicy = cfg.getUndefinedCodePointPolicy();
+        int unmatchedSurrogatePolicy = cfg.getUnmatchedSurrogatePolicy();
+        boolean checkCodePoints = changesCodePoints(undefinedCodePointPolicy) || changesCodePoints(unmatchedSurrogatePolicy);
+
+        // unescaping never makes the string longer.
+        char[] buf = new char[len];
+        int count = 0;
+        int start = 0;                  // start of current segment to copy.
+        int i = checkCodePoints ? 0 : nextBackSlash;
+
+        while ( i < len ){
+            char ch = strValue.charAt(i);
+            if ( ch == BACKSLASH ){
+                strValue.getChars(start, i, buf, count);
+                count += i - start;
+                int end = Math.min(i + MAX_CODE_POINT_ESC_LENGTH, len);
+                int escLen = 0;
+                int escChar = -1;
+                char type = i+1 < end ? strValue.charAt(i+1) : 0;
+                switch ( type ){
+                    case 'b': escChar = '\b'; escLen = 2; break;
+                    case 'f': escChar = '\f'; escLen = 2; break;
+                    case 'n': escChar = '\n'; escLen = 2; break;
+                    case 'r': escChar = '\r'; escLen = 2; break;
+                    case 't': escChar = '\t'; escLen = 2; break;
+                    case 'v': escChar = 0xB; escLen = 2; break;
+                    case '\\':
+                    case '/':
+                    case '\'':
+                    case '"':
+                        escChar = type;
+                        escLen = 2;
+                        break;
+                    case 'x':
+                        if ( i+3 < end && isHex(strValue.charAt(i+2)) && isHex(strValue.charAt(i+3)) ){
+                            escChar = hexValue(strValue.charAt(i+2)) << 4 | hexValue(strValue.charAt(i+3));
+                            escLen = 4;
+                        }
+                        break;
+                    case 'u':
+                        if ( i+5 < end && isHex(strValue.charAt(i+2)) && isHex(strValue.charAt(i+3)) &&
+                                          isHex(strValue.charAt(i+4)) && isHex(strValue.charAt(i+5)) ){
+                            // code unit escape.
+                            char unit = (char)(hexValue(strValue.charAt(i+2)) << 12 |
+                                               hexValue(strValue.charAt(i+3)) << 8 |
+                                               hexValue(strValue.charAt(i+4)) << 4 |
+                                               hexValue(strValue.charAt(i+5)));
+                            escChar = unit;
+                            escLen = CODE_UNIT_ESC_LENGTH;
+                            if ( ! Character.isDefined(unit) ){
+                                switch ( undefinedCodePointPolicy ){
+                                    case JSONConfig.REPLACE:
+                                        escChar = UNICODE_REPLACEMENT_CHARACTER;
+                                        break;
+                                    case JSONConfig.DISCARD:
+                                        escChar = -1;
+                                        break;
+                                    case JSONConfig.EXCEPTION:
+                                        throw new UndefinedCodePointException(cfg, strValue, i, unit);
+                                }
+                            }
+                        }else if ( i+2 < end && strValue.charAt(i+2) == '{' ){
+                            // ECMAScript 6 code point escape.
+                            int j = i + 3;
+                            int codePoint = 0;
+                            while ( j < end && isHex(strValue.charAt(j)) ){
+                                codePoint = codePoint << 4 | hexValue(strValue.charAt(j));
+                                ++j;
+                            }
+                            if ( j > i+3 && j < end && strValue.charAt(j) == '}' ){
+                                escLen = j + 1 - i;
+                                if ( ! Character.isDefined(codePoint) ){
+                                    switch ( undefinedCodePointPolicy ){
+                                        case JSONConfig.REPLACE:
+                                            codePoint = UNICODE_REPLACEMENT_CHARACTER;
+                                            break;
+                                        case JSONConfig.DISCARD:
+                                            codePoint = -1;
+                                            break;
+                                        case JSONConfig.EXCEPTION:
+                                            throw new UndefinedCodePointException(cfg, strValue, i, strValue.substring(i+3, j));
+                                        default:
+                                            if ( codePoint > Character.MAX_CODE_POINT ){
+                                                // no way to properly encode this value.
+                                                codePoint = UNICODE_REPLACEMENT_CHARACTER;
+                                            }
+                                            break;
+                                    }
+                                }
+                                if ( codePoint >= 0 ){
+                                    count += Character.toChars(codePoint, buf, count);
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        if ( type >= '0' && type <= '7' ){
+                            // same as the regular expression [0-3]?[0-7]{1,2}
+                            int maxDigits = type <= '3' ? 3 : 2;
+                            int endOctal = Math.min(i + 1 + maxDigits, Math.min(i + MAX_JS_ESC_LENGTH, len));
+                            int j = i + 1;
+                            escChar = 0;
+                            while ( j < endOctal && strValue.charAt(j) >= '0' && strValue.charAt(j) <= '7' ){
+                                escChar = escChar << 3 | (strValue.charAt(j) - '0');
+                                ++j;
+                            }
+                            escLen = j - i;
+                        }
+                        break;
+                }
+                if ( escChar >= 0 ){
+                    buf[count++] = (char)escChar;
+                }
+                if ( escLen > 0 ){
+                    i += escLen;
                 }else{
                     // have '\' but nothing looks like a valid escape; just pass it through.
-                    cp.appendChars(buf);
+                    buf[count++] = BACKSLASH;
+                    ++i;
                 }
-                if ( cp.nextIndex > lastBackSlash ){
-                    // don't need these anymore.
-                    jsEscMatcher = null;
-                    codeUnitMatcher = null;
-                    codePointMatcher = null;
+                start = i;
+                if ( ! checkCodePoints ){
+                    // skip to the next backslash.
+                    nextBackSlash = strValue.indexOf(BACKSLASH, i);
+                    i = nextBackSlash < 0 ? len : nextBackSlash;
                 }
+            }else if ( ch <= MAX_ASCII ){
+                ++i;
             }else{
-                cp.appendChars(buf);            // not an escape.
+                // apply the code point policies.
+                int charCount = 1;
+                int policy = JSONConfig.PASS;
+                boolean isUndefined = false;
+                if ( Character.isSurrogate(ch) ){
+                    if ( i+1 < len && Character.isSurrogatePair(ch, strValue.charAt(i+1)) ){
+                        charCount = 2;
+                        if ( ! Character.isDefined(Character.toCodePoint(ch, strValue.charAt(i+1))) ){
+                            policy = undefinedCodePointPolicy;
+                            isUndefined = true;
+                        }
+                    }else{
+                        policy = unmatchedSurrogatePolicy;
+                    }
+                }else if ( ! Character.isDefined(ch) ){
+                    policy = undefinedCodePointPolicy;
+                    isUndefined = true;
+                }
+                if ( changesCodePoints(policy) ){
+                    strValue.getChars(start, i, buf, count);
+                    count += i - start;
+                    switch ( policy ){
+                        case JSONConfig.REPLACE:
+                            buf[count++] = UNICODE_REPLACEMENT_CHARACTER;
+                            break;
+                        case JSONConfig.EXCEPTION:
+                            if ( isUndefined ){
+                                throw new UndefinedCodePointException(cfg, strValue, i, strValue.codePointAt(i));
+                            }else{
+                                throw new UnmatchedSurrogateException(cfg, strValue, i, ch);
+                            }
+                    }
+                    start = i + charCount;
+                }
+                i += charCount;
             }
         }
-        return buf.toString();
+
+        strValue.getChars(start, len, buf, count);
+        count += len - start;
+
+        return new String(buf, 0, count);
     }
 
     /**
-     * Handle unescaping a code unit escape.
+     * Return true if the given policy can change code points in
+     * {@link #unEscape(String,JSONConfig)}.
      *
-     * @param cp The CodePointData
-     * @param codeUnitMatcher the codeUnitMatcher that has just matched a code unit.
-     * @param buf the buffer.
+     * @param policy the policy.
+     * @return true if it replaces, discards or throws.
      */
-    private static void handleCodeUnitEscape( StringProcessor cp, Matcher codeUnitMatcher, StringBuilder buf )
+    private static boolean changesCodePoints( int policy )
     {
-        String esc = codeUnitMatcher.group(1);
-        String hexStr = codeUnitMatcher.group(2);
-        char ch = (char)Integer.parseInt(hexStr, 16);
-        int addIt = 1;
-        if ( ! Character.isDefined(ch) ){
-            switch ( cp.undefinedCodePointPolicy ){
-                case JSONConfig.REPLACE:
-                    cp.replaceCodePoint();
-                    ch = (char)cp.getCodePoint();
-                    break;
-                case JSONConfig.DISCARD:
-                    addIt = 0;
-                    break;
-                case JSONConfig.EXCEPTION:
-                    throw new UndefinedCodePointException(cp.cfg, cp.strValue, cp.getIndex(), ch);
-            }
-        }
-        if ( addIt != 0 ){
-            buf.append(ch);
-        }
-        cp.nextIndex += esc.length() - 1;
+        return policy == JSONConfig.REPLACE || policy == JSONConfig.DISCARD || policy == JSONConfig.EXCEPTION;
     }
 
     /**
-     * Handle unescaping a code point escape.
+     * Return true if the given char is an ASCII hexadecimal digit.
      *
-     * @param cp The CodePointData
-     * @param codePointMatcher the codePointMatcher that has just matched a code point.
-     * @param buf the buffer.
+     * @param ch the char.
+     * @return true if it's a hex digit.
      */
-    private static void handleCodePointEscape( StringProcessor cp, Matcher codePointMatcher, StringBuilder buf )
+    private static boolean isHex( char ch )
     {
-        String hexStr = codePointMatcher.group(2);
-        int codePoint = Integer.parseInt(hexStr, 16);
-        int addIt = 1;
-        if ( ! Character.isDefined(codePoint) ){
-            switch ( cp.undefinedCodePointPolicy ){
-                case JSONConfig.REPLACE:
-                    cp.replaceCodePoint();
-                    codePoint = cp.getCodePoint();
-                    break;
-                case JSONConfig.DISCARD:
-                    addIt = 0;
-                    break;
-                case JSONConfig.EXCEPTION:
-                    throw new UndefinedCodePointException(cp.cfg, cp.strValue, cp.getIndex(), hexStr);
-                default:
-                    if ( codePoint > Character.MAX_CODE_POINT ){
-                        // no way to properly encode this value.
-                        cp.replaceCodePoint();
-                        codePoint = cp.getCodePoint();
-                    }
-                    break;
-            }
-        }
-        if ( addIt != 0 ){
-            buf.appendCodePoint(codePoint);
-        }
-        cp.nextIndex += codePointMatcher.group(1).length() - 1;
+        return ch <= MAX_ASCII && HEX_VALUES[ch] >= 0;
+    }
+
+    /**
+     * Get the value of an ASCII hexadecimal digit.
+     *
+     * @param ch the hex digit, already checked with {@link #isHex(char)}.
+     * @return the value of the digit.
+     */
+    private static int hexValue( char ch )
+    {
+        return HEX_VALUES[ch];
     }
 
     /**
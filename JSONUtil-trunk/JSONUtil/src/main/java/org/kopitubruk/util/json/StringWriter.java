@@ -15,6 +15,7 @@
  */
 package org.kopitubruk.util.json;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Arrays;
 
@@ -43,6 +44,20 @@ class StringWriter extends Writer
     private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
     private static final int INITIAL_SIZE = 16;
 
+    /**
+     * Buffers bigger than this are not kept in the pool so that one large
+     * document doesn't pin a large buffer for the life of a thread.
+     */
+    private static final int MAX_POOLED_SIZE = 1 << 16;
+
+    /**
+     * Pool of buffers, one per thread. Only the char array is pooled and not
+     * the writer so that the thread local doesn't hold an instance of a class
+     * from this library, which would keep a redeployed web app's class loader
+     * from being unloaded.
+     */
+    private static final ThreadLocal<char[]> BUFFER_POOL = new ThreadLocal<>();
+
     private char[] value;
     private int count;
 
@@ -51,10 +66,54 @@ class StringWriter extends Writer
      */
     public StringWriter()
     {
-        value = new char[INITIAL_SIZE];
+        this(new char[INITIAL_SIZE]);
+    }
+
+    /**
+     * Create a new StringWriter that uses the given buffer.
+     *
+     * @param value the buffer.
+     * @since 1.10.5
+     */
+    private StringWriter( char[] value )
+    {
+        this.value = value;
         count = 0;
     }
 
+    /**
+     * Get a writer that uses the buffer from the current thread's pool or a
+     * new buffer if the pool is empty. The buffer is removed from the pool
+     * until {@link #release()} is called so that reentrant calls from
+     * {@link JSONAble}s get their own buffer.
+     *
+     * @return An empty writer.
+     * @since 1.10.5
+     */
+    static StringWriter acquire()
+    {
+        char[] buf = BUFFER_POOL.get();
+        if ( buf == null ){
+            return new StringWriter();
+        }
+        BUFFER_POOL.set(null);
+        return new StringWriter(buf);
+    }
+
+    /**
+     * Return this writer's buffer to the current thread's pool so that it can
+     * be reused. Do not use the writer after calling this.
+     *
+     * @since 1.10.5
+     */
+    void release()
+    {
+        if ( value.length <= MAX_POOLED_SIZE ){
+            BUFFER_POOL.set(value);
+        }
+        value = null;
+    }
+
     /**
      * Write a string.
      *
@@ -95,23 +154,63 @@ class StringWriter extends Writer
     }
 
     /**
-     * Very specific to this package. Write an array of chars representing a
-     * single code point.
+     * Write part of an array of chars. These are usually a single code point
+     * or a property name that was made ahead of time.
      *
-     * @param cbuf a char array for a single code point.
-     * @param off will always be 0.
-     * @param len will always be 1 for BMP code points or 2 for a surrogate pair.
+     * @param cbuf a char array.
+     * @param off the beginning index
+     * @param len the number of chars to write.
      */
     @Override
     public void write( char[] cbuf, int off, int len )
     {
         ensureCapacity(count + len);
-        value[count++] = cbuf[0];
-        if ( len == 2 ){
-            value[count++] = cbuf[1];
+        if ( len > 2 ){
+            System.arraycopy(cbuf, off, value, count, len);
+            count += len;
+        }else if ( len > 0 ){
+            value[count++] = cbuf[off];
+            if ( len == 2 ){
+                value[count++] = cbuf[off+1];
+            }
         }
     }
 
+    /**
+     * Drop everything after the given length so that the buffer can be
+     * reused.
+     *
+     * @param length the new length. Must not be more than the current length.
+     * @since 1.10.5
+     */
+    void setLength( int length )
+    {
+        count = length;
+    }
+
+    /**
+     * Get the number of chars that have been written.
+     *
+     * @return the number of chars.
+     * @since 1.10.5
+     */
+    int length()
+    {
+        return count;
+    }
+
+    /**
+     * Write the contents of this writer to another writer.
+     *
+     * @param out the other writer.
+     * @throws IOException If there is an error on output.
+     * @since 1.10.5
+     */
+    void writeTo( Writer out ) throws IOException
+    {
+        out.write(value, 0, count);
+    }
+
     /**
      * Make the string and return it.
      *
@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 Bill Davidson
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.kopitubruk.util.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * This class is a {@link Writer} that encodes its chars directly into UTF-8
+ * bytes in a byte buffer and sends them to an {@link OutputStream} when the
+ * buffer fills up or when it is flushed. It avoids the char to byte conversion
+ * overhead of an {@link java.io.OutputStreamWriter}, which has to go through a
+ * {@link java.nio.charset.CharsetEncoder}. Runs of ASCII, which includes all
+ * of the structural characters of JSON and all escapes generated by
+ * {@link StringProcessor}, are copied straight into the buffer as bytes.
+ * <p>
+ * The byte buffers are pooled per thread so that repeated calls to
+ * {@link JSONUtil#toJSON(Object,JSONConfig,OutputStream)} don't have to
+ * allocate a new buffer every time.
+ * <p>
+ * Like {@link StringWriter}, this class is not at all general and is meant to
+ * provide maximum performance for this package.
+ *
+ * @author Bill Davidson
+ * @since 1.10.5
+ */
+class UTF8ByteWriter extends Writer
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Room needed for the largest encoding of a single char or surrogate pair.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    /**
+     * Pool of buffers, one per thread.
+     */
+    private static final ThreadLocal<byte[]> BUFFER_POOL = new ThreadLocal<byte[]>(){
+        @Override
+        protected byte[] initialValue()
+        {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private final OutputStream out;
+    private byte[] buf;
+    private int count;
+
+    /**
+     * A high surrogate that has been written but whose low surrogate has not
+     * been written yet, or 0 if there isn't one.
+     */
+    private char highSurrogate;
+
+    /**
+     * Create a new UTF8ByteWriter.
+     *
+     * @param out the output stream to send the bytes to.
+     */
+    UTF8ByteWriter( OutputStream out )
+    {
+        this.out = out;
+        buf = BUFFER_POOL.get();
+        // take it out of the pool in case of reentrant use from a JSONAble.
+        BUFFER_POOL.set(null);
+        if ( buf == null ){
+            buf = new byte[BUFFER_SIZE];
+        }
+        count = 0;
+        highSurrogate = 0;
+    }
+
+    /**
+     * Write a string.
+     *
+     * @param str the string.
+     * @throws IOException If there's an I/O error.
+     */
+    @Override
+    public void write( String str ) throws IOException
+    {
+        write(str, 0, str.length());
+    }
+
+    /**
+     * Write part of a string. ASCII characters are copied straight into the
+     * byte buffer.
+     *
+     * @param str the string
+     * @param off the beginning index
+     * @param len the number of chars to write.
+     * @throws IOException If there's an I/O error.
+     */
+    @Override
+    public void write( String str, int off, int len ) throws IOException
+    {
+        byte[] b = buf;
+        int c = count;
+        int end = off + len;
+        for ( int i = off; i < end; i++ ){
+            char ch = str.charAt(i);
+            if ( c > BUFFER_SIZE - MAX_BYTES_PER_CHAR ){
+                count = c;
+                flushBuffer();
+                c = 0;
+            }
+            if ( ch < 0x80 && highSurrogate == 0 ){
+                b[c++] = (byte)ch;
+            }else{
+                count = c;
+                encodeChar(ch);
+                c = count;
+            }
+        }
+        count = c;
+    }
+
+    /**
+     * Write a single char.
+     *
+     * @param c the value of the char
+     * @throws IOException If there's an I/O error.
+     */
+    @Override
+    public void write( int c ) throws IOException
+    {
+        if ( count > BUFFER_SIZE - MAX_BYTES_PER_CHAR ){
+            flushBuffer();
+        }
+        char ch = (char)c;
+        if ( ch < 0x80 && highSurrogate == 0 ){
+            buf[count++] = (byte)ch;
+        }else{
+            encodeChar(ch);
+        }
+    }
+
+    /**
+     * Write an array of chars.
+     *
+     * @param cbuf a char array.
+     * @param off the beginning index
+     * @param len the number of chars to write.
+     * @throws IOException If there's an I/O error.
+     */
+    @Override
+    public void write( char[] cbuf, int off, int len ) throws IOException
+    {
+        int end = off + len;
+        for ( int i = off; i < end; i++ ){
+            write(cbuf[i]);
+        }
+    }
+
+    /**
+     * Encode a non-ASCII char or a char following a high surrogate. The caller
+     * guarantees that there is room in the buffer for at least
+     * {@link #MAX_BYTES_PER_CHAR} bytes.
+     *
+     * @param ch the char.
+     */
+    private void encodeChar( char ch )
+    {
+        if ( highSurrogate != 0 ){
+            char hi = highSurrogate;
+            highSurrogate = 0;
+            if ( Character.isLowSurrogate(ch) ){
+                encodeCodePoint(Character.toCodePoint(hi, ch));
+                return;
+            }
+            // unpaired high surrogate.
+            encodeCodePoint('?');
+        }
+        if ( Character.isHighSurrogate(ch) ){
+            highSurrogate = ch;
+        }else if ( Character.isLowSurrogate(ch) ){
+            // unpaired low surrogate.
+            encodeCodePoint('?');
+        }else{
+            encodeCodePoint(ch);
+        }
+    }
+
+    /**
+     * Encode a code point as UTF-8.
+     *
+     * @param codePoint the code point.
+     */
+    private void encodeCodePoint( int codePoint )
+    {
+        byte[] b = buf;
+        int c = count;
+        if ( codePoint < 0x80 ){
+            b[c++] = (byte)codePoint;
+        }else if ( codePoint < 0x800 ){
+            b[c++] = (byte)(0xC0 | (codePoint >> 6));
+            b[c++] = (byte)(0x80 | (codePoint & 0x3F));
+        }else if ( codePoint < 0x10000 ){
+            b[c++] = (byte)(0xE0 | (codePoint >> 12));
+            b[c++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+            b[c++] = (byte)(0x80 | (codePoint & 0x3F));
+        }else{
+            b[c++] = (byte)(0xF0 | (codePoint >> 18));
+            b[c++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+            b[c++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+            b[c++] = (byte)(0x80 | (codePoint & 0x3F));
+        }
+        count = c;
+    }
+
+    /**
+     * Send the buffered bytes to the output stream.
+     *
+     * @throws IOException If there's an I/O error.
+     */
+    private void flushBuffer() throws IOException
+    {
+        if ( count > 0 ){
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Send any buffered bytes to the output stream and flush it.
+     *
+     * @throws IOException If there's an I/O error.
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Send any buffered bytes to the output stream and return the buffer to
+     * the pool. This does not close the output stream. An unpaired high
+     * surrogate at the end of the data is written as '?'.
+     *
+     * @throws IOException If there's an I/O error.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if ( buf != null ){
+            if ( highSurrogate != 0 ){
+                highSurrogate = 0;
+                if ( count > BUFFER_SIZE - MAX_BYTES_PER_CHAR ){
+                    flushBuffer();
+                }
+                encodeCodePoint('?');
+            }
+            try{
+                flush();
+            }finally{
+                BUFFER_POOL.set(buf);
+                buf = null;
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ package org.kopitubruk.util.json;
 
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertThat;
@@ -24,13 +25,21 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.NumberFormat;
 import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -954,6 +963,27 @@ public class TestJSONUtil
         }
     }
 
+    /**
+     * Test the edge cases of unescaping, including escapes that are
+     * incomplete or invalid and have to be left alone.
+     */
+    @Test
+    public void testUnEscapeForms()
+    {
+        JSONConfig cfg = new JSONConfig();
+        String[][] cases = {
+            { "plain", "plain" },
+            { "\\\\\\/\\\"\\b\\f\\n\\r\\t", "\\/\"\b\f\n\r\t" },
+            { "\\377\\477\\08", "\u00FF'7\u00008" },
+            { "\\x4\\xZZ\\x4a", "\\x4\\xZZJ" },
+            { "\\u{1F600}\\u{}\\u{1234567}", "\uD83D\uDE00\\u{}\\u{1234567}" },
+            { "\\u00e9\\u00E\\8\\", "\u00E9\\u00E\\8\\" }
+        };
+        for ( String[] c : cases ){
+            assertThat(StringProcessor.unEscape(c[0], cfg), is(c[1]));
+        }
+    }
+
     /**
      * Test the parser.
      *
@@ -1047,6 +1077,245 @@ public class TestJSONUtil
         }
     }
 
+    /**
+     * Test that objects with the same keys share their keys and that compact
+     * maps work like the maps that they replace.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCompactMaps()
+    {
+        StringBuilder buf = new StringBuilder("[");
+        for ( int i = 0; i < 40; i++ ){
+            buf.append("{\"a\\u0062\":").append(i).append(",c:\"x\",\"a\\u0062\":").append(-i);
+            if ( i % 2 == 0 ){
+                buf.append(",\"d\":[]");
+            }
+            buf.append("},");
+        }
+        buf.append("{}]");
+        String input = buf.toString();
+
+        // big object to go beyond the size limit for shapes.
+        buf.setLength(0);
+        buf.append('{');
+        for ( int i = 0; i < KeyTable.MAX_SHAPE_SIZE + 10; i++ ){
+            buf.append(i == 0 ? "" : ",").append("k").append(i).append(':').append(i);
+        }
+        buf.append('}');
+        String bigInput = buf.toString();
+
+        JSONConfig cfg = new JSONConfig().setUseCompactMaps(true);
+        List<?> maps = (List<?>)JSONParser.parseJSON(input);
+        List<?> compactMaps = (List<?>)JSONParser.parseJSON(input, cfg);
+        assertEquals(maps, compactMaps);
+        assertEquals(JSONUtil.toJSON(maps), JSONUtil.toJSON(compactMaps));
+
+        Map<?,?> first = (Map<?,?>)compactMaps.get(0);
+        Map<?,?> second = (Map<?,?>)compactMaps.get(2);
+        assertThat(first.get("ab"), is((Object)Long.valueOf(0)));
+        assertThat(second.get("ab"), is((Object)Long.valueOf(-2)));
+        assertTrue(first.keySet().iterator().next() == second.keySet().iterator().next());
+        assertTrue(((Map<?,?>)compactMaps.get(40)).isEmpty());
+        try{
+            ((Map<String,Object>)first).put("e", 1);
+            fail("Expected UnsupportedOperationException for a compact map");
+        }catch ( UnsupportedOperationException e ){
+        }
+
+        Map<?,?> big = (Map<?,?>)JSONParser.parseJSON(bigInput);
+        Map<?,?> compactBig = (Map<?,?>)JSONParser.parseJSON(bigInput, cfg);
+        assertEquals(big, compactBig);
+        assertEquals(JSONUtil.toJSON(big), JSONUtil.toJSON(compactBig));
+    }
+
+    /**
+     * Test lazy parsing.
+     */
+    @Test
+    public void testLazyDocument()
+    {
+        String json = "{\"a\":1,\"b\":[1,2.5,\"x\\ny\",true,null,{}],'c':{\"d\\u0065\":\"\\u0041\"},f:[[],[[]]]}";
+        JsonNode doc = JSONParser.parseLazy(json);
+        assertTrue(doc.isObject());
+        assertEquals(4, doc.size());
+        assertEquals(Arrays.asList("a", "b", "c", "f"), doc.getKeys());
+        assertEquals(JSONParser.parseJSON(json), doc.getValue());
+
+        JsonNode b = doc.get("b");
+        assertTrue(b.isArray());
+        assertEquals(6, b.size());
+        assertEquals(6, b.getElements().size());
+        assertEquals(JSONParser.parseJSON("2.5"), b.get(1).getValue());
+        assertEquals("x\ny", b.get(2).getValue());
+        assertEquals("\"x\\ny\"", b.get(2).toString());
+        assertEquals(Boolean.TRUE, b.get(3).getValue());
+        assertTrue(b.get(4).getValue() == null);
+        assertEquals("{}", b.get(5).toString());
+        assertTrue(b.get(6) == null);
+        assertTrue(doc.get("e") == null);
+        assertEquals("A", doc.get("c").get("de").getValue());
+        assertEquals("[[],[[]]]", doc.get("f").toString());
+        assertArrayEquals(new int[]{1, 2}, JSONParser.parseLazy("[0,[1,2]]").get(1).getValue(int[].class));
+
+        // the tape grows past its initial size.
+        StringBuilder buf = new StringBuilder("[");
+        for ( int i = 0; i < 1000; i++ ){
+            buf.append(i > 0 ? "," : "").append("{\"i\":").append(i).append('}');
+        }
+        JsonNode big = JSONParser.parseLazy(buf.append(']').toString());
+        assertEquals(1000, big.size());
+        assertEquals(999L, ((Number)big.get(999).get("i").getValue()).longValue());
+
+        String[] badJSON = { "", "[1,", "{\"a\" 1}", "{\"a\":1]", "[\"abc", "[1,]" };
+        for ( String bad : badJSON ){
+            try{
+                JSONParser.parseLazy(bad);
+                fail("Expected JSONParserException for " + bad);
+            }catch ( JSONParserException e ){
+            }
+        }
+    }
+
+    /**
+     * Test parsing directly into objects of a class.
+     */
+    @Test
+    public void testParseToClass()
+    {
+        Map<String,String> aliases = new HashMap<>();
+        aliases.put("b", "bee");
+        JSONConfig cfg = new JSONConfig().setReflectionPrivacy(ReflectUtil.PRIVATE)
+                                         .clearReflectClasses()
+                                         .addReflectClass(new JSONReflectedClass(ReflectTestClass.class, aliases));
+
+        String json = "{\"a\":\"7\",\"bee\":\"x\",\"c\":[1,2],\"d\":[3],\"f\":false,\"g\":{\"h\":[1]}}";
+        ReflectTestClass obj = JSONParser.parseJSON(json, ReflectTestClass.class, cfg);
+        assertThat(obj.getA(), is(7));
+        assertThat(obj.getB(), is("x"));
+        assertThat(obj.getC(), is(Arrays.asList(1L, 2L)));
+        assertThat(obj.isF(), is(false));
+        assertThat(JSONUtil.toJSON(obj, cfg), is("{\"a\":7,\"bee\":\"x\",\"c\":[1,2],\"d\":[3],\"f\":false}"));
+
+        assertArrayEquals(new int[]{1, 2, 3}, JSONParser.parseJSON("[1,2,3]", int[].class, cfg));
+        assertThat(JSONParser.parseJSON("\"5\"", Short.class, cfg), is((short)5));
+
+        // plans are made again after the reflection cache is cleared.
+        ReflectedObjectMapBuilder.clearReflectionCache();
+        assertThat(JSONParser.parseJSON(json, ReflectTestClass.class, cfg).getA(), is(7));
+
+        try{
+            JSONParser.parseJSON("{\"a\":1.5}", ReflectTestClass.class, cfg);
+            fail("Expected JSONParserException for a decimal in an int");
+        }catch ( JSONParserException e ){
+        }
+
+        // arrays are filled directly.
+        StringBuilder buf = new StringBuilder("[");
+        long[] longs = new long[100];
+        for ( int i = 0; i < longs.length; i++ ){
+            longs[i] = i * 100000000000L - 3;
+            buf.append(i > 0 ? "," : "").append(longs[i]);
+        }
+        assertArrayEquals(longs, JSONParser.parseJSON(buf.append(']').toString(), long[].class, cfg));
+        assertArrayEquals(new double[]{ 1, -2.5, 3 }, JSONParser.parseJSON("[1,-2.5,3]", double[].class, cfg), 0);
+        assertArrayEquals(new byte[]{ 1, -128, 31 }, JSONParser.parseJSON("[1,-128,0x1F]", byte[].class, cfg));
+        assertArrayEquals(new short[0], JSONParser.parseJSON("[]", short[].class, cfg));
+        assertArrayEquals(new String[]{ "a", "b" }, JSONParser.parseJSON("[\"a\",\"b\"]", String[].class, cfg));
+        int[][] grid = JSONParser.parseJSON("[[1,2],[],[3]]", int[][].class, cfg);
+        assertArrayEquals(new int[]{ 1, 2 }, grid[0]);
+        assertEquals(0, grid[1].length);
+        assertArrayEquals(new int[]{ 3 }, grid[2]);
+
+        // bad input gets the same kind of errors as the parser gives.
+        cfg.setLocale(Locale.US);
+        String[] badJSON = { "{\"a\":", "{\"a\":1", "{\"a\"", "{\"c\":[1,", "{\"a\":null}", "{\"d\":{\"x\":1}}", "[300]" };
+        String[] messages = { "end of input", "end of input", "end of input", "end of input", "Can't bind a null to int",
+                              "Can't bind a object to java.util.List<java.lang.Short>", "Can't bind a Long to byte" };
+        for ( int i = 0; i < badJSON.length; i++ ){
+            try{
+                if ( i < badJSON.length - 1 ){
+                    JSONParser.parseJSON(badJSON[i], ReflectTestClass.class, cfg);
+                }else{
+                    JSONParser.parseJSON(badJSON[i], byte[].class, cfg);
+                }
+                fail("Expected JSONParserException for " + badJSON[i]);
+            }catch ( JSONParserException e ){
+                assertThat(e.getMessage(), containsString(messages[i]));
+            }
+        }
+        try{
+            JSONParser.parseJSON("[[1,null]]", int[][].class, cfg);
+            fail("Expected JSONParserException for a null in an int array");
+        }catch ( JSONParserException e ){
+            assertThat(e.getMessage(), containsString("Can't bind a null to int"));
+        }
+    }
+
+    /**
+     * Test that binding deeply nested input to a self-referential class fails
+     * with a parser exception instead of overflowing the stack.
+     */
+    @Test
+    public void testDeepBinding()
+    {
+        JSONConfig cfg = new JSONConfig().setReflectionPrivacy(ReflectUtil.PRIVATE)
+                                         .clearReflectClasses()
+                                         .setLocale(Locale.US);
+
+        // nesting within the limit binds normally.
+        String json = makeNestedBeanJSON(JSONTokenReader.MAX_BINDING_DEPTH);
+        NestedBean bean = JSONParser.parseJSON(json, NestedBean.class, cfg);
+        int depth = 0;
+        for ( ; bean != null; bean = bean.next ){
+            assertThat(bean.v, is(++depth));
+        }
+        assertThat(depth, is(JSONTokenReader.MAX_BINDING_DEPTH));
+
+        // no limit is set in the config but binding is still limited.
+        assertThat(cfg.getMaxParseDepth(), is(0));
+        json = makeNestedBeanJSON(100000);
+        try{
+            JSONParser.parseJSON(json, NestedBean.class, cfg);
+            fail("Expected JSONParserException for deeply nested input");
+        }catch ( JSONParserException e ){
+            assertThat(e.getMessage(), containsString("maxParseDepth of " + JSONTokenReader.MAX_BINDING_DEPTH));
+        }
+
+        // a lower limit in the config is used.
+        cfg.setMaxParseDepth(10);
+        try{
+            JSONParser.parseJSON(makeNestedBeanJSON(11), NestedBean.class, cfg);
+            fail("Expected JSONParserException for nesting past maxParseDepth");
+        }catch ( JSONParserException e ){
+            assertThat(e.getMessage(), containsString("maxParseDepth of 10"));
+        }
+        assertThat(JSONParser.parseJSON(makeNestedBeanJSON(10), NestedBean.class, cfg).v, is(1));
+
+        // the untyped parser is not recursive so it has no such limit.
+        cfg.setMaxParseDepth(0);
+        assertTrue(JSONParser.parseJSON(json, cfg) instanceof Map);
+    }
+
+    /**
+     * Make JSON for a chain of {@link NestedBean}s.
+     *
+     * @param depth the number of beans in the chain.
+     * @return the JSON.
+     */
+    private static String makeNestedBeanJSON( int depth )
+    {
+        StringBuilder buf = new StringBuilder();
+        for ( int i = 1; i <= depth; i++ ){
+            buf.append("{\"v\":").append(i).append(",\"next\":");
+        }
+        buf.append("null");
+        for ( int i = 0; i < depth; i++ ){
+            buf.append('}');
+        }
+        return buf.toString();
+    }
+
     /**
      * Test using reserved words in identifiers.
      *
@@ -1533,6 +1802,28 @@ public class TestJSONUtil
         assertThat(json, is("{\"x\":\"ba\\\"r\"}"));
     }
 
+    /**
+     * Test a string with runs of chars that don't need escaping between chars
+     * that do, including a surrogate pair which needs code point processing.
+     *
+     * @throws ScriptException if the JSON doesn't evaluate properly.
+     * @throws NoSuchMethodException If it can't find the Javascript function to use for validation.
+     */
+    @Test
+    public void testEscapeRuns() throws ScriptException, NoSuchMethodException
+    {
+        JSONConfig cfg = new JSONConfig();
+        String s = "abc\tdef/\u00E9\u2028ghi\u001F\uD83D\uDCA9jk\"l\\m";
+        String json = JSONUtil.toJSON(s, cfg);
+        validateJSON(json);
+        assertThat(json, is("\"abc\\tdef\\/\u00E9\\u2028ghi\\u001F\uD83D\uDCA9jk\\\"l\\\\m\""));
+
+        cfg.setEscapeNonAscii(true);
+        json = JSONUtil.toJSON(s, cfg);
+        validateJSON(json);
+        assertThat(json, is("\"abc\\tdef\\/\\u00E9\\u2028ghi\\u001F\\uD83D\\uDCA9jk\\\"l\\\\m\""));
+    }
+
     /**
      * Test a string with a quote value.
      *
@@ -1551,6 +1842,112 @@ public class TestJSONUtil
         assertThat(json, is("{\"x\":\"\uD83D\uDCA9\"}"));
     }
 
+    /**
+     * Test encoding directly to UTF-8 on an OutputStream.
+     *
+     * @throws IOException If there's an I/O error.
+     */
+    @Test
+    public void testOutputStream() throws IOException
+    {
+        Map<String,Object> jsonObj = new LinkedHashMap<>();
+        StringBuilder buf = new StringBuilder();
+        buf.append("abc\u00E9\u20AC\"").appendCodePoint(0x1F4A9);
+        jsonObj.put("x", buf);
+        jsonObj.put("y", Arrays.asList(1,2,3));
+        char[] big = new char[20000];
+        Arrays.fill(big, '\u00FF');
+        jsonObj.put("z", new String(big));
+
+        String json = JSONUtil.toJSON(jsonObj);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JSONUtil.toJSON(jsonObj, out);
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), out.toByteArray());
+    }
+
+    /**
+     * Test arrays of primitives.
+     *
+     * @throws ScriptException if the JSON doesn't evaluate properly.
+     * @throws NoSuchMethodException If it can't find the Javascript function to use for validation.
+     */
+    @Test
+    public void testPrimitiveArrays() throws ScriptException, NoSuchMethodException
+    {
+        JSONConfig cfg = new JSONConfig();
+        cfg.setPreciseNumbers(true);
+        Map<String,Object> jsonObj = new LinkedHashMap<>();
+        jsonObj.put("i", new int[]{1,-2,3});
+        jsonObj.put("l", new long[]{4L,9007199254740993L});
+        jsonObj.put("d", new double[]{1.5,Double.NaN});
+        jsonObj.put("f", new float[]{2.5F});
+        jsonObj.put("s", new short[]{5});
+        jsonObj.put("b", new byte[]{-6});
+        jsonObj.put("z", new boolean[]{true,false});
+        jsonObj.put("c", new char[]{'a','"'});
+        jsonObj.put("e", new int[0]);
+        String json = JSONUtil.toJSON(jsonObj, cfg);
+        validateJSON(json);
+        assertThat(json, is("{\"i\":[1,-2,3],\"l\":[4,\"9007199254740993\"],\"d\":[1.5,\"NaN\"],\"f\":[2.5],\"s\":[5],\"b\":[-6],\"z\":[true,false],\"c\":[\"a\",\"\\\"\"],\"e\":[]}"));
+
+        // should match the boxed versions.
+        cfg.setIndentPadding(new IndentPadding("\t", "\n"));
+        assertThat(JSONUtil.toJSON(new long[]{1L,2L}, cfg), is(JSONUtil.toJSON(new Long[]{1L,2L}, cfg)));
+        cfg.addNumberFormat(Integer.class, NumberFormat.getNumberInstance(Locale.US));
+        assertThat(JSONUtil.toJSON(new int[]{1000}, cfg), is(JSONUtil.toJSON(new Integer[]{1000}, cfg)));
+
+        // chars are escaped directly but should match one char strings.
+        char[] chars = { 'a', '7', '"', '\\', '\n', '\u00E9', '\u2028', '\uD800', '\uFFFF' };
+        String[] strs = new String[chars.length];
+        for ( int i = 0; i < chars.length; i++ ){
+            strs[i] = String.valueOf(chars[i]);
+        }
+        JSONConfig[] cfgs = { new JSONConfig(),
+                              new JSONConfig().setEscapeNonAscii(true).setUseECMA6(true),
+                              new JSONConfig().setEncodeNumericStringsAsNumbers(true).setPassThroughEscapes(true),
+                              new JSONConfig().setFastStrings(true) };
+        for ( JSONConfig ccfg : cfgs ){
+            assertThat(JSONUtil.toJSON(chars, ccfg), is(JSONUtil.toJSON(strs, ccfg)));
+        }
+    }
+
+    /**
+     * Test that numbers written without a NumberFormat are the shortest
+     * strings that read back as the same value.
+     */
+    @Test
+    public void testNumberWriter()
+    {
+        JSONConfig cfg = new JSONConfig();
+        assertThat(JSONUtil.toJSON(new Object[]{Integer.MIN_VALUE, Long.MIN_VALUE, (short)-7, (byte)100, 0L}, cfg),
+                   is("["+Integer.MIN_VALUE+","+Long.MIN_VALUE+",-7,100,0]"));
+        assertThat(JSONUtil.toJSON(new double[]{2.0E-3, 1.0E23, 1.0E7, 1.0E-3, 100.0, -0.0, Double.MIN_VALUE, Double.MAX_VALUE}, cfg),
+                   is("[0.002,1.0E23,1.0E7,0.001,100.0,-0.0,4.9E-324,1.7976931348623157E308]"));
+
+        Random rand = new Random(42);
+        for ( int i = 0; i < 10000; i++ ){
+            double d = Double.longBitsToDouble(rand.nextLong());
+            if ( Double.isFinite(d) ){
+                String json = JSONUtil.toJSON(d, cfg);
+                assertThat(json, Double.parseDouble(json), is(d));
+                assertTrue(json, json.length() <= Double.toString(d).length());
+            }
+        }
+
+        assertThat(JSONUtil.toJSON(new float[]{2.0E-3F, 1.0E7F, 0.1F, 100.0F, -0.0F, Float.MIN_VALUE, Float.MAX_VALUE, 16777216.0F}, cfg),
+                   is("[0.002,1.0E7,0.1,100.0,-0.0,1.4E-45,3.4028235E38,1.6777216E7]"));
+        for ( int i = 0; i < 10000; i++ ){
+            float f = Float.intBitsToFloat(rand.nextInt());
+            if ( Float.isFinite(f) ){
+                String json = JSONUtil.toJSON(new float[]{f}, cfg);
+                String num = json.substring(1, json.length()-1);
+                assertThat(json, Float.parseFloat(num), is(f));
+                assertTrue(json, num.length() <= Float.toString(f).length());
+                assertThat(JSONUtil.toJSON(f, cfg), is(num));
+            }
+        }
+    }
+
     /**
      * Test a Iterable value.
      *
@@ -1608,6 +2005,433 @@ public class TestJSONUtil
         }
     }
 
+    /**
+     * Test that parallel encoding gives the same results as serial encoding.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testParallelEncoding()
+    {
+        int size = JSONUtil.PARALLEL_THRESHOLD * 2 + 7;
+        List<Object> list = new ArrayList<>(size);
+        Map<String,Object> map = new LinkedHashMap<>();
+        for ( int i = 0; i < size; i++ ){
+            Map<String,Object> element = new LinkedHashMap<>();
+            element.put("i", i);
+            element.put("s", "x\"" + i);
+            element.put("a", Arrays.asList(i, i+1));
+            list.add(element);
+            map.put("k" + i, i % 3 == 0 ? element : (Object)i);
+        }
+        Map<String,Object> top = new LinkedHashMap<>();
+        top.put("list", list);
+        top.put("array", list.toArray());
+        top.put("map", map);
+
+        JSONConfig cfg = new JSONConfig();
+        JSONConfig parallelCfg = new JSONConfig().setUseParallelEncoding(true);
+        assertEquals(JSONUtil.toJSON(top, cfg), JSONUtil.toJSON(top, parallelCfg));
+
+        cfg.setIndentPadding(new IndentPadding());
+        parallelCfg.setIndentPadding(new IndentPadding());
+        assertEquals(JSONUtil.toJSON(top, cfg), JSONUtil.toJSON(top, parallelCfg));
+
+        // top level with fresh padding.
+        for ( Object obj : Arrays.asList(list, map) ){
+            cfg.setIndentPadding(new IndentPadding());
+            parallelCfg.setIndentPadding(new IndentPadding());
+            assertEquals(JSONUtil.toJSON(obj, cfg), JSONUtil.toJSON(obj, parallelCfg));
+        }
+
+        // loop back to an object outside of the chunk.
+        ((Map<String,Object>)list.get(size - 3)).put("loop", top);
+        try{
+            JSONUtil.toJSON(top, parallelCfg);
+            fail("Expected a DataStructureLoopException to be thrown");
+        }catch ( DataStructureLoopException e ){
+        }
+    }
+
+    /**
+     * Test that very deep input doesn't overflow the stack and that the parser
+     * limits are enforced.
+     */
+    @Test
+    public void testParserLimits()
+    {
+        int deep = 100000;
+        StringBuilder buf = new StringBuilder(deep * 2);
+        for ( int i = 0; i < deep; i++ ){
+            buf.append('[');
+        }
+        for ( int i = 0; i < deep; i++ ){
+            buf.append(']');
+        }
+        String deepJSON = buf.toString();
+        Object result = JSONParser.parseJSON(deepJSON);
+        for ( int i = 1; i < deep; i++ ){
+            result = ((List<?>)result).get(0);
+        }
+        assertEquals(0, ((List<?>)result).size());
+
+        String[] badJSON = { deepJSON, "{\"a\":\"abcdefghijk\"}", "{abcdefghijk:1}", "[12345678901234567890]", "[1,2,3,[4,5,6]]" };
+        JSONConfig[] limits = { new JSONConfig().setMaxParseDepth(64), new JSONConfig().setMaxParseStringLength(10),
+                                new JSONConfig().setMaxParseStringLength(10), new JSONConfig().setMaxParseNumberLength(16),
+                                new JSONConfig().setMaxParseElements(6) };
+        String[] limitNames = { "maxParseDepth", "maxParseStringLength", "maxParseStringLength", "maxParseNumberLength", "maxParseElements" };
+        for ( int i = 0; i < badJSON.length; i++ ){
+            try{
+                JSONParser.parseJSON(badJSON[i], limits[i].setLocale(Locale.US));
+                fail("Expected JSONParserException for " + limitNames[i]);
+            }catch ( JSONParserException e ){
+                assertThat(e.getMessage(), containsString(limitNames[i]));
+            }
+            try{
+                JSONPushParser parser = new JSONPushParser(v -> {}, limits[i]);
+                parser.feed(badJSON[i]);
+                parser.endOfInput();
+                fail("Expected JSONParserException for " + limitNames[i]);
+            }catch ( JSONParserException e ){
+                assertThat(e.getMessage(), containsString(limitNames[i]));
+            }
+            try{
+                JSONParser.parseLazy(badJSON[i], limits[i]);
+                fail("Expected JSONParserException for " + limitNames[i]);
+            }catch ( JSONParserException e ){
+                assertThat(e.getMessage(), containsString(limitNames[i]));
+            }
+        }
+
+        // at the limits.
+        assertEquals(5, ((List<?>)JSONParser.parseJSON("[1,2,3,[4,5,6],7]", new JSONConfig().setMaxParseElements(8))).size());
+        JSONParser.parseJSON("[[[1234567890123456]]]", new JSONConfig().setMaxParseDepth(3).setMaxParseNumberLength(16));
+        assertEquals(5, JSONParser.parseLazy("[1,2,3,[4,5,6],7]", new JSONConfig().setMaxParseElements(8)).size());
+        JSONParser.parseLazy("[[[1234567890123456]]]", new JSONConfig().setMaxParseDepth(3).setMaxParseNumberLength(16));
+        JSONParser.parseLazy("{\"abcdefghij\":true}", new JSONConfig().setMaxParseStringLength(10).setMaxParseNumberLength(1));
+    }
+
+    /**
+     * Test that arrays of integers collected without boxing come out the same
+     * as they do from a list of boxed integers.
+     */
+    @Test
+    public void testPrimitiveArrayAccumulation()
+    {
+        JSONConfig cfg = new JSONConfig().setUsePrimitiveArrays(true);
+
+        for ( boolean smallNumbers : new boolean[]{ true, false } ){
+            cfg.setSmallNumbers(smallNumbers);
+
+            assertArrayEquals(new byte[]{ 0, 0, -128, 127 }, (byte[])JSONParser.parseJSON("[0,-0,-128,127]", cfg));
+            assertArrayEquals(new short[]{ 1, -129, 32767 }, (short[])JSONParser.parseJSON("[1,-129,32767]", cfg));
+            assertArrayEquals(new int[]{ 1, 32768, Integer.MIN_VALUE }, (int[])JSONParser.parseJSON("[1,32768,-2147483648]", cfg));
+            assertArrayEquals(new long[]{ 1, 2147483648L, Long.MAX_VALUE, -999999999999999999L },
+                              (long[])JSONParser.parseJSON("[1,2147483648,9223372036854775807,-999999999999999999]", cfg));
+
+            // grows past the initial size.
+            StringBuilder buf = new StringBuilder("[");
+            int[] ints = new int[1000];
+            for ( int i = 0; i < ints.length; i++ ){
+                ints[i] = i * 1000 - 500000;
+                buf.append(i > 0 ? "," : "").append(ints[i]);
+            }
+            assertArrayEquals(ints, (int[])JSONParser.parseJSON(buf.append(']').toString(), cfg));
+
+            // hex and octal go through the normal path.
+            assertArrayEquals(new byte[]{ 31, 15, 2 }, (byte[])JSONParser.parseJSON("[0x1F,017,2]", cfg));
+
+            // integers then something else fall back to a list.
+            List<?> list = (List<?>)JSONParser.parseJSON("[1,300,\"x\"]", cfg);
+            assertEquals(smallNumbers ? Byte.class : Long.class, list.get(0).getClass());
+            assertEquals(smallNumbers ? Short.class : Long.class, list.get(1).getClass());
+            assertEquals("x", list.get(2));
+            list = (List<?>)JSONParser.parseJSON("[1,null]", cfg);
+            assertEquals(smallNumbers ? Byte.class : Long.class, list.get(0).getClass());
+            assertEquals(null, list.get(1));
+            assertEquals(new BigInteger("9223372036854775808"), ((List<?>)JSONParser.parseJSON("[1,9223372036854775808]", cfg)).get(1));
+
+            // mixed with decimals still picks a floating point type.
+            assertArrayEquals(new float[]{ 1, 2.5f }, (float[])JSONParser.parseJSON("[1,2.5]", cfg), 0);
+
+            // empty and nested.
+            assertEquals(0, ((List<?>)JSONParser.parseJSON("[]", cfg)).size());
+            list = (List<?>)JSONParser.parseJSON("[[1,2],[],{\"a\":[-1]}]", cfg);
+            assertArrayEquals(new byte[]{ 1, 2 }, (byte[])list.get(0));
+            assertEquals(0, ((List<?>)list.get(1)).size());
+            assertArrayEquals(new byte[]{ -1 }, (byte[])((Map<?,?>)list.get(2)).get("a"));
+        }
+    }
+
+    /**
+     * Test that lazy numbers convert to the same numbers that would have been
+     * made without them.
+     */
+    @Test
+    public void testLazyNumbers()
+    {
+        String json = "{\"a\":1,\"b\":-300,\"c\":12345678901234567890,\"d\":1.5,\"e\":3.141592653589793238,\"f\":0x1F,\"g\":NaN,\"h\":[1,2.5],\"i\":[1,\"x\"]}";
+
+        for ( boolean smallNumbers : new boolean[]{ true, false } ){
+            JSONConfig cfg = new JSONConfig().setSmallNumbers(smallNumbers);
+            Map<?,?> eager = (Map<?,?>)JSONParser.parseJSON(json, cfg);
+            Map<?,?> lazy = (Map<?,?>)JSONParser.parseJSON(json, cfg.clone().setUseLazyNumbers(true));
+
+            LazyNumber num = (LazyNumber)lazy.get("c");
+            assertEquals("12345678901234567890", num.getText());
+            for ( String key : Arrays.asList("a", "b", "c", "d", "e", "f", "g") ){
+                Number expected = (Number)eager.get(key);
+                num = (LazyNumber)lazy.get(key);
+                assertEquals(expected, num.getNumber());
+                assertEquals(expected.longValue(), num.longValue());
+                assertEquals(expected.toString(), num.toString());
+            }
+            assertEquals(lazy.get("a"), JSONParser.parseJSON("1", cfg.clone().setUseLazyNumbers(true)));
+            assertEquals(((List<?>)eager.get("i")).get(0), ((LazyNumber)((List<?>)lazy.get("i")).get(0)).getNumber());
+
+            // encoded the same way.
+            assertEquals(JSONUtil.toJSON(eager, cfg), JSONUtil.toJSON(lazy, cfg));
+
+            // arrays of primitives need the real numbers.
+            cfg.setUsePrimitiveArrays(true).setUseLazyNumbers(true);
+            lazy = (Map<?,?>)JSONParser.parseJSON(json, cfg);
+            assertArrayEquals(new float[]{ 1, 2.5f }, (float[])lazy.get("h"), 0);
+        }
+
+        // binding converts them.
+        JSONConfig cfg = new JSONConfig().setUseLazyNumbers(true);
+        assertArrayEquals(new int[]{ 1, 2, 3 }, JSONParser.parseJSON("[1,2,3]", int[].class, cfg));
+        assertEquals(Double.valueOf(2.5), JSONParser.parseJSON("2.5", Double.class, cfg));
+    }
+
+    /**
+     * Test that strings are recognized as dates the same way that the date
+     * formats would recognize them.
+     *
+     * @throws ParseException if a date string can't be parsed.
+     */
+    @Test
+    public void testDateRecognition() throws ParseException
+    {
+        // the ISO 8601 formats in the order that they're tried.
+        String[] fmtStrs = { "yyyy-MM-dd'T'HH:mm:ss.SSSXXX", "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ssXXX", "yyyy-MM-dd'T'HH:mm:ss" };
+        String[] dates = { "2016-03-04T05:06:07.089+05:30", "2016-03-04T05:06:07.089", "2016-03-04T05:06:07", "2016-03-04T05:06:07Z",
+                           "2016-03-04T05:06:07-08:00", "2016-03-04T05:06:07.089Z", "2016-02-29T23:59:59.999-00:00",
+                           // these are left to the lenient formats.
+                           "2016-13-45T25:61:61", "2015-02-29T00:00:00Z", "1200-01-01T00:00:00Z", "2016-1-2T3:4:5", "2016-03-04T05:06:07.5Z",
+                           "2016-03-04T05:06:07+24:00", "2016-03-04T05:06:07junk", "2020-01-01T00:00:00+19:00",
+                           "2020-01-01T00:00:00.123-23:59", "2020-01-01T00:00:00-18:00", "2020-01-01T00:00:00+18:01" };
+        JSONConfig cfg = new JSONConfig().setEncodeDatesAsStrings(true);
+
+        for ( String date : dates ){
+            Date expected = null;
+            for ( int i = 0; i < fmtStrs.length && expected == null; i++ ){
+                SimpleDateFormat fmt = new SimpleDateFormat(fmtStrs[i]);
+                fmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+                expected = fmt.parse(date, new ParsePosition(0));
+            }
+            assertEquals(date, expected, JSONParser.parseJSON('"' + date + '"', cfg));
+            assertEquals(date, expected, ((Map<?,?>)JSONParser.parseJSON("{\"when\":\"" + date + "\"}", cfg)).get("when"));
+        }
+
+        // not dates.
+        for ( String str : Arrays.asList("hello", "2016", "12:30", "2016-03-04", "T2016-03-04T05:06:07", "") ){
+            assertEquals(str, JSONParser.parseJSON('"' + str + '"', cfg));
+        }
+        try{
+            JSONParser.parseJSON("new Date('hello')", cfg);
+            fail("Expected ParseException for new Date('hello')");
+        }catch ( JSONParserException e ){
+            assertTrue(e.getCause() instanceof ParseException);
+        }
+
+        // custom formats come first.
+        cfg.addDateParseFormat("yyyy-MM-dd'T'HH:mm");
+        Date date = (Date)JSONParser.parseJSON("\"2016-03-04T05:06:07Z\"", cfg);
+        assertEquals(cfg.getDateParseFormats().get(0).parse("2016-03-04T05:06"), date);
+    }
+
+    /**
+     * Test the push parser with input split at every byte.
+     */
+    @Test
+    public void testPushParser()
+    {
+        String json = "{\"a\":'x]\\'y\ud83d\ude00', b:[1,-2.5e+3,true,null,{}], \"\\u00e9\u00e9\":new Date('2016-01-01T00:00:00Z'),}";
+        JSONConfig cfg = new JSONConfig().setEncodeDatesAsStrings(true);
+        Object expected = JSONParser.parseJSON(json, cfg);
+
+        List<Object> values = new ArrayList<>();
+        JSONPushParser parser = new JSONPushParser(values::add, cfg);
+        int end = json.getBytes(StandardCharsets.UTF_8).length;
+        byte[] bytes = (json + "\n[1]\"s\" 42").getBytes(StandardCharsets.UTF_8);
+        for ( int i = 0; i < bytes.length; i++ ){
+            parser.feed(ByteBuffer.wrap(bytes, i, 1));
+            if ( i == end - 1 ){
+                // the first value is sent as soon as it is complete.
+                assertEquals(1, values.size());
+            }
+        }
+        // a top level number isn't complete until the end of input.
+        assertEquals(3, values.size());
+        parser.endOfInput();
+        assertEquals(JSONUtil.toJSON(Arrays.asList(expected, Arrays.asList(1), "s", 42), cfg), JSONUtil.toJSON(values, cfg));
+
+        String[] badJSON = { "[1,2", "{\"a\":1,", "{\"a\" 1}", "'abc" };
+        for ( String bad : badJSON ){
+            parser = new JSONPushParser(values::add, cfg);
+            try{
+                parser.feed(bad);
+                parser.endOfInput();
+                fail("Expected JSONParserException for " + bad);
+            }catch ( JSONParserException e ){
+            }
+        }
+    }
+
+    /**
+     * Test writing and reading JSON Lines.
+     *
+     * @throws IOException if there's an I/O error.
+     */
+    @Test
+    public void testJSONLines() throws IOException
+    {
+        List<Object> records = new ArrayList<>();
+        for ( int i = 0; i < JSONLinesReader.BATCH_SIZE * 2 + 7; i++ ){
+            Map<String,Object> record = new LinkedHashMap<>();
+            record.put("i", i);
+            record.put("s", "line\n" + i);
+            record.put("a", Arrays.asList(i, "x"));
+            records.add(record);
+        }
+        records.add(Arrays.asList(1, 2));
+        records.add("last");
+
+        // indent padding is ignored so that each record is one line.
+        JSONConfig cfg = new JSONConfig().setIndentPadding(new IndentPadding("  ", "\n"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try ( JSONLinesWriter writer = new JSONLinesWriter(out, cfg).setBatchSize(10).setFlushInterval(100) ){
+            writer.writeAll(records.subList(0, 100).iterator());
+            writer.writeAll(records.subList(100, records.size()).parallelStream());
+        }
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(records.size(), json.split("\n").length);
+
+        for ( boolean parallel : new boolean[]{ false, true } ){
+            List<Object> result = new ArrayList<>();
+            JSONConfig rcfg = new JSONConfig().setUseParallelParsing(parallel);
+            try ( JSONLinesReader reader = new JSONLinesReader(new ByteArrayInputStream(out.toByteArray()), rcfg) ){
+                reader.forEachRemaining(result::add);
+            }
+            assertEquals(JSONUtil.toJSON(records), JSONUtil.toJSON(result));
+
+            // errors are thrown when the bad record is reached.
+            try ( JSONLinesReader reader = new JSONLinesReader(new StringReader("1\r\n\n  \n[2]\n{bad\n4"), rcfg) ){
+                assertEquals(1, ((Number)reader.next()).intValue());
+                assertTrue(reader.next() instanceof List);
+                try{
+                    reader.next();
+                    fail("Expected JSONParserException");
+                }catch ( JSONParserException e ){
+                }
+                assertEquals(4, ((Number)reader.next()).intValue());
+                assertTrue(! reader.hasNext());
+            }
+
+            // lines over the limit are skipped, even if they span buffers.
+            char[] longLine = new char[20000];
+            Arrays.fill(longLine, '[');
+            String input = "1\n[2,3,4]\r\n" + new String(longLine) + "\n[5,6,7,8]\n   9    ";
+            rcfg.setMaxParseLineLength(8).setLocale(Locale.US);
+            try ( JSONLinesReader reader = new JSONLinesReader(new StringReader(input), rcfg) ){
+                assertEquals(1, ((Number)reader.next()).intValue());
+                assertEquals(3, ((List<?>)reader.next()).size());
+                for ( int i = 0; i < 2; i++ ){
+                    try{
+                        reader.next();
+                        fail("Expected JSONParserException");
+                    }catch ( JSONParserException e ){
+                        assertThat(e.getMessage(), containsString("maxParseLineLength"));
+                    }
+                }
+                assertEquals(9, ((Number)reader.next()).intValue());
+                assertTrue(! reader.hasNext());
+            }
+        }
+    }
+
+    /**
+     * Test that parallel parsing gives the same results as serial parsing.
+     */
+    @Test
+    public void testParallelParsing()
+    {
+        StringBuilder buf = new StringBuilder("[");
+        StringBuilder numbers = new StringBuilder("[");
+        for ( int i = 0; buf.length() < JSONParser.PARALLEL_THRESHOLD * 3; i++ ){
+            buf.append(i == 0 ? "" : ",")
+               .append("{\"i\":").append(i).append(",\"s\":\"],\\\"").append(i).append("\",\"a\":[").append(i).append(",{}]}");
+            numbers.append(i == 0 ? "" : ", ").append(i * 1000);
+        }
+        String json = buf.append(",]").toString();
+        String numbersJSON = numbers.append(']').toString();
+
+        JSONConfig cfg = new JSONConfig();
+        JSONConfig parallelCfg = new JSONConfig().setUseParallelParsing(true);
+        assertEquals(JSONParser.parseJSON(json, cfg), JSONParser.parseJSON(json, parallelCfg));
+
+        cfg.setUsePrimitiveArrays(true);
+        parallelCfg.setUsePrimitiveArrays(true);
+        Object array = JSONParser.parseJSON(numbersJSON, cfg);
+        Object parallelArray = JSONParser.parseJSON(numbersJSON, parallelCfg);
+        assertEquals(array.getClass(), parallelArray.getClass());
+        assertEquals(JSONUtil.toJSON(array), JSONUtil.toJSON(parallelArray));
+
+        String[] badJSON = { json.replace(",\"a\"", ",,\"a\""), numbersJSON.substring(0, numbersJSON.length()-1),
+                             numbersJSON.replace(", 5000,", ", 5000 x,") };
+        for ( String bad : badJSON ){
+            try{
+                JSONParser.parseJSON(bad, parallelCfg);
+                fail("Expected JSONParserException");
+            }catch ( JSONParserException e ){
+            }
+        }
+    }
+
+    /**
+     * Test loop detection in a deep structure with shared references.
+     */
+    @Test
+    public void testDeepLoop()
+    {
+        List<Object> shared = Arrays.asList(1, 2);
+        List<Object> top = new ArrayList<>();
+        List<Object> bottom = top;
+        for ( int i = 0; i < 200; i++ ){
+            List<Object> next = new ArrayList<>();
+            bottom.add(shared);
+            bottom.add(next);
+            bottom.add(shared);
+            bottom = next;
+        }
+
+        JSONConfig cfg = new JSONConfig().setDetectDataStructureLoops(false);
+        cfg.setDetectDataStructureLoops(true);
+        String json = JSONUtil.toJSON(top, cfg);
+
+        bottom.add(top);
+        try{
+            JSONUtil.toJSON(top, cfg);
+            fail("Expected a DataStructureLoopException to be thrown");
+        }catch ( DataStructureLoopException e ){
+            assertThat(e.getMessage(), containsString("java.util.ArrayList includes itself which would cause infinite recursion."));
+        }
+
+        // the config should still be usable after the exception.
+        bottom.remove(0);
+        assertEquals(json, JSONUtil.toJSON(top, cfg));
+    }
+
     /**
      * Test a resource bundle.
      *
@@ -1632,6 +2456,33 @@ public class TestJSONUtil
         assertThat(json, is("{\"a\":1,\"b\":2,\"c\":3,\"d\":4,\"e\":5,\"f\":6,\"g\":7,\"h\":8,\"i\":9,\"j\":10,\"k\":11,\"l\":12,\"m\":13,\"n\":14,\"o\":15,\"p\":16,\"q\":17,\"r\":18,\"s\":19,\"t\":20,\"u\":21,\"v\":22,\"w\":23,\"x\":24,\"y\":25,\"z\":26}"));
     }
 
+    /**
+     * Test the classification of numeric strings when
+     * encodeNumericStringsAsNumbers is enabled.
+     *
+     * @throws ScriptException if the JSON doesn't evaluate properly.
+     * @throws NoSuchMethodException If it can't find the Javascript function to use for validation.
+     */
+    @Test
+    public void testNumericStrings() throws ScriptException, NoSuchMethodException
+    {
+        JSONConfig cfg = new JSONConfig();
+        cfg.setEncodeNumericStringsAsNumbers(true);
+        cfg.setPreciseNumbers(false);
+        List<String> list = Arrays.asList("12", "-1.5e3", "0.5", "0", "017", "0x1F", "5.", "1e400", "abc", "9007199254740993");
+
+        String json = JSONUtil.toJSON(list, cfg);
+        validateJSON(json);
+        assertThat(json, is("[12,-1.5e3,0.5,0,\"017\",\"0x1F\",\"5.\",\"1e400\",\"abc\",9007199254740993]"));
+
+        cfg.setPreciseNumbers(true);
+        json = JSONUtil.toJSON(list, cfg);
+        assertThat(json, is("[12,-1.5e3,0.5,0,\"017\",\"0x1F\",\"5.\",\"1e400\",\"abc\",\"9007199254740993\"]"));
+
+        Object result = JSONParser.parseJSON("[\"1.5\",\"0x1F\",\"017\",\"1e5\"]", cfg);
+        assertThat((List<?>)result, is(Arrays.<Object>asList(1.5, 31L, 15L, "1e5")));
+    }
+
     /**
      * Test a complex value.
      *
@@ -1905,6 +2756,299 @@ public class TestJSONUtil
         runReflectionTiming(iterations, bigObj, cfg, true);
     }
 
+    /**
+     * Test the classification of values by {@link JSONType}.
+     */
+    @Test
+    public void testJSONType()
+    {
+        JSONConfig cfg = new JSONConfig().clearReflectClasses();
+        Object[] simple = { 1, (byte)1, (short)1, 1L, 1.5F, 2.5, new BigInteger("7"), new BigDecimal("7.5"),
+                            "x", 'c', true, new Date(), new ReflectTestClass() };
+        Object[] arrays = { new ArrayList<>(), new HashSet<>(), new Vector<>().elements(), Collections.emptyList(),
+                            new int[0], new String[0], new Object[0][0] };
+        Object[] maps = { new HashMap<>(), new LinkedHashMap<>(), Collections.emptyMap() };
+
+        // twice so that the second time comes from the cache.
+        for ( int i = 0; i < 2; i++ ){
+            for ( Object value : simple ){
+                JSONType type = JSONType.getInstance(value, cfg);
+                assertTrue(value.getClass().getName(), ! type.isRecursible());
+                assertTrue(value.getClass().getName(), type.forceReflectType().isReflectType());
+            }
+            for ( Object value : arrays ){
+                JSONType type = JSONType.getInstance(value, cfg);
+                assertTrue(value.getClass().getName(), type.isArrayType() && ! type.isMapType() && ! type.isJSONAble());
+                assertTrue(value.getClass().getName(), ! type.forceReflectType().isReflectType());
+            }
+            for ( Object value : maps ){
+                JSONType type = JSONType.getInstance(value, cfg);
+                assertTrue(value.getClass().getName(), type.isMapType() && ! type.isResourceBundle() && ! type.isArrayType());
+            }
+            JSONType type = JSONType.getInstance(JSONUtil.getBundle(Locale.US), cfg);
+            assertTrue(type.isMapType() && type.isResourceBundle());
+            type = JSONType.getInstance(new JsonObject(1), cfg);
+            assertTrue(type.isJSONAble() && ! type.isMapType() && ! type.isReflectType());
+        }
+
+        // an unknown bean is only reflected if its class is a reflect class.
+        cfg.addReflectClass(ReflectTestClass.class);
+        JSONType type = JSONType.getInstance(new ReflectTestClass(), cfg);
+        assertTrue(type.isReflectType() && type.isRecursible() && ! type.isMapType());
+        assertTrue(! JSONType.getInstance(new ReflectTestClass(), new JSONConfig().clearReflectClasses()).isReflectType());
+    }
+
+    /**
+     * Test that cached reflection reads private fields and getters, writes
+     * primitives the same way as uncached reflection and wraps exceptions
+     * from accessors.
+     */
+    @Test
+    public void testReflectionAccessors()
+    {
+        JSONConfig cfg = new JSONConfig().setReflectionPrivacy(ReflectUtil.PRIVATE)
+                                         .setPreciseNumbers(false)
+                                         .addReflectClass(PrimitiveBean.class)
+                                         .addReflectClass(ThrowingBean.class);
+        try{
+            ReflectedObjectMapBuilder.clearReflectionCache();
+            String expected = "{\"i\":-7,\"s\":300,\"b\":-2,\"l\":9007199254740993,\"d\":0.1,\"nan\":\"NaN\"," +
+                              "\"t\":true,\"f\":0.1,\"c\":\"\\\"\",\"g\":10}";
+            assertThat(JSONUtil.toJSON(new PrimitiveBean(), cfg.setCacheReflectionData(false)), is(expected));
+            cfg.setCacheReflectionData(true);
+            for ( int i = 0; i < 2; i++ ){
+                assertThat(JSONUtil.toJSON(new PrimitiveBean(), cfg), is(expected));
+            }
+
+            // options that change how numbers are written.
+            NumberFormat fmt = NumberFormat.getIntegerInstance(Locale.US);
+            fmt.setGroupingUsed(true);
+            JSONConfig[] cfgs = { cfg.clone().setPreciseNumbers(true),
+                                  cfg.clone().addNumberFormat(Short.class, fmt),
+                                  cfg.clone().setIndentPadding(new IndentPadding("  ", "\n")) };
+            for ( JSONConfig c : cfgs ){
+                String cached = JSONUtil.toJSON(new PrimitiveBean(), c);
+                String uncached = JSONUtil.toJSON(new PrimitiveBean(), c.setCacheReflectionData(false));
+                assertThat(cached, is(uncached));
+            }
+            assertThat(JSONUtil.toJSON(new PrimitiveBean(), cfgs[0]), containsString("\"l\":\"9007199254740993\""));
+            assertThat(JSONUtil.toJSON(new PrimitiveBean(), cfgs[1]), containsString("\"s\":300,"));
+
+            // exceptions from cached accessors are wrapped.
+            assertThat(JSONUtil.toJSON(new ThrowingBean(null), cfg), is("{\"x\":1,\"y\":\"y\"}"));
+            for ( String fail : new String[]{ "x", "y" } ){
+                try{
+                    JSONUtil.toJSON(new ThrowingBean(fail), cfg);
+                    fail("Expected JSONReflectionException");
+                }catch ( JSONReflectionException e ){
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                    assertThat(e.getCause().getMessage(), is(fail));
+                }
+            }
+        }finally{
+            ReflectedObjectMapBuilder.clearReflectionCache();
+        }
+    }
+
+    /**
+     * Test that a cached class encoded with configs that have different
+     * reflection and property name settings gets the right property names
+     * for each config when they are used alternately.
+     */
+    @Test
+    public void testReflectedPropertyNames()
+    {
+        JSONConfig privateQuoted = new JSONConfig().setCacheReflectionData(true)
+                                                   .setReflectionPrivacy(ReflectUtil.PRIVATE)
+                                                   .addReflectClass(NamesBean.class);
+        JSONConfig publicUnquoted = new JSONConfig().setCacheReflectionData(true)
+                                                    .setReflectionPrivacy(ReflectUtil.PUBLIC)
+                                                    .setQuoteIdentifier(false)
+                                                    .addReflectClass(NamesBean.class);
+        JSONConfig privateUnquoted = new JSONConfig().setCacheReflectionData(true)
+                                                     .setReflectionPrivacy(ReflectUtil.PRIVATE)
+                                                     .setQuoteIdentifier(false)
+                                                     .addReflectClass(NamesBean.class);
+        try{
+            ReflectedObjectMapBuilder.clearReflectionCache();
+            for ( int i = 0; i < 3; i++ ){
+                assertThat(JSONUtil.toJSON(new NamesBean(), privateQuoted), is("{\"a\":1,\"b\":2}"));
+                assertThat(JSONUtil.toJSON(new NamesBean(), publicUnquoted), is("{b:2}"));
+                assertThat(JSONUtil.toJSON(new NamesBean(), privateUnquoted), is("{a:1,b:2}"));
+            }
+        }finally{
+            ReflectedObjectMapBuilder.clearReflectionCache();
+        }
+    }
+
+    /**
+     * Used by testReflectionAccessors().
+     */
+    @SuppressWarnings("unused")
+    private static class PrimitiveBean
+    {
+        private int i = -7;
+        private short s = 300;
+        private byte b = -2;
+        private long l = 9007199254740993L;
+        private double d = 0.1;
+        private double nan = Double.NaN;
+        private boolean t = true;
+        private float f = 0.1F;
+        private char c = '"';
+        private int g = 5;
+
+        public int getG()
+        {
+            return g * 2;
+        }
+    }
+
+    /**
+     * Used by testReflectionAccessors().
+     */
+    @SuppressWarnings("unused")
+    private static class ThrowingBean
+    {
+        private transient String fail;
+        private int x = 1;
+        private String y = "y";
+
+        ThrowingBean( String fail )
+        {
+            this.fail = fail;
+        }
+
+        public int getX()
+        {
+            if ( "x".equals(fail) ){
+                throw new IllegalStateException("x");
+            }
+            return x;
+        }
+
+        public String getY()
+        {
+            if ( "y".equals(fail) ){
+                throw new IllegalStateException("y");
+            }
+            return y;
+        }
+    }
+
+    /**
+     * Test the reflection cache statistics and size limit.
+     */
+    @Test
+    public void testReflectionCache()
+    {
+        JSONConfigDefaults dflts = JSONConfigDefaults.getInstance();
+        JSONConfig cfg = new JSONConfig().setCacheReflectionData(true)
+                                         .setReflectionPrivacy(ReflectUtil.PRIVATE)
+                                         .addReflectClass(ReflectTestClass.class);
+        String expected = "{\"a\":1,\"b\":\"something\",\"c\":[],\"d\":null,\"f\":true}";
+        try{
+            ReflectedObjectMapBuilder.clearReflectionCache();
+            dflts.resetReflectionCacheStatistics();
+
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertEquals(1L, dflts.getReflectionCacheMisses());
+            assertEquals(1L, dflts.getReflectionCacheHits());
+            assertEquals(1, dflts.getReflectionCacheSize());
+
+            // a full cache evicts before adding.
+            dflts.setReflectionCacheMaxSize(1);
+            cfg.setReflectionPrivacy(ReflectUtil.PUBLIC);
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is("{\"a\":1,\"f\":true}"));
+            assertEquals(1L, dflts.getReflectionCacheEvictions());
+            assertEquals(1, dflts.getReflectionCacheSize());
+
+            cfg.setReflectionPrivacy(ReflectUtil.PRIVATE);
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertEquals(3L, dflts.getReflectionCacheMisses());
+
+            // property names for different options.
+            cfg.setQuoteIdentifier(false);
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is("{a:1,b:\"something\",c:[],d:null,f:true}"));
+            cfg.setQuoteIdentifier(true);
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+
+            // eviction takes the classes that were cached first.
+            ReflectedObjectMapBuilder.clearReflectionCache();
+            assertEquals(0, dflts.getReflectionCacheSize());
+            dflts.resetReflectionCacheStatistics();
+            dflts.setReflectionCacheMaxSize(2);
+            cfg.addReflectClass(CacheTestA.class).addReflectClass(CacheTestB.class);
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertThat(JSONUtil.toJSON(new CacheTestA(), cfg), is("{\"x\":1}"));
+            assertEquals(2, dflts.getReflectionCacheSize());
+            assertThat(JSONUtil.toJSON(new CacheTestB(), cfg), is("{\"y\":2}"));
+            assertEquals(2, dflts.getReflectionCacheSize());
+            assertEquals(1L, dflts.getReflectionCacheEvictions());
+            assertThat(JSONUtil.toJSON(new CacheTestA(), cfg), is("{\"x\":1}"));
+            assertEquals(1L, dflts.getReflectionCacheHits());
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertEquals(4L, dflts.getReflectionCacheMisses());
+            assertEquals(2L, dflts.getReflectionCacheEvictions());
+            assertEquals(2, dflts.getReflectionCacheSize());
+
+            // lowering the maximum evicts right away.
+            dflts.setReflectionCacheMaxSize(1);
+            assertEquals(1, dflts.getReflectionCacheSize());
+            assertEquals(3L, dflts.getReflectionCacheEvictions());
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertEquals(2L, dflts.getReflectionCacheHits());
+
+            // clearing empties it.
+            ReflectedObjectMapBuilder.clearReflectionCache();
+            assertEquals(0, dflts.getReflectionCacheSize());
+            assertThat(JSONUtil.toJSON(new ReflectTestClass(), cfg), is(expected));
+            assertEquals(5L, dflts.getReflectionCacheMisses());
+            assertEquals(1, dflts.getReflectionCacheSize());
+        }finally{
+            dflts.setReflectionCacheMaxSize(0);
+            ReflectedObjectMapBuilder.clearReflectionCache();
+        }
+    }
+
+    /**
+     * Used by testReflectionCache().
+     */
+    private static class CacheTestA
+    {
+        @SuppressWarnings("unused")
+        private int x = 1;
+    }
+
+    /**
+     * Used by testReflectionCache().
+     */
+    private static class CacheTestB
+    {
+        @SuppressWarnings("unused")
+        private int y = 2;
+    }
+
+    /**
+     * Used by testReflectedPropertyNames().
+     */
+    @SuppressWarnings("unused")
+    private static class NamesBean
+    {
+        private int a = 1;
+        public int b = 2;
+    }
+
+    /**
+     * Used by testDeepBinding().
+     */
+    private static class NestedBean
+    {
+        private int v;
+        private NestedBean next;
+    }
+
     private String runMapTiming( int iterations, ReflectTestClass obj, JSONConfig cfg )
     {
         JsonObject jsonObj = new JsonObject(1, cfg);